@@ -0,0 +1,475 @@
+/*
+ * CorpusRegressionSuite.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.core.ExceptionUtilities;
+import com.strobel.decompiler.benchmarks.Corpus;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Decompiles the benchmark {@link Corpus} end to end through {@link DecompilerDriver}, one top-level
+ * type at a time, and reports throughput, per-class latency, peak heap, the heap retained by the
+ * {@link MetadataSystem} afterward, and GC time.  The results are compared against a stored
+ * baseline, and the run fails if any metric is worse than its baseline by more than its tolerance.
+ * <p/>
+ * Usage: {@code CorpusRegressionSuite <baseline file> <results file> [--update-baseline]}
+ * <p/>
+ * Both files are property files keyed by metric name.  A baseline may also specify a tolerance for
+ * a metric (as a fraction of the baseline value) under {@code <metric>.tolerance}.  With
+ * {@code --update-baseline}, the results are recorded as the new baseline instead; otherwise, a
+ * missing baseline is an error.  The number of untimed warm-up passes over the corpus is read from the
+ * {@code procyon.benchmark.warmup} system property (default 1).
+ * <p/>
+ * The metrics are absolute, so they are only comparable between runs on the same machine and JVM.
+ * A baseline records the machine it was taken on, and comparing against a baseline taken elsewhere
+ * is an error; baselines are meant to be recorded locally, not shared.
+ * <p/>
+ * This lives in the driver's package so it can go through the same entry point as the command line,
+ * while supplying its own {@link MetadataSystemSource}.
+ *
+ * @author Mike Strobel
+ */
+public final class CorpusRegressionSuite {
+    private final static String UPDATE_BASELINE_OPTION = "--update-baseline";
+    private final static String TOLERANCE_SUFFIX = ".tolerance";
+    private final static String MACHINE_KEY = "machine";
+    private final static long NOTIFICATION_TIMEOUT = 5000L;
+
+    private final static PrintStream NULL_STREAM = new PrintStream(
+        new OutputStream() {
+            @Override
+            public void write(final int b) {
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+            }
+        }
+    );
+
+    enum Metric {
+        CLASSES_PER_SECOND("classesPerSecond", true, 0.10),
+        P50_LATENCY("p50LatencyMillis", false, 0.15),
+        P99_LATENCY("p99LatencyMillis", false, 0.25),
+        PEAK_HEAP("peakHeapBytes", false, 0.10),
+        METADATA_RETAINED_HEAP("metadataRetainedHeapBytes", false, 0.10),
+        GC_TIME("gcTimeMillis", false, 0.50);
+
+        final String key;
+        final boolean higherIsBetter;
+        final double defaultTolerance;
+
+        Metric(final String key, final boolean higherIsBetter, final double defaultTolerance) {
+            this.key = key;
+            this.higherIsBetter = higherIsBetter;
+            this.defaultTolerance = defaultTolerance;
+        }
+    }
+
+    private CorpusSuiteSource _source;
+
+    private CorpusRegressionSuite() {
+    }
+
+    public static void main(final String[] args) {
+        if (args.length < 2 || args.length > 3 || args.length == 3 && !UPDATE_BASELINE_OPTION.equals(args[2])) {
+            System.err.println("Usage: CorpusRegressionSuite <baseline file> <results file> [" + UPDATE_BASELINE_OPTION + "]");
+            System.exit(-1);
+            return;
+        }
+
+        final File baselineFile = new File(args[0]);
+        final File resultsFile = new File(args[1]);
+        final boolean updateBaseline = args.length == 3;
+
+        if (!updateBaseline && !baselineFile.isFile()) {
+            System.err.printf(
+                "No baseline found at %s; run with %s to record one.\n",
+                baselineFile,
+                UPDATE_BASELINE_OPTION
+            );
+            System.exit(-1);
+            return;
+        }
+
+        final Map<Metric, Double> results;
+        final List<String> failures;
+
+        try {
+            results = new CorpusRegressionSuite().run(Corpus.load(), Integer.getInteger("procyon.benchmark.warmup", 1));
+
+            save(results, null, resultsFile);
+
+            if (updateBaseline) {
+                save(results, baselineFile.exists() ? load(baselineFile) : null, baselineFile);
+                System.out.printf("Recorded baseline: %s\n", baselineFile);
+                return;
+            }
+
+            failures = compare(results, load(baselineFile));
+        }
+        catch (Throwable t) {
+            System.err.println(ExceptionUtilities.getMessage(t));
+            System.exit(-1);
+            return;
+        }
+
+        if (!failures.isEmpty()) {
+            for (final String failure : failures) {
+                System.err.println("!!! REGRESSION: " + failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    private Map<Metric, Double> run(final Corpus corpus, final int warmupPasses) throws InterruptedException {
+        final List<String> typeNames = corpus.getTopLevelTypeNames();
+
+        if (typeNames.isEmpty()) {
+            throw new IllegalStateException("The benchmark corpus is empty.");
+        }
+
+        for (int i = 0; i < warmupPasses; i++) {
+            decompileAll(new CorpusSuiteSource(corpus), typeNames, new long[typeNames.size()]);
+        }
+
+        final long[] latencies = new long[typeNames.size()];
+
+        usedHeapAfterGc();
+
+        final PeakHeapMonitor peakHeapMonitor = new PeakHeapMonitor();
+        final long gcTimeBefore = totalGcTime();
+        final long start = System.nanoTime();
+
+        _source = new CorpusSuiteSource(corpus);
+        decompileAll(_source, typeNames, latencies);
+
+        final long elapsed = System.nanoTime() - start;
+        final long gcTime = totalGcTime() - gcTimeBefore;
+        final long peakHeap = peakHeapMonitor.stop();
+
+        //
+        // Measure what the metadata system (and everything it loaded) keeps alive once the run is
+        // over by comparing the live heap with and without it.
+        //
+        final long usedWithMetadata = usedHeapAfterGc();
+
+        _source = null;
+
+        final long usedWithoutMetadata = usedHeapAfterGc();
+
+        Arrays.sort(latencies);
+
+        final Map<Metric, Double> results = new EnumMap<>(Metric.class);
+
+        results.put(Metric.CLASSES_PER_SECOND, typeNames.size() / (elapsed / 1e9));
+        results.put(Metric.P50_LATENCY, percentile(latencies, 0.50) / 1e6);
+        results.put(Metric.P99_LATENCY, percentile(latencies, 0.99) / 1e6);
+        results.put(Metric.PEAK_HEAP, (double) peakHeap);
+        results.put(Metric.METADATA_RETAINED_HEAP, (double) Math.max(0L, usedWithMetadata - usedWithoutMetadata));
+        results.put(Metric.GC_TIME, (double) gcTime);
+
+        System.out.printf("Decompiled %d classes in %.1f s.\n", typeNames.size(), elapsed / 1e9);
+
+        for (final Metric metric : Metric.values()) {
+            System.out.printf("    %-28s %,.2f\n", metric.key, results.get(metric));
+        }
+
+        return results;
+    }
+
+    private static void decompileAll(final MetadataSystemSource source, final List<String> typeNames, final long[] latencies) {
+        final CommandLineOptions options = new CommandLineOptions();
+
+        for (int i = 0; i < typeNames.size(); i++) {
+            options.getClassNames().clear();
+            options.getClassNames().add(typeNames.get(i));
+
+            final long start = System.nanoTime();
+
+            DecompilerDriver.decompile(options, source, NULL_STREAM, NULL_STREAM);
+
+            latencies[i] = System.nanoTime() - start;
+        }
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Baseline Comparison">
+
+    private static List<String> compare(final Map<Metric, Double> results, final Properties baseline) {
+        final String machine = baseline.getProperty(MACHINE_KEY);
+
+        if (!describeMachine().equals(machine)) {
+            throw new IllegalStateException(
+                String.format(
+                    "The baseline was recorded on '%s', not on this machine ('%s'); record a local baseline with %s.",
+                    machine,
+                    describeMachine(),
+                    UPDATE_BASELINE_OPTION
+                )
+            );
+        }
+
+        final List<String> failures = new ArrayList<>();
+
+        for (final Metric metric : Metric.values()) {
+            final String baselineValue = baseline.getProperty(metric.key);
+
+            if (baselineValue == null) {
+                continue;
+            }
+
+            final double expected = Double.parseDouble(baselineValue);
+            final double actual = results.get(metric);
+            final String toleranceValue = baseline.getProperty(metric.key + TOLERANCE_SUFFIX);
+            final double tolerance = toleranceValue != null ? Double.parseDouble(toleranceValue) : metric.defaultTolerance;
+
+            if (expected <= 0d) {
+                continue;
+            }
+
+            final boolean regressed = metric.higherIsBetter ? actual < expected * (1d - tolerance)
+                                                            : actual > expected * (1d + tolerance);
+
+            if (regressed) {
+                failures.add(
+                    String.format(
+                        "%s is %,.2f; the baseline is %,.2f (tolerance %.0f%%).",
+                        metric.key,
+                        actual,
+                        expected,
+                        tolerance * 100d
+                    )
+                );
+            }
+        }
+
+        return failures;
+    }
+
+    private static Properties load(final File file) throws IOException {
+        final Properties properties = new Properties();
+
+        try (final InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+
+        return properties;
+    }
+
+    private static void save(final Map<Metric, Double> results, final Properties previous, final File file) throws IOException {
+        final Properties properties = new Properties();
+
+        properties.setProperty(MACHINE_KEY, describeMachine());
+
+        for (final Metric metric : Metric.values()) {
+            properties.setProperty(metric.key, String.valueOf(results.get(metric)));
+
+            //
+            // Keep any tolerances configured in the baseline we're replacing.
+            //
+            final String tolerance = previous != null ? previous.getProperty(metric.key + TOLERANCE_SUFFIX) : null;
+
+            if (tolerance != null) {
+                properties.setProperty(metric.key + TOLERANCE_SUFFIX, tolerance);
+            }
+        }
+
+        final File directory = file.getAbsoluteFile().getParentFile();
+
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory: " + directory);
+        }
+
+        try (final OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "Procyon corpus regression results");
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Measurement Helpers">
+
+    private static double percentile(final long[] sortedValues, final double percentile) {
+        final int index = (int) Math.ceil(percentile * sortedValues.length) - 1;
+        return sortedValues[Math.max(0, Math.min(sortedValues.length - 1, index))];
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return usedHeap();
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long totalGcTime() {
+        long time = 0L;
+
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0L, collector.getCollectionTime());
+        }
+
+        return time;
+    }
+
+    private static long totalGcCount() {
+        long count = 0L;
+
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, collector.getCollectionCount());
+        }
+
+        return count;
+    }
+
+    private static String describeMachine() {
+        return String.format(
+            "%s %s, %d processors, %s %s, max heap %d MB",
+            System.getProperty("os.name"),
+            System.getProperty("os.arch"),
+            Runtime.getRuntime().availableProcessors(),
+            System.getProperty("java.vm.name"),
+            System.getProperty("java.version"),
+            Runtime.getRuntime().maxMemory() >> 20
+        );
+    }
+
+    /**
+     * Tracks the highest heap occupancy from the time it is created until it is stopped.  Between
+     * collections, occupancy only grows, so it peaks just before a collection or at the very end.
+     * The peak is therefore the largest total occupancy reported before any collection, or seen at
+     * the end; unlike the sum of each pool's own peak, these are totals of a single moment.
+     */
+    private final static class PeakHeapMonitor implements NotificationListener {
+        private final List<NotificationEmitter> _emitters = new ArrayList<>();
+        private final long _gcCountBefore;
+
+        private long _peak;
+        private long _notificationCount;
+
+        PeakHeapMonitor() {
+            for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    final NotificationEmitter emitter = (NotificationEmitter) collector;
+                    emitter.addNotificationListener(this, null, null);
+                    _emitters.add(emitter);
+                }
+            }
+
+            if (_emitters.isEmpty()) {
+                throw new IllegalStateException("This JVM does not report garbage collections; peak heap cannot be measured.");
+            }
+
+            _gcCountBefore = totalGcCount();
+            _peak = usedHeap();
+        }
+
+        @Override
+        public synchronized void handleNotification(final Notification notification, final Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+
+            final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                (CompositeData) notification.getUserData()
+            );
+
+            long used = 0L;
+
+            for (final MemoryUsage usage : info.getGcInfo().getMemoryUsageBeforeGc().values()) {
+                used += usage.getUsed();
+            }
+
+            _peak = Math.max(_peak, used);
+            _notificationCount++;
+            notifyAll();
+        }
+
+        /**
+         * Stops tracking and returns the peak.  Notifications are delivered asynchronously, so this
+         * first waits for those of every collection which happened while tracking.
+         */
+        synchronized long stop() throws InterruptedException {
+            final long expectedCount = totalGcCount() - _gcCountBefore;
+            final long deadline = System.currentTimeMillis() + NOTIFICATION_TIMEOUT;
+
+            _peak = Math.max(_peak, usedHeap());
+
+            while (_notificationCount < expectedCount) {
+                final long remaining = deadline - System.currentTimeMillis();
+
+                if (remaining <= 0L) {
+                    throw new IllegalStateException("Timed out waiting for garbage collection notifications.");
+                }
+
+                wait(remaining);
+            }
+
+            for (final NotificationEmitter emitter : _emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                }
+                catch (ListenerNotFoundException ignored) {
+                }
+            }
+
+            return _peak;
+        }
+    }
+
+    // </editor-fold>
+
+    /**
+     * Resolves the types named in a request against a single metadata system loaded from the corpus,
+     * so that it stays warm for the whole pass, like the daemon's.  Jar files are handled as usual.
+     */
+    private final static class CorpusSuiteSource extends UncachedMetadataSystemSource {
+        private final MetadataSystem _metadataSystem;
+
+        CorpusSuiteSource(final Corpus corpus) {
+            _metadataSystem = new NoRetryMetadataSystem(corpus.createTypeLoader());
+        }
+
+        @Override
+        MetadataSystem getMetadataSystem() {
+            return _metadataSystem;
+        }
+    }
+}
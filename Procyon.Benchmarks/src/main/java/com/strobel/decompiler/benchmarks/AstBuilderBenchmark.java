@@ -0,0 +1,70 @@
+/*
+ * AstBuilderBenchmark.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.benchmarks;
+
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.decompiler.DecompilerContext;
+import com.strobel.decompiler.DecompilerSettings;
+import com.strobel.decompiler.ast.AstBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AstBuilder#build} (bytecode to unoptimized ILAST) for every method in the corpus.
+ *
+ * @author Mike Strobel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AstBuilderBenchmark {
+    private List<DecompilerContext> _contexts;
+
+    @Setup
+    public void setup() {
+        final Corpus corpus = Corpus.load();
+        final MetadataSystem metadataSystem = Stages.createMetadataSystem(corpus);
+        final DecompilerSettings settings = Stages.createSettings();
+
+        _contexts = new ArrayList<>();
+
+        for (final MethodDefinition method : Stages.collectMethods(Stages.resolveTypes(metadataSystem, corpus.getTypeNames()), settings)) {
+            _contexts.add(Stages.createContext(settings, method));
+        }
+    }
+
+    @Benchmark
+    public void build(final Blackhole blackhole) {
+        for (final DecompilerContext context : _contexts) {
+            blackhole.consume(Stages.buildIlAst(context, null));
+        }
+    }
+}
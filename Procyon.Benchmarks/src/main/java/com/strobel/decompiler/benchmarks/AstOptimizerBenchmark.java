@@ -0,0 +1,92 @@
+/*
+ * AstOptimizerBenchmark.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.benchmarks;
+
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.decompiler.DecompilerContext;
+import com.strobel.decompiler.DecompilerSettings;
+import com.strobel.decompiler.ast.AstOptimizationStep;
+import com.strobel.decompiler.ast.AstOptimizer;
+import com.strobel.decompiler.ast.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AstOptimizer#optimize} for every method in the corpus, once for each
+ * {@link AstOptimizationStep} as the abort point.  Each score is the cumulative cost of the steps
+ * before {@link #abortBeforeStep}, so the cost of a single step is the difference between the
+ * score of the step after it and its own; {@link AstOptimizationStep#None} runs the whole optimizer.
+ * The optimizer rewrites the ILAST in place, so a fresh ILAST is built (untimed) for each invocation.
+ *
+ * @author Mike Strobel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AstOptimizerBenchmark {
+    @Param
+    public AstOptimizationStep abortBeforeStep;
+
+    private List<DecompilerContext> _contexts;
+    private List<Block> _blocks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final Corpus corpus = Corpus.load();
+        final MetadataSystem metadataSystem = Stages.createMetadataSystem(corpus);
+        final DecompilerSettings settings = Stages.createSettings();
+
+        _contexts = new ArrayList<>();
+
+        for (final MethodDefinition method : Stages.collectMethods(Stages.resolveTypes(metadataSystem, corpus.getTypeNames()), settings)) {
+            _contexts.add(Stages.createContext(settings, method));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void buildIlAst() {
+        _blocks = new ArrayList<>(_contexts.size());
+
+        for (final DecompilerContext context : _contexts) {
+            _blocks.add(Stages.buildIlAst(context, null));
+        }
+    }
+
+    @Benchmark
+    public List<Block> optimize() {
+        for (int i = 0; i < _blocks.size(); i++) {
+            AstOptimizer.optimize(_contexts.get(i), _blocks.get(i), abortBeforeStep);
+        }
+
+        return _blocks;
+    }
+}
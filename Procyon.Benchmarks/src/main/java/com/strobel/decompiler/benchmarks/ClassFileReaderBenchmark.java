@@ -0,0 +1,71 @@
+/*
+ * ClassFileReaderBenchmark.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.benchmarks;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ClassFileReader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ClassFileReader#readClass} over the whole corpus.  Method bodies are read lazily,
+ * so they are not included; see {@link MethodReaderBenchmark}.
+ *
+ * @author Mike Strobel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ClassFileReaderBenchmark {
+    private Corpus _corpus;
+    private List<String> _typeNames;
+    private MetadataSystem _metadataSystem;
+
+    @Setup
+    public void setup() {
+        _corpus = Corpus.load();
+        _typeNames = _corpus.getTypeNames();
+        _metadataSystem = Stages.createMetadataSystem(_corpus);
+
+        //
+        // Resolve the corpus up front, so the types each class refers to are already loaded.
+        //
+        Stages.resolveTypes(_metadataSystem, _typeNames);
+    }
+
+    @Benchmark
+    public void readClass(final Blackhole blackhole) {
+        for (final String typeName : _typeNames) {
+            blackhole.consume(
+                ClassFileReader.readClass(_metadataSystem, new Buffer(_corpus.getClassFile(typeName)))
+            );
+        }
+    }
+}
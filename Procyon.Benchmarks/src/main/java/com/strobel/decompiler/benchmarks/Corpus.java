@@ -0,0 +1,223 @@
+/*
+ * Corpus.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.benchmarks;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.CompositeTypeLoader;
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.core.StringUtilities;
+import com.strobel.core.VerifyArgument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+
+/**
+ * A fixed set of class files, held in memory, which the benchmarks decompile.
+ * <p/>
+ * The corpus always contains a fixed list of well-known JDK classes.  The directories and jars
+ * named by the {@code procyon.benchmark.corpus} system property (a path list) are added to it;
+ * the build points this at the class files checked into the CompilerTools test resources and at
+ * the compiled CompilerTools tests, and other (e.g., vendored) class files may be appended.
+ *
+ * @author Mike Strobel
+ */
+public final class Corpus {
+    public final static String CORPUS_PROPERTY = "procyon.benchmark.corpus";
+
+    private final static String[] JDK_CLASSES = {
+        "java/lang/String",
+        "java/lang/Integer",
+        "java/lang/Character",
+        "java/lang/invoke/MethodHandles",
+        "java/util/ArrayList",
+        "java/util/LinkedList",
+        "java/util/HashMap",
+        "java/util/TreeMap",
+        "java/util/Collections",
+        "java/util/Formatter",
+        "java/util/regex/Pattern",
+        "java/util/regex/Matcher",
+        "java/util/concurrent/ConcurrentLinkedQueue",
+        "java/util/concurrent/ThreadPoolExecutor",
+        "java/io/File",
+        "java/io/ObjectOutputStream",
+        "java/text/SimpleDateFormat",
+        "java/text/DecimalFormat"
+    };
+
+    private final Map<String, byte[]> _classes;
+
+    private Corpus(final Map<String, byte[]> classes) {
+        _classes = classes;
+    }
+
+    public static Corpus load() {
+        final Map<String, byte[]> classes = new TreeMap<>();
+
+        for (final String internalName : JDK_CLASSES) {
+            final byte[] data = readResource(internalName + ".class");
+
+            if (data != null) {
+                classes.put(internalName, data);
+            }
+        }
+
+        final String path = System.getProperty(CORPUS_PROPERTY);
+
+        if (!StringUtilities.isNullOrWhitespace(path)) {
+            for (final String part : path.split(Pattern.quote(File.pathSeparator))) {
+                if (StringUtilities.isNullOrWhitespace(part)) {
+                    continue;
+                }
+
+                final File file = new File(part);
+
+                try {
+                    if (file.isDirectory()) {
+                        addDirectory(classes, file, "");
+                    }
+                    else if (file.isFile()) {
+                        addJar(classes, file);
+                    }
+                }
+                catch (final IOException e) {
+                    throw new IllegalStateException("Failed to read benchmark corpus entry: " + file, e);
+                }
+            }
+        }
+
+        return new Corpus(classes);
+    }
+
+    public final List<String> getTypeNames() {
+        return new ArrayList<>(_classes.keySet());
+    }
+
+    public final List<String> getTopLevelTypeNames() {
+        final List<String> names = new ArrayList<>();
+
+        for (final String name : _classes.keySet()) {
+            if (name.indexOf('$') < 0) {
+                names.add(name);
+            }
+        }
+
+        return names;
+    }
+
+    public final byte[] getClassFile(final String internalName) {
+        return _classes.get(VerifyArgument.notNull(internalName, "internalName"));
+    }
+
+    public final int size() {
+        return _classes.size();
+    }
+
+    /**
+     * Creates a type loader which serves the corpus from memory, falling back to the class path for
+     * any types the corpus references but does not contain.
+     */
+    public final ITypeLoader createTypeLoader() {
+        return new CompositeTypeLoader(
+            new ITypeLoader() {
+                @Override
+                public boolean tryLoadType(final String internalName, final Buffer buffer) {
+                    final byte[] data = _classes.get(internalName);
+
+                    if (data == null) {
+                        return false;
+                    }
+
+                    buffer.reset(data.length);
+                    System.arraycopy(data, 0, buffer.array(), 0, data.length);
+                    return true;
+                }
+            },
+            new ClasspathTypeLoader()
+        );
+    }
+
+    private static void addDirectory(final Map<String, byte[]> classes, final File directory, final String prefix) throws IOException {
+        final File[] files = directory.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                addDirectory(classes, file, prefix + file.getName() + "/");
+            }
+            else if (file.getName().endsWith(".class")) {
+                final String internalName = prefix + file.getName().substring(0, file.getName().length() - ".class".length());
+
+                try (final InputStream in = new FileInputStream(file)) {
+                    classes.put(internalName, readFully(in));
+                }
+            }
+        }
+    }
+
+    private static void addJar(final Map<String, byte[]> classes, final File file) throws IOException {
+        try (final JarFile jar = new JarFile(file)) {
+            final List<JarEntry> entries = Collections.list(jar.entries());
+
+            for (final JarEntry entry : entries) {
+                final String name = entry.getName();
+
+                if (entry.isDirectory() || !name.endsWith(".class")) {
+                    continue;
+                }
+
+                try (final InputStream in = jar.getInputStream(entry)) {
+                    classes.put(name.substring(0, name.length() - ".class".length()), readFully(in));
+                }
+            }
+        }
+    }
+
+    private static byte[] readResource(final String path) {
+        try (final InputStream in = ClassLoader.getSystemResourceAsStream(path)) {
+            return in != null ? readFully(in) : null;
+        }
+        catch (final IOException ignored) {
+            return null;
+        }
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+
+        int count;
+
+        while ((count = in.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+
+        return out.toByteArray();
+    }
+}
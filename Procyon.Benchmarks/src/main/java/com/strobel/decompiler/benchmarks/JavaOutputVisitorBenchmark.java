@@ -0,0 +1,84 @@
+/*
+ * JavaOutputVisitorBenchmark.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.benchmarks;
+
+import com.strobel.decompiler.DecompilerSettings;
+import com.strobel.decompiler.PlainTextOutput;
+import com.strobel.decompiler.languages.java.JavaOutputVisitor;
+import com.strobel.decompiler.languages.java.ast.AstBuilder;
+import com.strobel.decompiler.languages.java.ast.CompilationUnit;
+import com.strobel.decompiler.languages.java.ast.InsertParenthesesVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JavaOutputVisitor} writing the fully transformed AST of each top-level type in
+ * the corpus to a {@link PlainTextOutput}.
+ *
+ * @author Mike Strobel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JavaOutputVisitorBenchmark {
+    private DecompilerSettings _settings;
+    private List<CompilationUnit> _compilationUnits;
+
+    @Setup
+    public void setup() {
+        final Corpus corpus = Corpus.load();
+
+        _settings = Stages.createSettings();
+        _compilationUnits = new ArrayList<>();
+
+        final List<AstBuilder> builders = Stages.buildJavaAsts(
+            Stages.resolveTypes(Stages.createMetadataSystem(corpus), corpus.getTopLevelTypeNames()),
+            _settings,
+            true
+        );
+
+        for (final AstBuilder builder : builders) {
+            final CompilationUnit compilationUnit = builder.getCompilationUnit();
+
+            compilationUnit.acceptVisitor(new InsertParenthesesVisitor(), null);
+            _compilationUnits.add(compilationUnit);
+        }
+    }
+
+    @Benchmark
+    public void writeOutput(final Blackhole blackhole) {
+        for (final CompilationUnit compilationUnit : _compilationUnits) {
+            final PlainTextOutput output = new PlainTextOutput();
+
+            compilationUnit.acceptVisitor(new JavaOutputVisitor(output, _settings), null);
+            blackhole.consume(output);
+        }
+    }
+}
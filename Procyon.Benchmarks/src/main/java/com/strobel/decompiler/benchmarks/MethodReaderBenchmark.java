@@ -0,0 +1,84 @@
+/*
+ * MethodReaderBenchmark.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.benchmarks;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ClassFileReader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.assembler.metadata.MethodReader;
+import com.strobel.assembler.metadata.TypeDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MethodReader#readBody} for every method in the corpus.  Bodies are cached on
+ * their methods once read, so each invocation reads the corpus types afresh (untimed), and then
+ * loads each of their bodies.
+ *
+ * @author Mike Strobel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MethodReaderBenchmark {
+    private Corpus _corpus;
+    private List<String> _typeNames;
+    private MetadataSystem _metadataSystem;
+    private List<TypeDefinition> _types;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _corpus = Corpus.load();
+        _typeNames = _corpus.getTypeNames();
+        _metadataSystem = Stages.createMetadataSystem(_corpus);
+
+        Stages.resolveTypes(_metadataSystem, _typeNames);
+    }
+
+    @Setup(Level.Invocation)
+    public void readTypes() {
+        _types = new ArrayList<>(_typeNames.size());
+
+        for (final String typeName : _typeNames) {
+            _types.add(ClassFileReader.readClass(_metadataSystem, new Buffer(_corpus.getClassFile(typeName))));
+        }
+    }
+
+    @Benchmark
+    public void readBody(final Blackhole blackhole) {
+        for (final TypeDefinition type : _types) {
+            for (final MethodDefinition method : type.getDeclaredMethods()) {
+                blackhole.consume(method.getBody());
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Stages.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.benchmarks;
+
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodBody;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.assembler.metadata.TypeReference;
+import com.strobel.decompiler.DecompilerContext;
+import com.strobel.decompiler.DecompilerSettings;
+import com.strobel.decompiler.ast.AstOptimizationStep;
+import com.strobel.decompiler.ast.AstOptimizer;
+import com.strobel.decompiler.ast.Block;
+import com.strobel.decompiler.languages.java.JavaFormattingOptions;
+import com.strobel.decompiler.languages.java.ast.AstBuilder;
+import com.strobel.util.ContractUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers which run the decompiler pipeline up to a given stage, so that each benchmark measures
+ * only its own stage.
+ *
+ * @author Mike Strobel
+ */
+final class Stages {
+    private Stages() {
+        throw ContractUtils.unreachable();
+    }
+
+    static DecompilerSettings createSettings() {
+        final DecompilerSettings settings = new DecompilerSettings();
+        settings.setFormattingOptions(JavaFormattingOptions.createDefault());
+        return settings;
+    }
+
+    static MetadataSystem createMetadataSystem(final Corpus corpus) {
+        return new MetadataSystem(corpus.createTypeLoader());
+    }
+
+    static List<TypeDefinition> resolveTypes(final MetadataSystem metadataSystem, final List<String> internalNames) {
+        final List<TypeDefinition> types = new ArrayList<>(internalNames.size());
+
+        for (final String internalName : internalNames) {
+            final TypeReference type = metadataSystem.lookupType(internalName);
+            final TypeDefinition resolvedType = type != null ? type.resolve() : null;
+
+            if (resolvedType != null) {
+                types.add(resolvedType);
+            }
+        }
+
+        return types;
+    }
+
+    static DecompilerContext createContext(final DecompilerSettings settings, final MethodDefinition method) {
+        final DecompilerContext context = new DecompilerContext(settings);
+
+        context.setCurrentType(method.getDeclaringType().resolve());
+        context.setCurrentMethod(method);
+
+        return context;
+    }
+
+    /**
+     * Collects the methods with bodies which make it through the ILAST optimizer without error, so
+     * the benchmarks never measure the cost of a failure.
+     */
+    static List<MethodDefinition> collectMethods(final List<TypeDefinition> types, final DecompilerSettings settings) {
+        final List<MethodDefinition> methods = new ArrayList<>();
+
+        for (final TypeDefinition type : types) {
+            for (final MethodDefinition method : type.getDeclaredMethods()) {
+                if (method.getBody() == null) {
+                    continue;
+                }
+
+                try {
+                    buildIlAst(createContext(settings, method), AstOptimizationStep.None);
+                }
+                catch (final Throwable ignored) {
+                    continue;
+                }
+
+                methods.add(method);
+            }
+        }
+
+        return methods;
+    }
+
+    /**
+     * Builds the ILAST for the context's current method, then optimizes it up to (but not including)
+     * {@code abortBeforeStep}.  Pass {@code null} to skip the optimizer altogether.
+     */
+    static Block buildIlAst(final DecompilerContext context, final AstOptimizationStep abortBeforeStep) {
+        final MethodBody body = context.getCurrentMethod().getBody();
+        final Block block = new Block();
+
+        block.getBody().addAll(
+            com.strobel.decompiler.ast.AstBuilder.build(body, true, context)
+        );
+
+        if (abortBeforeStep != null) {
+            AstOptimizer.optimize(context, block, abortBeforeStep);
+        }
+
+        return block;
+    }
+
+    static List<AstBuilder> buildJavaAsts(final List<TypeDefinition> types, final DecompilerSettings settings, final boolean runTransformations) {
+        final List<AstBuilder> builders = new ArrayList<>(types.size());
+
+        for (final TypeDefinition type : types) {
+            final DecompilerContext context = new DecompilerContext(settings);
+
+            context.setCurrentType(type);
+
+            final AstBuilder builder = new AstBuilder(context);
+
+            builder.addType(type);
+
+            if (runTransformations) {
+                builder.runTransformations();
+            }
+
+            builders.add(builder);
+        }
+
+        return builders;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * TransformationPipelineBenchmark.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.benchmarks;
+
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.decompiler.DecompilerSettings;
+import com.strobel.decompiler.languages.java.ast.AstBuilder;
+import com.strobel.decompiler.languages.java.ast.transforms.TransformationPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Java AST {@link TransformationPipeline} over each top-level type in the corpus.  The
+ * transforms rewrite the AST in place, so the untransformed ASTs are rebuilt (untimed) for each
+ * invocation.
+ *
+ * @author Mike Strobel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TransformationPipelineBenchmark {
+    private List<TypeDefinition> _types;
+    private DecompilerSettings _settings;
+    private List<AstBuilder> _builders;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final Corpus corpus = Corpus.load();
+
+        _settings = Stages.createSettings();
+        _types = Stages.resolveTypes(Stages.createMetadataSystem(corpus), corpus.getTopLevelTypeNames());
+    }
+
+    @Setup(Level.Invocation)
+    public void buildJavaAsts() {
+        _builders = Stages.buildJavaAsts(_types, _settings, false);
+    }
+
+    @Benchmark
+    public void runTransformations(final Blackhole blackhole) {
+        for (final AstBuilder builder : _builders) {
+            builder.runTransformations();
+            blackhole.consume(builder.getCompilationUnit());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * TypeCacheContentionBenchmark.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.reflection.benchmarks;
+
+import com.strobel.reflection.Type;
+import com.strobel.reflection.Types;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookups of reflected types which are already in the type cache, from an increasing
+ * number of threads.  Every lookup here is a cache hit, so throughput should scale with the thread
+ * count; if it flattens out, the lookups are contending on the type cache lock.
+ * <p/>
+ * JMH runs the nested subclasses, one per thread count.
+ *
+ * @author Mike Strobel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public abstract class TypeCacheContentionBenchmark {
+    private final static Class<?>[] CLASSES = {
+        Object.class,
+        String.class,
+        Integer.class,
+        Long.class,
+        Character.class,
+        Number.class,
+        CharSequence.class,
+        Comparable.class,
+        Iterable.class,
+        java.util.List.class,
+        java.util.ArrayList.class,
+        java.util.Map.class,
+        java.util.HashMap.class,
+        java.util.Set.class,
+        java.util.Collection.class,
+        java.util.Iterator.class
+    };
+
+    private Type<?>[] _types;
+    private Type<?>[] _genericDefinitions;
+
+    @Setup
+    public void setup() {
+        _types = new Type<?>[CLASSES.length];
+
+        for (int i = 0; i < CLASSES.length; i++) {
+            _types[i] = Type.of(CLASSES[i]);
+        }
+
+        _genericDefinitions = new Type<?>[] {
+            Type.of(java.util.List.class),
+            Type.of(java.util.ArrayList.class),
+            Type.of(java.util.Set.class),
+            Type.of(java.util.Collection.class),
+            Type.of(Iterable.class),
+            Type.of(Comparable.class)
+        };
+
+        //
+        // Populate the cache up front, so the benchmarks only ever see hits.
+        //
+        lookupArrayTypes(null);
+        lookupGenericTypes(null);
+    }
+
+    @Benchmark
+    public void lookupTypes(final Blackhole blackhole) {
+        for (final Class<?> clazz : CLASSES) {
+            consume(blackhole, Type.of(clazz));
+        }
+    }
+
+    @Benchmark
+    public void lookupArrayTypes(final Blackhole blackhole) {
+        for (final Type<?> type : _types) {
+            consume(blackhole, type.makeArrayType());
+        }
+    }
+
+    @Benchmark
+    public void lookupGenericTypes(final Blackhole blackhole) {
+        for (final Type<?> definition : _genericDefinitions) {
+            consume(blackhole, definition.makeGenericType(Types.String));
+        }
+    }
+
+    private static void consume(final Blackhole blackhole, final Type<?> type) {
+        if (blackhole != null) {
+            blackhole.consume(type);
+        }
+    }
+
+    @Threads(1)
+    public static class OneThread extends TypeCacheContentionBenchmark {
+    }
+
+    @Threads(2)
+    public static class TwoThreads extends TypeCacheContentionBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends TypeCacheContentionBenchmark {
+    }
+
+    @Threads(8)
+    public static class EightThreads extends TypeCacheContentionBenchmark {
+    }
+}
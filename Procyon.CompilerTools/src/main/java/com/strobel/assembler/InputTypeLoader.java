@@ -180,7 +180,11 @@ public class InputTypeLoader implements ITypeLoader {
         return false;
     }
 
-    private boolean tryLoadFile(final File file, final Buffer buffer) {
+    /**
+     * Reads {@code file} into {@code buffer}.  Every class file this loader reads, whether named
+     * directly or found by probing, is read through this method.
+     */
+    protected boolean tryLoadFile(final File file, final Buffer buffer) {
         if (LOG.isLoggable(Level.FINER)) {
             LOG.finer("Probing for file: " + file.getAbsolutePath() + "...");
         }
@@ -18,6 +18,7 @@ package com.strobel.assembler.flowanalysis;
 
 import com.strobel.assembler.Collection;
 import com.strobel.assembler.ir.ExceptionHandler;
+import com.strobel.assembler.ir.ExceptionHandlerCollection;
 import com.strobel.assembler.ir.ExceptionHandlerType;
 import com.strobel.assembler.ir.Instruction;
 import com.strobel.assembler.ir.InstructionBlock;
@@ -30,7 +31,6 @@ import com.strobel.core.Predicate;
 import com.strobel.core.VerifyArgument;
 import com.strobel.util.ContractUtils;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.IdentityHashMap;
 import java.util.List;
@@ -61,8 +61,9 @@ public final class ControlFlowGraphBuilder {
     }
 
     private final List<Instruction> _instructions;
-    private final List<ExceptionHandler> _exceptionHandlers;
+    private final ExceptionHandlerCollection _exceptionHandlers;
     private final List<ControlFlowNode> _nodes = new Collection<>();
+    private final Map<ExceptionHandler, ControlFlowNode> _handlerNodes = new IdentityHashMap<>();
     private final int[] _offsets;
     private final boolean[] _hasIncomingJumps;
     private final ControlFlowNode _entryPoint;
@@ -193,7 +194,13 @@ public final class ControlFlowGraphBuilder {
                 endFinallyNode = null;
             }
 
-            _nodes.add(new ControlFlowNode(index, handler, endFinallyNode));
+            final ControlFlowNode handlerNode = new ControlFlowNode(index, handler, endFinallyNode);
+
+            _nodes.add(handlerNode);
+
+            if (!_handlerNodes.containsKey(handler)) {
+                _handlerNodes.put(handler, handlerNode);
+            }
         }
     }
 
@@ -723,10 +730,10 @@ public final class ControlFlowGraphBuilder {
             return _exceptionalExit;
         }
 
-        for (final ControlFlowNode node : _nodes) {
-            if (node.getExceptionHandler() == handler && node.getCopyFrom() == null) {
-                return node;
-            }
+        final ControlFlowNode node = _handlerNodes.get(handler);
+
+        if (node != null) {
+            return node;
         }
 
         throw new IllegalStateException("Could not find node for exception handler!");
@@ -739,10 +746,10 @@ public final class ControlFlowGraphBuilder {
             return _exceptionalExit;
         }
 
-        for (final ControlFlowNode node : _nodes) {
-            if (node.getExceptionHandler() == handler && node.getCopyFrom() == null) {
-                return node;
-            }
+        final ControlFlowNode node = _handlerNodes.get(handler);
+
+        if (node != null) {
+            return node;
         }
 
         throw new IllegalStateException("Could not find node for exception handler!");
@@ -775,7 +782,7 @@ public final class ControlFlowGraphBuilder {
     private ExceptionHandler findInnermostExceptionHandler(final int offsetInTryBlock) {
         ExceptionHandler result = null;
 
-        for (final ExceptionHandler handler : _exceptionHandlers) {
+        for (final ExceptionHandler handler : _exceptionHandlers.findTryBlocksContaining(offsetInTryBlock)) {
             final InstructionBlock tryBlock = handler.getTryBlock();
 
             if (tryBlock.getFirstInstruction().getOffset() <= offsetInTryBlock &&
@@ -792,7 +799,7 @@ public final class ControlFlowGraphBuilder {
     private ExceptionHandler findInnermostFinallyHandler(final int offsetInTryBlock) {
         ExceptionHandler result = null;
 
-        for (final ExceptionHandler handler : _exceptionHandlers) {
+        for (final ExceptionHandler handler : _exceptionHandlers.findTryBlocksContaining(offsetInTryBlock)) {
             if (!handler.isFinally()) {
                 continue;
             }
@@ -822,7 +829,7 @@ public final class ControlFlowGraphBuilder {
         ExceptionHandler result = null;
         InstructionBlock resultBlock = null;
 
-        for (final ExceptionHandler handler : _exceptionHandlers) {
+        for (final ExceptionHandler handler : _exceptionHandlers.findHandlerBlocksContaining(instructionOffset)) {
             if (finallyOnly && handler.isCatch()) {
                 continue;
             }
@@ -852,10 +859,10 @@ public final class ControlFlowGraphBuilder {
             return _exceptionalExit;
         }
 
-        for (final ControlFlowNode node : _nodes) {
-            if (node.getExceptionHandler() == result && node.getCopyFrom() == null) {
-                return node;
-            }
+        final ControlFlowNode node = _handlerNodes.get(result);
+
+        if (node != null) {
+            return node;
         }
 
         throw new IllegalStateException("Could not find innermost handler block!");
@@ -898,8 +905,8 @@ public final class ControlFlowGraphBuilder {
         return edge;
     }
 
-    private static List<ExceptionHandler> coalesceExceptionHandlers(final List<ExceptionHandler> handlers) {
-        final ArrayList<ExceptionHandler> copy = new ArrayList<>(handlers);
+    private static ExceptionHandlerCollection coalesceExceptionHandlers(final List<ExceptionHandler> handlers) {
+        final ExceptionHandlerCollection copy = new ExceptionHandlerCollection(handlers);
 
 //        for (int i = 0; i < copy.size(); i++) {
 //            final ExceptionHandler handler = copy.get(i);
@@ -0,0 +1,607 @@
+/*
+ * ExceptionHandlerCollection.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.ir;
+
+import com.strobel.assembler.Collection;
+import com.strobel.core.VerifyArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of exception handlers which maintains lookup tables over its contents:  handlers grouped
+ * by try block and by handler block, the position of each handler, and interval indexes over the
+ * offset ranges covered by try blocks and handler blocks.  The lookup tables are built lazily on
+ * first use and then updated in place as handlers are added, replaced, or removed.  Results are
+ * always reported in collection order.
+ * <p/>
+ * Appending or replacing a handler updates the lookup tables in logarithmic (expected) time.
+ * Inserting or removing a handler anywhere else also renumbers the positions of the handlers after
+ * it, which takes linear time, as does shifting the elements of the underlying list.  Loops which
+ * remove handlers one at a time therefore remain quadratic in the number of handlers, but they no
+ * longer rebuild the lookup tables on every iteration.
+ * <p/>
+ * The interval indexes capture instruction offsets at the time each handler is indexed.  Call
+ * {@link #invalidate()} if instruction offsets or sizes change while the collection is in use.
+ *
+ * @author Mike Strobel
+ */
+public final class ExceptionHandlerCollection extends Collection<ExceptionHandler> {
+    private Map<ExceptionHandler, Integer> _positions;
+    private boolean _hasDuplicates;
+    private Map<InstructionBlock, List<ExceptionHandler>> _tryBlockGroups;
+    private Map<InstructionBlock, List<ExceptionHandler>> _handlerBlockGroups;
+    private OffsetIndex _tryBlockIndex;
+    private OffsetIndex _handlerBlockIndex;
+
+    public ExceptionHandlerCollection() {
+    }
+
+    public ExceptionHandlerCollection(final List<ExceptionHandler> handlers) {
+        addAll(VerifyArgument.notNull(handlers, "handlers"));
+    }
+
+    public final void invalidate() {
+        _positions = null;
+        _hasDuplicates = false;
+        _tryBlockGroups = null;
+        _handlerBlockGroups = null;
+        _tryBlockIndex = null;
+        _handlerBlockIndex = null;
+    }
+
+    @Override
+    public final int indexOf(final Object o) {
+        if (!(o instanceof ExceptionHandler)) {
+            return -1;
+        }
+
+        final Integer position = positions().get(o);
+
+        return position != null ? position : -1;
+    }
+
+    @Override
+    public final boolean contains(final Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Returns all handlers protecting exactly the given try block, in collection order.
+     */
+    public final List<ExceptionHandler> getHandlersForTryBlock(final InstructionBlock tryBlock) {
+        if (_tryBlockGroups == null) {
+            _tryBlockGroups = groupBy(true);
+        }
+
+        final List<ExceptionHandler> result = _tryBlockGroups.get(tryBlock);
+
+        return result != null ? Collections.unmodifiableList(result)
+                              : Collections.<ExceptionHandler>emptyList();
+    }
+
+    /**
+     * Returns all handlers sharing exactly the given handler block, in collection order.
+     */
+    public final List<ExceptionHandler> getHandlersForHandlerBlock(final InstructionBlock handlerBlock) {
+        if (_handlerBlockGroups == null) {
+            _handlerBlockGroups = groupBy(false);
+        }
+
+        final List<ExceptionHandler> result = _handlerBlockGroups.get(handlerBlock);
+
+        return result != null ? Collections.unmodifiableList(result)
+                              : Collections.<ExceptionHandler>emptyList();
+    }
+
+    /**
+     * Returns all handlers whose try block covers the given offset, in collection order.
+     */
+    public final List<ExceptionHandler> findTryBlocksContaining(final int offset) {
+        if (_tryBlockIndex == null) {
+            positions();
+            _tryBlockIndex = new OffsetIndex(this, true);
+        }
+
+        return inCollectionOrder(_tryBlockIndex.find(offset));
+    }
+
+    /**
+     * Returns all handlers whose handler block covers the given offset, in collection order.
+     */
+    public final List<ExceptionHandler> findHandlerBlocksContaining(final int offset) {
+        if (_handlerBlockIndex == null) {
+            positions();
+            _handlerBlockIndex = new OffsetIndex(this, false);
+        }
+
+        return inCollectionOrder(_handlerBlockIndex.find(offset));
+    }
+
+    private List<ExceptionHandler> inCollectionOrder(final List<ExceptionHandler> matches) {
+        if (matches.size() < 2) {
+            return matches;
+        }
+
+        final Map<ExceptionHandler, Integer> positions = positions();
+
+        if (_hasDuplicates) {
+            //
+            // The position map only records the first occurrence of a duplicated handler, so
+            // recover the order (and multiplicity) by walking the collection instead.
+            //
+
+            final Map<ExceptionHandler, Integer> counts = new IdentityHashMap<>();
+
+            for (final ExceptionHandler handler : matches) {
+                final Integer count = counts.get(handler);
+                counts.put(handler, count != null ? count + 1 : 1);
+            }
+
+            final List<ExceptionHandler> result = new ArrayList<>(matches.size());
+
+            for (int i = 0, n = size(); i < n && result.size() < matches.size(); i++) {
+                final ExceptionHandler handler = get(i);
+                final Integer count = counts.get(handler);
+
+                if (count != null && count > 0) {
+                    result.add(handler);
+                    counts.put(handler, count - 1);
+                }
+            }
+
+            return result;
+        }
+
+        Collections.sort(
+            matches,
+            new Comparator<ExceptionHandler>() {
+                @Override
+                public int compare(final ExceptionHandler o1, final ExceptionHandler o2) {
+                    return Integer.compare(positions.get(o1), positions.get(o2));
+                }
+            }
+        );
+
+        return matches;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Incremental Maintenance">
+
+    //
+    // Every lookup table is built on top of the position map, so if the position map has not been
+    // built yet, there is nothing to maintain.  A handler which appears more than once cannot be
+    // tracked by identity, so in that (unusual) case we fall back to rebuilding everything lazily.
+    //
+
+    @Override
+    protected void afterAdd(final int index, final ExceptionHandler e, final boolean appended) {
+        if (_positions == null) {
+            return;
+        }
+
+        if (_hasDuplicates || _positions.containsKey(e)) {
+            invalidate();
+            return;
+        }
+
+        if (!appended) {
+            shiftPositions(index + 1);
+        }
+
+        _positions.put(e, index);
+
+        indexHandler(e);
+    }
+
+    @Override
+    protected void beforeSet(final int index, final ExceptionHandler e) {
+        if (_positions == null) {
+            return;
+        }
+
+        final ExceptionHandler old = get(index);
+
+        if (old == e) {
+            return;
+        }
+
+        if (_hasDuplicates || _positions.containsKey(e)) {
+            invalidate();
+            return;
+        }
+
+        unindexHandler(old);
+
+        _positions.remove(old);
+        _positions.put(e, index);
+
+        indexHandler(e);
+    }
+
+    @Override
+    protected void afterRemove(final int index, final ExceptionHandler e) {
+        if (_positions == null) {
+            return;
+        }
+
+        if (_hasDuplicates) {
+            invalidate();
+            return;
+        }
+
+        unindexHandler(e);
+
+        _positions.remove(e);
+
+        shiftPositions(index);
+    }
+
+    @Override
+    protected void beforeClear() {
+        invalidate();
+    }
+
+    //
+    // Positions are exact indexes (they answer indexOf), so every handler after an insertion or
+    // removal point must be renumbered.  This is linear, like the list's own element shift.
+    //
+
+    private void shiftPositions(final int fromIndex) {
+        for (int i = fromIndex, n = size(); i < n; i++) {
+            _positions.put(get(i), i);
+        }
+    }
+
+    private void indexHandler(final ExceptionHandler handler) {
+        if (_tryBlockGroups != null) {
+            addToGroup(_tryBlockGroups, handler.getTryBlock(), handler);
+        }
+
+        if (_handlerBlockGroups != null) {
+            addToGroup(_handlerBlockGroups, handler.getHandlerBlock(), handler);
+        }
+
+        if (_tryBlockIndex != null) {
+            _tryBlockIndex.add(handler);
+        }
+
+        if (_handlerBlockIndex != null) {
+            _handlerBlockIndex.add(handler);
+        }
+    }
+
+    private void unindexHandler(final ExceptionHandler handler) {
+        if (_tryBlockGroups != null) {
+            removeFromGroup(_tryBlockGroups, handler.getTryBlock(), handler);
+        }
+
+        if (_handlerBlockGroups != null) {
+            removeFromGroup(_handlerBlockGroups, handler.getHandlerBlock(), handler);
+        }
+
+        if (_tryBlockIndex != null) {
+            _tryBlockIndex.remove(handler);
+        }
+
+        if (_handlerBlockIndex != null) {
+            _handlerBlockIndex.remove(handler);
+        }
+    }
+
+    // </editor-fold>
+
+    private Map<ExceptionHandler, Integer> positions() {
+        if (_positions == null) {
+            final Map<ExceptionHandler, Integer> positions = new IdentityHashMap<>();
+            boolean hasDuplicates = false;
+
+            for (int i = size() - 1; i >= 0; i--) {
+                if (positions.put(get(i), i) != null) {
+                    hasDuplicates = true;
+                }
+            }
+
+            _positions = positions;
+            _hasDuplicates = hasDuplicates;
+        }
+
+        return _positions;
+    }
+
+    private Map<InstructionBlock, List<ExceptionHandler>> groupBy(final boolean byTryBlock) {
+        final Map<InstructionBlock, List<ExceptionHandler>> groups = new HashMap<>();
+
+        positions();
+
+        for (int i = 0, n = size(); i < n; i++) {
+            final ExceptionHandler handler = get(i);
+            final InstructionBlock key = byTryBlock ? handler.getTryBlock() : handler.getHandlerBlock();
+
+            List<ExceptionHandler> group = groups.get(key);
+
+            if (group == null) {
+                groups.put(key, group = new ArrayList<>(2));
+            }
+
+            group.add(handler);
+        }
+
+        return groups;
+    }
+
+    private void addToGroup(
+        final Map<InstructionBlock, List<ExceptionHandler>> groups,
+        final InstructionBlock key,
+        final ExceptionHandler handler) {
+
+        List<ExceptionHandler> group = groups.get(key);
+
+        if (group == null) {
+            groups.put(key, group = new ArrayList<>(2));
+        }
+
+        //
+        // Keep each group in collection order.  Groups are tiny, and handlers are usually added
+        // in order, so scanning back from the end is cheap.  We only get here when there are no
+        // duplicate handlers, so positions are unique.
+        //
+
+        final int position = _positions.get(handler);
+
+        int insertAt = group.size();
+
+        while (insertAt > 0 && _positions.get(group.get(insertAt - 1)) > position) {
+            --insertAt;
+        }
+
+        group.add(insertAt, handler);
+    }
+
+    private static void removeFromGroup(
+        final Map<InstructionBlock, List<ExceptionHandler>> groups,
+        final InstructionBlock key,
+        final ExceptionHandler handler) {
+
+        final List<ExceptionHandler> group = groups.get(key);
+
+        if (group == null) {
+            return;
+        }
+
+        for (int i = 0, n = group.size(); i < n; i++) {
+            if (group.get(i) == handler) {
+                group.remove(i);
+                break;
+            }
+        }
+
+        if (group.isEmpty()) {
+            groups.remove(key);
+        }
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="OffsetIndex Class">
+
+    /**
+     * A dynamic interval tree over half-open offset ranges, kept balanced as a treap.  Nodes are
+     * ordered by start offset, and each node records the greatest end offset in its subtree, so a
+     * stabbing query visits only subtrees which may contain a match.  Handlers may be added and
+     * removed in logarithmic (expected) time.
+     */
+    private final static class OffsetIndex {
+        private final boolean _tryBlocks;
+        private final Map<ExceptionHandler, Node> _nodes = new IdentityHashMap<>();
+        private Node _root;
+        private int _nextId;
+
+        OffsetIndex(final List<ExceptionHandler> handlers, final boolean tryBlocks) {
+            _tryBlocks = tryBlocks;
+
+            for (int i = 0, n = handlers.size(); i < n; i++) {
+                add(handlers.get(i));
+            }
+        }
+
+        void add(final ExceptionHandler handler) {
+            final InstructionBlock block = _tryBlocks ? handler.getTryBlock() : handler.getHandlerBlock();
+
+            final Node node = new Node(
+                handler,
+                block.getFirstInstruction().getOffset(),
+                block.getLastInstruction().getEndOffset(),
+                _nextId++
+            );
+
+            _nodes.put(handler, node);
+            _root = insert(_root, node);
+        }
+
+        void remove(final ExceptionHandler handler) {
+            final Node node = _nodes.remove(handler);
+
+            if (node != null) {
+                _root = delete(_root, node);
+            }
+        }
+
+        List<ExceptionHandler> find(final int offset) {
+            final List<ExceptionHandler> result = new ArrayList<>();
+            find(_root, offset, result);
+            return result;
+        }
+
+        private static void find(final Node node, final int offset, final List<ExceptionHandler> result) {
+            if (node == null || node.maxEnd <= offset) {
+                return;
+            }
+
+            find(node.left, offset, result);
+
+            if (node.start <= offset) {
+                if (offset < node.end) {
+                    result.add(node.handler);
+                }
+
+                find(node.right, offset, result);
+            }
+        }
+
+        private static Node insert(final Node root, final Node node) {
+            if (root == null) {
+                return node;
+            }
+
+            Node newRoot = root;
+
+            if (node.compareTo(root) < 0) {
+                root.left = insert(root.left, node);
+
+                if (root.left.priority > root.priority) {
+                    newRoot = rotateRight(root);
+                }
+            }
+            else {
+                root.right = insert(root.right, node);
+
+                if (root.right.priority > root.priority) {
+                    newRoot = rotateLeft(root);
+                }
+            }
+
+            newRoot.update();
+            return newRoot;
+        }
+
+        private static Node delete(final Node root, final Node node) {
+            if (root == null) {
+                return null;
+            }
+
+            if (root == node) {
+                return merge(root.left, root.right);
+            }
+
+            if (node.compareTo(root) < 0) {
+                root.left = delete(root.left, node);
+            }
+            else {
+                root.right = delete(root.right, node);
+            }
+
+            root.update();
+            return root;
+        }
+
+        private static Node merge(final Node left, final Node right) {
+            if (left == null) {
+                return right;
+            }
+
+            if (right == null) {
+                return left;
+            }
+
+            if (left.priority > right.priority) {
+                left.right = merge(left.right, right);
+                left.update();
+                return left;
+            }
+
+            right.left = merge(left, right.left);
+            right.update();
+            return right;
+        }
+
+        private static Node rotateRight(final Node node) {
+            final Node left = node.left;
+
+            node.left = left.right;
+            left.right = node;
+
+            node.update();
+            return left;
+        }
+
+        private static Node rotateLeft(final Node node) {
+            final Node right = node.right;
+
+            node.right = right.left;
+            right.left = node;
+
+            node.update();
+            return right;
+        }
+
+        private final static class Node implements Comparable<Node> {
+            final ExceptionHandler handler;
+            final int start;
+            final int end;
+            final int id;
+            final int priority;
+
+            int maxEnd;
+            Node left;
+            Node right;
+
+            Node(final ExceptionHandler handler, final int start, final int end, final int id) {
+                this.handler = handler;
+                this.start = start;
+                this.end = end;
+                this.id = id;
+                this.priority = mix(id);
+                this.maxEnd = end;
+            }
+
+            void update() {
+                int maxEnd = end;
+
+                if (left != null && left.maxEnd > maxEnd) {
+                    maxEnd = left.maxEnd;
+                }
+
+                if (right != null && right.maxEnd > maxEnd) {
+                    maxEnd = right.maxEnd;
+                }
+
+                this.maxEnd = maxEnd;
+            }
+
+            @Override
+            public int compareTo(final Node o) {
+                final int result = Integer.compare(start, o.start);
+                return result != 0 ? result : Integer.compare(id, o.id);
+            }
+
+            private static int mix(final int id) {
+                //
+                // Deterministic pseudo-random priorities keep the tree balanced in expectation
+                // while keeping decompiler behavior reproducible.
+                //
+                int h = id * 0x9E3779B9;
+                h ^= h >>> 16;
+                h *= 0x85EBCA6B;
+                h ^= h >>> 13;
+                return h;
+            }
+        }
+    }
+
+    // </editor-fold>
+}
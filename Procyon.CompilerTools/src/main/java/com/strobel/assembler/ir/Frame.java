@@ -220,6 +220,54 @@ public final class Frame {
         }
     }
 
+    /**
+     * Expands a compressed frame produced by {@link #computeDelta(Frame, Frame)} (or read from a
+     * {@code StackMapTable} attribute), yielding a {@link FrameType#New New} frame.
+     */
+    public static Frame applyDelta(final Frame previous, final Frame delta) {
+        VerifyArgument.notNull(previous, "previous");
+        VerifyArgument.notNull(delta, "delta");
+
+        final List<FrameValue> previousLocals = previous._localValues;
+        final List<FrameValue> deltaLocals = delta._localValues;
+        final List<FrameValue> deltaStack = delta._stackValues;
+
+        switch (delta._frameType) {
+            case Append: {
+                final FrameValue[] locals = new FrameValue[previousLocals.size() + deltaLocals.size()];
+
+                for (int i = 0; i < locals.length; i++) {
+                    locals[i] = i < previousLocals.size() ? previousLocals.get(i)
+                                                          : deltaLocals.get(i - previousLocals.size());
+                }
+
+                return new Frame(FrameType.New, ArrayUtilities.asUnmodifiableList(locals), Collections.<FrameValue>emptyList());
+            }
+
+            case Chop: {
+                final int localCount = previousLocals.size() - deltaLocals.size();
+
+                if (localCount < 0) {
+                    throw new IllegalArgumentException("Chop frame removes more locals than are present.");
+                }
+
+                return new Frame(FrameType.New, previousLocals.subList(0, localCount), Collections.<FrameValue>emptyList());
+            }
+
+            case Same: {
+                return new Frame(FrameType.New, previousLocals, Collections.<FrameValue>emptyList());
+            }
+
+            case Same1: {
+                return new Frame(FrameType.New, previousLocals, deltaStack);
+            }
+
+            default: {
+                return new Frame(FrameType.New, deltaLocals, deltaStack);
+            }
+        }
+    }
+
     @SuppressWarnings("ConstantConditions")
     public static Frame merge(final Frame input, final Frame output, final Frame next, final Map<Instruction, TypeReference> initializations) {
         VerifyArgument.notNull(input, "input");
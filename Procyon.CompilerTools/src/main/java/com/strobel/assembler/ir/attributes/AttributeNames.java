@@ -28,6 +28,7 @@ public final class AttributeNames {
     public static final String Exceptions = "Exceptions";
     public static final String LineNumberTable = "LineNumberTable";
     public static final String LocalVariableTable = "LocalVariableTable";
+    public static final String StackMapTable = "StackMapTable";
     public static final String InnerClasses = "InnerClasses";
     public static final String Synthetic = "Synthetic";
     public static final String BootstrapMethods = "BootstrapMethods";
@@ -17,20 +17,28 @@
 package com.strobel.assembler.metadata;
 
 import com.strobel.assembler.ir.ErrorOperand;
+import com.strobel.assembler.ir.Frame;
+import com.strobel.assembler.ir.FrameType;
+import com.strobel.assembler.ir.FrameValue;
 import com.strobel.assembler.ir.Instruction;
 import com.strobel.assembler.ir.InstructionCollection;
 import com.strobel.assembler.ir.OpCode;
 import com.strobel.assembler.ir.OpCodeHelpers;
+import com.strobel.assembler.ir.StackMapFrame;
 import com.strobel.assembler.ir.attributes.AttributeNames;
+import com.strobel.assembler.ir.attributes.BlobAttribute;
 import com.strobel.assembler.ir.attributes.CodeAttribute;
 import com.strobel.assembler.ir.attributes.ExceptionTableEntry;
 import com.strobel.assembler.ir.attributes.LocalVariableTableAttribute;
 import com.strobel.assembler.ir.attributes.LocalVariableTableEntry;
 import com.strobel.assembler.ir.attributes.SourceAttribute;
+import com.strobel.core.ArrayUtilities;
 import com.strobel.core.StringUtilities;
 import com.strobel.core.VerifyArgument;
 
 import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class MethodReader {
@@ -541,9 +549,268 @@ public class MethodReader {
 */
         }
 
+        final SourceAttribute stackMapTable = SourceAttribute.find(
+            AttributeNames.StackMapTable,
+            _code.getAttributes()
+        );
+
+        if (stackMapTable instanceof BlobAttribute) {
+            final List<StackMapFrame> stackMapFrames = readStackMapTable(body, (BlobAttribute) stackMapTable);
+
+            if (stackMapFrames != null) {
+                _methodBody.setStackMapFrames(stackMapFrames);
+            }
+        }
+
         return _methodBody;
     }
 
+    // <editor-fold defaultstate="collapsed" desc="StackMapTable Decoding">
+
+    private final static int ITEM_TOP = 0;
+    private final static int ITEM_INTEGER = 1;
+    private final static int ITEM_FLOAT = 2;
+    private final static int ITEM_DOUBLE = 3;
+    private final static int ITEM_LONG = 4;
+    private final static int ITEM_NULL = 5;
+    private final static int ITEM_UNINITIALIZED_THIS = 6;
+    private final static int ITEM_OBJECT = 7;
+    private final static int ITEM_UNINITIALIZED = 8;
+
+    /**
+     * Decodes a {@code StackMapTable} attribute into compressed frames, using the same layout as
+     * {@link Frame#computeDelta(Frame, Frame)}:  long and double values occupy two slots, and chop
+     * frames list the locals they remove.  Returns {@code null} if the table is malformed, in which
+     * case the frames are simply left out of the method body.
+     */
+    private List<StackMapFrame> readStackMapTable(final InstructionCollection body, final BlobAttribute attribute) {
+        final Buffer b = new Buffer(attribute.getData());
+        final List<FrameValue> locals = new ArrayList<>();
+
+        if (!Modifier.isStatic(_modifiers)) {
+            locals.add(
+                _methodDefinition.isConstructor() ? FrameValue.UNINITIALIZED_THIS
+                                                  : FrameValue.makeReference(_declaringType)
+            );
+        }
+
+        for (final ParameterDefinition parameter : _methodDefinition.getParameters()) {
+            final TypeReference parameterType = parameter.getParameterType();
+
+            switch (parameterType.getSimpleType()) {
+                case Boolean:
+                case Byte:
+                case Character:
+                case Short:
+                case Integer:
+                    locals.add(FrameValue.INTEGER);
+                    break;
+                case Long:
+                    locals.add(FrameValue.LONG);
+                    locals.add(FrameValue.TOP);
+                    break;
+                case Float:
+                    locals.add(FrameValue.FLOAT);
+                    break;
+                case Double:
+                    locals.add(FrameValue.DOUBLE);
+                    locals.add(FrameValue.TOP);
+                    break;
+                default:
+                    locals.add(FrameValue.makeReference(parameterType));
+                    break;
+            }
+        }
+
+        try {
+            final int frameCount = b.readUnsignedShort();
+            final StackMapFrame[] frames = new StackMapFrame[frameCount];
+
+            int offset = -1;
+
+            for (int i = 0; i < frameCount; i++) {
+                final int frameType = b.readUnsignedByte();
+                final Frame frame;
+
+                if (frameType < 64) {
+                    offset += frameType + 1;
+                    frame = Frame.SAME;
+                }
+                else if (frameType < 128) {
+                    offset += frameType - 64 + 1;
+
+                    final List<FrameValue> stack = readVerificationTypes(b, body, 1);
+
+                    if (stack == null) {
+                        return null;
+                    }
+
+                    frame = new Frame(FrameType.Same1, FrameValue.EMPTY_VALUES, toArray(stack));
+                }
+                else if (frameType < 247) {
+                    return null;
+                }
+                else {
+                    offset += b.readUnsignedShort() + 1;
+
+                    if (frameType == 247) {
+                        final List<FrameValue> stack = readVerificationTypes(b, body, 1);
+
+                        if (stack == null) {
+                            return null;
+                        }
+
+                        frame = new Frame(FrameType.Same1, FrameValue.EMPTY_VALUES, toArray(stack));
+                    }
+                    else if (frameType < 251) {
+                        int localCount = locals.size();
+
+                        for (int j = 251 - frameType; j > 0; j--) {
+                            if (localCount == 0) {
+                                return null;
+                            }
+
+                            if (localCount > 1 &&
+                                locals.get(localCount - 1) == FrameValue.TOP &&
+                                locals.get(localCount - 2).getType().isDoubleWord()) {
+
+                                localCount -= 2;
+                            }
+                            else {
+                                localCount -= 1;
+                            }
+                        }
+
+                        final List<FrameValue> removed = locals.subList(localCount, locals.size());
+
+                        frame = new Frame(FrameType.Chop, toArray(removed), FrameValue.EMPTY_VALUES);
+                        removed.clear();
+                    }
+                    else if (frameType == 251) {
+                        frame = Frame.SAME;
+                    }
+                    else if (frameType < 255) {
+                        final List<FrameValue> added = readVerificationTypes(b, body, frameType - 251);
+
+                        if (added == null) {
+                            return null;
+                        }
+
+                        locals.addAll(added);
+                        frame = new Frame(FrameType.Append, toArray(added), FrameValue.EMPTY_VALUES);
+                    }
+                    else {
+                        final List<FrameValue> newLocals = readVerificationTypes(b, body, b.readUnsignedShort());
+
+                        if (newLocals == null) {
+                            return null;
+                        }
+
+                        final List<FrameValue> stack = readVerificationTypes(b, body, b.readUnsignedShort());
+
+                        if (stack == null) {
+                            return null;
+                        }
+
+                        locals.clear();
+                        locals.addAll(newLocals);
+                        frame = new Frame(FrameType.Full, toArray(newLocals), toArray(stack));
+                    }
+                }
+
+                final Instruction startInstruction = offset < _code.getCodeSize() ? body.tryGetAtOffset(offset) : null;
+
+                if (startInstruction == null || startInstruction.getOffset() != offset) {
+                    return null;
+                }
+
+                frames[i] = new StackMapFrame(frame, startInstruction);
+            }
+
+            return ArrayUtilities.asUnmodifiableList(frames);
+        }
+        catch (final BufferUnderflowException ignored) {
+            return null;
+        }
+    }
+
+    private List<FrameValue> readVerificationTypes(final Buffer b, final InstructionCollection body, final int count) {
+        final List<FrameValue> values = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final int tag = b.readUnsignedByte();
+
+            switch (tag) {
+                case ITEM_TOP:
+                    values.add(FrameValue.TOP);
+                    break;
+
+                case ITEM_INTEGER:
+                    values.add(FrameValue.INTEGER);
+                    break;
+
+                case ITEM_FLOAT:
+                    values.add(FrameValue.FLOAT);
+                    break;
+
+                case ITEM_DOUBLE:
+                    values.add(FrameValue.DOUBLE);
+                    values.add(FrameValue.TOP);
+                    break;
+
+                case ITEM_LONG:
+                    values.add(FrameValue.LONG);
+                    values.add(FrameValue.TOP);
+                    break;
+
+                case ITEM_NULL:
+                    values.add(FrameValue.NULL);
+                    break;
+
+                case ITEM_UNINITIALIZED_THIS:
+                    values.add(FrameValue.UNINITIALIZED_THIS);
+                    break;
+
+                case ITEM_OBJECT: {
+                    final TypeReference type = _scope.lookupType(b.readUnsignedShort());
+
+                    if (type == null) {
+                        return null;
+                    }
+
+                    values.add(FrameValue.makeReference(type));
+                    break;
+                }
+
+                case ITEM_UNINITIALIZED: {
+                    final int newOffset = b.readUnsignedShort();
+                    final Instruction newInstruction = newOffset < _code.getCodeSize() ? body.tryGetAtOffset(newOffset) : null;
+
+                    if (newInstruction == null ||
+                        newInstruction.getOffset() != newOffset ||
+                        newInstruction.getOpCode() != OpCode.NEW) {
+
+                        return null;
+                    }
+
+                    values.add(FrameValue.makeUninitializedReference(newInstruction));
+                    break;
+                }
+
+                default:
+                    return null;
+            }
+        }
+
+        return values;
+    }
+
+    private static FrameValue[] toArray(final List<FrameValue> values) {
+        return values.toArray(new FrameValue[values.size()]);
+    }
+
+    // </editor-fold>
+
     private void processLocalVariableTable(
         final VariableDefinitionCollection variables,
         final LocalVariableTableAttribute table,
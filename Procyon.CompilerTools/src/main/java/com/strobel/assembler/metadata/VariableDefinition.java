@@ -57,6 +57,10 @@ public final class VariableDefinition extends VariableReference {
         _parameter = parameter;
     }
 
+    public final MethodDefinition getDeclaringMethod() {
+        return _declaringMethod;
+    }
+
     @Override
     public final TypeReference getDeclaringType() {
         return _declaringMethod.getDeclaringType();
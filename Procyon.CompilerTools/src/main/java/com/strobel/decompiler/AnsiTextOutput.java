@@ -131,7 +131,7 @@ public class AnsiTextOutput extends PlainTextOutput {
 
     @Override
     public void writeComment(final String format, final Object... args) {
-        final String text = String.format(format, args);
+        final String text = format(format, args);
         writeAnsi(text, colorize(text, _comment));
     }
 
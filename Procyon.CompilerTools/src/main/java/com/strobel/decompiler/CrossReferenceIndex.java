@@ -0,0 +1,508 @@
+/*
+ * CrossReferenceIndex.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.metadata.FieldReference;
+import com.strobel.assembler.metadata.MemberReference;
+import com.strobel.assembler.metadata.MethodReference;
+import com.strobel.assembler.metadata.TypeReference;
+import com.strobel.core.VerifyArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the locations at which types and members are defined and referenced in decompiled
+ * source files.  Entries are recorded as code is written (see {@link CrossReferencingTextOutput}),
+ * and the index may then be saved in a compact binary form and loaded again to answer
+ * go-to-definition and find-usages queries.
+ * <p/>
+ * Members are identified by descriptors:  the erased signature of a type (e.g.,
+ * {@code Ljava/lang/String;}), {@code owner.name:descriptor} for a field, or
+ * {@code owner.name(descriptor)} for a method, where {@code owner} is the internal name of the
+ * declaring type.
+ * <p/>
+ * The saved form begins with the magic number {@code PXRF} and a format version, followed by a
+ * table of file names, a sorted table of descriptors, and the entries sorted by descriptor, kind,
+ * file, row and column.  Strings are length-prefixed UTF-8; all integers are unsigned varints, and
+ * each entry stores its descriptor as a delta from the previous entry's.
+ *
+ * @author Mike Strobel
+ */
+public final class CrossReferenceIndex {
+    private final static byte[] MAGIC = { 'P', 'X', 'R', 'F' };
+    private final static int FORMAT_VERSION = 1;
+    private final static int ENTRY_SIZE = 6;
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final static int DESCRIPTOR = 0;
+    private final static int KIND = 1;
+    private final static int FILE = 2;
+    private final static int ROW = 3;
+    private final static int COLUMN = 4;
+    private final static int LENGTH = 5;
+
+    public enum Kind {
+        DEFINITION,
+        REFERENCE
+    }
+
+    private final List<String> _files = new ArrayList<>();
+    private final List<String> _descriptors = new ArrayList<>();
+    private final Map<String, Integer> _fileIndices = new HashMap<>();
+    private final Map<String, Integer> _descriptorIndices = new HashMap<>();
+
+    private int[] _entries = new int[ENTRY_SIZE * 64];
+    private int _entryCount;
+
+    public synchronized void record(
+        final String fileName,
+        final Kind kind,
+        final MemberReference member,
+        final int row,
+        final int column,
+        final int length) {
+
+        VerifyArgument.notNull(fileName, "fileName");
+        VerifyArgument.notNull(kind, "kind");
+        VerifyArgument.notNull(member, "member");
+
+        addEntry(
+            intern(getDescriptor(member), _descriptors, _descriptorIndices),
+            kind.ordinal(),
+            intern(fileName, _files, _fileIndices),
+            row,
+            column,
+            length
+        );
+    }
+
+    public synchronized int size() {
+        return _entryCount;
+    }
+
+    /**
+     * Returns the locations at which the member with the given descriptor is defined or referenced,
+     * in the order they would be saved.
+     */
+    public synchronized List<Location> find(final String descriptor) {
+        final Integer descriptorIndex = _descriptorIndices.get(descriptor);
+
+        if (descriptorIndex == null) {
+            return Collections.emptyList();
+        }
+
+        final List<Location> locations = new ArrayList<>();
+
+        for (final int entry : sortEntries()) {
+            final int base = entry * ENTRY_SIZE;
+
+            if (_entries[base + DESCRIPTOR] == descriptorIndex) {
+                locations.add(
+                    new Location(
+                        Kind.values()[_entries[base + KIND]],
+                        _files.get(_entries[base + FILE]),
+                        _entries[base + ROW],
+                        _entries[base + COLUMN],
+                        _entries[base + LENGTH]
+                    )
+                );
+            }
+        }
+
+        return locations;
+    }
+
+    public static String getDescriptor(final MemberReference member) {
+        VerifyArgument.notNull(member, "member");
+
+        if (member instanceof TypeReference) {
+            return member.getErasedSignature();
+        }
+
+        final TypeReference declaringType = member.getDeclaringType();
+        final String owner = declaringType != null ? declaringType.getInternalName() : "";
+
+        if (member instanceof MethodReference) {
+            return owner + "." + member.getName() + member.getErasedSignature();
+        }
+
+        if (member instanceof FieldReference) {
+            return owner + "." + member.getName() + ":" + member.getErasedSignature();
+        }
+
+        return owner + "." + member.getName();
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Serialization">
+
+    public synchronized void save(final OutputStream out) throws IOException {
+        VerifyArgument.notNull(out, "out");
+
+        //
+        // Renumber descriptors in sorted order so that entries sorted by descriptor index are
+        // also sorted by descriptor.
+        //
+        final Integer[] order = new Integer[_descriptors.size()];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(
+            order,
+            new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer o1, final Integer o2) {
+                    return _descriptors.get(o1).compareTo(_descriptors.get(o2));
+                }
+            }
+        );
+
+        final int[] rank = new int[order.length];
+
+        for (int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+
+        final int[] entries = _entries;
+
+        for (int i = 0; i < _entryCount; i++) {
+            entries[i * ENTRY_SIZE + DESCRIPTOR] = rank[entries[i * ENTRY_SIZE + DESCRIPTOR]];
+        }
+
+        final List<String> sortedDescriptors = new ArrayList<>(order.length);
+
+        for (final Integer index : order) {
+            sortedDescriptors.add(_descriptors.get(index));
+        }
+
+        _descriptors.clear();
+        _descriptors.addAll(sortedDescriptors);
+
+        for (int i = 0; i < _descriptors.size(); i++) {
+            _descriptorIndices.put(_descriptors.get(i), i);
+        }
+
+        final VarIntWriter writer = new VarIntWriter(out);
+
+        out.write(MAGIC);
+        writer.write(FORMAT_VERSION);
+
+        writer.write(_files.size());
+
+        for (final String file : _files) {
+            writer.write(file);
+        }
+
+        writer.write(_descriptors.size());
+
+        for (final String descriptor : _descriptors) {
+            writer.write(descriptor);
+        }
+
+        writer.write(_entryCount);
+
+        int lastDescriptor = 0;
+
+        for (final int entry : sortEntries()) {
+            final int base = entry * ENTRY_SIZE;
+
+            writer.write(entries[base + DESCRIPTOR] - lastDescriptor);
+            writer.write(entries[base + KIND]);
+            writer.write(entries[base + FILE]);
+            writer.write(entries[base + ROW]);
+            writer.write(entries[base + COLUMN]);
+            writer.write(entries[base + LENGTH]);
+
+            lastDescriptor = entries[base + DESCRIPTOR];
+        }
+
+        writer.flush();
+    }
+
+    public static CrossReferenceIndex load(final InputStream in) throws IOException {
+        VerifyArgument.notNull(in, "in");
+
+        final VarIntReader reader = new VarIntReader(in);
+
+        for (final byte b : MAGIC) {
+            if (reader.readByte() != b) {
+                throw new IOException("Not a cross reference index.");
+            }
+        }
+
+        final int version = reader.readInt();
+
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported cross reference index version: " + version);
+        }
+
+        final CrossReferenceIndex index = new CrossReferenceIndex();
+
+        for (int i = 0, n = reader.readInt(); i < n; i++) {
+            intern(reader.readString(), index._files, index._fileIndices);
+        }
+
+        for (int i = 0, n = reader.readInt(); i < n; i++) {
+            intern(reader.readString(), index._descriptors, index._descriptorIndices);
+        }
+
+        int descriptor = 0;
+
+        for (int i = 0, n = reader.readInt(); i < n; i++) {
+            descriptor += reader.readInt();
+
+            final int kind = reader.readInt();
+            final int file = reader.readInt();
+            final int row = reader.readInt();
+            final int column = reader.readInt();
+            final int length = reader.readInt();
+
+            if (descriptor >= index._descriptors.size() ||
+                kind >= Kind.values().length ||
+                file >= index._files.size()) {
+
+                throw new IOException("Corrupt cross reference index.");
+            }
+
+            index.addEntry(descriptor, kind, file, row, column, length);
+        }
+
+        return index;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Helper Methods">
+
+    private static int intern(final String value, final List<String> values, final Map<String, Integer> indices) {
+        final Integer existing = indices.get(value);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        final int index = values.size();
+
+        values.add(value);
+        indices.put(value, index);
+
+        return index;
+    }
+
+    private void addEntry(final int descriptor, final int kind, final int file, final int row, final int column, final int length) {
+        int[] entries = _entries;
+
+        final int base = _entryCount * ENTRY_SIZE;
+
+        if (base + ENTRY_SIZE > entries.length) {
+            _entries = entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+
+        entries[base + DESCRIPTOR] = descriptor;
+        entries[base + KIND] = kind;
+        entries[base + FILE] = file;
+        entries[base + ROW] = Math.max(row, 0);
+        entries[base + COLUMN] = Math.max(column, 0);
+        entries[base + LENGTH] = Math.max(length, 0);
+
+        _entryCount++;
+    }
+
+    private Integer[] sortEntries() {
+        final Integer[] order = new Integer[_entryCount];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        final int[] entries = _entries;
+
+        Arrays.sort(
+            order,
+            new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer o1, final Integer o2) {
+                    final int base1 = o1 * ENTRY_SIZE;
+                    final int base2 = o2 * ENTRY_SIZE;
+
+                    for (int i = DESCRIPTOR; i <= COLUMN; i++) {
+                        final int difference = entries[base1 + i] - entries[base2 + i];
+
+                        if (difference != 0) {
+                            return difference;
+                        }
+                    }
+
+                    return 0;
+                }
+            }
+        );
+
+        return order;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Location Class">
+
+    public final static class Location {
+        private final Kind _kind;
+        private final String _fileName;
+        private final int _row;
+        private final int _column;
+        private final int _length;
+
+        Location(final Kind kind, final String fileName, final int row, final int column, final int length) {
+            _kind = kind;
+            _fileName = fileName;
+            _row = row;
+            _column = column;
+            _length = length;
+        }
+
+        public final Kind getKind() {
+            return _kind;
+        }
+
+        public final String getFileName() {
+            return _fileName;
+        }
+
+        public final int getRow() {
+            return _row;
+        }
+
+        public final int getColumn() {
+            return _column;
+        }
+
+        public final int getLength() {
+            return _length;
+        }
+
+        @Override
+        public String toString() {
+            return _kind + " " + _fileName + ":" + _row + ":" + _column;
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="VarIntWriter Class">
+
+    private final static class VarIntWriter {
+        private final OutputStream _out;
+        private final byte[] _buffer = new byte[8192];
+        private int _position;
+
+        VarIntWriter(final OutputStream out) {
+            _out = out;
+        }
+
+        void write(final int value) throws IOException {
+            int v = value;
+
+            while ((v & ~0x7F) != 0) {
+                writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+
+            writeByte(v);
+        }
+
+        void write(final String value) throws IOException {
+            final byte[] bytes = value.getBytes(UTF_8);
+
+            write(bytes.length);
+
+            for (final byte b : bytes) {
+                writeByte(b);
+            }
+        }
+
+        private void writeByte(final int b) throws IOException {
+            if (_position == _buffer.length) {
+                flush();
+            }
+            _buffer[_position++] = (byte) b;
+        }
+
+        void flush() throws IOException {
+            _out.write(_buffer, 0, _position);
+            _position = 0;
+            _out.flush();
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="VarIntReader Class">
+
+    private final static class VarIntReader {
+        private final InputStream _in;
+
+        VarIntReader(final InputStream in) {
+            _in = in;
+        }
+
+        byte readByte() throws IOException {
+            final int b = _in.read();
+
+            if (b < 0) {
+                throw new IOException("Unexpected end of cross reference index.");
+            }
+
+            return (byte) b;
+        }
+
+        int readInt() throws IOException {
+            int value = 0;
+
+            for (int shift = 0; shift < 32; shift += 7) {
+                final byte b = readByte();
+
+                value |= (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IOException("Malformed varint in cross reference index.");
+        }
+
+        String readString() throws IOException {
+            final byte[] bytes = new byte[readInt()];
+
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = readByte();
+            }
+
+            return new String(bytes, UTF_8);
+        }
+    }
+
+    // </editor-fold>
+}
@@ -0,0 +1,90 @@
+/*
+ * CrossReferencingTextOutput.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.metadata.MemberReference;
+import com.strobel.core.StringUtilities;
+import com.strobel.core.VerifyArgument;
+
+import java.io.Writer;
+
+/**
+ * A {@link PlainTextOutput} which records the location of every type and member definition and
+ * reference it writes into a {@link CrossReferenceIndex}.  Local variables are not recorded.
+ *
+ * @author Mike Strobel
+ */
+public class CrossReferencingTextOutput extends PlainTextOutput {
+    private final CrossReferenceIndex _index;
+    private final String _fileName;
+
+    public CrossReferencingTextOutput(final CrossReferenceIndex index, final String fileName) {
+        super();
+        _index = VerifyArgument.notNull(index, "index");
+        _fileName = VerifyArgument.notNull(fileName, "fileName");
+    }
+
+    public CrossReferencingTextOutput(final Writer writer, final CrossReferenceIndex index, final String fileName) {
+        super(writer);
+        _index = VerifyArgument.notNull(index, "index");
+        _fileName = VerifyArgument.notNull(fileName, "fileName");
+    }
+
+    public final CrossReferenceIndex getIndex() {
+        return _index;
+    }
+
+    public final String getFileName() {
+        return _fileName;
+    }
+
+    @Override
+    public void writeDefinition(final String text, final Object definition, final boolean isLocal) {
+        final int row = getRow();
+        final int column = getColumn();
+
+        super.writeDefinition(text, definition, isLocal);
+        record(CrossReferenceIndex.Kind.DEFINITION, text, definition, isLocal, row, column);
+    }
+
+    @Override
+    public void writeReference(final String text, final Object reference, final boolean isLocal) {
+        final int row = getRow();
+        final int column = getColumn();
+
+        super.writeReference(text, reference, isLocal);
+        record(CrossReferenceIndex.Kind.REFERENCE, text, reference, isLocal, row, column);
+    }
+
+    private void record(
+        final CrossReferenceIndex.Kind kind,
+        final String text,
+        final Object member,
+        final boolean isLocal,
+        final int row,
+        final int column) {
+
+        if (isLocal || !(member instanceof MemberReference) || StringUtilities.isNullOrEmpty(text)) {
+            return;
+        }
+
+        //
+        // Measure the span by what was actually written: unless unicode output is enabled, the
+        // text may have been escaped, and the escaped form is longer than the text itself.
+        //
+        final int length = getRow() == row ? getColumn() - column : text.length();
+
+        _index.record(_fileName, kind, (MemberReference) member, row, column, length);
+    }
+}
@@ -16,9 +16,12 @@
 
 package com.strobel.decompiler;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class DecompilationOptions {
     private boolean _fullDecompilation = true;
     private DecompilerSettings _settings;
+    private AtomicBoolean _canceled;
 
     public final boolean isFullDecompilation() {
         return _fullDecompilation;
@@ -38,4 +41,16 @@ public class DecompilationOptions {
     public final void setSettings(final DecompilerSettings settings) {
         _settings = settings;
     }
+
+    /**
+     * Gets the flag which, once set, cancels decompilations using these options.  It is passed on to
+     * each {@link DecompilerContext} created for them.
+     */
+    public final AtomicBoolean getCanceled() {
+        return _canceled;
+    }
+
+    public final void setCanceled(final AtomicBoolean canceled) {
+        _canceled = canceled;
+    }
 }
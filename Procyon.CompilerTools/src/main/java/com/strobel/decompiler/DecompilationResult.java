@@ -0,0 +1,55 @@
+/*
+ * DecompilationResult.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.languages.LineNumberPosition;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The output of a single type decompiled by a {@link DecompilerSession}.
+ *
+ * @author Mike Strobel
+ */
+public final class DecompilationResult {
+    private final String _internalName;
+    private final String _text;
+    private final List<LineNumberPosition> _lineNumberPositions;
+
+    DecompilationResult(final String internalName, final String text, final List<LineNumberPosition> lineNumberPositions) {
+        _internalName = VerifyArgument.notNull(internalName, "internalName");
+        _text = VerifyArgument.notNull(text, "text");
+        _lineNumberPositions = lineNumberPositions != null ? lineNumberPositions
+                                                           : Collections.<LineNumberPosition>emptyList();
+    }
+
+    public final String getInternalName() {
+        return _internalName;
+    }
+
+    public final String getText() {
+        return _text;
+    }
+
+    public final List<LineNumberPosition> getLineNumberPositions() {
+        return _lineNumberPositions;
+    }
+
+    @Override
+    public String toString() {
+        return _text;
+    }
+}
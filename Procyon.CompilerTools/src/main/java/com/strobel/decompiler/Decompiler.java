@@ -25,8 +25,11 @@ import com.strobel.assembler.metadata.MetadataSystem;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
 import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.languages.TypeDecompilationResults;
 import com.strobel.decompiler.languages.java.JavaFormattingOptions;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public final class Decompiler {
     public static void decompile(final String internalName, final ITextOutput output) {
         decompile(internalName, output, new DecompilerSettings());
@@ -39,6 +42,16 @@ public final class Decompiler {
         final ITypeLoader typeLoader = settings.getTypeLoader() != null ? settings.getTypeLoader() : new InputTypeLoader();
         final MetadataSystem metadataSystem = new MetadataSystem(typeLoader);
 
+        decompile(metadataSystem, internalName, output, settings, null);
+    }
+
+    static TypeDecompilationResults decompile(
+        final MetadataSystem metadataSystem,
+        final String internalName,
+        final ITextOutput output,
+        final DecompilerSettings settings,
+        final AtomicBoolean canceled) {
+
         final TypeReference type;
 
         if (internalName.length() == 1) {
@@ -59,18 +72,19 @@ public final class Decompiler {
 
         if (type == null || (resolvedType = type.resolve()) == null) {
             output.writeLine("!!! ERROR: Failed to load class %s.", internalName);
-            return;
+            return null;
         }
 
         final DecompilationOptions options = new DecompilationOptions();
 
         options.setSettings(settings);
         options.setFullDecompilation(true);
+        options.setCanceled(canceled);
 
         if (settings.getFormattingOptions() == null) {
             settings.setFormattingOptions(JavaFormattingOptions.createDefault());
         }
 
-        settings.getLanguage().decompileType(resolvedType, output, options);
+        return settings.getLanguage().decompileType(resolvedType, output, options);
     }
 }
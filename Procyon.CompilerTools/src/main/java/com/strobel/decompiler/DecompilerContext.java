@@ -26,12 +26,15 @@ import com.strobel.core.BooleanBox;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class DecompilerContext extends UserDataStoreBase {
     private final List<String> _reservedVariableNames = new Collection<>();
     private final Set<IMemberDefinition> _forcedVisibleMembers = new LinkedHashSet<>();
     private DecompilerSettings _settings = new DecompilerSettings();
-    private BooleanBox _isCanceled;
+    private AtomicBoolean _isCanceled;
+    private BooleanBox _canceledBox;
     private TypeDefinition _currentType;
     private MethodDefinition _currentMethod;
 
@@ -50,14 +53,48 @@ public final class DecompilerContext extends UserDataStoreBase {
         _settings = settings;
     }
 
-    public BooleanBox getCanceled() {
+    /**
+     * Gets the flag which, once set, cancels the decompilation using this context.  It may be set
+     * from any thread.
+     */
+    public AtomicBoolean getCancellationFlag() {
         return _isCanceled;
     }
 
-    public void setCanceled(final BooleanBox canceled) {
+    public void setCancellationFlag(final AtomicBoolean canceled) {
         _isCanceled = canceled;
     }
 
+    /**
+     * @deprecated A {@code BooleanBox} set from another thread may never be seen by the decompiler.
+     * Use {@link #getCancellationFlag()}.  This returns only a box given to {@link #setCanceled}.
+     */
+    @Deprecated
+    public BooleanBox getCanceled() {
+        return _canceledBox;
+    }
+
+    /**
+     * @deprecated Use {@link #setCancellationFlag}.  A box given here is still checked by
+     * {@link #throwIfCanceled()}, along with the cancellation flag.
+     */
+    @Deprecated
+    public void setCanceled(final BooleanBox canceled) {
+        _canceledBox = canceled;
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the decompilation using this context has been
+     * canceled.  Called between units of work (method bodies, AST transforms).
+     */
+    public void throwIfCanceled() {
+        if (_isCanceled != null && _isCanceled.get() ||
+            _canceledBox != null && _canceledBox.value) {
+
+            throw new CancellationException();
+        }
+    }
+
     public TypeDefinition getCurrentType() {
         return _currentType;
     }
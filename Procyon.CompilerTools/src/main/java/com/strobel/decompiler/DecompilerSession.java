@@ -0,0 +1,179 @@
+/*
+ * DecompilerSession.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.InputTypeLoader;
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.languages.TypeDecompilationResults;
+import com.strobel.decompiler.languages.java.JavaFormattingOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A reusable entry point for decompiling many types against a single {@link MetadataSystem}, so
+ * that types loaded for one request (most notably the JDK) are already resolved for the next.
+ * <p/>
+ * Requests may be submitted from any thread, and each runs on the session's {@link Executor}.
+ * Because type metadata is loaded lazily and is not safe for concurrent access, requests against
+ * the same session are decompiled one at a time.  Canceling a returned {@link Future} cancels its
+ * decompilation at the next method body or AST transform (see {@link DecompilerContext#setCancellationFlag}).
+ * <p/>
+ * The type loader configured on the {@link DecompilerSettings} passed with each request is ignored
+ * in favor of the session's own.
+ *
+ * @author Mike Strobel
+ */
+public final class DecompilerSession {
+    private final MetadataSystem _metadataSystem;
+    private final Executor _executor;
+    private final ReentrantLock _lock;
+
+    public DecompilerSession(final Executor executor) {
+        this(new InputTypeLoader(), executor);
+    }
+
+    public DecompilerSession(final ITypeLoader typeLoader, final Executor executor) {
+        _metadataSystem = new MetadataSystem(VerifyArgument.notNull(typeLoader, "typeLoader"));
+        _executor = VerifyArgument.notNull(executor, "executor");
+        _lock = new ReentrantLock();
+    }
+
+    public final MetadataSystem getMetadataSystem() {
+        return _metadataSystem;
+    }
+
+    public final Executor getExecutor() {
+        return _executor;
+    }
+
+    public Future<DecompilationResult> decompile(final String internalName, final DecompilerSettings settings) {
+        VerifyArgument.notNull(internalName, "internalName");
+        VerifyArgument.notNull(settings, "settings");
+
+        prepareSettings(settings);
+
+        final DecompilationTask task = new DecompilationTask(internalName, settings);
+
+        _executor.execute(task);
+
+        return task;
+    }
+
+    public List<Future<DecompilationResult>> decompile(final Iterable<String> internalNames, final DecompilerSettings settings) {
+        VerifyArgument.noNullElements(internalNames, "internalNames");
+        VerifyArgument.notNull(settings, "settings");
+
+        prepareSettings(settings);
+
+        final List<DecompilationTask> tasks = new ArrayList<>();
+
+        for (final String internalName : internalNames) {
+            tasks.add(new DecompilationTask(internalName, settings));
+        }
+
+        final List<Future<DecompilationResult>> results = new ArrayList<>(tasks.size());
+
+        for (final DecompilationTask task : tasks) {
+            _executor.execute(task);
+            results.add(task);
+        }
+
+        return results;
+    }
+
+    private static void prepareSettings(final DecompilerSettings settings) {
+        //
+        // Fill in defaults now, on the submitting thread, rather than racing to do it later.
+        //
+        if (settings.getFormattingOptions() == null) {
+            settings.setFormattingOptions(JavaFormattingOptions.createDefault());
+        }
+    }
+
+    private DecompilationResult decompileCore(
+        final String internalName,
+        final DecompilerSettings settings,
+        final AtomicBoolean canceled) throws InterruptedException {
+
+        _lock.lockInterruptibly();
+
+        try {
+            if (canceled.get()) {
+                throw new CancellationException();
+            }
+
+            final PlainTextOutput output = new PlainTextOutput();
+
+            output.setUnicodeOutputEnabled(settings.isUnicodeOutputEnabled());
+
+            final TypeDecompilationResults results = Decompiler.decompile(
+                _metadataSystem,
+                internalName,
+                output,
+                settings,
+                canceled
+            );
+
+            return new DecompilationResult(
+                internalName,
+                output.toString(),
+                results != null ? results.getLineNumberPositions() : null
+            );
+        }
+        finally {
+            _lock.unlock();
+        }
+    }
+
+    private final class DecompilationTask extends FutureTask<DecompilationResult> {
+        private final AtomicBoolean _canceled;
+
+        DecompilationTask(final String internalName, final DecompilerSettings settings) {
+            this(internalName, settings, new AtomicBoolean());
+        }
+
+        private DecompilationTask(final String internalName, final DecompilerSettings settings, final AtomicBoolean canceled) {
+            super(
+                new Callable<DecompilationResult>() {
+                    @Override
+                    public DecompilationResult call() throws Exception {
+                        return decompileCore(internalName, settings, canceled);
+                    }
+                }
+            );
+
+            _canceled = canceled;
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            //
+            // The flag is polled from the worker thread, so it must be set with a write that thread
+            // is guaranteed to see.
+            //
+            _canceled.set(true);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
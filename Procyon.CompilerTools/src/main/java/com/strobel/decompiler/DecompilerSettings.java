@@ -20,10 +20,12 @@ import com.strobel.assembler.metadata.ITypeLoader;
 import com.strobel.decompiler.languages.Language;
 import com.strobel.decompiler.languages.Languages;
 import com.strobel.decompiler.languages.java.JavaFormattingOptions;
+import com.strobel.decompiler.languages.java.ast.MethodBodyCache;
 
 public class DecompilerSettings {
     private ITypeLoader _typeLoader;
     private boolean _includeLineNumbersInBytecode = true;
+    private boolean _includeStackMapFramesInBytecode;
     private boolean _showSyntheticMembers;
     private boolean _alwaysGenerateExceptionVariableForCatchBlocks = true;
     private boolean _forceExplicitImports;
@@ -40,6 +42,7 @@ public class DecompilerSettings {
     private String _outputFileHeaderText;
     private String _outputDirectory;
     private boolean _showDebugLineNumbers;
+    private MethodBodyCache _methodBodyCache;
 
     public DecompilerSettings() {
     }
@@ -156,6 +159,14 @@ public class DecompilerSettings {
         _includeLineNumbersInBytecode = value;
     }
 
+    public final boolean getIncludeStackMapFramesInBytecode() {
+        return _includeStackMapFramesInBytecode;
+    }
+
+    public final void setIncludeStackMapFramesInBytecode(final boolean value) {
+        _includeStackMapFramesInBytecode = value;
+    }
+
     public final boolean getRetainPointlessSwitches() {
         return _retainPointlessSwitches;
     }
@@ -188,6 +199,14 @@ public class DecompilerSettings {
         return _showDebugLineNumbers;
     }
 
+    public final MethodBodyCache getMethodBodyCache() {
+        return _methodBodyCache;
+    }
+
+    public final void setMethodBodyCache(final MethodBodyCache methodBodyCache) {
+        _methodBodyCache = methodBodyCache;
+    }
+
     public static DecompilerSettings javaDefaults() {
         final DecompilerSettings settings = new DecompilerSettings();
         settings.setFormattingOptions(JavaFormattingOptions.createDefault());
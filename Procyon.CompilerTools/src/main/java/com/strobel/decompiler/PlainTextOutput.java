@@ -23,15 +23,21 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Formattable;
 
 public class PlainTextOutput implements ITextOutput {
     private final static String NULL_TEXT = String.valueOf((Object) null);
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private final static int BUFFER_SIZE = 512;
+    private final static int MAX_ESCAPE_LENGTH = 6;
 
     private final Writer _writer;
     private String _indentToken = "    ";
     private int _indent;
     private boolean _needsIndent;
     private boolean _isUnicodeOutputEnabled;
+    private char[] _buffer;
+    private StringBuilder _formatBuffer;
 
     protected int line = 1;
     protected int column = 1;
@@ -106,11 +112,23 @@ public class PlainTextOutput implements ITextOutput {
     public void write(final char ch) {
         writeIndent();
         try {
-            if (isUnicodeOutputEnabled()) {
+            if (isUnicodeOutputEnabled() || ch != '\'' && !StringUtilities.shouldEscape(ch, false, false)) {
                 _writer.write(ch);
             }
             else {
-                _writer.write(StringUtilities.escape(ch));
+                final char[] buffer = getBuffer();
+
+                //
+                // Unlike strings, single characters have their apostrophes escaped.
+                //
+                if (ch == '\'') {
+                    buffer[0] = '\\';
+                    buffer[1] = '\'';
+                    _writer.write(buffer, 0, 2);
+                }
+                else {
+                    _writer.write(buffer, 0, appendEscape(ch, buffer, 0));
+                }
             }
             column++;
         }
@@ -121,7 +139,95 @@ public class PlainTextOutput implements ITextOutput {
 
     @Override
     public void write(final String text) {
-        writeRaw(isUnicodeOutputEnabled() ? text : StringUtilities.escape(text));
+        if (text == null || isUnicodeOutputEnabled()) {
+            writeRaw(text);
+            return;
+        }
+
+        writeIndent();
+
+        //
+        // Escape into a reusable buffer, tracking lines and columns in the same pass.  The result is
+        // equivalent to calling writeRaw() with the output of StringUtilities.escape().
+        //
+
+        final char[] buffer = getBuffer();
+
+        int position = 0;
+        int flushed = 0;
+        int lastNewLine = -1;
+
+        try {
+            for (int i = 0, n = text.length(); i < n; i++) {
+                final char ch = text.charAt(i);
+
+                if (position > buffer.length - MAX_ESCAPE_LENGTH) {
+                    _writer.write(buffer, 0, position);
+                    flushed += position;
+                    position = 0;
+                }
+
+                if (ch == '\n') {
+                    lastNewLine = flushed + position;
+                    line++;
+                }
+
+                if (StringUtilities.shouldEscape(ch, false, false)) {
+                    position = appendEscape(ch, buffer, position);
+                }
+                else {
+                    buffer[position++] = ch;
+                }
+            }
+
+            _writer.write(buffer, 0, position);
+        }
+        catch (IOException e) {
+            throw new UndeclaredThrowableException(e);
+        }
+
+        final int length = flushed + position;
+
+        if (lastNewLine < 0) {
+            column += length;
+        }
+        else {
+            column = length - lastNewLine - 1;
+        }
+    }
+
+    private char[] getBuffer() {
+        if (_buffer == null) {
+            _buffer = new char[BUFFER_SIZE];
+        }
+        return _buffer;
+    }
+
+    private static int appendEscape(final char ch, final char[] buffer, final int position) {
+        int p = position;
+
+        buffer[p++] = '\\';
+
+        switch (ch) {
+            case '\0':
+                buffer[p++] = '0';
+                break;
+            case '\b':
+                buffer[p++] = 'b';
+                break;
+            case '\f':
+                buffer[p++] = 'f';
+                break;
+            default:
+                buffer[p++] = 'u';
+                buffer[p++] = HEX_DIGITS[(ch >> 12) & 0xF];
+                buffer[p++] = HEX_DIGITS[(ch >> 8) & 0xF];
+                buffer[p++] = HEX_DIGITS[(ch >> 4) & 0xF];
+                buffer[p++] = HEX_DIGITS[ch & 0xF];
+                break;
+        }
+
+        return p;
     }
 
     /**
@@ -194,7 +300,7 @@ public class PlainTextOutput implements ITextOutput {
 
     @Override
     public void write(final String format, final Object... args) {
-        write(String.format(format, args));
+        write(format(format, args));
     }
 
     @Override
@@ -205,7 +311,7 @@ public class PlainTextOutput implements ITextOutput {
 
     @Override
     public void writeLine(final String format, final Object... args) {
-        write(String.format(format, args));
+        write(format(format, args));
         writeLine();
     }
 
@@ -276,6 +382,110 @@ public class PlainTextOutput implements ITextOutput {
     public void markFoldEnd() {
     }
 
+    /**
+     * Formats text exactly as {@link String#format(String, Object...)} would.  The plain and padded
+     * {@code %s} conversions used by most callers are handled directly, without creating a
+     * {@link java.util.Formatter}; anything else falls back to {@link String#format}.
+     */
+    protected final String format(final String format, final Object... args) {
+        if (format == null || args == null) {
+            return String.format(format, args);
+        }
+
+        StringBuilder sb = _formatBuffer;
+
+        if (sb == null) {
+            _formatBuffer = sb = new StringBuilder();
+        }
+        else {
+            sb.setLength(0);
+        }
+
+        int ordinaryIndex = 0;
+
+        for (int i = 0, n = format.length(); i < n; i++) {
+            final char ch = format.charAt(i);
+
+            if (ch != '%') {
+                sb.append(ch);
+                continue;
+            }
+
+            int j = i + 1;
+            int argumentIndex = -1;
+            int width = -1;
+            boolean leftJustify = false;
+
+            int number = 0;
+            int digitsEnd = j;
+
+            while (digitsEnd < n && format.charAt(digitsEnd) >= '0' && format.charAt(digitsEnd) <= '9') {
+                number = number * 10 + (format.charAt(digitsEnd++) - '0');
+            }
+
+            if (digitsEnd > j && digitsEnd < n && format.charAt(digitsEnd) == '$') {
+                if (number == 0 || format.charAt(j) == '0') {
+                    return String.format(format, args);
+                }
+                argumentIndex = number - 1;
+                j = digitsEnd + 1;
+            }
+
+            if (j < n && format.charAt(j) == '-') {
+                leftJustify = true;
+                j++;
+            }
+
+            if (j < n && format.charAt(j) >= '1' && format.charAt(j) <= '9') {
+                width = 0;
+
+                while (j < n && format.charAt(j) >= '0' && format.charAt(j) <= '9') {
+                    width = width * 10 + (format.charAt(j++) - '0');
+                }
+            }
+
+            if (j >= n) {
+                return String.format(format, args);
+            }
+
+            final char conversion = format.charAt(j);
+
+            if ((conversion == '%' || conversion == 'n') && argumentIndex < 0 && !leftJustify && width < 0) {
+                sb.append(conversion == '%' ? "%" : System.lineSeparator());
+                i = j;
+                continue;
+            }
+
+            if (conversion != 's' || leftJustify && width < 0) {
+                return String.format(format, args);
+            }
+
+            final int index = argumentIndex >= 0 ? argumentIndex : ordinaryIndex++;
+
+            if (index >= args.length || args[index] instanceof Formattable) {
+                return String.format(format, args);
+            }
+
+            final String text = String.valueOf(args[index]);
+
+            if (leftJustify) {
+                sb.append(text);
+            }
+
+            for (int k = text.length(); k < width; k++) {
+                sb.append(' ');
+            }
+
+            if (!leftJustify) {
+                sb.append(text);
+            }
+
+            i = j;
+        }
+
+        return sb.toString();
+    }
+
     @Override
     public String toString() {
         return _writer.toString();
@@ -51,7 +51,7 @@ public final class AstBuilder {
     private Map<Instruction, Instruction> _originalInstructionMap;
     private ControlFlowGraph _cfg;
     private InstructionCollection _instructions;
-    private List<ExceptionHandler> _exceptionHandlers;
+    private ExceptionHandlerCollection _exceptionHandlers;
     private MethodBody _body;
     private boolean _optimize;
     private DecompilerContext _context;
@@ -262,6 +262,8 @@ public final class AstBuilder {
             instructions.remove(reference);
             instructions.recomputeOffsets();
 
+            _exceptionHandlers.invalidate();
+
             remappedJumps.put(reference, first(contents));
             remappedJumps.put(subroutine.end, newEnd);
             remappedJumps.put(subroutine.start, newStart);
@@ -883,8 +885,8 @@ public final class AstBuilder {
         return nodeMap;
     }
 
-    private static List<ExceptionHandler> remapHandlers(final List<ExceptionHandler> handlers, final InstructionCollection instructions) {
-        final List<ExceptionHandler> newHandlers = new ArrayList<>();
+    private static ExceptionHandlerCollection remapHandlers(final List<ExceptionHandler> handlers, final InstructionCollection instructions) {
+        final ExceptionHandlerCollection newHandlers = new ExceptionHandlerCollection();
 
         for (final ExceptionHandler handler : handlers) {
             final InstructionBlock oldTry = handler.getTryBlock();
@@ -989,7 +991,7 @@ public final class AstBuilder {
     private void pruneExceptionHandlers() {
         LOG.fine("Pruning exception handlers...");
 
-        final List<ExceptionHandler> handlers = _exceptionHandlers;
+        final ExceptionHandlerCollection handlers = _exceptionHandlers;
 
         if (handlers.isEmpty()) {
             return;
@@ -1224,7 +1226,7 @@ public final class AstBuilder {
     }
 
     private void removeEmptyCatchBlockBodies() {
-        final List<ExceptionHandler> handlers = _exceptionHandlers;
+        final ExceptionHandlerCollection handlers = _exceptionHandlers;
 
         for (int i = 0; i < handlers.size(); i++) {
             final ExceptionHandler handler = handlers.get(i);
@@ -1280,7 +1282,7 @@ public final class AstBuilder {
     }
 
     private void ensureDesiredProtectedRanges() {
-        final List<ExceptionHandler> handlers = _exceptionHandlers;
+        final ExceptionHandlerCollection handlers = _exceptionHandlers;
 
         for (int i = 0; i < handlers.size(); i++) {
             final ExceptionHandler handler = handlers.get(i);
@@ -1330,7 +1332,7 @@ public final class AstBuilder {
     }
 
     private void alignFinallyBlocksWithSiblingCatchBlocks() {
-        final List<ExceptionHandler> handlers = _exceptionHandlers;
+        final ExceptionHandlerCollection handlers = _exceptionHandlers;
 
     outer:
         for (int i = 0; i < handlers.size(); i++) {
@@ -1377,7 +1379,7 @@ public final class AstBuilder {
     }
 
     private void mergeSharedHandlers() {
-        final List<ExceptionHandler> handlers = _exceptionHandlers;
+        final ExceptionHandlerCollection handlers = _exceptionHandlers;
 
         for (int i = 0; i < handlers.size(); i++) {
             final ExceptionHandler handler = handlers.get(i);
@@ -1454,7 +1456,7 @@ public final class AstBuilder {
     }
 
     private void trimAggressiveCatchBlocks() {
-        final List<ExceptionHandler> handlers = _exceptionHandlers;
+        final ExceptionHandlerCollection handlers = _exceptionHandlers;
 
     outer:
         for (int i = 0; i < handlers.size(); i++) {
@@ -1504,7 +1506,7 @@ public final class AstBuilder {
     }
 
     private void removeSelfHandlingFinallyHandlers() {
-        final List<ExceptionHandler> handlers = _exceptionHandlers;
+        final ExceptionHandlerCollection handlers = _exceptionHandlers;
 
         //
         // Remove self-handling finally blocks.
@@ -1525,7 +1527,7 @@ public final class AstBuilder {
     }
 
     private void trimAggressiveFinallyBlocks() {
-        final List<ExceptionHandler> handlers = _exceptionHandlers;
+        final ExceptionHandlerCollection handlers = _exceptionHandlers;
 
     outer:
         for (int i = 0; i < handlers.size(); i++) {
@@ -1588,7 +1590,7 @@ public final class AstBuilder {
     private ExceptionHandler findInnermostExceptionHandler(final int offsetInTryBlock, final ExceptionHandler exclude) {
         ExceptionHandler result = null;
 
-        for (final ExceptionHandler handler : _exceptionHandlers) {
+        for (final ExceptionHandler handler : _exceptionHandlers.findTryBlocksContaining(offsetInTryBlock)) {
             if (handler == exclude) {
                 continue;
             }
@@ -1614,7 +1616,7 @@ public final class AstBuilder {
         // out AST, so just merge the parts back together.
         //
 
-        final List<ExceptionHandler> handlers = _exceptionHandlers;
+        final ExceptionHandlerCollection handlers = _exceptionHandlers;
 
         for (int i = 0; i < handlers.size() - 1; i++) {
             final ExceptionHandler current = handlers.get(i);
@@ -1727,13 +1729,12 @@ public final class AstBuilder {
 //        }
 //    }
 
-    private static ExceptionHandler findFirstHandler(final InstructionBlock tryBlock, final Collection<ExceptionHandler> handlers) {
+    private static ExceptionHandler findFirstHandler(final InstructionBlock tryBlock, final ExceptionHandlerCollection handlers) {
         ExceptionHandler result = null;
 
-        for (final ExceptionHandler handler : handlers) {
-            if (handler.getTryBlock().equals(tryBlock) &&
-                (result == null ||
-                 handler.getHandlerBlock().getFirstInstruction().getOffset() < result.getHandlerBlock().getFirstInstruction().getOffset())) {
+        for (final ExceptionHandler handler : handlers.getHandlersForTryBlock(tryBlock)) {
+            if (result == null ||
+                handler.getHandlerBlock().getFirstInstruction().getOffset() < result.getHandlerBlock().getFirstInstruction().getOffset()) {
 
                 result = handler;
             }
@@ -1742,23 +1743,15 @@ public final class AstBuilder {
         return result;
     }
 
-    private static List<ExceptionHandler> findHandlers(final InstructionBlock tryBlock, final Collection<ExceptionHandler> handlers) {
-        List<ExceptionHandler> result = null;
-
-        for (final ExceptionHandler handler : handlers) {
-            if (handler.getTryBlock().equals(tryBlock)) {
-                if (result == null) {
-                    result = new ArrayList<>();
-                }
-
-                result.add(handler);
-            }
-        }
+    private static List<ExceptionHandler> findHandlers(final InstructionBlock tryBlock, final ExceptionHandlerCollection handlers) {
+        final List<ExceptionHandler> matches = handlers.getHandlersForTryBlock(tryBlock);
 
-        if (result == null) {
+        if (matches.isEmpty()) {
             return Collections.emptyList();
         }
 
+        final List<ExceptionHandler> result = new ArrayList<>(matches);
+
         Collections.sort(
             result,
             new Comparator<ExceptionHandler>() {
@@ -1775,21 +1768,19 @@ public final class AstBuilder {
         return result;
     }
 
-    private static List<ExceptionHandler> findDuplicateHandlers(final ExceptionHandler handler, final Collection<ExceptionHandler> handlers) {
+    private static List<ExceptionHandler> findDuplicateHandlers(final ExceptionHandler handler, final ExceptionHandlerCollection handlers) {
         final List<ExceptionHandler> result = new ArrayList<>();
 
-        for (final ExceptionHandler other : handlers) {
-            if (other.getHandlerBlock().equals(handler.getHandlerBlock())) {
-                if (handler.isFinally()) {
-                    if (other.isFinally()) {
-                        result.add(other);
-                    }
-                }
-                else if (other.isCatch() &&
-                         MetadataHelper.isSameType(other.getCatchType(), handler.getCatchType())) {
+        for (final ExceptionHandler other : handlers.getHandlersForHandlerBlock(handler.getHandlerBlock())) {
+            if (handler.isFinally()) {
+                if (other.isFinally()) {
                     result.add(other);
                 }
             }
+            else if (other.isCatch() &&
+                     MetadataHelper.isSameType(other.getCatchType(), handler.getCatchType())) {
+                result.add(other);
+            }
         }
 
         Collections.sort(
@@ -1810,6 +1801,26 @@ public final class AstBuilder {
 
     @SuppressWarnings("ConstantConditions")
     private List<ByteCode> performStackAnalysis() {
+        if (!_body.getStackMapFrames().isEmpty()) {
+            final List<ByteCode> body = performStackAnalysis(true);
+
+            if (body != null) {
+                return body;
+            }
+
+            LOG.fine("StackMapTable is inconsistent with inferred state; falling back to full stack analysis...");
+        }
+
+        return performStackAnalysis(false);
+    }
+
+    /**
+     * Performs stack analysis.  If {@code useDeclaredFrames} is set, the frames recorded in the
+     * method's {@code StackMapTable} are trusted at merge points, so the state at those points
+     * never needs to be widened and reprocessed; only the definitions are merged.  Returns
+     * {@code null} if an incoming state contradicts a declared frame.
+     */
+    private List<ByteCode> performStackAnalysis(final boolean useDeclaredFrames) {
         final Set<ByteCode> handlerStarts = new HashSet<>();
         final Map<Instruction, ByteCode> byteCodeMap = new LinkedHashMap<>();
         final Map<Instruction, ControlFlowNode> nodeMap = new IdentityHashMap<>();
@@ -1974,6 +1985,17 @@ public final class AstBuilder {
 
         agenda.addFirst(body.get(0));
 
+        final Map<ByteCode, Frame> declaredFrames;
+
+        if (useDeclaredFrames) {
+            declaredFrames = getDeclaredFrames(byteCodeMap, unknownVariables);
+            declaredFrames.keySet().removeAll(handlerStarts);
+            declaredFrames.remove(body.get(0));
+        }
+        else {
+            declaredFrames = Collections.emptyMap();
+        }
+
         //
         // Process agenda.
         //
@@ -2117,7 +2139,25 @@ public final class AstBuilder {
                     effectiveStack = newStack;
                 }
 
-                if (branchTarget.stackBefore == null && branchTarget.variablesBefore == null) {
+                final Frame declaredFrame = declaredFrames.get(branchTarget);
+
+                if (declaredFrame != null) {
+                    if (!isConsistentWithDeclaredFrame(declaredFrame, effectiveStack, newVariableState)) {
+                        return null;
+                    }
+
+                    final boolean isFirstVisit = branchTarget.stackBefore == null && branchTarget.variablesBefore == null;
+
+                    if (mergeDeclaredFrame(branchTarget, declaredFrame, effectiveStack, newVariableState)) {
+                        if (isFirstVisit) {
+                            agenda.push(branchTarget);
+                        }
+                        else {
+                            agenda.addLast(branchTarget);
+                        }
+                    }
+                }
+                else if (branchTarget.stackBefore == null && branchTarget.variablesBefore == null) {
 //                    if (branchTargets.size() == 1) {
 //                        branchTarget.stackBefore = effectiveStack;
 //                        branchTarget.variablesBefore = newVariableState;
@@ -2436,6 +2476,248 @@ public final class AstBuilder {
         return body;
     }
 
+    private Map<ByteCode, Frame> getDeclaredFrames(
+        final Map<Instruction, ByteCode> byteCodeMap,
+        final VariableSlot[] initialVariables) {
+
+        final Map<ByteCode, Frame> declaredFrames = new IdentityHashMap<>();
+        final Map<Instruction, Instruction> copies = new IdentityHashMap<>();
+
+        //
+        // Map each original instruction to its copy.  Instructions which were copied more than
+        // once (e.g., by subroutine inlining) have no unambiguous frame, so leave them out.
+        //
+        for (final Instruction copy : _instructions) {
+            final Instruction original = mappedInstruction(_originalInstructionMap, copy);
+
+            if (copies.containsKey(original)) {
+                copies.put(original, null);
+            }
+            else {
+                copies.put(original, copy);
+            }
+        }
+
+        int initialLocalCount = initialVariables.length;
+
+        while (initialLocalCount > 0 && initialVariables[initialLocalCount - 1].value == FrameValue.EMPTY) {
+            --initialLocalCount;
+        }
+
+        final FrameValue[] initialLocals = new FrameValue[initialLocalCount];
+
+        for (int i = 0; i < initialLocalCount; i++) {
+            initialLocals[i] = initialVariables[i].value;
+        }
+
+        Frame frame = new Frame(FrameType.New, initialLocals, FrameValue.EMPTY_VALUES);
+
+    outer:
+        for (final StackMapFrame stackMapFrame : _body.getStackMapFrames()) {
+            frame = Frame.applyDelta(frame, stackMapFrame.getFrame());
+
+            final Instruction copy = copies.get(stackMapFrame.getStartInstruction());
+            final ByteCode byteCode = copy != null ? byteCodeMap.get(copy) : null;
+
+            if (byteCode == null) {
+                continue;
+            }
+
+            final List<FrameValue> locals = frame.getLocalValues();
+            final List<FrameValue> stack = frame.getStackValues();
+
+            if (locals.size() > initialVariables.length) {
+                continue;
+            }
+
+            final FrameValue[] localValues = locals.toArray(new FrameValue[locals.size()]);
+            final FrameValue[] stackValues = stack.toArray(new FrameValue[stack.size()]);
+
+            for (final FrameValue[] values : new FrameValue[][] { localValues, stackValues }) {
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i].getType() != FrameValueType.Uninitialized) {
+                        continue;
+                    }
+
+                    final Instruction newInstruction = copies.get((Instruction) values[i].getParameter());
+
+                    if (newInstruction == null || newInstruction.getOpCode() != OpCode.NEW) {
+                        continue outer;
+                    }
+
+                    values[i] = FrameValue.makeUninitializedReference(newInstruction);
+                }
+            }
+
+            declaredFrames.put(byteCode, new Frame(FrameType.New, localValues, stackValues));
+        }
+
+        return declaredFrames;
+    }
+
+    private static boolean isConsistentWithDeclaredFrame(
+        final Frame declaredFrame,
+        final StackSlot[] stack,
+        final VariableSlot[] variables) {
+
+        final List<FrameValue> declaredStack = declaredFrame.getStackValues();
+        final List<FrameValue> declaredLocals = declaredFrame.getLocalValues();
+
+        if (declaredStack.size() != stack.length) {
+            return false;
+        }
+
+        for (int i = 0; i < stack.length; i++) {
+            if (!isAssignableToDeclaredValue(declaredStack.get(i), stack[i].value)) {
+                return false;
+            }
+        }
+
+        for (int i = 0, n = declaredLocals.size(); i < n; i++) {
+            if (!isAssignableToDeclaredValue(declaredLocals.get(i), variables[i].value)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isAssignableToDeclaredValue(final FrameValue declaredValue, final FrameValue value) {
+        switch (declaredValue.getType()) {
+            case Top:
+                return true;
+
+            case Reference:
+                switch (value.getType()) {
+                    case Null:
+                    case UninitializedThis:
+                        //
+                        // We never mark 'this' as initialized in constructors, so accept it for any reference.
+                        //
+                        return true;
+
+                    case Reference:
+                        return isAssignableToDeclaredType(declaredValue.getParameter(), value.getParameter());
+
+                    default:
+                        return false;
+                }
+
+            default:
+                return Comparer.equals(declaredValue, value);
+        }
+    }
+
+    private static boolean isAssignableToDeclaredType(final Object declaredType, final Object type) {
+        if (!(declaredType instanceof TypeReference) || !(type instanceof TypeReference)) {
+            return false;
+        }
+
+        //
+        // Declared types may carry generic parameters (e.g., 'K' or 'T[]'), while inferred types
+        // are usually erased, so compare erasures.
+        //
+        final TypeReference target = MetadataHelper.eraseRecursive((TypeReference) declaredType);
+        final TypeReference source = MetadataHelper.eraseRecursive((TypeReference) type);
+
+        if (StringUtilities.equals(target.getInternalName(), source.getInternalName()) ||
+            StringUtilities.equals(target.getInternalName(), "java/lang/Object")) {
+
+            return true;
+        }
+
+        //
+        // If either type cannot be resolved, we report a mismatch and fall back to full inference.
+        //
+        return MetadataHelper.isSubType(source, target);
+    }
+
+    private static FrameValue mergeDeclaredValue(final FrameValue declaredValue, final FrameValue oldValue, final FrameValue newValue) {
+        if (declaredValue.getType() == FrameValueType.Top) {
+            //
+            // The slot is unusable at this point, but keep agreeing values to stay close to what
+            // full inference would produce.
+            //
+            if (oldValue == null || oldValue == FrameValue.EMPTY) {
+                return newValue;
+            }
+
+            if (newValue == FrameValue.EMPTY || Comparer.equals(oldValue, newValue)) {
+                return oldValue;
+            }
+
+            return FrameValue.TOP;
+        }
+
+        if (newValue == FrameValue.UNINITIALIZED_THIS && (oldValue == null || oldValue == FrameValue.UNINITIALIZED_THIS)) {
+            return newValue;
+        }
+
+        return declaredValue;
+    }
+
+    private static boolean mergeDeclaredFrame(
+        final ByteCode target,
+        final Frame declaredFrame,
+        final StackSlot[] stack,
+        final VariableSlot[] variables) {
+
+        final List<FrameValue> declaredStack = declaredFrame.getStackValues();
+        final List<FrameValue> declaredLocals = declaredFrame.getLocalValues();
+
+        if (target.stackBefore == null && target.variablesBefore == null) {
+            final StackSlot[] newStack = new StackSlot[stack.length];
+            final VariableSlot[] newVariables = new VariableSlot[variables.length];
+
+            for (int i = 0; i < stack.length; i++) {
+                newStack[i] = new StackSlot(
+                    mergeDeclaredValue(declaredStack.get(i), null, stack[i].value),
+                    stack[i].definitions
+                );
+            }
+
+            for (int i = 0; i < variables.length; i++) {
+                final FrameValue declaredValue = i < declaredLocals.size() ? declaredLocals.get(i) : FrameValue.TOP;
+                final FrameValue value = mergeDeclaredValue(declaredValue, null, variables[i].value);
+
+                newVariables[i] = value == variables[i].value ? variables[i]
+                                                              : new VariableSlot(value, variables[i].definitions);
+            }
+
+            target.stackBefore = newStack;
+            target.variablesBefore = newVariables;
+
+            return true;
+        }
+
+        boolean modified = false;
+
+        for (int i = 0; i < stack.length; i++) {
+            final StackSlot oldSlot = target.stackBefore[i];
+            final FrameValue value = mergeDeclaredValue(declaredStack.get(i), oldSlot.value, stack[i].value);
+            final ByteCode[] definitions = ArrayUtilities.union(oldSlot.definitions, stack[i].definitions);
+
+            if (!Comparer.equals(value, oldSlot.value) || definitions.length > oldSlot.definitions.length) {
+                target.stackBefore[i] = new StackSlot(value, definitions);
+                modified = true;
+            }
+        }
+
+        for (int i = 0; i < variables.length; i++) {
+            final VariableSlot oldSlot = target.variablesBefore[i];
+            final FrameValue declaredValue = i < declaredLocals.size() ? declaredLocals.get(i) : FrameValue.TOP;
+            final FrameValue value = mergeDeclaredValue(declaredValue, oldSlot.value, variables[i].value);
+            final ByteCode[] definitions = ArrayUtilities.union(oldSlot.definitions, variables[i].definitions);
+
+            if (!Comparer.equals(value, oldSlot.value) || definitions.length > oldSlot.definitions.length) {
+                target.variablesBefore[i] = new VariableSlot(value, definitions);
+                modified = true;
+            }
+        }
+
+        return modified;
+    }
+
     private static Instruction mappedInstruction(final Map<Instruction, Instruction> map, final Instruction instruction) {
         Instruction current = instruction;
         Instruction newInstruction;
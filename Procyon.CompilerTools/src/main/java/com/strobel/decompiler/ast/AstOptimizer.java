@@ -3484,6 +3484,7 @@ public final class AstOptimizer {
             return modified;
         }
 
+        @SuppressWarnings("deprecation")
         private Lambda tryInlineLambda(final Expression site, final DynamicCallSite callSite) {
             final MethodReference bootstrapMethod = callSite.getBootstrapMethod();
 
@@ -3531,6 +3532,8 @@ public final class AstOptimizer {
 
                 final DecompilerContext innerContext = new DecompilerContext(context.getSettings());
 
+                innerContext.setCancellationFlag(context.getCancellationFlag());
+                innerContext.setCanceled(context.getCanceled());
                 innerContext.setCurrentType(resolvedMethod.getDeclaringType());
                 innerContext.setCurrentMethod(resolvedMethod);
 
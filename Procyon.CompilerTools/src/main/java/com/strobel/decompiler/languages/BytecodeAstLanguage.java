@@ -126,6 +126,8 @@ public class BytecodeAstLanguage extends Language {
 
         context.setCurrentMethod(method);
         context.setCurrentType(method.getDeclaringType());
+        context.setCancellationFlag(options.getCanceled());
+        context.throwIfCanceled();
 
         final Block methodAst = new Block();
 
@@ -919,7 +919,7 @@ public class BytecodeLanguage extends Language {
             }
         }
 
-        if (!stackMapFrames.isEmpty()) {
+        if (!stackMapFrames.isEmpty() && options.getSettings().getIncludeStackMapFramesInBytecode()) {
             output.indent();
 
             try {
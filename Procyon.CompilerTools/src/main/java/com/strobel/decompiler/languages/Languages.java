@@ -18,6 +18,7 @@ package com.strobel.decompiler.languages;
 
 import com.strobel.core.ArrayUtilities;
 import com.strobel.decompiler.languages.java.JavaLanguage;
+import com.strobel.decompiler.languages.java.JsonAstLanguage;
 
 import java.util.List;
 
@@ -25,6 +26,7 @@ public final class Languages {
     private final static List<Language> ALL_LANGUAGES;
     private final static List<Language> DEBUG_LANGUAGES;
     private final static Language JAVA;
+    private final static Language JAVA_AST_JSON;
     private final static Language BYTECODE_AST_UNOPTIMIZED;
     private final static Language BYTECODE_AST;
     private final static Language BYTECODE;
@@ -33,6 +35,7 @@ public final class Languages {
         final List<BytecodeAstLanguage> bytecodeAstLanguages = BytecodeAstLanguage.getDebugLanguages();
 
         JAVA = new JavaLanguage();
+        JAVA_AST_JSON = new JsonAstLanguage();
         BYTECODE = new BytecodeLanguage();
         BYTECODE_AST_UNOPTIMIZED = bytecodeAstLanguages.get(0);
         BYTECODE_AST = new BytecodeAstLanguage();
@@ -43,7 +46,7 @@ public final class Languages {
             languages[i] = bytecodeAstLanguages.get(i);
         }
 
-        ALL_LANGUAGES = ArrayUtilities.asUnmodifiableList(JAVA, BYTECODE_AST, BYTECODE_AST_UNOPTIMIZED);
+        ALL_LANGUAGES = ArrayUtilities.asUnmodifiableList(JAVA, JAVA_AST_JSON, BYTECODE_AST, BYTECODE_AST_UNOPTIMIZED);
         DEBUG_LANGUAGES = ArrayUtilities.asUnmodifiableList(languages);
     }
 
@@ -59,6 +62,10 @@ public final class Languages {
         return JAVA;
     }
 
+    public static Language javaAstJson() {
+        return JAVA_AST_JSON;
+    }
+
     public static Language bytecode() {
         return BYTECODE;
     }
@@ -16,10 +16,15 @@
 
 package com.strobel.decompiler.languages.java;
 
+import java.lang.ref.SoftReference;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.core.Predicate;
+import com.strobel.core.VerifyArgument;
 import com.strobel.decompiler.DecompilationOptions;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.DecompilerSettings;
@@ -28,17 +33,20 @@ import com.strobel.decompiler.languages.Language;
 import com.strobel.decompiler.languages.LineNumberPosition;
 import com.strobel.decompiler.languages.TypeDecompilationResults;
 import com.strobel.decompiler.languages.java.ast.AstBuilder;
+import com.strobel.decompiler.languages.java.ast.EntityDeclaration;
+import com.strobel.decompiler.languages.java.ast.InsertParenthesesVisitor;
 import com.strobel.decompiler.languages.java.ast.transforms.IAstTransform;
 
 public class JavaLanguage extends Language {
     private final String _name;
     private final Predicate<IAstTransform> _transformAbortCondition;
+    private final Map<MethodDefinition, CachedMethod> _methodCache = new WeakHashMap<>();
 
     public JavaLanguage() {
         this("Java", null);
     }
 
-    private JavaLanguage(final String name, final Predicate<IAstTransform> transformAbortCondition) {
+    protected JavaLanguage(final String name, final Predicate<IAstTransform> transformAbortCondition) {
         _name = name;
         _transformAbortCondition = transformAbortCondition;
     }
@@ -49,7 +57,7 @@ public class JavaLanguage extends Language {
     }
 
     @Override
-    public final String getFileExtension() {
+    public String getFileExtension() {
         return ".java";
     }
 
@@ -60,6 +68,85 @@ public class JavaLanguage extends Language {
         return runTransformsAndGenerateCode(builder, output, options, null);
     }
 
+    /**
+     * Decompiles a single method.  Only the declaring type's skeleton, the requested body, and the
+     * bodies which transforms consult to render it (accessors, lambda bodies, enum switch maps, and
+     * the constructors of enclosing inner classes) are built.
+     * <p/>
+     * The output is the method's declaration exactly as it appears in the output of
+     * {@link #decompileType} for its declaring type.  In particular, constructors keep an explicit
+     * {@code super()} call and the instance field initializers they run, just as they do there.
+     * Members which that output omits (synthetic members, redundant default constructors, and the
+     * implicit members of enums) are written as a single comment naming the member instead.
+     * <p/>
+     * The result is cached for as long as the method remains reachable and the same settings are used.
+     */
+    @Override
+    public void decompileMethod(final MethodDefinition method, final ITextOutput output, final DecompilationOptions options) {
+        VerifyArgument.notNull(method, "method");
+        VerifyArgument.notNull(output, "output");
+        VerifyArgument.notNull(options, "options");
+
+        final EntityDeclaration declaration = getMethodDeclaration(method, options);
+
+        if (declaration == null) {
+            super.decompileMethod(method, output, options);
+            return;
+        }
+
+        declaration.acceptVisitor(new JavaOutputVisitor(output, options.getSettings()), null);
+    }
+
+    private EntityDeclaration getMethodDeclaration(final MethodDefinition method, final DecompilationOptions options) {
+        final DecompilerSettings settings = options.getSettings();
+
+        synchronized (_methodCache) {
+            final CachedMethod cachedMethod = _methodCache.get(method);
+
+            final EntityDeclaration cachedDeclaration = cachedMethod != null && cachedMethod.settings == settings
+                                                        ? cachedMethod.declaration.get()
+                                                        : null;
+
+            if (cachedDeclaration != null) {
+                return cachedDeclaration;
+            }
+        }
+
+        //
+        // Transforms rewrite the tree they run on, so each method is materialized into its own
+        // skeleton.  Without method bodies, the skeleton is cheap to build.
+        //
+        final AstBuilder builder = createAstBuilder(options, method.getDeclaringType(), true);
+
+        builder.setDecompileMethodBodies(false);
+        builder.addType(method.getDeclaringType());
+
+        if (builder.addMethodBody(method) == null) {
+            return null;
+        }
+
+        builder.addSyntheticMethodBodies(method);
+
+        builder.runTransformations(_transformAbortCondition);
+
+        //
+        // Transforms may replace the declaration, or remove it altogether.
+        //
+        final EntityDeclaration declaration = AstBuilder.findMethodDeclaration(builder.getCompilationUnit(), method);
+
+        if (declaration == null) {
+            return null;
+        }
+
+        declaration.acceptVisitor(new InsertParenthesesVisitor(), null);
+
+        synchronized (_methodCache) {
+            _methodCache.put(method, new CachedMethod(settings, declaration));
+        }
+
+        return declaration;
+    }
+
     @SuppressWarnings("UnusedParameters")
     private AstBuilder createAstBuilder(
         final DecompilationOptions options,
@@ -71,6 +158,7 @@ public class JavaLanguage extends Language {
 
         context.setCurrentType(currentType);
         context.setSettings(settings);
+        context.setCancellationFlag(options.getCanceled());
 
         return new AstBuilder(context);
     }
@@ -88,7 +176,33 @@ public class JavaLanguage extends Language {
             additionalTransform.run(astBuilder.getCompilationUnit());
         }
 
+        return generateCode(astBuilder, output, options);
+    }
+
+    /**
+     * Writes the fully transformed AST held by {@code astBuilder} to {@code output}.
+     */
+    protected TypeDecompilationResults generateCode(
+        final AstBuilder astBuilder,
+        final ITextOutput output,
+        final DecompilationOptions options) {
+
         List<LineNumberPosition> lineNumberPositions = astBuilder.generateCode(output);
         return new TypeDecompilationResults( lineNumberPositions);
     }
+
+    private final static class CachedMethod {
+        final DecompilerSettings settings;
+
+        //
+        // The declaration refers back to its method, so it must not be strongly reachable from the
+        // cache, or the method (the cache key) could never be collected.
+        //
+        final SoftReference<EntityDeclaration> declaration;
+
+        CachedMethod(final DecompilerSettings settings, final EntityDeclaration declaration) {
+            this.settings = settings;
+            this.declaration = new SoftReference<>(declaration);
+        }
+    }
 }
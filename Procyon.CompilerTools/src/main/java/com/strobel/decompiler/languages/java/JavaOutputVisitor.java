@@ -32,6 +32,7 @@ import com.strobel.core.VerifyArgument;
 import com.strobel.decompiler.DecompilerSettings;
 import com.strobel.decompiler.ITextOutput;
 import com.strobel.decompiler.languages.LineNumberPosition;
+import com.strobel.decompiler.languages.Region;
 import com.strobel.decompiler.languages.TextLocation;
 import com.strobel.decompiler.languages.java.TextOutputFormatter.LineNumberMode;
 import com.strobel.decompiler.languages.java.ast.*;
@@ -42,6 +43,7 @@ import com.strobel.util.ContractUtils;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 import static com.strobel.core.CollectionUtilities.*;
@@ -69,6 +71,13 @@ public final class JavaOutputVisitor implements IAstVisitor<Void, Void> {
     public List<LineNumberPosition> getLineNumberPositions() {
         return this.formatter.getLineNumberPositions();
     }
+
+    /**
+     * Records the region of output text spanned by each node written into {@code nodeRegions}.
+     */
+    public void setNodeRegions(final Map<AstNode, Region> nodeRegions) {
+        this.formatter.setNodeRegions(nodeRegions);
+    }
     
     // <editor-fold defaultstate="collapsed" desc="Start/End Node">
 
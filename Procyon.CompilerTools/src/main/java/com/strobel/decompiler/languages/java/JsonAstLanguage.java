@@ -0,0 +1,62 @@
+/*
+ * JsonAstLanguage.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.languages.java;
+
+import com.strobel.decompiler.DecompilationOptions;
+import com.strobel.decompiler.ITextOutput;
+import com.strobel.decompiler.PlainTextOutput;
+import com.strobel.decompiler.languages.Region;
+import com.strobel.decompiler.languages.TypeDecompilationResults;
+import com.strobel.decompiler.languages.java.ast.AstBuilder;
+import com.strobel.decompiler.languages.java.ast.AstNode;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Decompiles to Java exactly as {@link JavaLanguage} does, but writes the final syntax tree as JSON
+ * (see {@link JsonAstWriter}) along with the Java source it corresponds to.
+ *
+ * @author Mike Strobel
+ */
+public class JsonAstLanguage extends JavaLanguage {
+    public JsonAstLanguage() {
+        super("Java AST (JSON)", null);
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".ast.json";
+    }
+
+    @Override
+    protected TypeDecompilationResults generateCode(
+        final AstBuilder astBuilder,
+        final ITextOutput output,
+        final DecompilationOptions options) {
+
+        final PlainTextOutput source = new PlainTextOutput();
+        final Map<AstNode, Region> nodeRegions = new IdentityHashMap<>();
+
+        source.setUnicodeOutputEnabled(options.getSettings().isUnicodeOutputEnabled());
+        astBuilder.generateCode(source, nodeRegions);
+
+        new JsonAstWriter(output, nodeRegions).write(astBuilder.getCompilationUnit(), source.toString());
+
+        //
+        // Line number positions refer to the Java source, not to our output.
+        //
+        return new TypeDecompilationResults(null);
+    }
+}
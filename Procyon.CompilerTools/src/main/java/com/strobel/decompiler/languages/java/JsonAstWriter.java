@@ -0,0 +1,307 @@
+/*
+ * JsonAstWriter.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.languages.java;
+
+import com.strobel.assembler.metadata.FieldReference;
+import com.strobel.assembler.metadata.MemberReference;
+import com.strobel.assembler.metadata.MethodReference;
+import com.strobel.assembler.metadata.TypeReference;
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.ITextOutput;
+import com.strobel.decompiler.ast.Variable;
+import com.strobel.decompiler.languages.Region;
+import com.strobel.decompiler.languages.java.ast.*;
+import com.strobel.decompiler.patterns.Role;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Writes a decompiled Java syntax tree as a stream of JSON.  Each node records its kind, its role
+ * within its parent, the region of generated Java source it spans, its original bytecode offset,
+ * and descriptors of the types and members it declares or references.  Consumers may then index
+ * decompiled code without parsing it again.
+ * <p/>
+ * The document has the form:
+ * <pre>
+ * {"format":"procyon-java-ast","version":1,"source":"...","root":{...}}
+ * </pre>
+ * where each node has the form:
+ * <pre>
+ * {"kind":"InvocationExpression","role":"Expression","span":[line,column,endLine,endColumn],
+ *  "offset":12,"reference":{"kind":"method","owner":"java/io/PrintStream","name":"println",
+ *  "descriptor":"(Ljava/lang/String;)V"},"children":[...]}
+ * </pre>
+ * Spans refer to the {@code source} text, and all fields other than {@code kind} are optional.
+ * Text is written as pure ASCII, so no escaping is applied by the underlying output.
+ *
+ * @author Mike Strobel
+ */
+public final class JsonAstWriter {
+    private final static String FORMAT_NAME = "procyon-java-ast";
+    private final static int FORMAT_VERSION = 1;
+    private final static int FLUSH_THRESHOLD = 8192;
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ITextOutput _output;
+    private final Map<AstNode, Region> _nodeRegions;
+    private final StringBuilder _buffer = new StringBuilder();
+
+    public JsonAstWriter(final ITextOutput output) {
+        this(output, Collections.<AstNode, Region>emptyMap());
+    }
+
+    public JsonAstWriter(final ITextOutput output, final Map<AstNode, Region> nodeRegions) {
+        _output = VerifyArgument.notNull(output, "output");
+        _nodeRegions = VerifyArgument.notNull(nodeRegions, "nodeRegions");
+    }
+
+    public void write(final AstNode root, final String source) {
+        VerifyArgument.notNull(root, "root");
+
+        _buffer.append("{\"format\":");
+        appendString(FORMAT_NAME);
+        _buffer.append(",\"version\":").append(FORMAT_VERSION);
+
+        if (source != null) {
+            _buffer.append(",\"source\":");
+            appendString(source);
+        }
+
+        _buffer.append(",\"root\":");
+        writeNode(root);
+        _buffer.append('}');
+
+        flush();
+        _output.writeLine();
+    }
+
+    private void writeNode(final AstNode node) {
+        _buffer.append("{\"kind\":");
+        appendString(node.getClass().getSimpleName());
+
+        final Role<?> role = node.getRole();
+
+        if (role != null && role != Roles.Root) {
+            _buffer.append(",\"role\":");
+            appendString(role.toString());
+        }
+
+        final Region region = _nodeRegions.get(node);
+
+        if (region != null) {
+            _buffer.append(",\"span\":[")
+                   .append(region.getBeginLine()).append(',')
+                   .append(region.getBeginColumn()).append(',')
+                   .append(region.getEndLine()).append(',')
+                   .append(region.getEndColumn()).append(']');
+        }
+
+        final int offset = node instanceof Expression ? ((Expression) node).getOffset()
+                                                      : node instanceof Statement ? ((Statement) node).getOffset()
+                                                                                  : Expression.MYSTERY_OFFSET;
+
+        if (offset != Expression.MYSTERY_OFFSET) {
+            _buffer.append(",\"offset\":").append(offset);
+        }
+
+        writeTokenValue(node);
+        writeReferences(node);
+
+        boolean firstChild = true;
+
+        for (AstNode child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof NewLineNode) {
+                continue;
+            }
+
+            _buffer.append(firstChild ? ",\"children\":[" : ",");
+            firstChild = false;
+
+            writeNode(child);
+        }
+
+        if (!firstChild) {
+            _buffer.append(']');
+        }
+
+        _buffer.append('}');
+
+        if (_buffer.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    private void writeTokenValue(final AstNode node) {
+        if (node instanceof Identifier) {
+            _buffer.append(",\"name\":");
+            appendString(((Identifier) node).getName());
+        }
+        else if (node instanceof PrimitiveExpression) {
+            _buffer.append(",\"value\":");
+            appendString(String.valueOf(((PrimitiveExpression) node).getValue()));
+        }
+        else if (node instanceof JavaModifierToken) {
+            _buffer.append(",\"modifier\":");
+            appendString(String.valueOf(((JavaModifierToken) node).getModifier()));
+        }
+        else if (node instanceof BinaryOperatorExpression) {
+            _buffer.append(",\"operator\":");
+            appendString(((BinaryOperatorExpression) node).getOperator().name());
+        }
+        else if (node instanceof UnaryOperatorExpression) {
+            _buffer.append(",\"operator\":");
+            appendString(((UnaryOperatorExpression) node).getOperator().name());
+        }
+        else if (node instanceof AssignmentExpression) {
+            _buffer.append(",\"operator\":");
+            appendString(((AssignmentExpression) node).getOperator().name());
+        }
+        else if (node instanceof Comment) {
+            _buffer.append(",\"commentType\":");
+            appendString(((Comment) node).getCommentType().name());
+            _buffer.append(",\"content\":");
+            appendString(((Comment) node).getContent());
+        }
+    }
+
+    private void writeReferences(final AstNode node) {
+        MemberReference definition = node.getUserData(Keys.TYPE_DEFINITION);
+
+        if (definition == null) {
+            definition = node.getUserData(Keys.METHOD_DEFINITION);
+        }
+
+        if (definition == null) {
+            definition = node.getUserData(Keys.FIELD_DEFINITION);
+        }
+
+        if (definition != null) {
+            _buffer.append(",\"definition\":");
+            appendMember(definition);
+        }
+
+        final MemberReference reference = node.getUserData(Keys.MEMBER_REFERENCE);
+
+        if (reference != null && reference != definition) {
+            _buffer.append(",\"reference\":");
+            appendMember(reference);
+        }
+
+        final TypeReference type = node.getUserData(Keys.TYPE_REFERENCE);
+
+        if (type != null && type != definition && type != reference) {
+            _buffer.append(",\"type\":");
+            appendMember(type);
+        }
+
+        final Variable variable = node.getUserData(Keys.VARIABLE);
+
+        if (variable != null) {
+            _buffer.append(",\"variable\":");
+            appendString(variable.getName());
+        }
+    }
+
+    private void appendMember(final MemberReference member) {
+        if (member instanceof TypeReference) {
+            final String descriptor = member.getErasedSignature();
+            final String signature = member.getSignature();
+
+            _buffer.append("{\"kind\":\"type\",\"descriptor\":");
+            appendString(descriptor);
+
+            if (signature != null && !signature.equals(descriptor)) {
+                _buffer.append(",\"signature\":");
+                appendString(signature);
+            }
+
+            _buffer.append('}');
+            return;
+        }
+
+        final String kind = member instanceof MethodReference ? "method"
+                                                              : member instanceof FieldReference ? "field"
+                                                                                                 : "member";
+
+        _buffer.append("{\"kind\":");
+        appendString(kind);
+
+        final TypeReference declaringType = member.getDeclaringType();
+
+        if (declaringType != null) {
+            _buffer.append(",\"owner\":");
+            appendString(declaringType.getInternalName());
+        }
+
+        _buffer.append(",\"name\":");
+        appendString(member.getName());
+        _buffer.append(",\"descriptor\":");
+        appendString(member.getErasedSignature());
+        _buffer.append('}');
+    }
+
+    private void appendString(final String value) {
+        if (value == null) {
+            _buffer.append("null");
+            return;
+        }
+
+        final StringBuilder sb = _buffer;
+
+        sb.append('"');
+
+        for (int i = 0, n = value.length(); i < n; i++) {
+            final char ch = value.charAt(i);
+
+            switch (ch) {
+                case '"':
+                    sb.append("\\\"");
+                    continue;
+                case '\\':
+                    sb.append("\\\\");
+                    continue;
+                case '\n':
+                    sb.append("\\n");
+                    continue;
+                case '\r':
+                    sb.append("\\r");
+                    continue;
+                case '\t':
+                    sb.append("\\t");
+                    continue;
+            }
+
+            if (ch < 0x20 || ch >= 0x7F) {
+                sb.append("\\u")
+                  .append(HEX_DIGITS[(ch >> 12) & 0xF])
+                  .append(HEX_DIGITS[(ch >> 8) & 0xF])
+                  .append(HEX_DIGITS[(ch >> 4) & 0xF])
+                  .append(HEX_DIGITS[ch & 0xF]);
+            }
+            else {
+                sb.append(ch);
+            }
+        }
+
+        sb.append('"');
+    }
+
+    private void flush() {
+        if (_buffer.length() > 0) {
+            _output.write(_buffer.toString());
+            _buffer.setLength(0);
+        }
+    }
+}
@@ -25,11 +25,13 @@ import com.strobel.core.VerifyArgument;
 import com.strobel.decompiler.ITextOutput;
 import com.strobel.decompiler.ast.Variable;
 import com.strobel.decompiler.languages.LineNumberPosition;
+import com.strobel.decompiler.languages.Region;
 import com.strobel.decompiler.languages.TextLocation;
 import com.strobel.decompiler.languages.java.ast.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 public class TextOutputFormatter implements IOutputFormatter {
@@ -58,9 +60,11 @@ public class TextOutputFormatter implements IOutputFormatter {
     /** maps original line numbers to decompiler-emitted line numbers and columns */
     private final List<LineNumberPosition> lineNumberPositions = new ArrayList<LineNumberPosition>(); 
 
-    @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
     private final Stack<TextLocation> startLocations = new Stack<>();
 
+    /** receives the region of output text spanned by each node, if set */
+    private Map<AstNode, Region> nodeRegions;
+
     public TextOutputFormatter(final ITextOutput output, LineNumberMode lineNumberMode) {
         this.output = VerifyArgument.notNull(output, "output");
         this.lineNumberMode = lineNumberMode;
@@ -125,7 +129,15 @@ public class TextOutputFormatter implements IOutputFormatter {
             throw new IllegalStateException();
         }
 
-        startLocations.pop();
+        final TextLocation startLocation = startLocations.pop();
+
+        if (nodeRegions != null) {
+            nodeRegions.put(node, new Region(startLocation, new TextLocation(output.getRow(), output.getColumn())));
+        }
+    }
+
+    public void setNodeRegions(final Map<AstNode, Region> nodeRegions) {
+        this.nodeRegions = nodeRegions;
     }
 
     @Override
@@ -230,7 +242,24 @@ public class TextOutputFormatter implements IOutputFormatter {
 
     @Override
     public void space() {
+        if (nodeRegions == null) {
+            output.write(' ');
+            return;
+        }
+
+        final TextLocation before = new TextLocation(output.getRow(), output.getColumn());
+
         output.write(' ');
+
+        //
+        // A space written before any of a node's own text separates it from the preceding token;
+        // it is not part of the node, so the node's region begins after it.
+        //
+        final TextLocation after = new TextLocation(output.getRow(), output.getColumn());
+
+        for (int i = startLocations.size() - 1; i >= 0 && startLocations.get(i).compareTo(before) == 0; i--) {
+            startLocations.set(i, after);
+        }
     }
 
     @Override
@@ -16,6 +16,7 @@
 
 package com.strobel.decompiler.languages.java.ast;
 
+import com.strobel.assembler.ir.Instruction;
 import com.strobel.assembler.ir.attributes.AnnotationDefaultAttribute;
 import com.strobel.assembler.ir.attributes.AttributeNames;
 import com.strobel.assembler.ir.attributes.LineNumberTableAttribute;
@@ -32,6 +33,7 @@ import com.strobel.decompiler.DecompilerSettings;
 import com.strobel.decompiler.ITextOutput;
 import com.strobel.decompiler.ast.TypeAnalysis;
 import com.strobel.decompiler.languages.LineNumberPosition;
+import com.strobel.decompiler.languages.Region;
 import com.strobel.decompiler.languages.java.JavaOutputVisitor;
 import com.strobel.decompiler.languages.java.ast.transforms.IAstTransform;
 import com.strobel.decompiler.languages.java.ast.transforms.TransformationPipeline;
@@ -45,10 +47,13 @@ public final class AstBuilder {
     private final CompilationUnit _compileUnit = new CompilationUnit();
     private final Map<String, TypeDeclaration> _typeDeclarations = new LinkedHashMap<>();
     private final Map<String, String> _unqualifiedTypeNames = new LinkedHashMap<>();
+    private final Set<CodeFeature> _features = EnumSet.noneOf(CodeFeature.class);
 
     private TextNode _packagePlaceholder;
     private boolean _decompileMethodBodies = true;
     private boolean _haveTransformationsRun;
+    private List<MethodBodyCache.TypeConversion> _typeConversionLog;
+    private Map<String, String> _importPreview;
 
     public AstBuilder(final DecompilerContext context) {
         _context = VerifyArgument.notNull(context, "context");
@@ -67,6 +72,7 @@ public final class AstBuilder {
 
         _packagePlaceholder = new TextNode();
         _compileUnit.addChild(_packagePlaceholder, Roles.TEXT);
+        _compileUnit.putUserData(Keys.CODE_FEATURES, _features);
 
         if (_context.getUserData(Keys.AST_BUILDER) == null) {
             _context.putUserData(Keys.AST_BUILDER, this);
@@ -89,6 +95,22 @@ public final class AstBuilder {
         return _compileUnit;
     }
 
+    final List<MethodBodyCache.TypeConversion> setTypeConversionLog(final List<MethodBodyCache.TypeConversion> typeConversionLog) {
+        final List<MethodBodyCache.TypeConversion> oldLog = _typeConversionLog;
+        _typeConversionLog = typeConversionLog;
+        return oldLog;
+    }
+
+    /**
+     * While {@code importPreview} is non-null, type conversions record the imports they would add in
+     * it, rather than adding them to the compilation unit.
+     */
+    final Map<String, String> setImportPreview(final Map<String, String> importPreview) {
+        final Map<String, String> oldPreview = _importPreview;
+        _importPreview = importPreview;
+        return oldPreview;
+    }
+
     public final void runTransformations() {
         runTransformations(null);
     }
@@ -141,12 +163,250 @@ public final class AstBuilder {
         }
     }
 
+    /**
+     * Decompiles the body of {@code method}, and of any local classes it declares, into a tree built
+     * while {@link #getDecompileMethodBodies()} was {@code false}.  This allows callers to materialize
+     * only the members they need; type-wide transforms then see only those bodies.
+     *
+     * @return The declaration of {@code method}, or {@code null} if it is not part of the tree.
+     */
+    public final EntityDeclaration addMethodBody(final MethodDefinition method) {
+        VerifyArgument.notNull(method, "method");
+        return addMethodBody(_compileUnit, method);
+    }
+
+    private EntityDeclaration addMethodBody(final AstNode root, final MethodDefinition method) {
+        final EntityDeclaration declaration = findMethodDeclaration(root, method);
+
+        if (declaration == null) {
+            return null;
+        }
+
+        if (!declaration.getChildByRole(Roles.BODY).isNull()) {
+            return declaration;
+        }
+
+        final boolean oldDecompileMethodBodies = _decompileMethodBodies;
+        final TypeDefinition oldCurrentType = _context.getCurrentType();
+
+        _decompileMethodBodies = true;
+        _context.setCurrentType(method.getDeclaringType());
+
+        try {
+            if (declaration instanceof ConstructorDeclaration) {
+                final ConstructorDeclaration constructor = (ConstructorDeclaration) declaration;
+                constructor.setBody(createMethodBody(method, constructor.getParameters()));
+            }
+            else if (!method.getDeclaringType().isInterface() || method.isTypeInitializer() || method.isDefault()) {
+                final MethodDeclaration astMethod = (MethodDeclaration) declaration;
+                astMethod.setBody(createMethodBody(method, astMethod.getParameters()));
+            }
+
+            final Set<CodeFeature> features = EnumSet.noneOf(CodeFeature.class);
+
+            if (method.hasBody()) {
+                CodeFeature.addBodyFeatures(method.getBody(), features);
+            }
+
+            addFeatures(features, declaration);
+            recordFeatures(declaration, features);
+        }
+        finally {
+            _decompileMethodBodies = oldDecompileMethodBodies;
+            _context.setCurrentType(oldCurrentType);
+        }
+
+        for (final TypeDefinition declaredType : method.getDeclaredTypes()) {
+            for (final MethodDefinition declaredMethod : declaredType.getDeclaredMethods()) {
+                addMethodBody(root, declaredMethod);
+            }
+        }
+
+        return declaration;
+    }
+
+    /**
+     * Decompiles the bodies of the synthetic methods (accessors and lambda bodies) which are referenced
+     * from {@code method} or its local classes, so later transforms can inline them.  The static
+     * initializers of the types declaring any synthetic static fields it reads, such as enum switch
+     * maps, are decompiled as well.  Members of other types nested in the same top-level type are
+     * materialized in the declarations returned by {@link #createType}, where transforms look for
+     * them.  Synthetic methods referenced from those bodies are added in turn; all others are left
+     * alone.
+     */
+    public final void addSyntheticMethodBodies(final MethodDefinition method) {
+        VerifyArgument.notNull(method, "method");
+
+        final Set<MethodDefinition> visited = new HashSet<>();
+        final ArrayDeque<MethodDefinition> pending = new ArrayDeque<>();
+
+        pending.push(method);
+
+        //
+        // Inner classes learn which synthetic fields hold their outer instances from their constructors.
+        //
+        for (TypeDefinition type = method.getDeclaringType();
+             type != null && type.isNested() && !type.isStatic();
+             type = type.getDeclaringType() != null ? type.getDeclaringType().resolve() : null) {
+
+            for (final MethodDefinition declaredMethod : type.getDeclaredMethods()) {
+                if (declaredMethod.isConstructor()) {
+                    addRelatedMethodBody(declaredMethod, method, pending);
+                }
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            final MethodDefinition current = pending.pop();
+
+            if (!visited.add(current)) {
+                continue;
+            }
+
+            for (final TypeDefinition declaredType : current.getDeclaredTypes()) {
+                for (final MethodDefinition declaredMethod : declaredType.getDeclaredMethods()) {
+                    pending.push(declaredMethod);
+                }
+            }
+
+            if (!current.hasBody()) {
+                continue;
+            }
+
+            for (final Instruction instruction : current.getBody().getInstructions()) {
+                for (int i = 0, n = instruction.getOperandCount(); i < n; i++) {
+                    final Object operand = instruction.getOperand(i);
+
+                    if (operand instanceof MethodReference) {
+                        addSyntheticMethodBody((MethodReference) operand, method, pending);
+                    }
+                    else if (operand instanceof FieldReference) {
+                        addSyntheticFieldInitializer((FieldReference) operand, method, pending);
+                    }
+                    else if (operand instanceof DynamicCallSite) {
+                        //
+                        // Lambda bodies are only referenced through the bootstrap arguments.
+                        //
+                        for (final Object argument : ((DynamicCallSite) operand).getBootstrapArguments()) {
+                            if (argument instanceof MethodHandle) {
+                                addSyntheticMethodBody(((MethodHandle) argument).getMethod(), method, pending);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void addSyntheticMethodBody(
+        final MethodReference reference,
+        final MethodDefinition target,
+        final ArrayDeque<MethodDefinition> pending) {
+
+        final MethodDefinition method = reference.resolve();
+
+        if (method != null && method.isSynthetic()) {
+            addRelatedMethodBody(method, target, pending);
+        }
+    }
+
+    private void addSyntheticFieldInitializer(
+        final FieldReference reference,
+        final MethodDefinition target,
+        final ArrayDeque<MethodDefinition> pending) {
+
+        final FieldDefinition field = reference.resolve();
+
+        if (field == null || !field.isSynthetic() || !field.isStatic()) {
+            return;
+        }
+
+        for (final MethodDefinition method : field.getDeclaringType().getDeclaredMethods()) {
+            if (method.isTypeInitializer()) {
+                addRelatedMethodBody(method, target, pending);
+            }
+        }
+    }
+
+    private void addRelatedMethodBody(
+        final MethodDefinition method,
+        final MethodDefinition target,
+        final ArrayDeque<MethodDefinition> pending) {
+
+        final TypeDefinition owner = method.getDeclaringType();
+
+        EntityDeclaration declaration = addMethodBody(_compileUnit, method);
+        //
+        // A type enclosing the target may declare the target's type as a local class, and creating
+        // it would then claim a declaration which is already part of the tree.
+        //
+        if (declaration == null &&
+            MetadataResolver.areEquivalent(getTopLevelType(owner), getTopLevelType(target.getDeclaringType())) &&
+            !MetadataHelper.isEnclosedBy(target.getDeclaringType(), owner)) {
+
+            declaration = addMethodBody(createType(owner), method);
+        }
+
+        if (declaration != null) {
+            pending.push(method);
+        }
+    }
+
+    private static TypeReference getTopLevelType(final TypeReference type) {
+        TypeReference current = type;
+
+        while (current.isNested() && current.getDeclaringType() != null) {
+            current = current.getDeclaringType();
+        }
+
+        return current;
+    }
+
+    /**
+     * Finds the method or constructor declaration for {@code method} within {@code root}.
+     */
+    public static EntityDeclaration findMethodDeclaration(final AstNode root, final MethodDefinition method) {
+        VerifyArgument.notNull(root, "root");
+        VerifyArgument.notNull(method, "method");
+
+        for (final AstNode node : root.getDescendantsAndSelf()) {
+            if ((node instanceof MethodDeclaration || node instanceof ConstructorDeclaration) &&
+                node.getUserData(Keys.METHOD_DEFINITION) == method) {
+
+                return (EntityDeclaration) node;
+            }
+        }
+
+        return null;
+    }
+
     public AstType convertType(final TypeReference type) {
         return convertType(type, new ConvertTypeOptions());
     }
 
     public AstType convertType(final TypeReference type, final ConvertTypeOptions options) {
-        return convertType(type, new MutableInteger(0), options);
+        final List<MethodBodyCache.TypeConversion> log = _typeConversionLog;
+
+        if (log == null) {
+            return convertType(type, new MutableInteger(0), options);
+        }
+
+        //
+        // A method body is being built for the method body cache.  Record each top-level conversion
+        // so it can be replayed (with the same import side effects) if the body is reused later.
+        //
+        final ConvertTypeOptions recordedOptions = MethodBodyCache.copyOptions(options);
+
+        _typeConversionLog = null;
+
+        try {
+            final AstType result = convertType(type, new MutableInteger(0), options);
+            log.add(new MethodBodyCache.TypeConversion(type, recordedOptions, result.isNull() ? result : result.clone()));
+            return result;
+        }
+        finally {
+            _typeConversionLog = log;
+        }
     }
 
     public final List<ParameterDeclaration> createParameters(final Iterable<ParameterDefinition> parameters) {
@@ -316,6 +576,14 @@ public final class AstBuilder {
             if (options.getAddImports() && !_typeDeclarations.containsKey(typeToImport.getInternalName())) {
                 String importedName = _unqualifiedTypeNames.get(typeToImport.getSimpleName());
 
+                if (importedName == null && _importPreview != null) {
+                    importedName = _importPreview.get(typeToImport.getSimpleName());
+
+                    if (importedName == null) {
+                        _importPreview.put(typeToImport.getSimpleName(), importedName = typeToImport.getFullName());
+                    }
+                }
+
                 if (importedName == null) {
                     final SimpleType importedType = new SimpleType(typeToImport.getFullName());
 
@@ -456,6 +724,18 @@ public final class AstBuilder {
 
         addTypeMembers(astType, type);
 
+        final Set<CodeFeature> features = EnumSet.noneOf(CodeFeature.class);
+
+        if (type.isLocalClass() || type.isAnonymous()) {
+            features.add(CodeFeature.LOCAL_CLASS);
+        }
+
+        for (final EntityDeclaration member : astType.getMembers()) {
+            addFeatures(features, member);
+        }
+
+        recordFeatures(astType, features);
+
         return astType;
     }
 
@@ -571,6 +851,11 @@ public final class AstBuilder {
             initializer.putUserData(Keys.MEMBER_REFERENCE, field);
         }
 
+        final Set<CodeFeature> features = EnumSet.noneOf(CodeFeature.class);
+
+        CodeFeature.addMemberFeatures(field.getName(), features);
+        recordFeatures(astField, features);
+
         return astField;
     }
 
@@ -629,6 +914,8 @@ public final class AstBuilder {
             }
         }
 
+        recordMethodFeatures(astMethod, method);
+
         return astMethod;
     }
 
@@ -650,9 +937,51 @@ public final class AstBuilder {
             astMethod.addChild(convertType(thrownType), Roles.THROWN_TYPE);
         }
 
+        recordMethodFeatures(astMethod, method);
+
         return astMethod;
     }
 
+    // <editor-fold defaultstate="collapsed" desc="Code Features">
+
+    private void recordMethodFeatures(final EntityDeclaration astMethod, final MethodDefinition method) {
+        final Set<CodeFeature> features = EnumSet.noneOf(CodeFeature.class);
+
+        CodeFeature.addMemberFeatures(method.getName(), features);
+
+        if (_decompileMethodBodies && method.hasBody()) {
+            CodeFeature.addBodyFeatures(method.getBody(), features);
+        }
+
+        //
+        // Local and anonymous classes are built separately from the method body, so fold their
+        // features in here; the declarations may be absent if the body was never decompiled.
+        //
+        for (final TypeDefinition declaredType : method.getDeclaredTypes()) {
+            features.add(CodeFeature.LOCAL_CLASS);
+            addFeatures(features, _typeDeclarations.get(declaredType.getInternalName()));
+        }
+
+        recordFeatures(astMethod, features);
+    }
+
+    private void recordFeatures(final AstNode node, final Set<CodeFeature> features) {
+        node.putUserData(Keys.CODE_FEATURES, features);
+        _features.addAll(features);
+    }
+
+    private static void addFeatures(final Set<CodeFeature> features, final AstNode node) {
+        if (node != null) {
+            final Set<CodeFeature> nodeFeatures = node.getUserData(Keys.CODE_FEATURES);
+
+            if (nodeFeatures != null) {
+                features.addAll(nodeFeatures);
+            }
+        }
+    }
+
+    // </editor-fold>
+
     final List<TypeParameterDeclaration> createTypeParameters(final List<GenericParameter> genericParameters) {
         if (genericParameters.isEmpty()) {
             return Collections.emptyList();
@@ -706,6 +1035,7 @@ public final class AstBuilder {
         final Iterable<ParameterDeclaration> parameters) {
 
         if (_decompileMethodBodies) {
+            _context.throwIfCanceled();
             return AstMethodBodyBuilder.createMethodBody(this, method, _context, parameters);
         }
 
@@ -763,12 +1093,17 @@ public final class AstBuilder {
     }
 
     public List<LineNumberPosition> generateCode(final ITextOutput output) {
+        return generateCode(output, null);
+    }
+
+    public List<LineNumberPosition> generateCode(final ITextOutput output, final Map<AstNode, Region> nodeRegions) {
         if (!_haveTransformationsRun) {
             runTransformations();
         }
 
         _compileUnit.acceptVisitor(new InsertParenthesesVisitor(), null);
         JavaOutputVisitor visitor = new JavaOutputVisitor(output, _context.getSettings());
+        visitor.setNodeRegions(nodeRegions);
         _compileUnit.acceptVisitor(visitor, null);
         return visitor.getLineNumberPositions();
     }
@@ -33,7 +33,7 @@ import com.strobel.decompiler.ast.Label;
 import com.strobel.decompiler.languages.Languages;
 import com.strobel.decompiler.patterns.AnyNode;
 import com.strobel.decompiler.patterns.Choice;
-import com.strobel.decompiler.patterns.INode;
+import com.strobel.decompiler.patterns.CompiledPattern;
 import com.strobel.decompiler.patterns.Match;
 import com.strobel.decompiler.patterns.OptionalNode;
 import com.strobel.decompiler.semantics.ResolveResult;
@@ -46,6 +46,7 @@ import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import static com.strobel.core.CollectionUtilities.*;
 
@@ -56,11 +57,11 @@ public class AstMethodBodyBuilder {
     private final DecompilerContext _context;
     private final Set<Variable> _localVariablesToDefine = new LinkedHashSet<>();
 
-    private final static INode LAMBDA_BODY_PATTERN;
-    private final static INode EMPTY_LAMBDA_BODY_PATTERN;
+    private final static CompiledPattern LAMBDA_BODY_PATTERN;
+    private final static CompiledPattern EMPTY_LAMBDA_BODY_PATTERN;
 
     static {
-        LAMBDA_BODY_PATTERN = new Choice(
+        LAMBDA_BODY_PATTERN = CompiledPattern.compile(new Choice(
             new BlockStatement(
                 new ExpressionStatement(new AnyNode("body").toExpression()),
                 new OptionalNode(new ReturnStatement(Expression.MYSTERY_OFFSET)).toStatement()
@@ -69,9 +70,9 @@ public class AstMethodBodyBuilder {
                 new ReturnStatement(Expression.MYSTERY_OFFSET, new AnyNode("body").toExpression())
             ),
             new AnyNode("body").toBlockStatement()
-        );
+        ));
 
-        EMPTY_LAMBDA_BODY_PATTERN = new BlockStatement(new ReturnStatement(Expression.MYSTERY_OFFSET));
+        EMPTY_LAMBDA_BODY_PATTERN = CompiledPattern.compile(new BlockStatement(new ReturnStatement(Expression.MYSTERY_OFFSET)));
     }
 
     public static BlockStatement createMethodBody(
@@ -95,8 +96,16 @@ public class AstMethodBodyBuilder {
         context.setCurrentMethod(method);
 
         try {
-            final AstMethodBodyBuilder builder = new AstMethodBodyBuilder(astBuilder, method, context);
-            return builder.createMethodBody(parameters);
+            final MethodBodyCache cache = context.getSettings().getMethodBodyCache();
+
+            if (cache != null) {
+                return cache.getOrCreateMethodBody(astBuilder, method, context, parameters);
+            }
+
+            return buildMethodBody(astBuilder, method, context, parameters);
+        }
+        catch (CancellationException e) {
+            throw e;
         }
         catch (Throwable t) {
             return createErrorBlock(astBuilder, context, method, t);
@@ -106,6 +115,16 @@ public class AstMethodBodyBuilder {
         }
     }
 
+    static BlockStatement buildMethodBody(
+        final AstBuilder astBuilder,
+        final MethodDefinition method,
+        final DecompilerContext context,
+        final Iterable<ParameterDeclaration> parameters) {
+
+        final AstMethodBodyBuilder builder = new AstMethodBodyBuilder(astBuilder, method, context);
+        return builder.createMethodBody(parameters);
+    }
+
     @SuppressWarnings("ConstantConditions")
     private static BlockStatement createErrorBlock(
         final AstBuilder astBuilder,
@@ -105,6 +105,7 @@ public abstract class AstNode extends Freezable implements INode, UserDataStore,
             clone._previousSibling = null;
             clone._nextSibling = null;
             clone.flags &= ~FROZEN_BIT;
+            clone._dataStore = new UserDataStoreBase();
 
             for (final Key<?> key : Keys.ALL_KEYS) {
                 copyKey(this, clone, key);
@@ -883,7 +884,7 @@ public abstract class AstNode extends Freezable implements INode, UserDataStore,
 
     // <editor-fold defaultstate="collapsed" desc="UserDataStore Implementation">
 
-    private final UserDataStore _dataStore = new UserDataStoreBase();
+    private UserDataStore _dataStore = new UserDataStoreBase();
 
     @Override
     public final <T> T getUserData(final Key<T> key) {
@@ -0,0 +1,123 @@
+/*
+ * CodeFeature.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.languages.java.ast;
+
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OperandType;
+import com.strobel.assembler.metadata.MemberReference;
+import com.strobel.assembler.metadata.MethodBody;
+import com.strobel.core.StringUtilities;
+import com.strobel.core.VerifyArgument;
+
+import java.util.Set;
+
+/**
+ * Bytecode patterns which some AST transforms look for.  The {@link AstBuilder} records which
+ * features occur in each type and method as it builds the AST, so transforms whose patterns
+ * cannot occur may be skipped.  Feature sets are conservative:  a feature may be present without
+ * the corresponding pattern being present, but never the reverse.
+ *
+ * @author Mike Strobel
+ */
+public enum CodeFeature {
+    /**
+     * A {@code $SwitchMap$} field, as generated by javac for switches on enum values.
+     */
+    SWITCH_MAP,
+
+    /**
+     * A {@code $SWITCH_TABLE$} member, as generated by Eclipse for switches on enum values.
+     */
+    SWITCH_TABLE,
+
+    /**
+     * The {@code $assertionsDisabled} field, as generated for {@code assert} statements.
+     */
+    ASSERTIONS_DISABLED,
+
+    /**
+     * A call to {@code addSuppressed}, as generated for {@code try}-with-resources statements.
+     */
+    ADD_SUPPRESSED,
+
+    /**
+     * A call to {@code hashCode}, as generated for switches on strings.
+     */
+    HASH_CODE,
+
+    /**
+     * An {@code invokedynamic} instruction, as generated for lambdas and method references.
+     */
+    INVOKE_DYNAMIC,
+
+    /**
+     * A local or anonymous class.
+     */
+    LOCAL_CLASS;
+
+    public static void addMemberFeatures(final String memberName, final Set<CodeFeature> features) {
+        VerifyArgument.notNull(features, "features");
+
+        if (memberName == null) {
+            return;
+        }
+
+        if (StringUtilities.startsWith(memberName, "$SwitchMap$")) {
+            features.add(SWITCH_MAP);
+        }
+        else if (StringUtilities.startsWith(memberName, "$SWITCH_TABLE$")) {
+            features.add(SWITCH_TABLE);
+        }
+        else if ("$assertionsDisabled".equals(memberName)) {
+            features.add(ASSERTIONS_DISABLED);
+        }
+        else if ("addSuppressed".equals(memberName)) {
+            features.add(ADD_SUPPRESSED);
+        }
+        else if ("hashCode".equals(memberName)) {
+            features.add(HASH_CODE);
+        }
+    }
+
+    public static void addBodyFeatures(final MethodBody body, final Set<CodeFeature> features) {
+        VerifyArgument.notNull(features, "features");
+
+        if (body == null) {
+            return;
+        }
+
+        for (final Instruction instruction : body.getInstructions()) {
+            final OperandType operandType = instruction.getOpCode().getOperandType();
+
+            switch (operandType) {
+                case FieldReference:
+                case MethodReference: {
+                    if (instruction.hasOperand()) {
+                        final Object operand = instruction.getOperand(0);
+
+                        if (operand instanceof MemberReference) {
+                            addMemberFeatures(((MemberReference) operand).getName(), features);
+                        }
+                    }
+                    break;
+                }
+
+                case DynamicCallSite: {
+                    features.add(INVOKE_DYNAMIC);
+                    break;
+                }
+            }
+        }
+    }
+}
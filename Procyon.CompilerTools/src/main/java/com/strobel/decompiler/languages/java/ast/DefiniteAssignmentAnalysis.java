@@ -30,14 +30,26 @@ import com.strobel.util.ContractUtils;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.strobel.core.CollectionUtilities.contains;
 
 public class DefiniteAssignmentAnalysis {
+    /**
+     * The smallest number of variables for which {@link #analyzeAll} analyzes a batch up front.  Below
+     * this, the cost of tracking which statements mention which variables outweighs the visits saved.
+     */
+    public final static int MINIMUM_BATCH_SIZE = 5;
+
     private final DefiniteAssignmentVisitor visitor = new DefiniteAssignmentVisitor();
     private final ArrayList<DefiniteAssignmentNode> allNodes = new ArrayList<>();
     private final LinkedHashMap<Statement, DefiniteAssignmentNode> beginNodeMap = new LinkedHashMap<>();
@@ -47,8 +59,12 @@ public class DefiniteAssignmentAnalysis {
 
     private final ArrayList<IdentifierExpression> unassignedVariableUses = new ArrayList<>();
     private final List<IdentifierExpression> unassignedVariableUsesView = Collections.unmodifiableList(unassignedVariableUses);
+    private final Set<IdentifierExpression> unassignedVariableUseSet = Collections.newSetFromMap(new IdentityHashMap<IdentifierExpression, Boolean>());
     private final ArrayDeque<DefiniteAssignmentNode> nodesWithModifiedInput = new ArrayDeque<>();
 
+    private List<IdentifierExpression> currentVariableUses = unassignedVariableUses;
+    private Set<IdentifierExpression> currentVariableUseSet = unassignedVariableUseSet;
+
     private Function<AstNode, ResolveResult> resolver;
 
     private String variableName;
@@ -56,6 +72,11 @@ public class DefiniteAssignmentAnalysis {
     private int analyzedRangeStart;
     private int analyzedRangeEnd;
 
+    private BatchAnalysis batchAnalysis;
+    private int batchVariable = -1;
+    private DefiniteAssignmentStatus[][] unrelatedOutputs;
+    private String[][] mentionedVariables;
+
     public DefiniteAssignmentAnalysis(final DecompilerContext context, final Statement rootStatement) {
         this(rootStatement, new JavaResolver(context));
     }
@@ -130,10 +151,26 @@ public class DefiniteAssignmentAnalysis {
     }
 
     public void analyze(final String variable, final DefiniteAssignmentStatus initialStatus) {
+        if (batchAnalysis != null && batchAnalysis.appliesTo(variable, initialStatus)) {
+            //
+            // The variable was already analyzed as part of a batch over the same range.
+            //
+            batchVariable = batchAnalysis.variableIndices.get(variable);
+            clearUnassignedVariableUses();
+            unassignedVariableUses.addAll(batchAnalysis.unassignedUses.get(batchVariable));
+            return;
+        }
+
+        this.batchVariable = -1;
+
+        analyzeCore(variable, initialStatus);
+    }
+
+    private void analyzeCore(final String variable, final DefiniteAssignmentStatus initialStatus) {
         this.variableName = variable;
 
         try {
-            unassignedVariableUses.clear();
+            clearUnassignedVariableUses();
 
             for (final DefiniteAssignmentNode node : allNodes) {
                 node.setNodeStatus(DefiniteAssignmentStatus.CODE_UNREACHABLE);
@@ -162,9 +199,14 @@ public class DefiniteAssignmentAnalysis {
         }
     }
 
+    private void clearUnassignedVariableUses() {
+        unassignedVariableUses.clear();
+        unassignedVariableUseSet.clear();
+    }
+
     public boolean isPotentiallyAssigned() {
         for (final DefiniteAssignmentNode node : allNodes) {
-            final DefiniteAssignmentStatus status = node.getNodeStatus();
+            final DefiniteAssignmentStatus status = getNodeStatus(node);
 
             if (status == null)
                 return true;
@@ -182,15 +224,22 @@ public class DefiniteAssignmentAnalysis {
     }
 
     public DefiniteAssignmentStatus getStatusBefore(final Statement statement) {
-        return beginNodeMap.get(statement).getNodeStatus();
+        return getNodeStatus(beginNodeMap.get(statement));
     }
 
     public DefiniteAssignmentStatus getStatusAfter(final Statement statement) {
-        return endNodeMap.get(statement).getNodeStatus();
+        return getNodeStatus(endNodeMap.get(statement));
     }
 
     public DefiniteAssignmentStatus getBeforeLoopCondition(final Statement statement) {
-        return conditionNodeMap.get(statement).getNodeStatus();
+        return getNodeStatus(conditionNodeMap.get(statement));
+    }
+
+    private DefiniteAssignmentStatus getNodeStatus(final DefiniteAssignmentNode node) {
+        if (batchVariable >= 0) {
+            return batchAnalysis.getStatus(node.getIndex(), batchVariable);
+        }
+        return node.getNodeStatus();
     }
 
     private DefiniteAssignmentStatus cleanSpecialValues(final DefiniteAssignmentStatus status) {
@@ -231,105 +280,111 @@ public class DefiniteAssignmentAnalysis {
 
         node.setNodeStatus(inputStatus);
 
-        DefiniteAssignmentStatus outputStatus;
+        final DefiniteAssignmentStatus outputStatus = computeOutputStatus(node, inputStatus);
 
-        switch (node.getType()) {
-            case StartNode:
-            case BetweenStatements: {
-                if (!(node.getNextStatement() instanceof IfElseStatement)) {
-                    if (inputStatus == DefiniteAssignmentStatus.DEFINITELY_ASSIGNED) {
-                        outputStatus = DefiniteAssignmentStatus.DEFINITELY_ASSIGNED;
-                    }
-                    else {
-                        outputStatus = cleanSpecialValues(node.getNextStatement().acceptVisitor(visitor, inputStatus));
-                    }
-                    break;
-                }
+        if (isEndOfFinallyBlock(node) &&
+            (outputStatus == DefiniteAssignmentStatus.DEFINITELY_ASSIGNED ||
+             outputStatus == DefiniteAssignmentStatus.POTENTIALLY_ASSIGNED)) {
 
-                //
-                // Fall through to LoopCondition if next statement is If/Else...
-                //
-            }
-
-            case LoopCondition: {
-                if (node.getNextStatement() instanceof ForEachStatement) {
-                    final ForEachStatement forEach = (ForEachStatement) node.getNextStatement();
+            final TryCatchStatement tryFinally = (TryCatchStatement) node.getPreviousStatement().getParent();
 
-                    outputStatus = cleanSpecialValues(forEach.getInExpression().acceptVisitor(visitor, inputStatus));
+            for (final DefiniteAssignmentNode n : allNodes) {
+                for (final ControlFlowEdge edge : n.getOutgoing()) {
+                    if (edge.isLeavingTryFinally() && contains(edge.getTryFinallyStatements(), tryFinally)) {
+                        final DefiniteAssignmentStatus s = edgeStatus.get(edge);
 
-                    if (StringUtilities.equals(forEach.getVariableName(), variableName)) {
-                        outputStatus = DefiniteAssignmentStatus.DEFINITELY_ASSIGNED;
+                        if (s == DefiniteAssignmentStatus.POTENTIALLY_ASSIGNED) {
+                            changeEdgeStatus(edge, outputStatus);
+                        }
                     }
-
-                    break;
                 }
+            }
+        }
 
-                assert node.getNextStatement() instanceof IfElseStatement ||
-                       node.getNextStatement() instanceof WhileStatement ||
-                       node.getNextStatement() instanceof DoWhileStatement ||
-                       node.getNextStatement() instanceof ForStatement;
+        for (final ControlFlowEdge edge : node.getOutgoing()) {
+            changeEdgeStatus(edge, getEdgeStatus(edge, outputStatus));
+        }
+    }
 
-                final Expression condition = node.getNextStatement().getChildByRole(Roles.CONDITION);
+    private static boolean isEndOfFinallyBlock(final DefiniteAssignmentNode node) {
+        return node.getType() == ControlFlowNodeType.EndNode &&
+               node.getPreviousStatement().getRole() == TryCatchStatement.FINALLY_BLOCK_ROLE;
+    }
 
-                if (condition.isNull()) {
-                    outputStatus = inputStatus;
+    /**
+     * Computes the status of the current variable after {@code node}.  The result may be one of the
+     * special values if {@code node} is a condition; use {@link #getEdgeStatus} to map it onto each
+     * outgoing edge.
+     */
+    private DefiniteAssignmentStatus computeOutputStatus(final DefiniteAssignmentNode node, final DefiniteAssignmentStatus inputStatus) {
+        switch (node.getType()) {
+            case StartNode:
+            case BetweenStatements: {
+                if (node.getNextStatement() instanceof IfElseStatement) {
+                    return computeConditionOutputStatus(node, inputStatus);
                 }
-                else {
-                    outputStatus = condition.acceptVisitor(visitor, inputStatus);
+
+                if (inputStatus == DefiniteAssignmentStatus.DEFINITELY_ASSIGNED) {
+                    return DefiniteAssignmentStatus.DEFINITELY_ASSIGNED;
                 }
 
-                for (final ControlFlowEdge edge : node.getOutgoing()) {
-                    if (edge.getType() == ControlFlowEdgeType.ConditionTrue &&
-                        outputStatus == DefiniteAssignmentStatus.ASSIGNED_AFTER_TRUE_EXPRESSION) {
+                return cleanSpecialValues(node.getNextStatement().acceptVisitor(visitor, inputStatus));
+            }
 
-                        changeEdgeStatus(edge, DefiniteAssignmentStatus.DEFINITELY_ASSIGNED);
-                    }
-                    else if (edge.getType() == ControlFlowEdgeType.ConditionFalse &&
-                             outputStatus == DefiniteAssignmentStatus.ASSIGNED_AFTER_FALSE_EXPRESSION) {
+            case LoopCondition: {
+                return computeConditionOutputStatus(node, inputStatus);
+            }
 
-                        changeEdgeStatus(edge, DefiniteAssignmentStatus.DEFINITELY_ASSIGNED);
-                    }
-                    else {
-                        changeEdgeStatus(edge, cleanSpecialValues(outputStatus));
-                    }
-                }
+            case EndNode: {
+                return inputStatus;
+            }
 
-                return;
+            default: {
+                throw ContractUtils.unreachable();
             }
+        }
+    }
 
-            case EndNode: {
-                outputStatus = inputStatus;
+    private DefiniteAssignmentStatus computeConditionOutputStatus(final DefiniteAssignmentNode node, final DefiniteAssignmentStatus inputStatus) {
+        if (node.getNextStatement() instanceof ForEachStatement) {
+            final ForEachStatement forEach = (ForEachStatement) node.getNextStatement();
+            final DefiniteAssignmentStatus outputStatus = cleanSpecialValues(forEach.getInExpression().acceptVisitor(visitor, inputStatus));
 
-                if (node.getPreviousStatement().getRole() == TryCatchStatement.FINALLY_BLOCK_ROLE &&
-                    (outputStatus == DefiniteAssignmentStatus.DEFINITELY_ASSIGNED ||
-                     outputStatus == DefiniteAssignmentStatus.POTENTIALLY_ASSIGNED)) {
+            if (StringUtilities.equals(forEach.getVariableName(), variableName)) {
+                return DefiniteAssignmentStatus.DEFINITELY_ASSIGNED;
+            }
 
-                    final TryCatchStatement tryFinally = (TryCatchStatement) node.getPreviousStatement().getParent();
+            return outputStatus;
+        }
 
-                    for (final DefiniteAssignmentNode n : allNodes) {
-                        for (final ControlFlowEdge edge : n.getOutgoing()) {
-                            if (edge.isLeavingTryFinally() && contains(edge.getTryFinallyStatements(), tryFinally)) {
-                                final DefiniteAssignmentStatus s = edgeStatus.get(edge);
+        assert node.getNextStatement() instanceof IfElseStatement ||
+               node.getNextStatement() instanceof WhileStatement ||
+               node.getNextStatement() instanceof DoWhileStatement ||
+               node.getNextStatement() instanceof ForStatement;
 
-                                if (s == DefiniteAssignmentStatus.POTENTIALLY_ASSIGNED) {
-                                    changeEdgeStatus(edge, outputStatus);
-                                }
-                            }
-                        }
-                    }
-                }
+        final Expression condition = node.getNextStatement().getChildByRole(Roles.CONDITION);
 
-                break;
-            }
+        if (condition.isNull()) {
+            return inputStatus;
+        }
 
-            default: {
-                throw ContractUtils.unreachable();
-            }
+        return condition.acceptVisitor(visitor, inputStatus);
+    }
+
+    private DefiniteAssignmentStatus getEdgeStatus(final ControlFlowEdge edge, final DefiniteAssignmentStatus outputStatus) {
+        if (edge.getType() == ControlFlowEdgeType.ConditionTrue &&
+            outputStatus == DefiniteAssignmentStatus.ASSIGNED_AFTER_TRUE_EXPRESSION) {
+
+            return DefiniteAssignmentStatus.DEFINITELY_ASSIGNED;
         }
 
-        for (final ControlFlowEdge edge : node.getOutgoing()) {
-            changeEdgeStatus(edge, outputStatus);
+        if (edge.getType() == ControlFlowEdgeType.ConditionFalse &&
+            outputStatus == DefiniteAssignmentStatus.ASSIGNED_AFTER_FALSE_EXPRESSION) {
+
+            return DefiniteAssignmentStatus.DEFINITELY_ASSIGNED;
         }
+
+        return cleanSpecialValues(outputStatus);
     }
 
     private void changeEdgeStatus(final ControlFlowEdge edge, final DefiniteAssignmentStatus newStatus) {
@@ -367,6 +422,528 @@ public class DefiniteAssignmentAnalysis {
         }
     }
 
+    // <editor-fold defaultstate="collapsed" desc="Batch Analysis">
+
+    public void analyzeAll(final Iterable<String> variables) {
+        analyzeAll(variables, DefiniteAssignmentStatus.POTENTIALLY_ASSIGNED);
+    }
+
+    /**
+     * Analyzes several variables over the current range as a batch.  Subsequent calls to
+     * {@link #analyze(String, DefiniteAssignmentStatus)} for any of the variables, with the same range
+     * and initial status, are answered from the batch.  Batches of fewer than {@link #MINIMUM_BATCH_SIZE}
+     * variables are not precomputed.
+     * <p/>
+     * All of the variables are propagated through the control flow graph in a single pass, with the
+     * status of each variable held as a pair of bits on every node and edge.  Statements which do not
+     * mention a variable are visited at most once per input status for the whole batch; only statements
+     * which mention a variable are visited on its behalf.  The results are identical to those of
+     * {@link #analyze(String, DefiniteAssignmentStatus)}.
+     */
+    public void analyzeAll(final Iterable<String> variables, final DefiniteAssignmentStatus initialStatus) {
+        VerifyArgument.notNull(variables, "variables");
+        VerifyArgument.notNull(initialStatus, "initialStatus");
+
+        final Set<String> names = new LinkedHashSet<>();
+
+        for (final String variable : variables) {
+            if (variable != null) {
+                names.add(variable);
+            }
+        }
+
+        switch (initialStatus) {
+            case CODE_UNREACHABLE:
+            case DEFINITELY_NOT_ASSIGNED:
+            case POTENTIALLY_ASSIGNED:
+            case DEFINITELY_ASSIGNED:
+                break;
+
+            default:
+                throw new IllegalArgumentException("Illegal initial status: " + initialStatus);
+        }
+
+        this.batchAnalysis = null;
+        this.batchVariable = -1;
+
+        if (names.size() < MINIMUM_BATCH_SIZE) {
+            //
+            // Small batches are faster to analyze one variable at a time; leave them to be analyzed
+            // on demand.
+            //
+            return;
+        }
+
+        final BatchAnalysis batch = new BatchAnalysis(names, initialStatus);
+
+        batch.run();
+
+        this.batchAnalysis = batch;
+    }
+
+    private DefiniteAssignmentStatus computeUnrelatedOutputStatus(
+        final DefiniteAssignmentNode node,
+        final DefiniteAssignmentStatus inputStatus) {
+
+        if (unrelatedOutputs == null) {
+            unrelatedOutputs = new DefiniteAssignmentStatus[allNodes.size()][];
+        }
+
+        DefiniteAssignmentStatus[] outputs = unrelatedOutputs[node.getIndex()];
+
+        if (outputs == null) {
+            unrelatedOutputs[node.getIndex()] = outputs = new DefiniteAssignmentStatus[DefiniteAssignmentStatus.values().length];
+        }
+
+        DefiniteAssignmentStatus outputStatus = outputs[inputStatus.ordinal()];
+
+        if (outputStatus == null) {
+            //
+            // A null variable name matches no identifier, so this computes the output for any
+            // variable the node does not mention.
+            //
+            assert variableName == null;
+
+            outputStatus = computeOutputStatus(node, inputStatus);
+            outputs[inputStatus.ordinal()] = outputStatus;
+        }
+
+        return outputStatus;
+    }
+
+    private String[] getMentionedVariables(final DefiniteAssignmentNode node) {
+        if (mentionedVariables == null) {
+            mentionedVariables = new String[allNodes.size()][];
+        }
+
+        String[] mentioned = mentionedVariables[node.getIndex()];
+
+        if (mentioned == null) {
+            final List<String> names = new ArrayList<>();
+
+            if (node.getType() != ControlFlowNodeType.EndNode) {
+                final Statement statement = node.getNextStatement();
+
+                if (statement instanceof ForEachStatement) {
+                    names.add(((ForEachStatement) statement).getVariableName());
+                }
+
+                collectMentionedVariables(statement, names);
+            }
+
+            mentionedVariables[node.getIndex()] = mentioned = names.toArray(new String[names.size()]);
+        }
+
+        return mentioned;
+    }
+
+    private static void collectMentionedVariables(final AstNode node, final List<String> mentioned) {
+        for (AstNode child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof TypeDeclaration ||
+                child instanceof Statement && !(node instanceof LabeledStatement)) {
+
+                //
+                // The visitor never looks into local types or nested statements (other than the
+                // target of a label), as the latter have nodes of their own.
+                //
+                continue;
+            }
+
+            if (child instanceof IdentifierExpression) {
+                mentioned.add(((IdentifierExpression) child).getIdentifier());
+            }
+            else if (child instanceof VariableInitializer) {
+                mentioned.add(((VariableInitializer) child).getName());
+            }
+
+            collectMentionedVariables(child, mentioned);
+        }
+    }
+
+    /**
+     * The state of a batch analysis.  The status of each variable at a node or edge is encoded by two
+     * bits:  one set if the variable may be assigned, and one set if it may be unassigned.  Both bits
+     * set means potentially assigned, and neither means unreachable, so merging the statuses of the
+     * incoming edges is a union.  The bits are packed into words, {@code words} per node or edge.
+     * <p/>
+     * Each entry in the work queue carries the variables whose input to a node may have changed, and
+     * only those variables are updated when the entry is processed.  The entries carrying a variable are
+     * queued in the same order as {@link #analyze(String, DefiniteAssignmentStatus)} would queue them for
+     * that variable alone, and no other entries affect its bits, so each variable reaches exactly the
+     * state its own analysis would.
+     */
+    final class BatchAnalysis {
+        final int rangeStart;
+        final int rangeEnd;
+        final DefiniteAssignmentStatus initialStatus;
+        final String[] variables;
+        final Map<String, Integer> variableIndices = new HashMap<>();
+        final List<List<IdentifierExpression>> unassignedUses = new ArrayList<>();
+
+        private final List<Set<IdentifierExpression>> unassignedUseSets = new ArrayList<>();
+        private final int words;
+        private final long[] nodeAssigned;
+        private final long[] nodeUnassigned;
+        private final long[] edgeAssigned;
+        private final long[] edgeUnassigned;
+        private final long[][] nodeMentions;
+        private final int[][] incomingEdges;
+        private final int[] firstOutgoingEdge;
+        private final ArrayDeque<DefiniteAssignmentNode> queuedNodes = new ArrayDeque<>();
+        private final ArrayDeque<long[]> queuedVariables = new ArrayDeque<>();
+        private final DefiniteAssignmentStatus[] outputs;
+
+        //
+        // Scratch space for the inputs of a node and the outputs along an edge.
+        //
+        private final long[] assigned;
+        private final long[] unassigned;
+
+        BatchAnalysis(final Collection<String> names, final DefiniteAssignmentStatus initialStatus) {
+            for (final String name : names) {
+                variableIndices.put(name, variableIndices.size());
+                unassignedUses.add(new ArrayList<IdentifierExpression>());
+                unassignedUseSets.add(Collections.newSetFromMap(new IdentityHashMap<IdentifierExpression, Boolean>()));
+            }
+
+            this.rangeStart = analyzedRangeStart;
+            this.rangeEnd = analyzedRangeEnd;
+            this.initialStatus = initialStatus;
+            this.variables = names.toArray(new String[names.size()]);
+            this.outputs = new DefiniteAssignmentStatus[names.size()];
+            this.words = Math.max(1, (names.size() + 63) >>> 6);
+            this.assigned = new long[words];
+            this.unassigned = new long[words];
+
+            //
+            // Edges are numbered in the order they are visited by the finally block rule, so that it
+            // does not need to look them up.  The order of incoming edges does not matter, as merging
+            // their statuses is commutative.
+            //
+            final int nodeCount = allNodes.size();
+            final int[] incomingCounts = new int[nodeCount];
+
+            this.firstOutgoingEdge = new int[nodeCount];
+            this.incomingEdges = new int[nodeCount][];
+            this.nodeMentions = new long[nodeCount][];
+
+            for (final DefiniteAssignmentNode node : allNodes) {
+                incomingEdges[node.getIndex()] = new int[node.getIncoming().size()];
+            }
+
+            int edgeCount = 0;
+
+            for (final DefiniteAssignmentNode node : allNodes) {
+                firstOutgoingEdge[node.getIndex()] = edgeCount;
+
+                for (final ControlFlowEdge edge : node.getOutgoing()) {
+                    final int target = ((DefiniteAssignmentNode) edge.getTo()).getIndex();
+                    incomingEdges[target][incomingCounts[target]++] = edgeCount++;
+                }
+            }
+
+            this.nodeAssigned = new long[nodeCount * words];
+            this.nodeUnassigned = new long[nodeCount * words];
+            this.edgeAssigned = new long[edgeCount * words];
+            this.edgeUnassigned = new long[edgeCount * words];
+        }
+
+        final boolean appliesTo(final String variable, final DefiniteAssignmentStatus status) {
+            return rangeStart == analyzedRangeStart &&
+                   rangeEnd == analyzedRangeEnd &&
+                   initialStatus == status &&
+                   variableIndices.containsKey(variable);
+        }
+
+        final DefiniteAssignmentStatus getStatus(final int node, final int variable) {
+            return decode(nodeAssigned, nodeUnassigned, node * words, variable);
+        }
+
+        final void run() {
+            final long[] all = new long[words];
+
+            for (int v = 0; v < variables.length; v++) {
+                all[v >>> 6] |= 1L << v;
+                encode(assigned, unassigned, 0, v, initialStatus);
+            }
+
+            changeNodeStatus(allNodes.get(rangeStart), all);
+
+            while (!queuedNodes.isEmpty()) {
+                final DefiniteAssignmentNode node = queuedNodes.poll();
+                final long[] candidates = queuedVariables.poll();
+
+                Arrays.fill(assigned, 0L);
+                Arrays.fill(unassigned, 0L);
+
+                for (final int edge : incomingEdges[node.getIndex()]) {
+                    for (int w = 0, e = edge * words; w < words; w++, e++) {
+                        assigned[w] |= edgeAssigned[e];
+                        unassigned[w] |= edgeUnassigned[e];
+                    }
+                }
+
+                changeNodeStatus(node, candidates);
+            }
+        }
+
+        /**
+         * Updates the status of the {@code candidates} at {@code node} to the input held in the scratch
+         * space, and propagates any changes along its outgoing edges.
+         */
+        private void changeNodeStatus(final DefiniteAssignmentNode node, final long[] candidates) {
+            final int offset = node.getIndex() * words;
+            final long[] changed = new long[words];
+
+            boolean anyChanged = false;
+
+            for (int w = 0; w < words; w++) {
+                final long c = candidates[w] &
+                               ((nodeAssigned[offset + w] ^ assigned[w]) | (nodeUnassigned[offset + w] ^ unassigned[w]));
+
+                if (c != 0L) {
+                    changed[w] = c;
+                    nodeAssigned[offset + w] = (nodeAssigned[offset + w] & ~c) | (assigned[w] & c);
+                    nodeUnassigned[offset + w] = (nodeUnassigned[offset + w] & ~c) | (unassigned[w] & c);
+                    anyChanged = true;
+                }
+            }
+
+            if (!anyChanged) {
+                return;
+            }
+
+            final long[] mentions = getMentions(node);
+
+            for (int v = nextVariable(changed, 0); v >= 0; v = nextVariable(changed, v + 1)) {
+                final DefiniteAssignmentStatus inputStatus = decode(nodeAssigned, nodeUnassigned, offset, v);
+
+                outputs[v] = (mentions[v >>> 6] & (1L << v)) != 0L ? computeOutputStatus(node, inputStatus, v)
+                                                                    : computeUnrelatedOutputStatus(node, inputStatus);
+            }
+
+            if (isEndOfFinallyBlock(node)) {
+                applyFinallyOutputs(node, changed);
+            }
+
+            int edge = firstOutgoingEdge[node.getIndex()];
+
+            for (final ControlFlowEdge e : node.getOutgoing()) {
+                Arrays.fill(assigned, 0L);
+                Arrays.fill(unassigned, 0L);
+
+                for (int v = nextVariable(changed, 0); v >= 0; v = nextVariable(changed, v + 1)) {
+                    encode(assigned, unassigned, 0, v, getEdgeStatus(e, outputs[v]));
+                }
+
+                changeEdgeStatus(e, edge++, changed);
+            }
+        }
+
+        private void applyFinallyOutputs(final DefiniteAssignmentNode node, final long[] changed) {
+            final long[] finallyVariables = new long[words];
+
+            boolean any = false;
+
+            Arrays.fill(assigned, 0L);
+            Arrays.fill(unassigned, 0L);
+
+            for (int v = nextVariable(changed, 0); v >= 0; v = nextVariable(changed, v + 1)) {
+                if (outputs[v] == DefiniteAssignmentStatus.DEFINITELY_ASSIGNED ||
+                    outputs[v] == DefiniteAssignmentStatus.POTENTIALLY_ASSIGNED) {
+
+                    finallyVariables[v >>> 6] |= 1L << v;
+                    encode(assigned, unassigned, 0, v, outputs[v]);
+                    any = true;
+                }
+            }
+
+            if (!any) {
+                return;
+            }
+
+            final TryCatchStatement tryFinally = (TryCatchStatement) node.getPreviousStatement().getParent();
+
+            int edge = 0;
+
+            for (final DefiniteAssignmentNode n : allNodes) {
+                for (final ControlFlowEdge e : n.getOutgoing()) {
+                    if (e.isLeavingTryFinally() && contains(e.getTryFinallyStatements(), tryFinally)) {
+                        //
+                        // Only variables which are potentially assigned on the edge are updated.
+                        //
+                        final long[] potentiallyAssigned = new long[words];
+
+                        for (int w = 0, i = edge * words; w < words; w++, i++) {
+                            potentiallyAssigned[w] = finallyVariables[w] & edgeAssigned[i] & edgeUnassigned[i];
+                        }
+
+                        changeEdgeStatus(e, edge, potentiallyAssigned);
+                    }
+
+                    ++edge;
+                }
+            }
+        }
+
+        /**
+         * Updates the status of the {@code candidates} along an edge to the output held in the scratch
+         * space, and queues the edge's target if any of them changed.
+         */
+        private void changeEdgeStatus(final ControlFlowEdge e, final int edge, final long[] candidates) {
+            final int offset = edge * words;
+
+            long[] changed = null;
+
+            for (int w = 0; w < words; w++) {
+                final long oldAssigned = edgeAssigned[offset + w];
+                final long oldUnassigned = edgeUnassigned[offset + w];
+
+                //
+                // Ensure that status cannot change after it is definitely assigned.
+                //
+                final long c = candidates[w] &
+                               ~(oldAssigned & ~oldUnassigned) &
+                               ((oldAssigned ^ assigned[w]) | (oldUnassigned ^ unassigned[w]));
+
+                if (c != 0L) {
+                    if (changed == null) {
+                        changed = new long[words];
+                    }
+
+                    changed[w] = c;
+                    edgeAssigned[offset + w] = (oldAssigned & ~c) | (assigned[w] & c);
+                    edgeUnassigned[offset + w] = (oldUnassigned & ~c) | (unassigned[w] & c);
+                }
+            }
+
+            if (changed == null) {
+                return;
+            }
+
+            final DefiniteAssignmentNode targetNode = (DefiniteAssignmentNode) e.getTo();
+
+            if (rangeStart <= targetNode.getIndex() && targetNode.getIndex() <= rangeEnd) {
+                queuedNodes.add(targetNode);
+                queuedVariables.add(changed);
+            }
+        }
+
+        private DefiniteAssignmentStatus computeOutputStatus(
+            final DefiniteAssignmentNode node,
+            final DefiniteAssignmentStatus inputStatus,
+            final int variable) {
+
+            variableName = variables[variable];
+            currentVariableUses = unassignedUses.get(variable);
+            currentVariableUseSet = unassignedUseSets.get(variable);
+
+            try {
+                return DefiniteAssignmentAnalysis.this.computeOutputStatus(node, inputStatus);
+            }
+            finally {
+                variableName = null;
+                currentVariableUses = unassignedVariableUses;
+                currentVariableUseSet = unassignedVariableUseSet;
+            }
+        }
+
+        private long[] getMentions(final DefiniteAssignmentNode node) {
+            long[] mentions = nodeMentions[node.getIndex()];
+
+            if (mentions == null) {
+                mentions = new long[words];
+
+                for (final String name : getMentionedVariables(node)) {
+                    final Integer variable = variableIndices.get(name);
+
+                    if (variable != null) {
+                        mentions[variable >>> 6] |= 1L << variable;
+                    }
+                }
+
+                nodeMentions[node.getIndex()] = mentions;
+            }
+
+            return mentions;
+        }
+    }
+
+    private static int nextVariable(final long[] variables, final int start) {
+        int w = start >>> 6;
+
+        if (w >= variables.length) {
+            return -1;
+        }
+
+        long word = variables[w] & (-1L << start);
+
+        while (word == 0L) {
+            if (++w == variables.length) {
+                return -1;
+            }
+            word = variables[w];
+        }
+
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private static void encode(
+        final long[] assigned,
+        final long[] unassigned,
+        final int offset,
+        final int variable,
+        final DefiniteAssignmentStatus status) {
+
+        final int w = offset + (variable >>> 6);
+        final long bit = 1L << variable;
+
+        switch (status) {
+            case DEFINITELY_ASSIGNED:
+                assigned[w] |= bit;
+                unassigned[w] &= ~bit;
+                break;
+
+            case DEFINITELY_NOT_ASSIGNED:
+                assigned[w] &= ~bit;
+                unassigned[w] |= bit;
+                break;
+
+            case POTENTIALLY_ASSIGNED:
+                assigned[w] |= bit;
+                unassigned[w] |= bit;
+                break;
+
+            case CODE_UNREACHABLE:
+                assigned[w] &= ~bit;
+                unassigned[w] &= ~bit;
+                break;
+
+            default:
+                throw new IllegalStateException("Illegal edge output status:" + status);
+        }
+    }
+
+    private static DefiniteAssignmentStatus decode(
+        final long[] assigned,
+        final long[] unassigned,
+        final int offset,
+        final int variable) {
+
+        final int w = offset + (variable >>> 6);
+        final long bit = 1L << variable;
+
+        if ((assigned[w] & bit) != 0L) {
+            return (unassigned[w] & bit) != 0L ? DefiniteAssignmentStatus.POTENTIALLY_ASSIGNED
+                                               : DefiniteAssignmentStatus.DEFINITELY_ASSIGNED;
+        }
+
+        return (unassigned[w] & bit) != 0L ? DefiniteAssignmentStatus.DEFINITELY_NOT_ASSIGNED
+                                           : DefiniteAssignmentStatus.CODE_UNREACHABLE;
+    }
+
+    // </editor-fold>
+
     // <editor-fold defaultstate="collapsed" desc="Constant Evaluation">
 
     protected ResolveResult evaluateConstant(final Expression e) {
@@ -707,9 +1284,10 @@ public class DefiniteAssignmentAnalysis {
         public DefiniteAssignmentStatus visitIdentifierExpression(final IdentifierExpression node, final DefiniteAssignmentStatus data) {
             if (data != DefiniteAssignmentStatus.DEFINITELY_ASSIGNED &&
                 StringUtilities.equals(node.getIdentifier(), variableName) &&
-                node.getTypeArguments().isEmpty()) {
+                node.getTypeArguments().isEmpty() &&
+                currentVariableUseSet.add(node)) {
 
-                unassignedVariableUses.add(node);
+                currentVariableUses.add(node);
             }
 
             return data;
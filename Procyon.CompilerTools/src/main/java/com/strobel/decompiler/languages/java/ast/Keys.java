@@ -30,6 +30,7 @@ import com.strobel.core.ArrayUtilities;
 import com.strobel.decompiler.ast.Variable;
 
 import java.util.List;
+import java.util.Set;
 
 public final class Keys {
     public final static Key<Variable> VARIABLE = Key.create("Variable");
@@ -44,6 +45,7 @@ public final class Keys {
     public final static Key<DynamicCallSite> DYNAMIC_CALL_SITE = Key.create("DynamicCallSite");
     public final static Key<AstBuilder> AST_BUILDER = Key.create("AstBuilder");
     public final static Key<Object> CONSTANT_VALUE = Key.create("ConstantValue");
+    public final static Key<Set<CodeFeature>> CODE_FEATURES = Key.create("CodeFeatures");
 
     public final static List<Key<?>> ALL_KEYS = ArrayUtilities.asUnmodifiableList(
         VARIABLE,
@@ -0,0 +1,1393 @@
+/*
+ * MethodBodyCache.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.languages.java.ast;
+
+import com.strobel.assembler.ir.ExceptionHandler;
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.metadata.*;
+import com.strobel.componentmodel.Key;
+import com.strobel.core.ExceptionUtilities;
+import com.strobel.core.StringUtilities;
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.DecompilerContext;
+import com.strobel.decompiler.DecompilerSettings;
+import com.strobel.decompiler.ast.Variable;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches decompiled method bodies so that a type may be decompiled again, after some of its methods
+ * have changed, without rebuilding the bodies of the methods which have not.
+ * <p/>
+ * Bodies are keyed by a digest of everything they are decompiled from: the method's instructions and
+ * exception handlers, the constant pool entries those reference (by value, not by index), the local
+ * variable table, the declared signatures of referenced members, the bodies of lambda methods which
+ * get inlined, and the settings which affect body decompilation.  Before a cached body is reused, its
+ * references to the metadata of the enclosing compilation unit are rebound to the type currently
+ * being decompiled, and the type names it contains are checked against the current imports.
+ * <p/>
+ * Bodies which declare anonymous classes are never cached.  Changes which affect none of the inputs
+ * above (for example, a new supertype for some referenced class) are not detected; call {@link #clear()}
+ * if such changes are expected.
+ *
+ * @author Mike Strobel
+ */
+public final class MethodBodyCache {
+    public final static int DEFAULT_CAPACITY = 4096;
+
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int _capacity;
+    private final Map<MethodBodyKey, Entry> _entries;
+
+    private int _hitCount;
+
+    public MethodBodyCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MethodBodyCache(final int capacity) {
+        _capacity = VerifyArgument.isPositive(capacity, "capacity");
+        _entries = new EntryMap(capacity);
+    }
+
+    public final int getCapacity() {
+        return _capacity;
+    }
+
+    public final synchronized int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Gets the number of method bodies which have been reused from this cache.
+     */
+    public final synchronized int getHitCount() {
+        return _hitCount;
+    }
+
+    public final synchronized void clear() {
+        _entries.clear();
+    }
+
+    final BlockStatement getOrCreateMethodBody(
+        final AstBuilder astBuilder,
+        final MethodDefinition method,
+        final DecompilerContext context,
+        final Iterable<ParameterDeclaration> parameters) {
+
+        if (method.getBody() == null) {
+            return AstMethodBodyBuilder.buildMethodBody(astBuilder, method, context, parameters);
+        }
+
+        final List<Object> anchors = new ArrayList<>();
+        final MethodBodyKey key = MethodBodyKey.create(method, context, anchors);
+
+        final Entry cachedEntry;
+
+        synchronized (this) {
+            cachedEntry = _entries.get(key);
+        }
+
+        if (cachedEntry != null) {
+            final BlockStatement body = cachedEntry.tryReuse(astBuilder, method, anchors, parameters);
+
+            if (body != null) {
+                synchronized (this) {
+                    _hitCount++;
+                }
+                return body;
+            }
+        }
+
+        final List<TypeConversion> typeConversions = new ArrayList<>();
+        final List<TypeConversion> outerLog = astBuilder.setTypeConversionLog(typeConversions);
+        final BlockStatement body;
+
+        try {
+            body = AstMethodBodyBuilder.buildMethodBody(astBuilder, method, context, parameters);
+        }
+        finally {
+            astBuilder.setTypeConversionLog(outerLog);
+        }
+
+        if (outerLog != null) {
+            outerLog.addAll(typeConversions);
+        }
+
+        if (body != null) {
+            final Entry entry = Entry.create(body, method, anchors, parameters, typeConversions);
+
+            if (entry != null) {
+                synchronized (this) {
+                    _entries.put(key, entry);
+                }
+            }
+        }
+
+        return body;
+    }
+
+    static ConvertTypeOptions copyOptions(final ConvertTypeOptions options) {
+        if (options == null) {
+            return null;
+        }
+
+        final ConvertTypeOptions copy = new ConvertTypeOptions();
+
+        copy.setIncludePackage(options.getIncludePackage());
+        copy.setIncludeTypeParameterDefinitions(options.getIncludeTypeParameterDefinitions());
+        copy.setAllowWildcards(options.getAllowWildcards());
+        copy.setIncludeTypeArguments(options.getIncludeTypeArguments());
+        copy.setAddImports(options.getAddImports());
+
+        return copy;
+    }
+
+    private static boolean isWithinCompilationUnit(final String internalName, final String topLevelName) {
+        return internalName.equals(topLevelName) ||
+               internalName.startsWith(topLevelName) && internalName.charAt(topLevelName.length()) == '$';
+    }
+
+    private static String getTopLevelName(final TypeReference type) {
+        TypeReference current = type;
+
+        while (current.isNested() && current.getDeclaringType() != null) {
+            current = current.getDeclaringType();
+        }
+
+        return current.getInternalName();
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="EntryMap Class">
+
+    private final static class EntryMap extends LinkedHashMap<MethodBodyKey, Entry> {
+        private static final long serialVersionUID = -2284810418390582174L;
+
+        private final int _capacity;
+
+        EntryMap(final int capacity) {
+            super(16, 0.75f, true);
+            _capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<MethodBodyKey, Entry> eldest) {
+            return size() > _capacity;
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="TypeConversion Class">
+
+    static final class TypeConversion {
+        final TypeReference type;
+        final ConvertTypeOptions options;
+        final AstType result;
+
+        TypeConversion(final TypeReference type, final ConvertTypeOptions options, final AstType result) {
+            this.type = type;
+            this.options = options;
+            this.result = result;
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="MethodBodyKey Class">
+
+    private final static class MethodBodyKey {
+        private final byte[] _digest;
+        private final int _hashCode;
+
+        private MethodBodyKey(final byte[] digest) {
+            _digest = digest;
+            _hashCode = Arrays.hashCode(digest);
+        }
+
+        static MethodBodyKey create(final MethodDefinition method, final DecompilerContext context, final List<Object> anchors) {
+            final KeyBuilder builder = new KeyBuilder(getTopLevelName(method.getDeclaringType()), anchors);
+
+            builder.appendSettings(context);
+            builder.appendMethod(method);
+
+            final MessageDigest digest;
+
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            }
+            catch (final NoSuchAlgorithmException e) {
+                throw ExceptionUtilities.asRuntimeException(e);
+            }
+
+            return new MethodBodyKey(digest.digest(builder.toString().getBytes(UTF_8)));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof MethodBodyKey &&
+                   Arrays.equals(_digest, ((MethodBodyKey) o)._digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="KeyBuilder Class">
+
+    /**
+     * Writes a canonical description of a method body and, as a side effect, collects the metadata
+     * objects it references ("anchors") in a deterministic order.  Two methods with the same description
+     * produce parallel anchor lists, which is what allows a cached body to be rebound.
+     */
+    private final static class KeyBuilder {
+        private final StringBuilder _sb = new StringBuilder();
+        private final String _topLevelName;
+        private final List<Object> _anchors;
+        private final List<MethodDefinition> _methodStack = new ArrayList<>();
+
+        KeyBuilder(final String topLevelName, final List<Object> anchors) {
+            _topLevelName = topLevelName;
+            _anchors = anchors;
+        }
+
+        void appendSettings(final DecompilerContext context) {
+            final DecompilerSettings settings = context.getSettings();
+
+            _sb.append("S:")
+               .append(settings.getShowSyntheticMembers()).append(',')
+               .append(settings.getAlwaysGenerateExceptionVariableForCatchBlocks()).append(',')
+               .append(settings.getForceExplicitImports()).append(',')
+               .append(settings.getForceExplicitTypeArguments()).append(',')
+               .append(settings.getFlattenSwitchBlocks()).append(',')
+               .append(settings.getExcludeNestedTypes()).append(',')
+               .append(settings.getRetainRedundantCasts()).append(',')
+               .append(settings.getRetainPointlessSwitches()).append(',')
+               .append(settings.getMergeVariables()).append(',')
+               .append(settings.getIncludeErrorDiagnostics()).append(',')
+               .append(context.getReservedVariableNames())
+               .append('\n');
+        }
+
+        void appendMethod(final MethodDefinition method) {
+            final TypeDefinition declaringType = method.getDeclaringType();
+            final MethodBody body = method.getBody();
+
+            _methodStack.add(method);
+            _anchors.add(method);
+            _anchors.add(declaringType);
+
+            _sb.append("M:")
+               .append(declaringType.getInternalName()).append(' ')
+               .append(declaringType.getSignature()).append(' ')
+               .append(declaringType.getFlags()).append(' ')
+               .append(method.getName()).append(' ')
+               .append(method.getErasedSignature()).append(' ')
+               .append(method.getSignature()).append(' ')
+               .append(method.getFlags())
+               .append('\n');
+
+            for (final ParameterDefinition p : method.getParameters()) {
+                _anchors.add(p);
+
+                _sb.append("P:")
+                   .append(p.getSlot()).append(' ')
+                   .append(p.getName()).append(' ')
+                   .append(p.getParameterType().getSignature()).append(' ')
+                   .append(p.getFlags()).append(' ')
+                   .append(p.getAnnotations().size())
+                   .append('\n');
+            }
+
+            _sb.append("B:")
+               .append(body.getMaxStackSize()).append(' ')
+               .append(body.getMaxLocals()).append(' ')
+               .append(body.getCodeSize())
+               .append('\n');
+
+            _anchors.add(body.getThisParameter());
+
+            for (final VariableDefinition v : body.getVariables()) {
+                _anchors.add(v);
+
+                _sb.append("V:")
+                   .append(v.getSlot()).append(' ')
+                   .append(v.getName()).append(' ')
+                   .append(v.getVariableType() != null ? v.getVariableType().getSignature() : null).append(' ')
+                   .append(v.getScopeStart()).append(' ')
+                   .append(v.getScopeEnd()).append(' ')
+                   .append(v.isFromMetadata()).append(' ')
+                   .append(v.isTypeKnown())
+                   .append('\n');
+            }
+
+            for (final Instruction instruction : body.getInstructions()) {
+                _sb.append("I:")
+                   .append(instruction.getOffset()).append(' ')
+                   .append(instruction.getOpCode().name());
+
+                for (int i = 0, n = instruction.getOperandCount(); i < n; i++) {
+                    _sb.append(' ');
+                    appendOperand(instruction.getOperand(i));
+                }
+
+                _sb.append('\n');
+            }
+
+            for (final ExceptionHandler handler : body.getExceptionHandlers()) {
+                _sb.append("H:")
+                   .append(handler.getHandlerType().name()).append(' ')
+                   .append(handler.getTryBlock().getFirstInstruction().getOffset()).append(' ')
+                   .append(handler.getTryBlock().getLastInstruction().getOffset()).append(' ')
+                   .append(handler.getHandlerBlock().getFirstInstruction().getOffset()).append(' ')
+                   .append(handler.getHandlerBlock().getLastInstruction().getOffset()).append(' ');
+
+                appendOperand(handler.getCatchType());
+
+                _sb.append('\n');
+            }
+
+            _methodStack.remove(_methodStack.size() - 1);
+        }
+
+        private void appendOperand(final Object operand) {
+            if (operand == null) {
+                _sb.append("null");
+            }
+            else if (operand instanceof Instruction) {
+                _sb.append('@').append(((Instruction) operand).getOffset());
+            }
+            else if (operand instanceof SwitchInfo) {
+                final SwitchInfo switchInfo = (SwitchInfo) operand;
+
+                _sb.append("switch(")
+                   .append(switchInfo.getLowValue()).append(',')
+                   .append(switchInfo.getHighValue()).append(',')
+                   .append(Arrays.toString(switchInfo.getKeys())).append(',');
+
+                appendOperand(switchInfo.getDefaultTarget());
+
+                for (final Instruction target : switchInfo.getTargets()) {
+                    _sb.append(',');
+                    appendOperand(target);
+                }
+
+                _sb.append(')');
+            }
+            else if (operand instanceof VariableReference) {
+                final VariableReference variable = (VariableReference) operand;
+
+                _anchors.add(variable);
+                _sb.append("var(").append(variable.getSlot()).append(',').append(variable.getName()).append(')');
+            }
+            else if (operand instanceof DynamicCallSite) {
+                appendCallSite((DynamicCallSite) operand);
+            }
+            else if (operand instanceof MethodHandle) {
+                final MethodHandle handle = (MethodHandle) operand;
+
+                _sb.append("handle(").append(handle.getHandleType().name()).append(',');
+                appendOperand(handle.getMethod());
+                _sb.append(')');
+            }
+            else if (operand instanceof MemberReference) {
+                appendMember((MemberReference) operand);
+            }
+            else if (operand instanceof IMethodSignature) {
+                appendMethodSignature((IMethodSignature) operand);
+            }
+            else {
+                _sb.append(operand.getClass().getSimpleName()).append('(').append(operand).append(')');
+            }
+        }
+
+        private void appendMember(final MemberReference member) {
+            _anchors.add(member);
+
+            final TypeReference declaringType = member.getDeclaringType();
+            final MemberReference resolved;
+
+            if (member instanceof TypeReference) {
+                _sb.append("type(");
+                resolved = ((TypeReference) member).resolve();
+            }
+            else if (member instanceof MethodReference) {
+                _sb.append("method(");
+                resolved = ((MethodReference) member).resolve();
+            }
+            else if (member instanceof FieldReference) {
+                _sb.append("field(");
+                resolved = ((FieldReference) member).resolve();
+            }
+            else {
+                _sb.append("member(");
+                resolved = null;
+            }
+
+            _sb.append(declaringType != null ? declaringType.getInternalName() : null).append(',')
+               .append(member.getName()).append(',')
+               .append(member.getErasedSignature()).append(',')
+               .append(member.getSignature()).append(',');
+
+            //
+            // The generic signatures of referenced members are not part of this method's constant pool
+            // entries, but they do influence type inference.
+            //
+            if (resolved != null) {
+                _sb.append(resolved.getSignature());
+
+                if (resolved instanceof FieldDefinition) {
+                    _sb.append(':').append(((FieldDefinition) resolved).getFieldType().getSignature());
+                }
+            }
+            else {
+                _sb.append('?');
+            }
+
+            _sb.append(')');
+        }
+
+        private void appendMethodSignature(final IMethodSignature signature) {
+            _sb.append("sig(");
+
+            for (final ParameterDefinition p : signature.getParameters()) {
+                _sb.append(p.getParameterType().getSignature());
+            }
+
+            _sb.append(')').append(signature.getReturnType().getSignature());
+        }
+
+        private void appendCallSite(final DynamicCallSite callSite) {
+            _anchors.add(callSite);
+
+            _sb.append("indy(").append(callSite.getMethodName()).append(',');
+            appendMethodSignature(callSite.getMethodType());
+            _sb.append(',');
+            appendOperand(callSite.getBootstrapMethod());
+
+            for (final Object argument : callSite.getBootstrapArguments()) {
+                _sb.append(',');
+                appendOperand(argument);
+            }
+
+            _sb.append(')');
+
+            //
+            // Synthetic lambda methods get inlined into the method body, so their own bodies are part of
+            // its input.
+            //
+            for (final Object argument : callSite.getBootstrapArguments()) {
+                if (!(argument instanceof MethodHandle)) {
+                    continue;
+                }
+
+                final MethodDefinition target = ((MethodHandle) argument).getMethod().resolve();
+
+                if (target != null &&
+                    target.isSynthetic() &&
+                    target.getBody() != null &&
+                    !_methodStack.contains(target) &&
+                    isWithinCompilationUnit(target.getDeclaringType().getInternalName(), _topLevelName)) {
+
+                    _sb.append("{\n");
+                    appendMethod(target);
+                    _sb.append('}');
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return _sb.toString();
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Entry Class">
+
+    private final static class Entry {
+        private final BlockStatement _template;
+        private final Map<Object, Binding> _bindings;
+        private final String[] _parameterNames;
+        private final List<TypeConversion> _typeConversions;
+
+        private Entry(
+            final BlockStatement template,
+            final Map<Object, Binding> bindings,
+            final String[] parameterNames,
+            final List<TypeConversion> typeConversions) {
+
+            _template = template;
+            _bindings = bindings;
+            _parameterNames = parameterNames;
+            _typeConversions = typeConversions;
+        }
+
+        static Entry create(
+            final BlockStatement body,
+            final MethodDefinition method,
+            final List<Object> anchors,
+            final Iterable<ParameterDeclaration> parameters,
+            final List<TypeConversion> typeConversions) {
+
+            final String topLevelName = getTopLevelName(method.getDeclaringType());
+            final Map<Object, Integer> anchorIndices = new IdentityHashMap<>();
+
+            for (int i = 0; i < anchors.size(); i++) {
+                if (anchors.get(i) != null && !anchorIndices.containsKey(anchors.get(i))) {
+                    anchorIndices.put(anchors.get(i), i);
+                }
+            }
+
+            //
+            // Variables are mutable, so the template gets its own copies.  Their fields still point at
+            // the original metadata, which is what the bindings are keyed on.
+            //
+            final BlockStatement template = (BlockStatement) body.clone();
+            final Map<Object, Object> variableCopies = new IdentityHashMap<>();
+            final Map<Object, Binding> bindings = new IdentityHashMap<>();
+
+            for (final AstNode node : template.getDescendantsAndSelf()) {
+                if (node instanceof TypeDeclaration ||
+                    node instanceof AnonymousObjectCreationExpression) {
+
+                    return null;
+                }
+
+                for (final Key<?> key : Keys.ALL_KEYS) {
+                    final Object value = node.getUserData(key);
+
+                    if (value == null) {
+                        continue;
+                    }
+
+                    if (value instanceof Variable) {
+                        final Variable variable = (Variable) value;
+
+                        if (!addBinding(variable.getType(), bindings, anchorIndices, topLevelName) ||
+                            !addBinding(variable.getOriginalVariable(), bindings, anchorIndices, topLevelName) ||
+                            !addBinding(variable.getOriginalParameter(), bindings, anchorIndices, topLevelName)) {
+
+                            return null;
+                        }
+
+                        Object copy = variableCopies.get(variable);
+
+                        if (copy == null) {
+                            final Variable newVariable = copyVariable(variable);
+
+                            newVariable.setType(variable.getType());
+                            newVariable.setOriginalVariable(variable.getOriginalVariable());
+                            newVariable.setOriginalParameter(variable.getOriginalParameter());
+
+                            variableCopies.put(variable, copy = newVariable);
+                        }
+
+                        putUserData(node, key, copy);
+                    }
+                    else if (!addBinding(value, bindings, anchorIndices, topLevelName)) {
+                        return null;
+                    }
+                }
+            }
+
+            final List<String> parameterNames = new ArrayList<>();
+
+            for (final ParameterDeclaration parameter : parameters) {
+                parameterNames.add(parameter.getName());
+            }
+
+            return new Entry(
+                template,
+                bindings,
+                parameterNames.toArray(new String[parameterNames.size()]),
+                typeConversions
+            );
+        }
+
+        BlockStatement tryReuse(
+            final AstBuilder astBuilder,
+            final MethodDefinition method,
+            final List<Object> anchors,
+            final Iterable<ParameterDeclaration> parameters) {
+
+            final List<ParameterDeclaration> parameterList = new ArrayList<>();
+
+            for (final ParameterDeclaration parameter : parameters) {
+                parameterList.add(parameter);
+            }
+
+            if (parameterList.size() != _parameterNames.length) {
+                return null;
+            }
+
+            final IMetadataResolver resolver = method.getDeclaringType().getResolver();
+            final BlockStatement body = (BlockStatement) _template.clone();
+            final Map<Object, Object> bound = new IdentityHashMap<>();
+
+            for (final AstNode node : body.getDescendantsAndSelf()) {
+                for (final Key<?> key : Keys.ALL_KEYS) {
+                    final Object value = node.getUserData(key);
+
+                    if (value == null) {
+                        continue;
+                    }
+
+                    final Object newValue = rebind(value, bound, anchors, resolver);
+
+                    if (newValue == null) {
+                        return null;
+                    }
+
+                    if (newValue != value) {
+                        putUserData(node, key, newValue);
+                    }
+                }
+            }
+
+            //
+            // Replaying the type conversions has the same effect on the compilation unit's imports as
+            // building the body would.  Check that every cached type name is still valid before any
+            // imports are added, so a rejected body leaves the compilation unit untouched.
+            //
+            if (!replayTypeConversions(astBuilder, true) || !replayTypeConversions(astBuilder, false)) {
+                return null;
+            }
+
+            for (int i = 0; i < _parameterNames.length; i++) {
+                parameterList.get(i).setName(_parameterNames[i]);
+            }
+
+            return body;
+        }
+
+        private boolean replayTypeConversions(final AstBuilder astBuilder, final boolean preview) {
+            final Map<String, String> oldPreview = astBuilder.setImportPreview(preview ? new HashMap<String, String>() : null);
+            final List<TypeConversion> oldLog = preview ? astBuilder.setTypeConversionLog(null) : null;
+
+            try {
+                for (final TypeConversion conversion : _typeConversions) {
+                    final AstType result = astBuilder.convertType(conversion.type, copyOptions(conversion.options));
+
+                    if (!result.matches(conversion.result)) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+            finally {
+                astBuilder.setImportPreview(oldPreview);
+
+                if (preview) {
+                    astBuilder.setTypeConversionLog(oldLog);
+                }
+            }
+        }
+
+        private Object rebind(
+            final Object value,
+            final Map<Object, Object> bound,
+            final List<Object> anchors,
+            final IMetadataResolver resolver) {
+
+            if (value == null) {
+                return null;
+            }
+
+            final Object existing = bound.get(value);
+
+            if (existing != null) {
+                return existing;
+            }
+
+            final Object result;
+
+            if (value instanceof Variable) {
+                final Variable variable = (Variable) value;
+                final Variable newVariable = copyVariable(variable);
+
+                if (variable.getType() != null) {
+                    final Object type = rebind(variable.getType(), bound, anchors, resolver);
+
+                    if (!(type instanceof TypeReference)) {
+                        return null;
+                    }
+
+                    newVariable.setType((TypeReference) type);
+                }
+
+                if (variable.getOriginalVariable() != null) {
+                    final Object originalVariable = rebind(variable.getOriginalVariable(), bound, anchors, resolver);
+
+                    if (!(originalVariable instanceof VariableDefinition)) {
+                        return null;
+                    }
+
+                    newVariable.setOriginalVariable((VariableDefinition) originalVariable);
+                }
+
+                if (variable.getOriginalParameter() != null) {
+                    final Object originalParameter = rebind(variable.getOriginalParameter(), bound, anchors, resolver);
+
+                    if (!(originalParameter instanceof ParameterDefinition)) {
+                        return null;
+                    }
+
+                    newVariable.setOriginalParameter((ParameterDefinition) originalParameter);
+                }
+
+                result = newVariable;
+            }
+            else {
+                final Binding binding = _bindings.get(value);
+
+                if (binding == null) {
+                    return null;
+                }
+
+                result = binding.bind(value, anchors, resolver);
+            }
+
+            if (result != null) {
+                bound.put(value, result);
+            }
+
+            return result;
+        }
+
+        private static boolean addBinding(
+            final Object value,
+            final Map<Object, Binding> bindings,
+            final Map<Object, Integer> anchorIndices,
+            final String topLevelName) {
+
+            if (value == null || bindings.containsKey(value)) {
+                return true;
+            }
+
+            final Binding binding = createBinding(value, anchorIndices, topLevelName);
+
+            if (binding == null) {
+                return false;
+            }
+
+            bindings.put(value, binding);
+            return true;
+        }
+
+        private static Binding createBinding(
+            final Object value,
+            final Map<Object, Integer> anchorIndices,
+            final String topLevelName) {
+
+            final Integer anchorIndex = anchorIndices.get(value);
+
+            if (anchorIndex != null) {
+                return new AnchorBinding(anchorIndex);
+            }
+
+            if (value instanceof VariableDefinition) {
+                return createVariableBinding((VariableDefinition) value, anchorIndices, topLevelName);
+            }
+
+            if (value instanceof ParameterReference ||
+                value instanceof VariableReference ||
+                value instanceof DynamicCallSite) {
+
+                //
+                // These belong to a particular method body; if we can't find them among the anchors, we
+                // have no way to rebind them.
+                //
+                return null;
+            }
+
+            if (value instanceof TypeReference) {
+                return createTypeBinding((TypeReference) value, anchorIndices, topLevelName);
+            }
+
+            if (!(value instanceof MethodReference || value instanceof FieldReference)) {
+                return KeepBinding.INSTANCE;
+            }
+
+            final MemberReference member = (MemberReference) value;
+            final TypeReference declaringType = member.getDeclaringType();
+            final Binding declaringTypeBinding = declaringType != null ? createTypeBinding(declaringType, anchorIndices, topLevelName)
+                                                                       : KeepBinding.INSTANCE;
+
+            if (declaringTypeBinding == null) {
+                return null;
+            }
+
+            final boolean isSpecialized = member instanceof IGenericInstance ||
+                                          declaringType instanceof IGenericInstance ||
+                                          declaringType != null && declaringType.isArray();
+
+            if (!isSpecialized) {
+                if (declaringTypeBinding == KeepBinding.INSTANCE) {
+                    //
+                    // References outside the compilation unit are only used for their names and signatures,
+                    // and those are covered by the cache key.
+                    //
+                    return KeepBinding.INSTANCE;
+                }
+
+                return new MemberBinding(
+                    declaringType.getInternalName(),
+                    member.getName(),
+                    member.getErasedSignature(),
+                    member instanceof FieldReference
+                );
+            }
+
+            if (declaringTypeBinding == KeepBinding.INSTANCE && !(member instanceof IGenericInstance)) {
+                //
+                // Specialized only through a declaring type which involves nothing from the compilation
+                // unit (e.g., `int[].length` or `List<String>.add`), so it is unaffected by a rebuild.
+                //
+                return KeepBinding.INSTANCE;
+            }
+
+            if (member instanceof IGenericInstance && !isSpecializedByDeclaringTypeOnly(member)) {
+                //
+                // Reconstructing a generic method instance (or a raw view of one) would mean substituting
+                // method and class type arguments separately, which `asMemberOf` does not do.  Keep the
+                // ones that involve nothing from the compilation unit, and don't cache the rest.
+                //
+                if (declaringTypeBinding != KeepBinding.INSTANCE) {
+                    return null;
+                }
+
+                for (final TypeReference typeArgument : ((IGenericInstance) member).getTypeArguments()) {
+                    if (createTypeBinding(typeArgument, anchorIndices, topLevelName) != KeepBinding.INSTANCE) {
+                        return null;
+                    }
+                }
+
+                return KeepBinding.INSTANCE;
+            }
+
+            //
+            // A member specialized for some generic instance; rebind its definition and declaring type,
+            // then specialize it again.
+            //
+            final Object definition = SpecializedMemberBinding.getDefinition(member);
+
+            if (definition == null || definition == member) {
+                return null;
+            }
+
+            final Binding definitionBinding = createBinding(definition, anchorIndices, topLevelName);
+
+            if (definitionBinding == null) {
+                return null;
+            }
+
+            if (definitionBinding == KeepBinding.INSTANCE && declaringTypeBinding == KeepBinding.INSTANCE) {
+                return KeepBinding.INSTANCE;
+            }
+
+            return new SpecializedMemberBinding(definitionBinding, declaringTypeBinding);
+        }
+
+        private static boolean isSpecializedByDeclaringTypeOnly(final MemberReference member) {
+            if (member instanceof RawMethod || !(member instanceof MethodReference && member instanceof IGenericInstance)) {
+                return false;
+            }
+
+            final IGenericInstance instance = (IGenericInstance) member;
+            final IGenericParameterProvider definition = instance.getGenericDefinition();
+
+            return !instance.hasTypeArguments() &&
+                   definition instanceof MethodReference &&
+                   !((MethodReference) definition).isGenericMethod();
+        }
+
+        private static Binding createVariableBinding(
+            final VariableDefinition variable,
+            final Map<Object, Integer> anchorIndices,
+            final String topLevelName) {
+
+            //
+            // Definitions for variables without debug information are created while the body is built,
+            // so the new body gets its own copies.
+            //
+            final Binding methodBinding = createBinding(variable.getDeclaringMethod(), anchorIndices, topLevelName);
+
+            final Binding typeBinding = variable.getVariableType() != null
+                                        ? createTypeBinding(variable.getVariableType(), anchorIndices, topLevelName)
+                                        : KeepBinding.INSTANCE;
+
+            final Binding parameterBinding = variable.getParameter() != null
+                                             ? createBinding(variable.getParameter(), anchorIndices, topLevelName)
+                                             : KeepBinding.INSTANCE;
+
+            if (methodBinding == null || typeBinding == null || parameterBinding == null) {
+                return null;
+            }
+
+            return new VariableBinding(methodBinding, typeBinding, parameterBinding);
+        }
+
+        private static Binding createTypeBinding(
+            final TypeReference type,
+            final Map<Object, Integer> anchorIndices,
+            final String topLevelName) {
+
+            final Integer anchorIndex = anchorIndices.get(type);
+
+            if (anchorIndex != null) {
+                return new AnchorBinding(anchorIndex);
+            }
+
+            if (type.isArray()) {
+                final Binding elementBinding = createTypeBinding(type.getElementType(), anchorIndices, topLevelName);
+
+                if (elementBinding == null || elementBinding == KeepBinding.INSTANCE) {
+                    return elementBinding;
+                }
+
+                return new ArrayTypeBinding(elementBinding);
+            }
+
+            if (type instanceof RawType) {
+                final Binding underlyingBinding = createTypeBinding(type.getUnderlyingType(), anchorIndices, topLevelName);
+
+                if (underlyingBinding == null || underlyingBinding == KeepBinding.INSTANCE) {
+                    return underlyingBinding;
+                }
+
+                return new RawTypeBinding(underlyingBinding);
+            }
+
+            if (type.isGenericParameter()) {
+                final IGenericParameterProvider owner = ((GenericParameter) type).getOwner();
+                final Binding ownerBinding;
+
+                if (owner instanceof TypeReference) {
+                    ownerBinding = createTypeBinding((TypeReference) owner, anchorIndices, topLevelName);
+                }
+                else if (owner instanceof MethodReference) {
+                    ownerBinding = createBinding(owner, anchorIndices, topLevelName);
+                }
+                else {
+                    ownerBinding = KeepBinding.INSTANCE;
+                }
+
+                if (ownerBinding == null || ownerBinding == KeepBinding.INSTANCE) {
+                    return ownerBinding;
+                }
+
+                return new GenericParameterBinding(ownerBinding, ((GenericParameter) type).getPosition());
+            }
+
+            if (type.isWildcardType()) {
+                final boolean isSuper = type.hasSuperBound();
+
+                if (!isSuper && !type.hasExtendsBound()) {
+                    return KeepBinding.INSTANCE;
+                }
+
+                final Binding boundBinding = createTypeBinding(
+                    isSuper ? type.getSuperBound() : type.getExtendsBound(),
+                    anchorIndices,
+                    topLevelName
+                );
+
+                if (boundBinding == null || boundBinding == KeepBinding.INSTANCE) {
+                    return boundBinding;
+                }
+
+                return new WildcardBinding(boundBinding, isSuper);
+            }
+
+            if (type instanceof IGenericInstance) {
+                final IGenericInstance instance = (IGenericInstance) type;
+                final List<TypeReference> typeArguments = instance.getTypeArguments();
+
+                if (!(instance.getGenericDefinition() instanceof TypeReference)) {
+                    return null;
+                }
+
+                final Binding definitionBinding = createTypeBinding(
+                    (TypeReference) instance.getGenericDefinition(),
+                    anchorIndices,
+                    topLevelName
+                );
+
+                if (definitionBinding == null) {
+                    return null;
+                }
+
+                final Binding[] argumentBindings = new Binding[typeArguments.size()];
+                boolean keep = definitionBinding == KeepBinding.INSTANCE;
+
+                for (int i = 0; i < argumentBindings.length; i++) {
+                    argumentBindings[i] = createTypeBinding(typeArguments.get(i), anchorIndices, topLevelName);
+
+                    if (argumentBindings[i] == null) {
+                        return null;
+                    }
+
+                    keep &= argumentBindings[i] == KeepBinding.INSTANCE;
+                }
+
+                return keep ? KeepBinding.INSTANCE
+                            : new GenericInstanceBinding(definitionBinding, argumentBindings);
+            }
+
+            if (type.isCompoundType() ||
+                type.isPrimitive() ||
+                !isWithinCompilationUnit(type.getInternalName(), topLevelName)) {
+
+                return KeepBinding.INSTANCE;
+            }
+
+            return new TypeBinding(type.getInternalName());
+        }
+
+        private static Variable copyVariable(final Variable variable) {
+            final Variable copy = new Variable();
+
+            copy.setName(variable.getName());
+            copy.setGenerated(variable.isGenerated());
+            copy.setLambdaParameter(variable.isLambdaParameter());
+
+            return copy;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> void putUserData(final AstNode node, final Key<T> key, final Object value) {
+            node.putUserData(key, (T) value);
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Binding Classes">
+
+    private static abstract class Binding {
+        abstract Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver);
+    }
+
+    private final static class KeepBinding extends Binding {
+        final static KeepBinding INSTANCE = new KeepBinding();
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            return value;
+        }
+    }
+
+    private final static class AnchorBinding extends Binding {
+        private final int _index;
+
+        AnchorBinding(final int index) {
+            _index = index;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            return _index < anchors.size() ? anchors.get(_index) : null;
+        }
+    }
+
+    private final static class TypeBinding extends Binding {
+        private final String _internalName;
+
+        TypeBinding(final String internalName) {
+            _internalName = internalName;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            final TypeReference type = resolver.lookupType(_internalName);
+            return type != null ? type.resolve() : null;
+        }
+    }
+
+    private final static class ArrayTypeBinding extends Binding {
+        private final Binding _elementBinding;
+
+        ArrayTypeBinding(final Binding elementBinding) {
+            _elementBinding = elementBinding;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            final Object elementType = _elementBinding.bind(((TypeReference) value).getElementType(), anchors, resolver);
+            return elementType instanceof TypeReference ? ((TypeReference) elementType).makeArrayType() : null;
+        }
+    }
+
+    private final static class RawTypeBinding extends Binding {
+        private final Binding _underlyingBinding;
+
+        RawTypeBinding(final Binding underlyingBinding) {
+            _underlyingBinding = underlyingBinding;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            final Object underlyingType = _underlyingBinding.bind(((TypeReference) value).getUnderlyingType(), anchors, resolver);
+            return underlyingType instanceof TypeReference ? new RawType((TypeReference) underlyingType) : null;
+        }
+    }
+
+    private final static class WildcardBinding extends Binding {
+        private final Binding _boundBinding;
+        private final boolean _isSuper;
+
+        WildcardBinding(final Binding boundBinding, final boolean isSuper) {
+            _boundBinding = boundBinding;
+            _isSuper = isSuper;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            final TypeReference wildcard = (TypeReference) value;
+            final Object bound = _boundBinding.bind(_isSuper ? wildcard.getSuperBound() : wildcard.getExtendsBound(), anchors, resolver);
+
+            if (!(bound instanceof TypeReference)) {
+                return null;
+            }
+
+            return _isSuper ? com.strobel.assembler.metadata.WildcardType.makeSuper((TypeReference) bound)
+                            : com.strobel.assembler.metadata.WildcardType.makeExtends((TypeReference) bound);
+        }
+    }
+
+    private final static class GenericInstanceBinding extends Binding {
+        private final Binding _definitionBinding;
+        private final Binding[] _argumentBindings;
+
+        GenericInstanceBinding(final Binding definitionBinding, final Binding[] argumentBindings) {
+            _definitionBinding = definitionBinding;
+            _argumentBindings = argumentBindings;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            final IGenericInstance instance = (IGenericInstance) value;
+            final Object definition = _definitionBinding.bind(instance.getGenericDefinition(), anchors, resolver);
+
+            if (!(definition instanceof TypeReference) || !((TypeReference) definition).isGenericDefinition()) {
+                return null;
+            }
+
+            final List<TypeReference> typeArguments = instance.getTypeArguments();
+            final TypeReference[] newTypeArguments = new TypeReference[_argumentBindings.length];
+
+            for (int i = 0; i < newTypeArguments.length; i++) {
+                final Object typeArgument = _argumentBindings[i].bind(typeArguments.get(i), anchors, resolver);
+
+                if (!(typeArgument instanceof TypeReference)) {
+                    return null;
+                }
+
+                newTypeArguments[i] = (TypeReference) typeArgument;
+            }
+
+            return ((TypeReference) definition).makeGenericType(newTypeArguments);
+        }
+    }
+
+    private final static class GenericParameterBinding extends Binding {
+        private final Binding _ownerBinding;
+        private final int _position;
+
+        GenericParameterBinding(final Binding ownerBinding, final int position) {
+            _ownerBinding = ownerBinding;
+            _position = position;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            Object owner = _ownerBinding.bind(((GenericParameter) value).getOwner(), anchors, resolver);
+
+            if (owner instanceof MethodReference) {
+                owner = ((MethodReference) owner).resolve();
+            }
+            else if (owner instanceof TypeReference) {
+                owner = ((TypeReference) owner).resolve();
+            }
+
+            if (!(owner instanceof IGenericParameterProvider)) {
+                return null;
+            }
+
+            final List<GenericParameter> genericParameters = ((IGenericParameterProvider) owner).getGenericParameters();
+
+            return _position < genericParameters.size() ? genericParameters.get(_position) : null;
+        }
+    }
+
+    private final static class VariableBinding extends Binding {
+        private final Binding _methodBinding;
+        private final Binding _typeBinding;
+        private final Binding _parameterBinding;
+
+        VariableBinding(final Binding methodBinding, final Binding typeBinding, final Binding parameterBinding) {
+            _methodBinding = methodBinding;
+            _typeBinding = typeBinding;
+            _parameterBinding = parameterBinding;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            final VariableDefinition variable = (VariableDefinition) value;
+            final Object method = _methodBinding.bind(variable.getDeclaringMethod(), anchors, resolver);
+            final Object type = _typeBinding.bind(variable.getVariableType(), anchors, resolver);
+            final Object parameter = _parameterBinding.bind(variable.getParameter(), anchors, resolver);
+
+            if (!(method instanceof MethodDefinition) ||
+                type == null && variable.getVariableType() != null ||
+                parameter == null && variable.getParameter() != null) {
+
+                return null;
+            }
+
+            final VariableDefinition newVariable = new VariableDefinition(
+                variable.getSlot(),
+                variable.getName(),
+                (MethodDefinition) method,
+                (TypeReference) type
+            );
+
+            newVariable.setScopeStart(variable.getScopeStart());
+            newVariable.setScopeEnd(variable.getScopeEnd());
+            newVariable.setTypeKnown(variable.isTypeKnown());
+            newVariable.setFromMetadata(variable.isFromMetadata());
+            newVariable.setParameter((ParameterDefinition) parameter);
+
+            return newVariable;
+        }
+    }
+
+    private final static class SpecializedMemberBinding extends Binding {
+        private final Binding _definitionBinding;
+        private final Binding _declaringTypeBinding;
+
+        SpecializedMemberBinding(final Binding definitionBinding, final Binding declaringTypeBinding) {
+            _definitionBinding = definitionBinding;
+            _declaringTypeBinding = declaringTypeBinding;
+        }
+
+        static Object getDefinition(final MemberReference member) {
+            if (member instanceof IGenericInstance) {
+                return ((IGenericInstance) member).getGenericDefinition();
+            }
+
+            if (member instanceof MethodReference) {
+                return ((MethodReference) member).resolve();
+            }
+
+            if (member instanceof FieldReference) {
+                return ((FieldReference) member).resolve();
+            }
+
+            return null;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            final MemberReference member = (MemberReference) value;
+            final Object definition = _definitionBinding.bind(getDefinition(member), anchors, resolver);
+            final Object declaringType = _declaringTypeBinding.bind(member.getDeclaringType(), anchors, resolver);
+
+            if (!(declaringType instanceof TypeReference)) {
+                return null;
+            }
+
+            final MemberReference result;
+
+            if (member instanceof MethodReference && definition instanceof MethodReference) {
+                result = MetadataHelper.asMemberOf((MethodReference) definition, (TypeReference) declaringType);
+            }
+            else if (member instanceof FieldReference && definition instanceof FieldReference) {
+                result = MetadataHelper.asMemberOf((FieldReference) definition, (TypeReference) declaringType);
+            }
+            else {
+                return null;
+            }
+
+            //
+            // Only accept the result if specializing the new definition reproduced the original member.
+            //
+            if (result == null ||
+                result.getDeclaringType() == null ||
+                !StringUtilities.equals(result.getSignature(), member.getSignature()) ||
+                !StringUtilities.equals(result.getDeclaringType().getSignature(), member.getDeclaringType().getSignature())) {
+
+                return null;
+            }
+
+            return result;
+        }
+    }
+
+    private final static class MemberBinding extends Binding {
+        private final String _declaringTypeName;
+        private final String _name;
+        private final String _erasedSignature;
+        private final boolean _isField;
+
+        MemberBinding(final String declaringTypeName, final String name, final String erasedSignature, final boolean isField) {
+            _declaringTypeName = declaringTypeName;
+            _name = name;
+            _erasedSignature = erasedSignature;
+            _isField = isField;
+        }
+
+        @Override
+        Object bind(final Object value, final List<Object> anchors, final IMetadataResolver resolver) {
+            final TypeReference type = resolver.lookupType(_declaringTypeName);
+            final TypeDefinition resolvedType = type != null ? type.resolve() : null;
+
+            if (resolvedType == null) {
+                return null;
+            }
+
+            final List<? extends MemberReference> members = _isField ? resolvedType.getDeclaredFields()
+                                                                      : resolvedType.getDeclaredMethods();
+
+            for (final MemberReference member : members) {
+                if (StringUtilities.equals(member.getName(), _name) &&
+                    StringUtilities.equals(member.getErasedSignature(), _erasedSignature)) {
+
+                    return member;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    // </editor-fold>
+}
@@ -35,11 +35,11 @@ public class AssertStatementTransform extends ContextTrackingVisitor<Void> {
         super(context);
     }
 
-    private final static IfElseStatement ASSERT_PATTERN;
-    private final static AssignmentExpression ASSERTIONS_DISABLED_PATTERN;
+    private final static CompiledPattern ASSERT_PATTERN;
+    private final static CompiledPattern ASSERTIONS_DISABLED_PATTERN;
 
     static {
-        ASSERT_PATTERN = new IfElseStatement(
+        ASSERT_PATTERN = CompiledPattern.compile(new IfElseStatement(
             Expression.MYSTERY_OFFSET,
             new Choice(
                 new UnaryOperatorExpression(
@@ -85,9 +85,9 @@ public class AssertStatementTransform extends ContextTrackingVisitor<Void> {
                     )
                 )
             )
-        );
+        ));
 
-        ASSERTIONS_DISABLED_PATTERN = new AssignmentExpression(
+        ASSERTIONS_DISABLED_PATTERN = CompiledPattern.compile(new AssignmentExpression(
             new NamedNode(
                 "$assertionsDisabled",
                 new Choice(
@@ -112,7 +112,7 @@ public class AssertStatementTransform extends ContextTrackingVisitor<Void> {
                     )
                 )
             )
-        );
+        ));
     }
 
     @Override
@@ -34,6 +34,7 @@ import com.strobel.decompiler.languages.java.ast.*;
 import com.strobel.decompiler.patterns.AnyNode;
 import com.strobel.decompiler.patterns.BackReference;
 import com.strobel.decompiler.patterns.Choice;
+import com.strobel.decompiler.patterns.CompiledPattern;
 import com.strobel.decompiler.patterns.Match;
 import com.strobel.decompiler.patterns.NamedNode;
 import com.strobel.decompiler.patterns.Pattern;
@@ -504,18 +505,18 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
 
     // <editor-fold defaultstate="collapsed" desc="For Each Loop Transform (Arrays)">
 
-    private final static ExpressionStatement ARRAY_INIT_PATTERN;
-    private final static ForStatement FOR_ARRAY_PATTERN_1;
-    private final static ForStatement FOR_ARRAY_PATTERN_2;
-    private final static ForStatement FOR_ARRAY_PATTERN_3;
+    private final static CompiledPattern ARRAY_INIT_PATTERN;
+    private final static CompiledPattern FOR_ARRAY_PATTERN_1;
+    private final static CompiledPattern FOR_ARRAY_PATTERN_2;
+    private final static CompiledPattern FOR_ARRAY_PATTERN_3;
 
     static {
-        ARRAY_INIT_PATTERN = new ExpressionStatement(
+        ARRAY_INIT_PATTERN = CompiledPattern.compile(new ExpressionStatement(
             new AssignmentExpression(
                 new NamedNode("array", new IdentifierExpression( Expression.MYSTERY_OFFSET, Pattern.ANY_STRING)).toExpression(),
                 new AnyNode("initializer").toExpression()
             )
-        );
+        ));
 
         final ForStatement forArrayPattern1 = new ForStatement( Expression.MYSTERY_OFFSET);
         final VariableDeclarationStatement declaration1 = new VariableDeclarationStatement();
@@ -584,7 +585,7 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
 
         forArrayPattern1.setEmbeddedStatement(embeddedStatement1);
 
-        FOR_ARRAY_PATTERN_1 = forArrayPattern1;
+        FOR_ARRAY_PATTERN_1 = CompiledPattern.compile(forArrayPattern1);
 
         final ForStatement forArrayPattern2 = new ForStatement( Expression.MYSTERY_OFFSET);
         final VariableDeclarationStatement declaration2 = new VariableDeclarationStatement();
@@ -646,7 +647,7 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
 
         forArrayPattern2.setEmbeddedStatement(embeddedStatement2);
 
-        FOR_ARRAY_PATTERN_2 = forArrayPattern2;
+        FOR_ARRAY_PATTERN_2 = CompiledPattern.compile(forArrayPattern2);
 
         final ForStatement altForArrayPattern = new ForStatement( Expression.MYSTERY_OFFSET);
 
@@ -711,7 +712,7 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
 
         altForArrayPattern.setEmbeddedStatement(altEmbeddedStatement);
 
-        FOR_ARRAY_PATTERN_3 = altForArrayPattern;
+        FOR_ARRAY_PATTERN_3 = CompiledPattern.compile(altForArrayPattern);
     }
 
     public final ForEachStatement transformForEachInArray(final ForStatement loop) {
@@ -903,16 +904,16 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
 
     // <editor-fold defaultstate="collapsed" desc="For Each Loop Transform (Iterables)">
 
-    private final static ExpressionStatement GET_ITERATOR_PATTERN;
-    private final static WhileStatement FOR_EACH_PATTERN;
+    private final static CompiledPattern GET_ITERATOR_PATTERN;
+    private final static CompiledPattern FOR_EACH_PATTERN;
 
     static {
-        GET_ITERATOR_PATTERN = new ExpressionStatement(
+        GET_ITERATOR_PATTERN = CompiledPattern.compile(new ExpressionStatement(
             new AssignmentExpression(
                 new NamedNode("left", new AnyNode()).toExpression(),
                 new AnyNode("collection").toExpression().invoke("iterator")
             )
-        );
+        ));
 
         final WhileStatement forEachPattern = new WhileStatement(Expression.MYSTERY_OFFSET);
 
@@ -970,7 +971,7 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
 
         forEachPattern.setEmbeddedStatement(embeddedStatement);
 
-        FOR_EACH_PATTERN = forEachPattern;
+        FOR_EACH_PATTERN = CompiledPattern.compile(forEachPattern);
     }
 
     public final ForEachStatement transformForEach(final ExpressionStatement node) {
@@ -1138,7 +1139,7 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
 
     // <editor-fold defaultstate="collapsed" desc="Do While Loop Transform">
 
-    private final static WhileStatement DO_WHILE_PATTERN;
+    private final static CompiledPattern DO_WHILE_PATTERN;
 
     static {
         final WhileStatement doWhile = new WhileStatement(Expression.MYSTERY_OFFSET);
@@ -1165,7 +1166,7 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
             ).toBlockStatement()
         );
 
-        DO_WHILE_PATTERN = doWhile;
+        DO_WHILE_PATTERN = CompiledPattern.compile(doWhile);
     }
 
     public final DoWhileStatement transformDoWhile(final WhileStatement loop) {
@@ -1301,7 +1302,7 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
 
     // <editor-fold defaultstate="collapsed" desc="Continue Outer Loop Transforms">
 
-    private final static WhileStatement CONTINUE_OUTER_PATTERN;
+    private final static CompiledPattern CONTINUE_OUTER_PATTERN;
 
     static {
         final WhileStatement continueOuter = new WhileStatement(Expression.MYSTERY_OFFSET);
@@ -1315,7 +1316,7 @@ public final class ConvertLoopsTransform extends ContextTrackingVisitor<AstNode>
             )
         );
 
-        CONTINUE_OUTER_PATTERN = continueOuter;
+        CONTINUE_OUTER_PATTERN = CompiledPattern.compile(continueOuter);
     }
 
     public final WhileStatement transformContinueOuter(final WhileStatement loop) {
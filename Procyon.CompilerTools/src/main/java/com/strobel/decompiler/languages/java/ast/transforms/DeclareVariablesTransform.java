@@ -32,6 +32,8 @@ import javax.lang.model.element.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,13 +54,15 @@ public class DeclareVariablesTransform implements IAstTransform {
     public void run(final AstNode node) {
         run(node, null);
 
+        final Set<VariableToDeclare> variablesNeedingInitializers = findVariablesNeedingInitializers();
+
         for (final VariableToDeclare v : variablesToDeclare) {
             final Variable variable = v.getVariable();
             final AssignmentExpression replacedAssignment = v.getReplacedAssignment();
 
             if (replacedAssignment == null) {
                 final BlockStatement block = (BlockStatement) v.getInsertionPoint().getParent();
-                final AnalysisResult analysisResult = analyze(v, block);
+                final boolean isSingleAssignment = isSingleAssignment(v, block);
                 final VariableDeclarationStatement declaration =
                         new VariableDeclarationStatement(v.getType().clone(), v.getName(), Expression.MYSTERY_OFFSET);
 
@@ -66,10 +70,10 @@ public class DeclareVariablesTransform implements IAstTransform {
                     declaration.getVariables().firstOrNullObject().putUserData(Keys.VARIABLE, variable);
                 }
 
-                if (analysisResult.isSingleAssignment) {
+                if (isSingleAssignment) {
                     declaration.addModifier(Modifier.FINAL);
                 }
-                else if (analysisResult.needsInitializer && variable != null) {
+                else if (variablesNeedingInitializers.contains(v) && variable != null) {
                     declaration.getVariables().firstOrNullObject().setInitializer(
                         AstBuilder.makeDefaultValue(variable.getType())
                     );
@@ -102,7 +106,7 @@ public class DeclareVariablesTransform implements IAstTransform {
                 if (parent.isNull() || parent.getParent() == null) {
                     continue;
                 }
-                final AnalysisResult analysisResult = analyze(v, parent.getParent());
+                final boolean isSingleAssignment = isSingleAssignment(v, parent.getParent());
 
                 right.remove();
                 right.putUserDataIfAbsent(Keys.MEMBER_REFERENCE, replacedAssignment.getUserData(Keys.MEMBER_REFERENCE));
@@ -117,7 +121,7 @@ public class DeclareVariablesTransform implements IAstTransform {
                 declaration.getVariables().add(initializer);
 
                 if (parent instanceof ExpressionStatement) {
-                    if (analysisResult.isSingleAssignment) {
+                    if (isSingleAssignment) {
                         declaration.addModifier(Modifier.FINAL);
                     }
 
@@ -126,7 +130,7 @@ public class DeclareVariablesTransform implements IAstTransform {
                     parent.replaceWith(declaration);
                 }
                 else {
-                    if (analysisResult.isSingleAssignment) {
+                    if (isSingleAssignment) {
                         declaration.addModifier(Modifier.FINAL);
                     }
 
@@ -138,37 +142,72 @@ public class DeclareVariablesTransform implements IAstTransform {
         variablesToDeclare.clear();
     }
 
-    private AnalysisResult analyze(final VariableToDeclare v, final AstNode scope) {
-        final BlockStatement block = v.getBlock();
-        final DefiniteAssignmentAnalysis analysis = new DefiniteAssignmentAnalysis(context, block);
+    private Set<VariableToDeclare> findVariablesNeedingInitializers() {
+        //
+        // Group the variables to be inserted by block and insertion point.  Each block's control flow
+        // graph is built only once, and variables sharing an insertion point are analyzed together.
+        // Inserting declarations without initializers does not affect definite assignment, so the
+        // analysis may be done up front.
+        //
 
-        if (v.getInsertionPoint() != null) {
-            final Statement parentStatement = v.getInsertionPoint();
-            analysis.setAnalyzedRange(parentStatement, block);
-        }
-        else {
-            final ExpressionStatement parentStatement = (ExpressionStatement) v.getReplacedAssignment().getParent();
-            analysis.setAnalyzedRange(parentStatement, block);
+        final Map<BlockStatement, Map<Statement, List<VariableToDeclare>>> groups = new IdentityHashMap<>();
+        final Set<VariableToDeclare> result = new HashSet<>();
+
+        for (final VariableToDeclare v : variablesToDeclare) {
+            if (v.getReplacedAssignment() != null) {
+                continue;
+            }
+
+            Map<Statement, List<VariableToDeclare>> blockGroups = groups.get(v.getBlock());
+
+            if (blockGroups == null) {
+                groups.put(v.getBlock(), blockGroups = new LinkedHashMap<>());
+            }
+
+            List<VariableToDeclare> group = blockGroups.get(v.getInsertionPoint());
+
+            if (group == null) {
+                blockGroups.put(v.getInsertionPoint(), group = new ArrayList<>());
+            }
+
+            group.add(v);
         }
 
-        analysis.analyze(v.getName());
+        for (final Map.Entry<BlockStatement, Map<Statement, List<VariableToDeclare>>> entry : groups.entrySet()) {
+            final BlockStatement block = entry.getKey();
+            final DefiniteAssignmentAnalysis analysis = new DefiniteAssignmentAnalysis(context, block);
 
-        final boolean needsInitializer = !analysis.getUnassignedVariableUses().isEmpty();
-        final IsSingleAssignmentVisitor isSingleAssignmentVisitor = new IsSingleAssignmentVisitor(v.getName(), v.getReplacedAssignment());
+            for (final Map.Entry<Statement, List<VariableToDeclare>> blockEntry : entry.getValue().entrySet()) {
+                final List<VariableToDeclare> group = blockEntry.getValue();
 
-        scope.acceptVisitor(isSingleAssignmentVisitor, null);
+                final List<String> names = new ArrayList<>();
 
-        return new AnalysisResult(isSingleAssignmentVisitor.isSingleAssignment(), needsInitializer);
-    }
+                for (final VariableToDeclare v : group) {
+                    names.add(v.getName());
+                }
+
+                analysis.setAnalyzedRange(blockEntry.getKey(), block);
+                analysis.analyzeAll(names);
 
-    private final static class AnalysisResult {
-        final boolean isSingleAssignment;
-        final boolean needsInitializer;
+                for (final VariableToDeclare v : group) {
+                    analysis.analyze(v.getName());
 
-        private AnalysisResult(final boolean singleAssignment, final boolean needsInitializer) {
-            isSingleAssignment = singleAssignment;
-            this.needsInitializer = needsInitializer;
+                    if (!analysis.getUnassignedVariableUses().isEmpty()) {
+                        result.add(v);
+                    }
+                }
+            }
         }
+
+        return result;
+    }
+
+    private boolean isSingleAssignment(final VariableToDeclare v, final AstNode scope) {
+        final IsSingleAssignmentVisitor isSingleAssignmentVisitor = new IsSingleAssignmentVisitor(v.getName(), v.getReplacedAssignment());
+
+        scope.acceptVisitor(isSingleAssignmentVisitor, null);
+
+        return isSingleAssignmentVisitor.isSingleAssignment();
     }
 
     private void run(final AstNode node, final DefiniteAssignmentAnalysis daa) {
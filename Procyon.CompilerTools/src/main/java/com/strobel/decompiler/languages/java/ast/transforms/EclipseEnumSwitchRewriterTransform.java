@@ -311,8 +311,8 @@ public class EclipseEnumSwitchRewriterTransform implements IAstTransform {
             return field.getFullName() + ":" + field.getErasedSignature();
         }
 
-        private final static INode SWITCH_INPUT;
-        private final static INode SWITCH_TABLE_METHOD_BODY;
+        private final static CompiledPattern SWITCH_INPUT;
+        private final static CompiledPattern SWITCH_TABLE_METHOD_BODY;
 
         static {
             final SimpleType intType = new SimpleType("int");
@@ -438,9 +438,9 @@ public class EclipseEnumSwitchRewriterTransform implements IAstTransform {
 
             body.add(new ReturnStatement(Expression.MYSTERY_OFFSET, new DeclaredVariableBackReference("v2").toExpression()));
 
-            SWITCH_TABLE_METHOD_BODY = body;
+            SWITCH_TABLE_METHOD_BODY = CompiledPattern.compile(body);
 
-            SWITCH_INPUT = new IndexerExpression( Expression.MYSTERY_OFFSET,
+            SWITCH_INPUT = CompiledPattern.compile(new IndexerExpression( Expression.MYSTERY_OFFSET,
                 new NamedNode(
                     "switchMapMethodCall",
                     new InvocationExpression(
@@ -462,7 +462,7 @@ public class EclipseEnumSwitchRewriterTransform implements IAstTransform {
                         )
                     )
                 ).toExpression()
-            );
+            ));
         }
     }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.*;
 import com.strobel.decompiler.patterns.AnyNode;
 import com.strobel.decompiler.patterns.Choice;
+import com.strobel.decompiler.patterns.CompiledPattern;
 import com.strobel.decompiler.patterns.Match;
 import com.strobel.decompiler.patterns.NamedNode;
 import com.strobel.decompiler.patterns.Pattern;
@@ -40,11 +41,11 @@ public class EclipseStringSwitchRewriterTransform extends ContextTrackingVisitor
 
     // <editor-fold defaultstate="collapsed" desc="Patterns">
 
-    private final static Pattern HASH_CODE_PATTERN;
-    private final static BlockStatement CASE_BODY_PATTERN;
+    private final static CompiledPattern HASH_CODE_PATTERN;
+    private final static CompiledPattern CASE_BODY_PATTERN;
 
     static {
-        HASH_CODE_PATTERN = new NamedNode(
+        HASH_CODE_PATTERN = CompiledPattern.compile(new NamedNode(
             "hashCodeCall",
             new InvocationExpression(
                 Expression.MYSTERY_OFFSET,
@@ -54,7 +55,7 @@ public class EclipseStringSwitchRewriterTransform extends ContextTrackingVisitor
                     "hashCode"
                 )
             )
-        );
+        ));
 
         final BlockStatement caseBody = new BlockStatement();
 
@@ -85,7 +86,7 @@ public class EclipseStringSwitchRewriterTransform extends ContextTrackingVisitor
         caseBody.add(new NamedNode("test", test).toStatement());
         caseBody.add(new Repeat(new AnyNode("statements")).toStatement());
 
-        CASE_BODY_PATTERN = caseBody;
+        CASE_BODY_PATTERN = CompiledPattern.compile(caseBody);
     }
 
     // </editor-fold>
@@ -169,12 +169,12 @@ public class EliminateSyntheticAccessorsTransform extends ContextTrackingVisitor
 
     // <editor-fold defaultstate="collapsed" desc="PhaseOneVisitor Class">
 
-    private final static MethodDeclaration SYNTHETIC_GET_ACCESSOR;
-    private final static MethodDeclaration SYNTHETIC_SET_ACCESSOR;
-    private final static MethodDeclaration SYNTHETIC_SET_ACCESSOR_ALT;
-    private final static MethodDeclaration SYNTHETIC_STATIC_GET_ACCESSOR;
-    private final static MethodDeclaration SYNTHETIC_STATIC_SET_ACCESSOR;
-    private final static MethodDeclaration SYNTHETIC_STATIC_SET_ACCESSOR_ALT;
+    private final static CompiledPattern SYNTHETIC_GET_ACCESSOR;
+    private final static CompiledPattern SYNTHETIC_SET_ACCESSOR;
+    private final static CompiledPattern SYNTHETIC_SET_ACCESSOR_ALT;
+    private final static CompiledPattern SYNTHETIC_STATIC_GET_ACCESSOR;
+    private final static CompiledPattern SYNTHETIC_STATIC_SET_ACCESSOR;
+    private final static CompiledPattern SYNTHETIC_STATIC_SET_ACCESSOR_ALT;
 
     static {
         final MethodDeclaration getAccessor = new MethodDeclaration();
@@ -300,9 +300,9 @@ public class EliminateSyntheticAccessorsTransform extends ContextTrackingVisitor
             )
         );
 
-        SYNTHETIC_GET_ACCESSOR = getAccessor;
-        SYNTHETIC_SET_ACCESSOR = setAccessor;
-        SYNTHETIC_SET_ACCESSOR_ALT = altSetAccessor;
+        SYNTHETIC_GET_ACCESSOR = CompiledPattern.compile(getAccessor);
+        SYNTHETIC_SET_ACCESSOR = CompiledPattern.compile(setAccessor);
+        SYNTHETIC_SET_ACCESSOR_ALT = CompiledPattern.compile(altSetAccessor);
 
         final MethodDeclaration staticGetAccessor = (MethodDeclaration) getAccessor.clone();
         final MethodDeclaration staticSetAccessor = (MethodDeclaration) setAccessor.clone();
@@ -390,9 +390,9 @@ public class EliminateSyntheticAccessorsTransform extends ContextTrackingVisitor
             )
         );
 
-        SYNTHETIC_STATIC_GET_ACCESSOR = staticGetAccessor;
-        SYNTHETIC_STATIC_SET_ACCESSOR = staticSetAccessor;
-        SYNTHETIC_STATIC_SET_ACCESSOR_ALT = altStaticSetAccessor;
+        SYNTHETIC_STATIC_GET_ACCESSOR = CompiledPattern.compile(staticGetAccessor);
+        SYNTHETIC_STATIC_SET_ACCESSOR = CompiledPattern.compile(staticSetAccessor);
+        SYNTHETIC_STATIC_SET_ACCESSOR_ALT = CompiledPattern.compile(altStaticSetAccessor);
     }
 
     private class PhaseOneVisitor extends ContextTrackingVisitor<Void> {
@@ -0,0 +1,93 @@
+/*
+ * FusedTransform.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.languages.java.ast.transforms;
+
+import com.strobel.core.ArrayUtilities;
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.DecompilerContext;
+import com.strobel.decompiler.languages.java.ast.AstNode;
+import com.strobel.decompiler.languages.java.ast.ContextTrackingVisitor;
+
+import java.util.List;
+
+/**
+ * Runs a sequence of {@link NodeLocalTransform}s in a single depth-first traversal.  Each node is
+ * handed to every transform in turn, in pipeline order, once its children have been visited.
+ *
+ * @author Mike Strobel
+ */
+final class FusedTransform extends ContextTrackingVisitor<Void> {
+    private final NodeLocalTransform[] _transforms;
+
+    FusedTransform(final DecompilerContext context, final List<NodeLocalTransform> transforms) {
+        super(context);
+        _transforms = VerifyArgument.noNullElements(transforms, "transforms")
+                                    .toArray(new NodeLocalTransform[transforms.size()]);
+    }
+
+    public final List<NodeLocalTransform> getTransforms() {
+        return ArrayUtilities.asUnmodifiableList(_transforms);
+    }
+
+    @Override
+    public void run(final AstNode compilationUnit) {
+        for (final NodeLocalTransform transform : _transforms) {
+            transform.setFused(true);
+        }
+
+        try {
+            super.run(compilationUnit);
+        }
+        finally {
+            for (final NodeLocalTransform transform : _transforms) {
+                transform.setFused(false);
+            }
+        }
+    }
+
+    @Override
+    protected Void visitChildren(final AstNode node, final Void data) {
+        super.visitChildren(node, data);
+
+        final AstNode parent = node.getParent();
+
+        for (final NodeLocalTransform transform : _transforms) {
+            node.acceptVisitor(transform, data);
+
+            if (node.getParent() != parent) {
+                //
+                // The node was removed or replaced.  The remaining transforms agreed not to care
+                // about any nodes introduced in its place (see NodeLocalTransform.canFuseWith()).
+                //
+                break;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("FusedTransform[");
+
+        for (int i = 0; i < _transforms.length; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(_transforms[i].getClass().getSimpleName());
+        }
+
+        return sb.append(']').toString();
+    }
+}
@@ -22,11 +22,21 @@ import com.strobel.decompiler.languages.java.ast.*;
 
 import static com.strobel.decompiler.patterns.Pattern.matchString;
 
-public class InlineEscapingAssignmentsTransform extends ContextTrackingVisitor<Void> {
+public class InlineEscapingAssignmentsTransform extends NodeLocalTransform {
     public InlineEscapingAssignmentsTransform(final DecompilerContext context) {
         super(context);
     }
 
+    @Override
+    public boolean canFuseWith(final NodeLocalTransform next) {
+        //
+        // We only inspect variable declarations and identifiers, which these leave alone.
+        //
+        return next instanceof VarArgsTransform ||
+               next instanceof InsertConstantReferencesTransform ||
+               next instanceof SimplifyArithmeticExpressionsTransform;
+    }
+
     @Override
     public Void visitReturnStatement(final ReturnStatement node, final Void data) {
         super.visitReturnStatement(node, data);
@@ -25,7 +25,7 @@ import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.*;
 import com.strobel.decompiler.patterns.AnyNode;
 import com.strobel.decompiler.patterns.Choice;
-import com.strobel.decompiler.patterns.INode;
+import com.strobel.decompiler.patterns.CompiledPattern;
 import com.strobel.decompiler.patterns.Match;
 import com.strobel.decompiler.patterns.MemberReferenceTypeNode;
 import com.strobel.decompiler.patterns.Pattern;
@@ -163,10 +163,10 @@ public class InlineFieldInitializersTransform extends ContextTrackingVisitor<Voi
         }
     }
 
-    private final static INode FIELD_ASSIGNMENT;
+    private final static CompiledPattern FIELD_ASSIGNMENT;
 
     static {
-        FIELD_ASSIGNMENT = new Choice(
+        FIELD_ASSIGNMENT = CompiledPattern.compile(new Choice(
             new AssignmentExpression(
                 new MemberReferenceTypeNode(
                     "target",
@@ -186,7 +186,7 @@ public class InlineFieldInitializersTransform extends ContextTrackingVisitor<Voi
                 AssignmentOperatorType.ASSIGN,
                 new AnyNode("value").toExpression()
             )
-        );
+        ));
     }
 
     @Override
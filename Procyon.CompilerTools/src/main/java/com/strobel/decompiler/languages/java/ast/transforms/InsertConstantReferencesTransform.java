@@ -27,11 +27,20 @@ import com.strobel.core.StringUtilities;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.*;
 
-public class InsertConstantReferencesTransform extends ContextTrackingVisitor<Void> {
+public class InsertConstantReferencesTransform extends NodeLocalTransform {
     public InsertConstantReferencesTransform(final DecompilerContext context) {
         super(context);
     }
 
+    @Override
+    public boolean canFuseWith(final NodeLocalTransform next) {
+        //
+        // We only inspect literals and their declaring field, and the nodes we introduce are of
+        // no interest to arithmetic simplification.
+        //
+        return next instanceof SimplifyArithmeticExpressionsTransform;
+    }
+
     @Override
     public Void visitPrimitiveExpression(final PrimitiveExpression node, final Void data) {
         final Object value = node.getValue();
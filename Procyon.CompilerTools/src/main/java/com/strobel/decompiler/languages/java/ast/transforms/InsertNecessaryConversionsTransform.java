@@ -28,7 +28,7 @@ import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.*;
 import com.strobel.decompiler.languages.java.utilities.RedundantCastUtility;
 import com.strobel.decompiler.languages.java.utilities.TypeUtilities;
-import com.strobel.decompiler.patterns.INode;
+import com.strobel.decompiler.patterns.CompiledPattern;
 import com.strobel.decompiler.semantics.ResolveResult;
 import com.strobel.functions.Function;
 
@@ -36,15 +36,15 @@ import static com.strobel.core.CollectionUtilities.firstOrDefault;
 
 public class InsertNecessaryConversionsTransform extends ContextTrackingVisitor<Void> {
     private final static ConvertTypeOptions NO_IMPORT_OPTIONS;
-    private final static INode TRUE_NODE;
-    private final static INode FALSE_NODE;
+    private final static CompiledPattern TRUE_NODE;
+    private final static CompiledPattern FALSE_NODE;
 
     static {
         NO_IMPORT_OPTIONS = new ConvertTypeOptions();
         NO_IMPORT_OPTIONS.setAddImports(false);
 
-        TRUE_NODE = new PrimitiveExpression(Expression.MYSTERY_OFFSET, true);
-        FALSE_NODE = new PrimitiveExpression(Expression.MYSTERY_OFFSET, false);
+        TRUE_NODE = CompiledPattern.compile(new PrimitiveExpression(Expression.MYSTERY_OFFSET, true));
+        FALSE_NODE = CompiledPattern.compile(new PrimitiveExpression(Expression.MYSTERY_OFFSET, false));
     }
 
     private final JavaResolver _resolver;
@@ -0,0 +1,87 @@
+/*
+ * NodeLocalTransform.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.languages.java.ast.transforms;
+
+import com.strobel.decompiler.DecompilerContext;
+import com.strobel.decompiler.languages.java.ast.AstNode;
+import com.strobel.decompiler.languages.java.ast.ConstructorDeclaration;
+import com.strobel.decompiler.languages.java.ast.ContextTrackingVisitor;
+import com.strobel.decompiler.languages.java.ast.MethodDeclaration;
+import com.strobel.decompiler.languages.java.ast.TypeDeclaration;
+
+/**
+ * Base class for transforms which rewrite each node only after its children have been visited,
+ * and which only touch the node being visited, its subtree, and its earlier siblings.  Runs of
+ * such transforms may be fused by {@link TransformationPipeline} into a single traversal, in which
+ * every transform in the run visits a node before the traversal moves on to the next one.
+ * <p/>
+ * While fused, a transform does not walk the tree itself:  visiting a node runs only the logic
+ * for that node, and the current type and method are tracked by the fused traversal.
+ *
+ * @author Mike Strobel
+ */
+public abstract class NodeLocalTransform extends ContextTrackingVisitor<Void> {
+    private boolean _isFused;
+
+    protected NodeLocalTransform(final DecompilerContext context) {
+        super(context);
+    }
+
+    /**
+     * Returns whether this transform may share a traversal with {@code next}, which follows it in
+     * the pipeline.  When fused, {@code next} will already have visited the subtree of a node by the
+     * time this transform visits the node itself.  Return {@code true} only if the way this transform
+     * handles a node does not depend on how {@code next} rewrites its subtree, and if this transform
+     * never creates nodes which {@code next} would need to visit.
+     */
+    public boolean canFuseWith(final NodeLocalTransform next) {
+        return false;
+    }
+
+    final void setFused(final boolean isFused) {
+        _isFused = isFused;
+    }
+
+    @Override
+    protected Void visitChildren(final AstNode node, final Void data) {
+        if (_isFused) {
+            return null;
+        }
+        return super.visitChildren(node, data);
+    }
+
+    @Override
+    public Void visitTypeDeclaration(final TypeDeclaration typeDeclaration, final Void data) {
+        if (_isFused) {
+            return null;
+        }
+        return super.visitTypeDeclaration(typeDeclaration, data);
+    }
+
+    @Override
+    public Void visitMethodDeclaration(final MethodDeclaration node, final Void data) {
+        if (_isFused) {
+            return null;
+        }
+        return super.visitMethodDeclaration(node, data);
+    }
+
+    @Override
+    public Void visitConstructorDeclaration(final ConstructorDeclaration node, final Void data) {
+        if (_isFused) {
+            return null;
+        }
+        return super.visitConstructorDeclaration(node, data);
+    }
+}
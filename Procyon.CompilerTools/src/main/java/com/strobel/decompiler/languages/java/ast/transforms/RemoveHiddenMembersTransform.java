@@ -23,7 +23,7 @@ import com.strobel.core.Predicate;
 import com.strobel.core.StringUtilities;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.*;
-import com.strobel.decompiler.patterns.INode;
+import com.strobel.decompiler.patterns.CompiledPattern;
 
 import static com.strobel.core.CollectionUtilities.any;
 
@@ -79,17 +79,17 @@ public class RemoveHiddenMembersTransform extends ContextTrackingVisitor<Void> {
         return super.visitMethodDeclaration(node, _);
     }
 
-    private final static INode DEFAULT_CONSTRUCTOR_BODY;
+    private final static CompiledPattern DEFAULT_CONSTRUCTOR_BODY;
 
     static {
-        DEFAULT_CONSTRUCTOR_BODY = new BlockStatement(
+        DEFAULT_CONSTRUCTOR_BODY = CompiledPattern.compile(new BlockStatement(
             new ExpressionStatement(
                 new InvocationExpression(
                     Expression.MYSTERY_OFFSET,
                     new SuperReferenceExpression( Expression.MYSTERY_OFFSET)
                 )
             )
-        );
+        ));
     }
 
     @Override
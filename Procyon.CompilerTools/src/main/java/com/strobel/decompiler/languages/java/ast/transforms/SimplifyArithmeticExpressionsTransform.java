@@ -22,7 +22,7 @@ import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.*;
 import com.strobel.decompiler.semantics.ResolveResult;
 
-public class SimplifyArithmeticExpressionsTransform extends ContextTrackingVisitor<Void> {
+public class SimplifyArithmeticExpressionsTransform extends NodeLocalTransform {
     private final JavaResolver _resolver;
 
     public SimplifyArithmeticExpressionsTransform(final DecompilerContext context) {
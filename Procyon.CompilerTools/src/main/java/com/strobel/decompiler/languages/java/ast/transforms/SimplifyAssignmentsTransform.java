@@ -21,6 +21,7 @@ import com.strobel.assembler.metadata.MetadataResolver;
 import com.strobel.assembler.metadata.TypeReference;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.*;
+import com.strobel.decompiler.patterns.CompiledPattern;
 import com.strobel.decompiler.semantics.ResolveResult;
 import com.strobel.functions.Function;
 
@@ -48,8 +49,8 @@ public class SimplifyAssignmentsTransform extends ContextTrackingVisitor<AstNode
         _resolver = new JavaResolver(context);
     }
 
-    private final static PrimitiveExpression TRUE_CONSTANT = new PrimitiveExpression(Expression.MYSTERY_OFFSET, true);
-    private final static PrimitiveExpression FALSE_CONSTANT = new PrimitiveExpression(Expression.MYSTERY_OFFSET, false);
+    private final static CompiledPattern TRUE_CONSTANT = CompiledPattern.compile(new PrimitiveExpression(Expression.MYSTERY_OFFSET, true));
+    private final static CompiledPattern FALSE_CONSTANT = CompiledPattern.compile(new PrimitiveExpression(Expression.MYSTERY_OFFSET, false));
 
     @Override
     public AstNode visitConditionalExpression(final ConditionalExpression node, final Void data) {
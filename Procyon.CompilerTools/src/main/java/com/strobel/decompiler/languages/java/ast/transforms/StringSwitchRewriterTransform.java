@@ -23,6 +23,7 @@ import com.strobel.core.Predicate;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.*;
 import com.strobel.decompiler.patterns.AnyNode;
+import com.strobel.decompiler.patterns.CompiledPattern;
 import com.strobel.decompiler.patterns.IdentifierExpressionBackReference;
 import com.strobel.decompiler.patterns.Match;
 import com.strobel.decompiler.patterns.NamedNode;
@@ -44,22 +45,22 @@ public class StringSwitchRewriterTransform extends ContextTrackingVisitor<Void>
 
     // <editor-fold defaultstate="collapsed" desc="Patterns">
 
-    private final static VariableDeclarationStatement TABLE_SWITCH_INPUT;
-    private final static Pattern HASH_CODE_PATTERN;
-    private final static BlockStatement CASE_BODY_PATTERN;
+    private final static CompiledPattern TABLE_SWITCH_INPUT;
+    private final static CompiledPattern HASH_CODE_PATTERN;
+    private final static CompiledPattern CASE_BODY_PATTERN;
 
     static {
         final SimpleType intType = new SimpleType("int");
 
         intType.putUserData(Keys.TYPE_REFERENCE, BuiltinTypes.Integer);
 
-        TABLE_SWITCH_INPUT = new VariableDeclarationStatement(
+        TABLE_SWITCH_INPUT = CompiledPattern.compile(new VariableDeclarationStatement(
             intType,
             Pattern.ANY_STRING,
             new PrimitiveExpression( Expression.MYSTERY_OFFSET, -1)
-        );
+        ));
 
-        HASH_CODE_PATTERN = new NamedNode(
+        HASH_CODE_PATTERN = CompiledPattern.compile(new NamedNode(
             "hashCodeCall",
             new InvocationExpression(
                 Expression.MYSTERY_OFFSET,
@@ -69,7 +70,7 @@ public class StringSwitchRewriterTransform extends ContextTrackingVisitor<Void>
                     "hashCode"
                 )
             )
-        );
+        ));
 
         final BlockStatement caseBody = new BlockStatement();
 
@@ -119,7 +120,7 @@ public class StringSwitchRewriterTransform extends ContextTrackingVisitor<Void>
         caseBody.add(new Repeat(additionalTest).toStatement());
         caseBody.add(new BreakStatement(Expression.MYSTERY_OFFSET));
 
-        CASE_BODY_PATTERN = caseBody;
+        CASE_BODY_PATTERN = CompiledPattern.compile(caseBody);
     }
 
     // </editor-fold>
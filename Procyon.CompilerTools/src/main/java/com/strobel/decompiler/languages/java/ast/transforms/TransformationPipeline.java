@@ -19,7 +19,13 @@ package com.strobel.decompiler.languages.java.ast.transforms;
 import com.strobel.core.Predicate;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.AstNode;
+import com.strobel.decompiler.languages.java.ast.CodeFeature;
+import com.strobel.decompiler.languages.java.ast.Keys;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,6 +72,60 @@ public final class TransformationPipeline {
         };
     }
 
+    /**
+     * Groups runs of adjacent {@link NodeLocalTransform}s which have declared that they may share a
+     * traversal (see {@link NodeLocalTransform#canFuseWith}) into {@link FusedTransform}s.  The
+     * relative order of all transforms is preserved.
+     */
+    public static IAstTransform[] fuseTransforms(final DecompilerContext context, final IAstTransform[] pipeline) {
+        final List<IAstTransform> result = new ArrayList<>(pipeline.length);
+        final List<NodeLocalTransform> group = new ArrayList<>();
+
+        for (final IAstTransform transform : pipeline) {
+            if (transform instanceof NodeLocalTransform) {
+                final NodeLocalTransform nodeLocalTransform = (NodeLocalTransform) transform;
+
+                if (!canJoinGroup(group, nodeLocalTransform)) {
+                    flushGroup(context, group, result);
+                }
+
+                group.add(nodeLocalTransform);
+            }
+            else {
+                flushGroup(context, group, result);
+                result.add(transform);
+            }
+        }
+
+        flushGroup(context, group, result);
+
+        return result.toArray(new IAstTransform[result.size()]);
+    }
+
+    private static boolean canJoinGroup(final List<NodeLocalTransform> group, final NodeLocalTransform transform) {
+        for (final NodeLocalTransform member : group) {
+            if (!member.canFuseWith(transform)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void flushGroup(
+        final DecompilerContext context,
+        final List<NodeLocalTransform> group,
+        final List<IAstTransform> result) {
+
+        if (group.size() == 1) {
+            result.add(group.get(0));
+        }
+        else if (group.size() > 1) {
+            result.add(new FusedTransform(context, group));
+        }
+
+        group.clear();
+    }
+
     public static void runTransformationsUntil(
         final AstNode node,
         final Predicate<IAstTransform> abortCondition,
@@ -75,16 +135,84 @@ public final class TransformationPipeline {
             return;
         }
 
-        for (final IAstTransform transform : createPipeline(context)) {
-            if (abortCondition != null && abortCondition.test(transform)) {
-                return;
+        final IAstTransform[] pipeline = createPipeline(context);
+
+        int end = 0;
+
+        while (end < pipeline.length && (abortCondition == null || !abortCondition.test(pipeline[end]))) {
+            ++end;
+        }
+
+        //
+        // Apply the abort condition before fusing, so it still sees each individual transform.
+        //
+        final IAstTransform[] transforms = fuseTransforms(
+            context,
+            end == pipeline.length ? pipeline : Arrays.copyOf(pipeline, end)
+        );
+
+        //
+        // The feature set is shared with the AstBuilder, which may still add to it while earlier
+        // transforms run, so check it immediately before running each transform.
+        //
+        final Set<CodeFeature> features = node.getUserData(Keys.CODE_FEATURES);
+
+        for (final IAstTransform transform : transforms) {
+            if (features != null && !isApplicable(transform, features)) {
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine("Skipping Java AST transform: " + transform.getClass().getSimpleName() + "...");
+                }
+                continue;
             }
 
             if (LOG.isLoggable(Level.FINE)) {
-                LOG.fine("Running Java AST transform: " + transform.getClass().getSimpleName() + "...");
+                LOG.fine(
+                    "Running Java AST transform: " +
+                    (transform instanceof FusedTransform ? transform : transform.getClass().getSimpleName()) +
+                    "..."
+                );
             }
 
+            context.throwIfCanceled();
             transform.run(node);
         }
     }
+
+    /**
+     * Determines whether a transform could possibly match anything, given the {@link CodeFeature}s
+     * recorded for the tree it would run on.  Transforms without a known trigger always apply.
+     */
+    private static boolean isApplicable(final IAstTransform transform, final Set<CodeFeature> features) {
+        if (transform instanceof EnumSwitchRewriterTransform) {
+            return features.contains(CodeFeature.SWITCH_MAP);
+        }
+
+        if (transform instanceof EclipseEnumSwitchRewriterTransform) {
+            return features.contains(CodeFeature.SWITCH_TABLE);
+        }
+
+        if (transform instanceof AssertStatementTransform) {
+            return features.contains(CodeFeature.ASSERTIONS_DISABLED);
+        }
+
+        if (transform instanceof TryWithResourcesTransform) {
+            return features.contains(CodeFeature.ADD_SUPPRESSED);
+        }
+
+        if (transform instanceof StringSwitchRewriterTransform ||
+            transform instanceof EclipseStringSwitchRewriterTransform) {
+
+            return features.contains(CodeFeature.HASH_CODE);
+        }
+
+        if (transform instanceof LambdaTransform) {
+            return features.contains(CodeFeature.INVOKE_DYNAMIC);
+        }
+
+        if (transform instanceof RewriteLocalClassesTransform) {
+            return features.contains(CodeFeature.LOCAL_CLASS);
+        }
+
+        return true;
+    }
 }
@@ -19,7 +19,7 @@ package com.strobel.decompiler.languages.java.ast.transforms;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.languages.java.ast.*;
 import com.strobel.decompiler.patterns.AnyNode;
-import com.strobel.decompiler.patterns.INode;
+import com.strobel.decompiler.patterns.CompiledPattern;
 import com.strobel.decompiler.patterns.IdentifierExpressionBackReference;
 import com.strobel.decompiler.patterns.Match;
 import com.strobel.decompiler.patterns.NamedNode;
@@ -34,8 +34,8 @@ import static com.strobel.core.CollectionUtilities.*;
 import static com.strobel.decompiler.languages.java.ast.transforms.ConvertLoopsTransform.*;
 
 public class TryWithResourcesTransform extends ContextTrackingVisitor<Void> {
-    private final static INode RESOURCE_INIT_PATTERN;
-    private final static INode CLEAR_SAVED_EXCEPTION_PATTERN;
+    private final static CompiledPattern RESOURCE_INIT_PATTERN;
+    private final static CompiledPattern CLEAR_SAVED_EXCEPTION_PATTERN;
 
     static {
         final Expression resource = new NamedNode(
@@ -48,21 +48,21 @@ public class TryWithResourcesTransform extends ContextTrackingVisitor<Void> {
             new IdentifierExpression(Expression.MYSTERY_OFFSET, Pattern.ANY_STRING)
         ).toExpression();
 
-        RESOURCE_INIT_PATTERN = new ExpressionStatement(
+        RESOURCE_INIT_PATTERN = CompiledPattern.compile(new ExpressionStatement(
             new AssignmentExpression(
                 resource,
                 AssignmentOperatorType.ASSIGN,
                 new AnyNode("resourceInitializer").toExpression()
             )
-        );
+        ));
 
-        CLEAR_SAVED_EXCEPTION_PATTERN = new ExpressionStatement(
+        CLEAR_SAVED_EXCEPTION_PATTERN = CompiledPattern.compile(new ExpressionStatement(
             new AssignmentExpression(
                 savedException,
                 AssignmentOperatorType.ASSIGN,
                 new NullReferenceExpression(Expression.MYSTERY_OFFSET)
             )
-        );
+        ));
     }
 
     private final TryCatchStatement _tryPattern;
@@ -30,7 +30,7 @@ import com.strobel.decompiler.semantics.ResolveResult;
 import java.util.ArrayList;
 import java.util.List;
 
-public class VarArgsTransform extends ContextTrackingVisitor<Void> {
+public class VarArgsTransform extends NodeLocalTransform {
     private final JavaResolver _resolver;
 
     public VarArgsTransform(final DecompilerContext context) {
@@ -38,6 +38,15 @@ public class VarArgsTransform extends ContextTrackingVisitor<Void> {
         _resolver = new JavaResolver(context);
     }
 
+    @Override
+    public boolean canFuseWith(final NodeLocalTransform next) {
+        //
+        // These rewrite constants and operators without changing the types of argument expressions.
+        //
+        return next instanceof InsertConstantReferencesTransform ||
+               next instanceof SimplifyArithmeticExpressionsTransform;
+    }
+
     @Override
     public Void visitInvocationExpression(final InvocationExpression node, final Void data) {
         super.visitInvocationExpression(node, data);
@@ -20,4 +20,10 @@ import java.util.Stack;
 
 public class BacktrackingInfo {
     final Stack<PossibleMatch> stack = new Stack<>();
+    final Stack<INode> patternStack = new Stack<>();
+
+    final void clear() {
+        stack.clear();
+        patternStack.clear();
+    }
 }
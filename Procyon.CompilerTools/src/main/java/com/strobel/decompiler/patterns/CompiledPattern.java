@@ -0,0 +1,289 @@
+/*
+ * CompiledPattern.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.patterns;
+
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.languages.java.ast.AstNode;
+import com.strobel.decompiler.languages.java.ast.DepthFirstAstVisitor;
+import com.strobel.decompiler.languages.java.ast.Expression;
+import com.strobel.decompiler.languages.java.ast.NodeType;
+import com.strobel.decompiler.languages.java.ast.Statement;
+import com.strobel.decompiler.languages.java.ast.TryCatchStatement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A pattern prepared for repeated matching.  Compiling a pattern computes a cheap pre-filter from
+ * its root:  the node types the root can possibly match, and for each child role of a concrete
+ * root, the node type its first child in that role must have.  Candidates which fail the filter
+ * are rejected without running the matcher.  Candidates which pass it are matched against a
+ * per-thread scratch {@link Match}, whose capture and backtracking storage is reused across
+ * attempts; captures are only copied out into a new {@link Match} on success.
+ * <p/>
+ * The filter relies on a convention followed by the expression and statement nodes:  a node only
+ * matches instances of the class declaring its {@code matches} method, and compares its children
+ * role by role.  Roots and children which are not expressions or statements are never filtered.
+ *
+ * @author Mike Strobel
+ */
+public final class CompiledPattern {
+    private final INode _pattern;
+    private final Class<?>[] _rootTypes;
+    private final Role<?>[] _childRoles;
+    private final Class<?>[] _childTypes;
+
+    private final ThreadLocal<Match> _scratch = new ThreadLocal<Match>() {
+        @Override
+        protected Match initialValue() {
+            return Match.createNew();
+        }
+    };
+
+    private CompiledPattern(final INode pattern) {
+        _pattern = pattern;
+
+        final Set<Class<?>> rootTypes = new LinkedHashSet<>();
+
+        _rootTypes = collectRootTypes(pattern, rootTypes) ? rootTypes.toArray(new Class<?>[rootTypes.size()])
+                                                          : null;
+
+        final List<Role<?>> childRoles = new ArrayList<>();
+        final List<Class<?>> childTypes = new ArrayList<>();
+
+        collectChildTypes(pattern, childRoles, childTypes);
+
+        _childRoles = childRoles.toArray(new Role<?>[childRoles.size()]);
+        _childTypes = childTypes.toArray(new Class<?>[childTypes.size()]);
+    }
+
+    public static CompiledPattern compile(final INode pattern) {
+        return new CompiledPattern(VerifyArgument.notNull(pattern, "pattern"));
+    }
+
+    public final INode getPattern() {
+        return _pattern;
+    }
+
+    /**
+     * Returns {@code false} if the pre-filter proves {@code other} cannot match this pattern.
+     */
+    @SuppressWarnings("unchecked")
+    public final boolean couldMatch(final INode other) {
+        final Class<?>[] rootTypes = _rootTypes;
+
+        if (rootTypes != null) {
+            boolean found = false;
+
+            for (final Class<?> rootType : rootTypes) {
+                if (rootType.isInstance(other)) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) {
+                return false;
+            }
+        }
+
+        final Role<?>[] childRoles = _childRoles;
+
+        if (childRoles.length != 0) {
+            final AstNode node = (AstNode) other;
+
+            for (int i = 0; i < childRoles.length; i++) {
+                if (!_childTypes[i].isInstance(getChildByRole(node, childRoles[i]))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    public final Match match(final INode other) {
+        if (!couldMatch(other)) {
+            return Match.failure();
+        }
+
+        final Match scratch = _scratch.get();
+
+        try {
+            return _pattern.matches(other, scratch) ? scratch.copy() : Match.failure();
+        }
+        finally {
+            scratch.restoreCheckPoint(0);
+        }
+    }
+
+    public final boolean matches(final INode other) {
+        if (!couldMatch(other)) {
+            return false;
+        }
+
+        final Match scratch = _scratch.get();
+
+        try {
+            return _pattern.matches(other, scratch);
+        }
+        finally {
+            scratch.restoreCheckPoint(0);
+        }
+    }
+
+    public final boolean matches(final INode other, final Match match) {
+        return couldMatch(other) && _pattern.matches(other, match);
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Pre-Filter Construction">
+
+    private static boolean collectRootTypes(final INode node, final Set<Class<?>> types) {
+        if (node instanceof AstNode) {
+            final Pattern pattern = unwrapPlaceholder((AstNode) node);
+
+            if (pattern != null) {
+                return collectRootTypes(pattern, types);
+            }
+
+            final Class<?> matchType = getMatchType((AstNode) node);
+
+            if (matchType == null) {
+                return false;
+            }
+
+            types.add(matchType);
+            return true;
+        }
+
+        if (node instanceof TypedNode) {
+            types.add(((TypedNode) node).getNodeType());
+            return true;
+        }
+
+        if (node instanceof NamedNode) {
+            return collectRootTypes(((NamedNode) node).getNode(), types);
+        }
+
+        if (node instanceof Choice) {
+            for (final INode alternative : (Choice) node) {
+                if (!collectRootTypes(alternative, types)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    private static void collectChildTypes(final INode node, final List<Role<?>> roles, final List<Class<?>> types) {
+        if (node instanceof NamedNode) {
+            collectChildTypes(((NamedNode) node).getNode(), roles, types);
+            return;
+        }
+
+        if (!(node instanceof AstNode) ||
+            node instanceof TryCatchStatement ||
+            getMatchType((AstNode) node) == null) {
+
+            //
+            // Only concrete expressions and statements are known to compare all of their children;
+            // try/catch statements are an exception, as they ignore their resources.
+            //
+            return;
+        }
+
+        for (AstNode child = ((AstNode) node).getFirstChild(); child != null; child = child.getNextSibling()) {
+            final Role<?> role = child.getRole();
+
+            if (isRoleSeen(child, role)) {
+                continue;
+            }
+
+            final Class<?> matchType = getMatchType(child);
+
+            if (matchType != null) {
+                roles.add(role);
+                types.add(matchType);
+            }
+        }
+    }
+
+    private static Object getChildByRole(final AstNode node, final Role<?> role) {
+        for (AstNode child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getRole() == role) {
+                return child;
+            }
+        }
+
+        return role.getNullObject();
+    }
+
+    private static boolean isRoleSeen(final AstNode child, final Role<?> role) {
+        for (AstNode previous = child.getPreviousSibling(); previous != null; previous = previous.getPreviousSibling()) {
+            if (previous.getRole() == role) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Class<?> getMatchType(final AstNode node) {
+        if (node.isNull() ||
+            node.getNodeType() == NodeType.PATTERN ||
+            !(node instanceof Expression || node instanceof Statement)) {
+
+            return null;
+        }
+
+        final Class<?> declaringType;
+
+        try {
+            declaringType = node.getClass().getMethod("matches", INode.class, Match.class).getDeclaringClass();
+        }
+        catch (final NoSuchMethodException e) {
+            return null;
+        }
+
+        if (declaringType == Expression.class ||
+            declaringType == Statement.class ||
+            declaringType == AstNode.class) {
+
+            return null;
+        }
+
+        return declaringType;
+    }
+
+    private static Pattern unwrapPlaceholder(final AstNode node) {
+        if (node.getNodeType() != NodeType.PATTERN) {
+            return null;
+        }
+
+        return node.acceptVisitor(
+            new DepthFirstAstVisitor<Void, Pattern>() {
+                @Override
+                public Pattern visitPatternPlaceholder(final AstNode node, final Pattern pattern, final Void data) {
+                    return pattern;
+                }
+            },
+            null
+        );
+    }
+
+    // </editor-fold>
+}
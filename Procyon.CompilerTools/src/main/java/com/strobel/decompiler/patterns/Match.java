@@ -17,37 +17,52 @@
 package com.strobel.decompiler.patterns;
 
 import com.strobel.annotations.NotNull;
-import com.strobel.core.Pair;
 import com.strobel.core.StringUtilities;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
 
 public final class Match {
-    private final static Match FAILURE = new Match(null);
+    private final static Match FAILURE = new Match(null, null);
+    private final static String[] EMPTY_GROUP_NAMES = new String[0];
+    private final static INode[] EMPTY_NODES = new INode[0];
 
-    private final List<Pair<String, INode>> _results;
+    private String[] _groupNames;
+    private INode[] _nodes;
+    private int _size;
 
-    private Match(final List<Pair<String, INode>> results) {
-        _results = results;
+    private BacktrackingInfo[] _backtrackingInfo;
+    private int _backtrackingDepth;
+
+    private Match(final String[] groupNames, final INode[] nodes) {
+        _groupNames = groupNames;
+        _nodes = nodes;
+        _size = nodes != null ? nodes.length : 0;
     }
 
     public final boolean success() {
-        return _results != null;
+        return _nodes != null;
     }
 
     public final void add(final String groupName, final INode node) {
         if (groupName != null && node != null) {
-            _results.add(Pair.create(groupName, node));
+            if (_size == _nodes.length) {
+                final int newCapacity = Math.max(8, _size * 2);
+
+                _groupNames = Arrays.copyOf(_groupNames, newCapacity);
+                _nodes = Arrays.copyOf(_nodes, newCapacity);
+            }
+
+            _groupNames[_size] = groupName;
+            _nodes[_size++] = node;
         }
     }
 
     public final boolean has(final String groupName) {
-        for (int i = 0; i < _results.size(); i++) {
-            if (StringUtilities.equals(groupName, _results.get(i).getFirst())) {
+        for (int i = 0; i < _size; i++) {
+            if (StringUtilities.equals(groupName, _groupNames[i])) {
                 return true;
             }
         }
@@ -56,7 +71,7 @@ public final class Match {
     }
 
     public final <T extends INode> Iterable<T> get(final String groupName) {
-        if (_results == null) {
+        if (_nodes == null) {
             return Collections.emptyList();
         }
 
@@ -80,11 +95,9 @@ public final class Match {
 
                     @SuppressWarnings("unchecked")
                     private void selectNext() {
-                        for (; index < _results.size(); index++) {
-                            final Pair<String, INode> pair = _results.get(index);
-
-                            if (StringUtilities.equals(groupName, pair.getFirst())) {
-                                next = (T) pair.getSecond();
+                        for (; index < _size; index++) {
+                            if (StringUtilities.equals(groupName, _groupNames[index])) {
+                                next = (T) _nodes[index];
                                 ready = true;
                                 index++;
                                 return;
@@ -119,17 +132,60 @@ public final class Match {
     }
 
     final int getCheckPoint() {
-        return _results.size();
+        return _size;
     }
 
     final void restoreCheckPoint(final int checkpoint) {
-        for (int i = _results.size() - 1; i >= checkpoint; i--) {
-            _results.remove(i);
+        for (int i = _size - 1; i >= checkpoint; i--) {
+            _groupNames[i] = null;
+            _nodes[i] = null;
         }
+
+        if (checkpoint < _size) {
+            _size = checkpoint;
+        }
+    }
+
+    /**
+     * Returns an independent copy of the groups captured so far, sized to fit.
+     */
+    final Match copy() {
+        return new Match(Arrays.copyOf(_groupNames, _size), Arrays.copyOf(_nodes, _size));
+    }
+
+    /**
+     * Returns a cleared {@link BacktrackingInfo} for a collection match at the next nesting level.
+     * Instances are pooled per match so that repeated and nested collection matches reuse their
+     * backtracking stacks.  Each call must be paired with {@link #releaseBacktrackingInfo()}.
+     */
+    final BacktrackingInfo acquireBacktrackingInfo() {
+        if (_backtrackingInfo == null) {
+            _backtrackingInfo = new BacktrackingInfo[4];
+        }
+        else if (_backtrackingDepth == _backtrackingInfo.length) {
+            _backtrackingInfo = Arrays.copyOf(_backtrackingInfo, _backtrackingDepth * 2);
+        }
+
+        BacktrackingInfo info = _backtrackingInfo[_backtrackingDepth];
+
+        if (info == null) {
+            _backtrackingInfo[_backtrackingDepth] = info = new BacktrackingInfo();
+        }
+        else {
+            info.clear();
+        }
+
+        _backtrackingDepth++;
+
+        return info;
+    }
+
+    final void releaseBacktrackingInfo() {
+        _backtrackingInfo[--_backtrackingDepth].clear();
     }
 
     public static Match createNew() {
-        return new Match(new ArrayList<Pair<String, INode>>());
+        return new Match(EMPTY_GROUP_NAMES, EMPTY_NODES);
     }
 
     public static Match failure() {
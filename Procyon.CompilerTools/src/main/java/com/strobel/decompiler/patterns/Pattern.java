@@ -112,8 +112,24 @@ public abstract class Pattern implements INode {
         final INode firstOtherChild,
         final Match match) {
 
-        final BacktrackingInfo backtrackingInfo = new BacktrackingInfo();
-        final Stack<INode> patternStack = new Stack<>();
+        final BacktrackingInfo backtrackingInfo = match.acquireBacktrackingInfo();
+
+        try {
+            return matchesCollection(role, firstPatternChild, firstOtherChild, match, backtrackingInfo);
+        }
+        finally {
+            match.releaseBacktrackingInfo();
+        }
+    }
+
+    private static boolean matchesCollection(
+        final Role<?> role,
+        final INode firstPatternChild,
+        final INode firstOtherChild,
+        final Match match,
+        final BacktrackingInfo backtrackingInfo) {
+
+        final Stack<INode> patternStack = backtrackingInfo.patternStack;
         final Stack<PossibleMatch> stack = backtrackingInfo.stack;
 
         patternStack.push(firstPatternChild);
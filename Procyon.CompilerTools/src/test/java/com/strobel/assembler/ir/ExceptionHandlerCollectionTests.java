@@ -0,0 +1,220 @@
+/*
+ * ExceptionHandlerCollectionTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.ir;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the lookup tables of {@link ExceptionHandlerCollection} against linear scans of the
+ * collection as handlers are added, replaced, and removed.
+ */
+public class ExceptionHandlerCollectionTests {
+    private final static int INSTRUCTION_COUNT = 48;
+    private final static int BLOCK_COUNT = 12;
+    private final static int MUTATION_COUNT = 400;
+
+    private final Instruction[] _instructions = new Instruction[INSTRUCTION_COUNT];
+    private final List<InstructionBlock> _blocks = new ArrayList<>();
+    private final Random _random = new Random(0x5EED);
+
+    public ExceptionHandlerCollectionTests() {
+        for (int i = 0; i < INSTRUCTION_COUNT; i++) {
+            _instructions[i] = Instruction.create(OpCode.NOP);
+            _instructions[i].setOffset(i);
+        }
+
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            final int first = _random.nextInt(INSTRUCTION_COUNT);
+            final int last = first + _random.nextInt(INSTRUCTION_COUNT - first);
+
+            _blocks.add(new InstructionBlock(_instructions[first], _instructions[last]));
+        }
+    }
+
+    @Test
+    public void testLookupsMatchLinearScanAsHandlersChange() throws Throwable {
+        mutateAndVerify(false);
+    }
+
+    @Test
+    public void testLookupsMatchLinearScanWithDuplicateHandlers() throws Throwable {
+        mutateAndVerify(true);
+    }
+
+    @Test
+    public void testBlockGroupsUseBlockEquality() throws Throwable {
+        final InstructionBlock block = _blocks.get(0);
+        final InstructionBlock equalBlock = new InstructionBlock(block.getFirstInstruction(), block.getLastInstruction());
+        final ExceptionHandlerCollection handlers = new ExceptionHandlerCollection();
+
+        final ExceptionHandler first = ExceptionHandler.createFinally(block, _blocks.get(1));
+        final ExceptionHandler second = ExceptionHandler.createFinally(equalBlock, _blocks.get(1));
+
+        handlers.add(second);
+        assertConsistent(handlers);
+
+        //
+        // Inserting ahead of an indexed handler must keep each group in collection order.
+        //
+        handlers.add(0, first);
+
+        assertConsistent(handlers);
+        assertEquals(2, handlers.getHandlersForTryBlock(equalBlock).size());
+        assertSame(first, handlers.getHandlersForTryBlock(equalBlock).get(0));
+        assertSame(second, handlers.getHandlersForHandlerBlock(_blocks.get(1)).get(1));
+    }
+
+    @Test
+    public void testInvalidateReindexesMovedOffsets() throws Throwable {
+        final ExceptionHandlerCollection handlers = new ExceptionHandlerCollection();
+
+        for (int i = 0; i + 1 < BLOCK_COUNT; i += 2) {
+            handlers.add(ExceptionHandler.createFinally(_blocks.get(i), _blocks.get(i + 1)));
+        }
+
+        assertConsistent(handlers);
+
+        //
+        // The offset indexes capture offsets when handlers are indexed, so moving instructions
+        // requires an explicit invalidation.
+        //
+        for (final Instruction instruction : _instructions) {
+            instruction.setOffset(instruction.getOffset() * 2 + 100);
+        }
+
+        handlers.invalidate();
+        assertConsistent(handlers);
+    }
+
+    private void mutateAndVerify(final boolean allowDuplicates) {
+        final ExceptionHandlerCollection handlers = new ExceptionHandlerCollection();
+
+        for (int i = 0; i < 8; i++) {
+            handlers.add(newHandler());
+        }
+
+        //
+        // Build every lookup table up front, so that the mutations below are applied to the tables
+        // in place rather than rebuilding them on the next query.
+        //
+        assertConsistent(handlers);
+
+        for (int i = 0; i < MUTATION_COUNT; i++) {
+            final ExceptionHandler handler = allowDuplicates && !handlers.isEmpty() && _random.nextInt(4) == 0
+                                             ? handlers.get(_random.nextInt(handlers.size()))
+                                             : newHandler();
+
+            switch (handlers.isEmpty() ? 0 : _random.nextInt(5)) {
+                case 0:
+                    handlers.add(handler);
+                    break;
+                case 1:
+                    handlers.add(_random.nextInt(handlers.size() + 1), handler);
+                    break;
+                case 2:
+                    handlers.set(_random.nextInt(handlers.size()), handler);
+                    break;
+                case 3:
+                    handlers.remove(_random.nextInt(handlers.size()));
+                    break;
+                case 4:
+                    assertTrue(handlers.remove(handlers.get(_random.nextInt(handlers.size()))));
+                    break;
+            }
+
+            assertConsistent(handlers);
+        }
+    }
+
+    private ExceptionHandler newHandler() {
+        return ExceptionHandler.createFinally(
+            _blocks.get(_random.nextInt(BLOCK_COUNT)),
+            _blocks.get(_random.nextInt(BLOCK_COUNT))
+        );
+    }
+
+    private void assertConsistent(final ExceptionHandlerCollection handlers) {
+        for (int i = 0, n = handlers.size(); i < n; i++) {
+            final ExceptionHandler handler = handlers.get(i);
+
+            assertEquals(scanIndexOf(handlers, handler), handlers.indexOf(handler));
+            assertTrue(handlers.contains(handler));
+        }
+
+        assertEquals(-1, handlers.indexOf(newHandler()));
+        assertFalse(handlers.contains(new Object()));
+
+        for (final InstructionBlock block : _blocks) {
+            assertEquals(scanBlock(handlers, block, true), handlers.getHandlersForTryBlock(block));
+            assertEquals(scanBlock(handlers, block, false), handlers.getHandlersForHandlerBlock(block));
+        }
+
+        final int start = _instructions[0].getOffset() - 1;
+        final int end = _instructions[INSTRUCTION_COUNT - 1].getEndOffset() + 1;
+
+        for (int offset = start; offset <= end; offset++) {
+            assertEquals(scanOffset(handlers, offset, true), handlers.findTryBlocksContaining(offset));
+            assertEquals(scanOffset(handlers, offset, false), handlers.findHandlerBlocksContaining(offset));
+        }
+    }
+
+    private static int scanIndexOf(final List<ExceptionHandler> handlers, final ExceptionHandler handler) {
+        for (int i = 0, n = handlers.size(); i < n; i++) {
+            if (handlers.get(i) == handler) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<ExceptionHandler> scanBlock(
+        final List<ExceptionHandler> handlers,
+        final InstructionBlock block,
+        final boolean tryBlocks) {
+
+        final List<ExceptionHandler> result = new ArrayList<>();
+
+        for (final ExceptionHandler handler : handlers) {
+            if (block.equals(tryBlocks ? handler.getTryBlock() : handler.getHandlerBlock())) {
+                result.add(handler);
+            }
+        }
+
+        return result;
+    }
+
+    private static List<ExceptionHandler> scanOffset(
+        final List<ExceptionHandler> handlers,
+        final int offset,
+        final boolean tryBlocks) {
+
+        final List<ExceptionHandler> result = new ArrayList<>();
+
+        for (final ExceptionHandler handler : handlers) {
+            final InstructionBlock block = tryBlocks ? handler.getTryBlock() : handler.getHandlerBlock();
+
+            if (block.getFirstInstruction().getOffset() <= offset && offset < block.getLastInstruction().getEndOffset()) {
+                result.add(handler);
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * CrossReferenceIndexTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CrossReferenceIndexTests extends DecompilerTest {
+    private final static String OWNER = "com/strobel/decompiler/CrossReferenceIndexTests$A";
+    private final static String TYPE = "L" + OWNER + ";";
+    private final static String FIELD = OWNER + ".caf\u00e9:I";
+    private final static String METHOD = OWNER + ".next()I";
+    private final static String VALUE_OF = "java/lang/String.valueOf(I)Ljava/lang/String;";
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static class A {
+        int caf\u00e9;
+
+        int next() {
+            return ++caf\u00e9;
+        }
+
+        String describe() {
+            return String.valueOf(next());
+        }
+    }
+
+    @Test
+    public void testRecordsDefinitionsAndReferences() throws Throwable {
+        final CrossReferenceIndex index = new CrossReferenceIndex();
+        final String text = decompile(index);
+
+        assertKinds(index.find(TYPE), CrossReferenceIndex.Kind.DEFINITION);
+        assertKinds(index.find(METHOD), CrossReferenceIndex.Kind.DEFINITION, CrossReferenceIndex.Kind.REFERENCE);
+        assertKinds(index.find(VALUE_OF), CrossReferenceIndex.Kind.REFERENCE);
+
+        assertSpans(text, index.find(TYPE), "A");
+        assertSpans(text, index.find(METHOD), "next");
+        assertSpans(text, index.find(VALUE_OF), "valueOf");
+        assertTrue(index.find("Lcom/strobel/decompiler/NoSuchType;").isEmpty());
+    }
+
+    @Test
+    public void testSpansCoverEscapedIdentifiers() throws Throwable {
+        //
+        // With unicode output disabled, the non-ASCII character in the field's name is written as
+        // an escape sequence, so the span is longer than the name itself.
+        //
+        final CrossReferenceIndex index = new CrossReferenceIndex();
+        final String text = decompile(index);
+        final List<CrossReferenceIndex.Location> locations = index.find(FIELD);
+
+        assertFalse(locations.isEmpty());
+        assertSpans(text, locations, "caf\\u00e9");
+    }
+
+    @Test
+    public void testSaveAndLoadRoundTrip() throws Throwable {
+        final CrossReferenceIndex index = new CrossReferenceIndex();
+
+        decompile(index);
+
+        final byte[] saved = save(index);
+        final CrossReferenceIndex loaded = CrossReferenceIndex.load(new ByteArrayInputStream(saved));
+
+        assertEquals(index.size(), loaded.size());
+
+        for (final String descriptor : Arrays.asList(TYPE, FIELD, METHOD, VALUE_OF)) {
+            final List<CrossReferenceIndex.Location> expected = index.find(descriptor);
+            final List<CrossReferenceIndex.Location> actual = loaded.find(descriptor);
+
+            assertFalse(descriptor, expected.isEmpty());
+            assertEquals(descriptor, expected.size(), actual.size());
+
+            for (int i = 0; i < expected.size(); i++) {
+                final CrossReferenceIndex.Location e = expected.get(i);
+                final CrossReferenceIndex.Location a = actual.get(i);
+
+                assertEquals(e.getKind(), a.getKind());
+                assertEquals(e.getFileName(), a.getFileName());
+                assertEquals(e.getRow(), a.getRow());
+                assertEquals(e.getColumn(), a.getColumn());
+                assertEquals(e.getLength(), a.getLength());
+            }
+        }
+
+        assertTrue(Arrays.equals(saved, save(loaded)));
+    }
+
+    @Test
+    public void testLoadRejectsCorruptInput() throws Throwable {
+        final CrossReferenceIndex index = new CrossReferenceIndex();
+
+        decompile(index);
+
+        final byte[] saved = save(index);
+
+        assertLoadFails("PXRX".getBytes("US-ASCII"));
+        assertLoadFails(Arrays.copyOf(saved, saved.length / 2));
+    }
+
+    private static String decompile(final CrossReferenceIndex index) {
+        final CrossReferencingTextOutput output = new CrossReferencingTextOutput(index, "A.java");
+
+        Decompiler.decompile(OWNER, output, defaultSettings());
+
+        return output.toString();
+    }
+
+    private static byte[] save(final CrossReferenceIndex index) throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        index.save(stream);
+        return stream.toByteArray();
+    }
+
+    private static void assertKinds(final List<CrossReferenceIndex.Location> locations, final CrossReferenceIndex.Kind... kinds) {
+        assertEquals(String.valueOf(locations), kinds.length, locations.size());
+
+        for (int i = 0; i < kinds.length; i++) {
+            assertEquals(kinds[i], locations.get(i).getKind());
+            assertEquals("A.java", locations.get(i).getFileName());
+        }
+    }
+
+    private static void assertSpans(final String text, final List<CrossReferenceIndex.Location> locations, final String expected) {
+        final String[] lines = text.split("\n", -1);
+
+        for (final CrossReferenceIndex.Location location : locations) {
+            final String line = lines[location.getRow() - 1];
+            final int start = location.getColumn() - 1;
+
+            assertEquals(location.toString(), expected, line.substring(start, start + location.getLength()));
+        }
+    }
+
+    private static void assertLoadFails(final byte[] data) {
+        try {
+            CrossReferenceIndex.load(new ByteArrayInputStream(data));
+            fail("Expected an IOException.");
+        }
+        catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * DecompilerSessionTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.InputTypeLoader;
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.core.BooleanBox;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DecompilerSessionTests extends DecompilerTest {
+    private final static String PREFIX = "com/strobel/decompiler/DecompilerSessionTests$";
+    private final static String FIRST = PREFIX + "First";
+    private final static String SECOND = PREFIX + "Second";
+    private final static String THIRD = PREFIX + "Third";
+    private final static String MARKER = PREFIX + "Marker";
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static class First {
+        String describe(final int value) {
+            return "First: " + value;
+        }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static class Second {
+        final StringBuilder builder = new StringBuilder();
+
+        void append(final String s) {
+            builder.append(s.trim());
+        }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static class Third {
+        int first() {
+            return Marker.VALUE;
+        }
+
+        int second() {
+            return first() * 2;
+        }
+
+        int third() {
+            return second() + 1;
+        }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static class Marker {
+        static int VALUE = 42;
+    }
+
+    @Test
+    public void testBatchMatchesStandaloneDecompilation() throws Throwable {
+        final QueueingExecutor executor = new QueueingExecutor();
+        final DecompilerSession session = new DecompilerSession(executor);
+        final List<String> names = Arrays.asList(FIRST, SECOND, THIRD);
+        final List<Future<DecompilationResult>> futures = session.decompile(names, defaultSettings());
+
+        assertEquals(names.size(), futures.size());
+        assertEquals(names.size(), executor.size());
+
+        for (final Future<DecompilationResult> future : futures) {
+            assertFalse(future.isDone());
+        }
+
+        executor.runAll();
+
+        for (int i = 0; i < names.size(); i++) {
+            final DecompilationResult result = futures.get(i).get();
+
+            assertEquals(names.get(i), result.getInternalName());
+            assertEquals(decompileStandalone(names.get(i)), result.getText());
+            assertNotNull(result.getLineNumberPositions());
+        }
+    }
+
+    @Test
+    public void testSessionReusesLoadedTypes() throws Throwable {
+        final CountingTypeLoader typeLoader = new CountingTypeLoader(null);
+        final DecompilerSession session = new DecompilerSession(typeLoader, new DirectExecutor());
+
+        final String first = session.decompile(FIRST, defaultSettings()).get().getText();
+        final int stringBuilderLoads = typeLoader.getLoadCount("java/lang/StringBuilder");
+
+        assertTrue(first.contains("First: "));
+        assertEquals(1, stringBuilderLoads);
+
+        //
+        // Both types use StringBuilder, and the one loaded for the first request serves the second.
+        //
+        final String second = session.decompile(SECOND, defaultSettings()).get().getText();
+
+        assertTrue(second.contains("StringBuilder"));
+        assertEquals(stringBuilderLoads, typeLoader.getLoadCount("java/lang/StringBuilder"));
+
+        //
+        // Everything the first type needs is already loaded when it is requested again.
+        //
+        final int totalLoads = typeLoader.getTotalLoadCount();
+        final String firstAgain = session.decompile(FIRST, defaultSettings()).get().getText();
+
+        assertEquals(totalLoads, typeLoader.getTotalLoadCount());
+        assertEquals(first, firstAgain);
+    }
+
+    @Test
+    public void testSessionIgnoresTheSettingsTypeLoader() throws Throwable {
+        final DecompilerSession session = new DecompilerSession(new DirectExecutor());
+        final DecompilerSettings settings = defaultSettings();
+
+        settings.setTypeLoader(
+            new ITypeLoader() {
+                @Override
+                public boolean tryLoadType(final String internalName, final Buffer buffer) {
+                    throw new AssertionError("The session should use its own type loader.");
+                }
+            }
+        );
+
+        assertEquals(decompileStandalone(FIRST), session.decompile(FIRST, settings).get().getText());
+    }
+
+    @Test
+    public void testCancelBeforeRunning() throws Throwable {
+        final QueueingExecutor executor = new QueueingExecutor();
+        final CountingTypeLoader typeLoader = new CountingTypeLoader(null);
+        final DecompilerSession session = new DecompilerSession(typeLoader, executor);
+        final Future<DecompilationResult> canceled = session.decompile(FIRST, defaultSettings());
+
+        assertTrue(canceled.cancel(false));
+
+        executor.runAll();
+
+        assertTrue(canceled.isCancelled());
+        assertEquals(0, typeLoader.getTotalLoadCount());
+
+        final Future<DecompilationResult> completed = session.decompile(SECOND, defaultSettings());
+
+        executor.runAll();
+
+        assertEquals(decompileStandalone(SECOND), completed.get().getText());
+    }
+
+    @Test
+    public void testCancelDuringDecompilation() throws Throwable {
+        final AtomicReference<Future<DecompilationResult>> future = new AtomicReference<>();
+        final AtomicInteger cancellations = new AtomicInteger();
+
+        final CountingTypeLoader typeLoader = new CountingTypeLoader(
+            new Runnable() {
+                @Override
+                public void run() {
+                    cancellations.incrementAndGet();
+                    future.get().cancel(false);
+                }
+            }
+        );
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            final DecompilerSession session = new DecompilerSession(typeLoader, executor);
+
+            //
+            // Hold the session's only worker until the future is published to the type loader.
+            //
+            final BooleanBox released = new BooleanBox();
+            final Object gate = new Object();
+
+            executor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (gate) {
+                            while (!released.value) {
+                                try {
+                                    gate.wait();
+                                }
+                                catch (InterruptedException e) {
+                                    return;
+                                }
+                            }
+                        }
+                    }
+                }
+            );
+
+            future.set(session.decompile(THIRD, defaultSettings()));
+
+            synchronized (gate) {
+                released.value = true;
+                gate.notifyAll();
+            }
+
+            try {
+                future.get().get(30, TimeUnit.SECONDS);
+                fail("Expected a CancellationException.");
+            }
+            catch (CancellationException ignored) {
+            }
+
+            assertEquals(1, cancellations.get());
+
+            //
+            // The canceled request must have let go of the session, so the next one runs to
+            // completion.
+            //
+            final DecompilationResult result = session.decompile(THIRD, defaultSettings()).get(30, TimeUnit.SECONDS);
+
+            assertEquals(decompileStandalone(THIRD), result.getText());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancellationStopsDecompilation() throws Throwable {
+        final AtomicBoolean canceled = new AtomicBoolean();
+
+        final CountingTypeLoader typeLoader = new CountingTypeLoader(
+            new Runnable() {
+                @Override
+                public void run() {
+                    canceled.set(true);
+                }
+            }
+        );
+
+        final PlainTextOutput output = new PlainTextOutput();
+
+        try {
+            Decompiler.decompile(new MetadataSystem(typeLoader), THIRD, output, defaultSettings(), canceled);
+            fail("Expected a CancellationException.");
+        }
+        catch (CancellationException ignored) {
+        }
+
+        assertTrue(canceled.get());
+        assertEquals("", output.toString());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testContextHonorsBothCancellationFlags() {
+        final DecompilerContext context = new DecompilerContext();
+
+        context.throwIfCanceled();
+
+        final AtomicBoolean flag = new AtomicBoolean();
+        final BooleanBox box = new BooleanBox();
+
+        context.setCancellationFlag(flag);
+        context.setCanceled(box);
+
+        assertSame(flag, context.getCancellationFlag());
+        assertSame(box, context.getCanceled());
+
+        context.throwIfCanceled();
+
+        flag.set(true);
+        assertThrowsCancellation(context);
+
+        flag.set(false);
+        box.value = true;
+        assertThrowsCancellation(context);
+    }
+
+    private static void assertThrowsCancellation(final DecompilerContext context) {
+        try {
+            context.throwIfCanceled();
+            fail("Expected a CancellationException.");
+        }
+        catch (CancellationException ignored) {
+        }
+    }
+
+    private static String decompileStandalone(final String internalName) {
+        final PlainTextOutput output = new PlainTextOutput();
+        Decompiler.decompile(internalName, output, defaultSettings());
+        return output.toString();
+    }
+
+    private final static class DirectExecutor implements Executor {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    }
+
+    private final static class QueueingExecutor implements Executor {
+        private final List<Runnable> _queue = new ArrayList<>();
+
+        @Override
+        public synchronized void execute(final Runnable command) {
+            _queue.add(command);
+        }
+
+        synchronized int size() {
+            return _queue.size();
+        }
+
+        void runAll() {
+            final List<Runnable> commands;
+
+            synchronized (this) {
+                commands = new ArrayList<>(_queue);
+                _queue.clear();
+            }
+
+            for (final Runnable command : commands) {
+                command.run();
+            }
+        }
+    }
+
+    /**
+     * Counts the loads of each type, and runs a callback when the marker type is loaded.
+     */
+    private final static class CountingTypeLoader implements ITypeLoader {
+        private final ITypeLoader _loader = new InputTypeLoader();
+        private final ConcurrentHashMap<String, AtomicInteger> _loadCounts = new ConcurrentHashMap<>();
+        private final Runnable _onMarkerLoaded;
+
+        CountingTypeLoader(final Runnable onMarkerLoaded) {
+            _onMarkerLoaded = onMarkerLoaded;
+        }
+
+        int getLoadCount(final String internalName) {
+            final AtomicInteger count = _loadCounts.get(internalName);
+            return count != null ? count.get() : 0;
+        }
+
+        int getTotalLoadCount() {
+            int total = 0;
+
+            for (final AtomicInteger count : _loadCounts.values()) {
+                total += count.get();
+            }
+
+            return total;
+        }
+
+        @Override
+        public boolean tryLoadType(final String internalName, final Buffer buffer) {
+            final AtomicInteger newCount = new AtomicInteger();
+            final AtomicInteger count = _loadCounts.putIfAbsent(internalName, newCount);
+
+            (count != null ? count : newCount).incrementAndGet();
+
+            if (MARKER.equals(internalName) && _onMarkerLoaded != null) {
+                _onMarkerLoaded.run();
+            }
+
+            return _loader.tryLoadType(internalName, buffer);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * DefiniteAssignmentTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.decompiler.languages.java.ast.AstBuilder;
+import com.strobel.decompiler.languages.java.ast.AstNode;
+import com.strobel.decompiler.languages.java.ast.BlockStatement;
+import com.strobel.decompiler.languages.java.ast.DefiniteAssignmentAnalysis;
+import com.strobel.decompiler.languages.java.ast.DefiniteAssignmentStatus;
+import com.strobel.decompiler.languages.java.ast.DoWhileStatement;
+import com.strobel.decompiler.languages.java.ast.ForEachStatement;
+import com.strobel.decompiler.languages.java.ast.ForStatement;
+import com.strobel.decompiler.languages.java.ast.IdentifierExpression;
+import com.strobel.decompiler.languages.java.ast.LambdaExpression;
+import com.strobel.decompiler.languages.java.ast.MethodDeclaration;
+import com.strobel.decompiler.languages.java.ast.Statement;
+import com.strobel.decompiler.languages.java.ast.TypeDeclaration;
+import com.strobel.decompiler.languages.java.ast.VariableInitializer;
+import com.strobel.decompiler.languages.java.ast.WhileStatement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DefiniteAssignmentTests extends DecompilerTest {
+    private final static DefiniteAssignmentStatus[] INITIAL_STATUSES = {
+        DefiniteAssignmentStatus.POTENTIALLY_ASSIGNED,
+        DefiniteAssignmentStatus.DEFINITELY_NOT_ASSIGNED,
+        DefiniteAssignmentStatus.DEFINITELY_ASSIGNED
+    };
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static class A {
+        int loops(final int[] values, final boolean flag) {
+            int sum;
+            int last;
+            int count = 0;
+
+            if (flag) {
+                sum = 0;
+            }
+            else {
+                sum = -1;
+            }
+
+            outer:
+            for (final int value : values) {
+                for (int i = 0; i < value; i++) {
+                    if (i > 3 && (last = i) > 5) {
+                        break outer;
+                    }
+                    if (i == 2) {
+                        continue outer;
+                    }
+                    count++;
+                }
+                sum += value;
+            }
+
+            while (true) {
+                if (count++ > 10) {
+                    last = count;
+                    break;
+                }
+            }
+
+            return sum + last + count;
+        }
+
+        int handlers(final String s, final boolean flag) {
+            int result;
+            int other;
+
+            try {
+                result = Integer.parseInt(s);
+
+                if (flag) {
+                    return result;
+                }
+            }
+            catch (NumberFormatException e) {
+                result = -1;
+            }
+            finally {
+                other = s.length();
+            }
+
+            do {
+                result += other;
+            }
+            while (result < 100 && flag);
+
+            return flag ? result : other;
+        }
+
+        int finallyAssignments(final String s) {
+            int length;
+            int extra;
+
+            try {
+                length = s.length();
+            }
+            finally {
+                extra = s.hashCode();
+                extra += s.indexOf('x');
+                extra *= 31;
+            }
+
+            return length + extra;
+        }
+
+        int conditions(final int x, final int y) {
+            int a;
+            int b;
+            int c;
+
+            if (x > 0 || (a = y) > 0) {
+                a = x;
+            }
+
+            if (!(x > 1 && (b = x) > y)) {
+                b = y;
+            }
+
+            switch (x) {
+                case 1:
+                    c = 1;
+                    break;
+                case 2:
+                    c = 2;
+                default:
+                    c = 3;
+            }
+
+            synchronized (this) {
+                c += a + b;
+            }
+
+            return x > y ? (c = a) : (c += b);
+        }
+    }
+
+    @Test
+    public void testBatchAnalysisMatchesPerVariableAnalysis() {
+        assertTrue(compareAnalyses(A.class) > 0);
+    }
+
+    @Test
+    public void testBatchAnalysisMatchesPerVariableAnalysisForLibraryTypes() {
+        for (final Class<?> type : new Class<?>[] { java.util.ArrayList.class, java.util.TreeMap.class, java.io.BufferedReader.class }) {
+            assertTrue(type.getName(), compareAnalyses(type) > 0);
+        }
+    }
+
+    @Test
+    public void testBatchAnalysisRejectsSpecialInitialStatus() {
+        final BlockStatement block = new BlockStatement();
+        final DefiniteAssignmentAnalysis analysis = new DefiniteAssignmentAnalysis(new DecompilerContext(defaultSettings()), block);
+
+        for (final DefiniteAssignmentStatus status : new DefiniteAssignmentStatus[] {
+            DefiniteAssignmentStatus.ASSIGNED_AFTER_TRUE_EXPRESSION,
+            DefiniteAssignmentStatus.ASSIGNED_AFTER_FALSE_EXPRESSION
+        }) {
+            try {
+                analysis.analyzeAll(Collections.singletonList("x"), status);
+                fail("Expected an IllegalArgumentException.");
+            }
+            catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    private static int compareAnalyses(final Class<?> clazz) {
+        final MetadataSystem metadataSystem = new MetadataSystem(new ClasspathTypeLoader());
+        final TypeDefinition type = metadataSystem.lookupType(clazz.getName().replace('.', '/')).resolve();
+
+        assertNotNull(type);
+
+        final DecompilerContext context = new DecompilerContext(defaultSettings());
+
+        context.setCurrentType(type);
+
+        final AstBuilder builder = new AstBuilder(context);
+
+        builder.addType(type);
+        builder.runTransformations();
+
+        int comparisons = 0;
+
+        for (final AstNode node : builder.getCompilationUnit().getDescendants()) {
+            if (!(node instanceof MethodDeclaration)) {
+                continue;
+            }
+
+            final BlockStatement body = ((MethodDeclaration) node).getBody();
+
+            if (body.isNull()) {
+                continue;
+            }
+
+            final List<String> variables = new ArrayList<>(collectVariables(body));
+
+            //
+            // Pad the list with variables which are never mentioned, so that every method is large
+            // enough to be analyzed as a batch.
+            //
+            for (int i = 0; i < DefiniteAssignmentAnalysis.MINIMUM_BATCH_SIZE; i++) {
+                variables.add("$unused" + i);
+            }
+
+            for (final AstNode descendant : body.getDescendantsAndSelf()) {
+                if (descendant instanceof BlockStatement && isInMethodBody(descendant, body)) {
+                    comparisons += compareAnalyses(context, (BlockStatement) descendant, variables);
+                }
+            }
+        }
+
+        return comparisons;
+    }
+
+    private static int compareAnalyses(final DecompilerContext context, final BlockStatement block, final List<String> variables) {
+        final DefiniteAssignmentAnalysis single = new DefiniteAssignmentAnalysis(context, block);
+        final DefiniteAssignmentAnalysis batch = new DefiniteAssignmentAnalysis(context, block);
+        final List<Statement> statements = collectStatements(block);
+
+        int comparisons = 0;
+
+        for (final DefiniteAssignmentStatus initialStatus : INITIAL_STATUSES) {
+            for (final Statement start : block.getStatements()) {
+                single.setAnalyzedRange(start, block);
+                batch.setAnalyzedRange(start, block);
+                batch.analyzeAll(variables, initialStatus);
+
+                for (final String variable : variables) {
+                    single.analyze(variable, initialStatus);
+                    batch.analyze(variable, initialStatus);
+
+                    final String where = variable + " (" + initialStatus + ") from '" + start.getText().trim() + "'";
+                    final List<IdentifierExpression> expectedUses = single.getUnassignedVariableUses();
+                    final List<IdentifierExpression> actualUses = batch.getUnassignedVariableUses();
+
+                    assertEquals(where, single.isPotentiallyAssigned(), batch.isPotentiallyAssigned());
+                    assertEquals(where, expectedUses.size(), actualUses.size());
+
+                    for (int i = 0; i < expectedUses.size(); i++) {
+                        assertSame(where, expectedUses.get(i), actualUses.get(i));
+                    }
+
+                    for (final Statement statement : statements) {
+                        assertEquals(where, single.getStatusBefore(statement), batch.getStatusBefore(statement));
+                        assertEquals(where, single.getStatusAfter(statement), batch.getStatusAfter(statement));
+
+                        if (isLoop(statement)) {
+                            assertEquals(where, single.getBeforeLoopCondition(statement), batch.getBeforeLoopCondition(statement));
+                        }
+
+                        ++comparisons;
+                    }
+                }
+            }
+        }
+
+        return comparisons;
+    }
+
+    private static List<Statement> collectStatements(final BlockStatement block) {
+        //
+        // Every statement directly inside a block of the analyzed body has nodes before and after it,
+        // however deeply the block is nested.
+        //
+        final List<Statement> statements = new ArrayList<>();
+
+        statements.add(block);
+
+        for (final AstNode node : block.getDescendants()) {
+            if (node instanceof Statement && node.getParent() instanceof BlockStatement && isInMethodBody(node, block)) {
+                statements.add((Statement) node);
+            }
+        }
+
+        return statements;
+    }
+
+    private static boolean isLoop(final Statement statement) {
+        return statement instanceof WhileStatement ||
+               statement instanceof DoWhileStatement ||
+               statement instanceof ForStatement ||
+               statement instanceof ForEachStatement;
+    }
+
+    private static Set<String> collectVariables(final BlockStatement body) {
+        final Set<String> variables = new LinkedHashSet<>();
+
+        for (final AstNode node : body.getDescendants()) {
+            if (node instanceof VariableInitializer) {
+                variables.add(((VariableInitializer) node).getName());
+            }
+            else if (node instanceof IdentifierExpression) {
+                variables.add(((IdentifierExpression) node).getIdentifier());
+            }
+        }
+
+        return variables;
+    }
+
+    private static boolean isInMethodBody(final AstNode node, final BlockStatement body) {
+        for (AstNode current = node; current != null && current != body; current = current.getParent()) {
+            if (current instanceof TypeDeclaration || current instanceof LambdaExpression) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * MethodBodyCacheTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.Collection;
+import com.strobel.core.ExceptionUtilities;
+import com.strobel.core.StrongBox;
+import com.strobel.decompiler.languages.java.ast.MethodBodyCache;
+import com.strobel.io.PathHelper;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MethodBodyCacheTests extends DecompilerTest {
+    @SuppressWarnings("UnusedDeclaration")
+    private static class A {
+        private final Map<String, List<Integer>> map = new HashMap<>();
+
+        List<Integer> get(final String key) {
+            List<Integer> values = map.get(key);
+
+            if (values == null) {
+                values = new ArrayList<>();
+                map.put(key, values);
+            }
+
+            return values;
+        }
+
+        int sum(final String key) {
+            int sum = 0;
+
+            for (final Integer value : get(key)) {
+                sum += value;
+            }
+
+            return sum;
+        }
+
+        Runnable clearLater() {
+            return new Thread() {
+                @Override
+                public void run() {
+                    map.clear();
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static class B {
+        private Collection<String> strings;
+
+        private static class C {
+            int count(final Object items) {
+                final StrongBox<Object> box = new StrongBox<>(items);
+
+                if (box.get() instanceof java.util.Collection<?>) {
+                    return ((java.util.Collection<?>) box.get()).size();
+                }
+
+                return 0;
+            }
+        }
+    }
+
+    @Test
+    public void testCacheHitProducesIdenticalOutput() throws Throwable {
+        final MethodBodyCache cache = new MethodBodyCache();
+        final String expected = decompile(A.class, null);
+
+        assertEquals(expected, decompile(A.class, cache));
+
+        final int cachedBodies = cache.size();
+
+        assertTrue(cachedBodies > 0);
+        assertEquals(expected, decompile(A.class, cache));
+        assertEquals(cachedBodies, cache.size());
+        assertEquals(cachedBodies, cache.getHitCount());
+    }
+
+    @Test
+    public void testRejectedCacheEntryAddsNoImports() throws Throwable {
+        //
+        // Within B, the simple name 'Collection' is taken by the field's type, so the cached body of
+        // C.count refers to 'java.util.Collection'.  Decompiled on its own, C imports that type
+        // instead, so the cached body is rejected and must leave no trace in the imports.  Only the
+        // body of C's constructor is reused.
+        //
+        final MethodBodyCache cache = new MethodBodyCache();
+        final String expected = decompile(B.C.class, null);
+
+        decompile(B.class, cache);
+
+        assertTrue(cache.size() > 0);
+        assertEquals(expected, decompile(B.C.class, cache));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    private static String decompile(final Class<?> type, final MethodBodyCache cache) {
+        final DecompilerSettings settings = defaultSettings();
+        final PlainTextOutput output = new PlainTextOutput();
+        final String packageRoot = type.getProtectionDomain().getCodeSource().getLocation().getFile();
+        final String path = PathHelper.combine(packageRoot, type.getName().replace('.', '/') + ".class");
+
+        settings.setMethodBodyCache(cache);
+
+        try {
+            Decompiler.decompile(new File(path).getCanonicalPath(), output, settings);
+        }
+        catch (IOException e) {
+            throw ExceptionUtilities.asRuntimeException(e);
+        }
+
+        return output.toString();
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * MethodDecompilationTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.InputTypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.assembler.metadata.TypeReference;
+import com.strobel.decompiler.languages.java.JavaFormattingOptions;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that decompiling a single method produces the same text as the method's rendering within
+ * its whole declaring type.
+ */
+public class MethodDecompilationTests extends DecompilerTest {
+    @SuppressWarnings("UnusedDeclaration")
+    private static class A {
+        private final List<String> items = new ArrayList<>();
+        private int count;
+
+        int sum(final String key) {
+            int sum = 0;
+
+            for (final String item : items) {
+                switch (item) {
+                    case "skip":
+                        continue;
+                    case "stop":
+                        return sum;
+                    default:
+                        sum += item.length() + key.length();
+                }
+            }
+
+            return sum;
+        }
+
+        String describe() {
+            try {
+                return "Count: " + count;
+            }
+            catch (RuntimeException e) {
+                return e.getMessage();
+            }
+        }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static class B {
+        private final List<String> items = new ArrayList<>();
+        private final int size;
+
+        B(final int size) {
+            this.size = size;
+        }
+
+        B() {
+            this(10);
+        }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static class C {
+        private int count;
+
+        enum Color {
+            RED,
+            BLUE
+        }
+
+        class Inner {
+            int read() {
+                return count * 2;
+            }
+        }
+
+        Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                public boolean hasNext() {
+                    return count > 0;
+                }
+
+                public Integer next() {
+                    return count--;
+                }
+
+                public void remove() {
+                }
+            };
+        }
+
+        String name(final Color color) {
+            switch (color) {
+                case RED:
+                    return "red";
+                default:
+                    return "other";
+            }
+        }
+    }
+
+    @Test
+    public void testPlainMethodsMatchTypeOutput() throws Throwable {
+        final TypeDefinition type = lookupType(A.class);
+
+        assertMatchesTypeOutput(type, "sum");
+        assertMatchesTypeOutput(type, "describe");
+    }
+
+    @Test
+    public void testConstructorsMatchTypeOutput() throws Throwable {
+        final TypeDefinition type = lookupType(B.class);
+        final String typeOutput = decompileType(type);
+
+        //
+        // As in the output for the whole type, the explicit super() call is kept, and instance field
+        // initializers stay in the constructors which run them.
+        //
+        assertEquals(
+            "B(final int size) { super(); this.items = new ArrayList<String>(); this.size = size; }",
+            assertMatchesTypeOutput(type, typeOutput, findMethod(type, "<init>", "(I)V"))
+        );
+
+        assertEquals(
+            "B() { this(10); }",
+            assertMatchesTypeOutput(type, typeOutput, findMethod(type, "<init>", "()V"))
+        );
+    }
+
+    @Test
+    public void testNestedTypeMethodsMatchTypeOutput() throws Throwable {
+        //
+        // Outer instance references, accessors and enum switch maps depend on members of other types
+        // nested in the same top-level type; they must be resolved as they are for the whole type.
+        //
+        for (final String output : new String[] {
+            assertMatchesTypeOutput(lookupType(C.Inner.class), "read"),
+            assertMatchesTypeOutput(lookupType(Class.forName(C.class.getName() + "$1")), "hasNext")
+        }) {
+            assertTrue(output, output.contains("C.this"));
+            assertFalse(output, output.contains("this$0"));
+        }
+
+        final TypeDefinition type = lookupType(C.class);
+
+        assertTrue(assertMatchesTypeOutput(type, "name").startsWith("String name(final Color color) { switch (color) { case RED: {"));
+        assertMatchesTypeOutput(type, "iterator");
+    }
+
+    @Test
+    public void testLambdasMatchTypeOutput() throws Throwable {
+        //
+        // Lambdas.class is compiled from:
+        //
+        //     public class Lambdas {
+        //         private int offset;
+        //
+        //         public Function<Integer, Integer> adder(final int n) {
+        //             return x -> x + n + offset;
+        //         }
+        //
+        //         public Runnable printAll(final List<String> items) {
+        //             return () -> items.forEach(s -> System.out.println(s.trim()));
+        //         }
+        //
+        //         public Supplier<List<String>> factory() {
+        //             return ArrayList::new;
+        //         }
+        //     }
+        //
+        final TypeDefinition type = lookupResource("/Lambdas.class");
+
+        assertEquals(
+            "public Function<Integer, Integer> adder(final int n) { return (Function<Integer, Integer>)(x -> x + n + this.offset); }",
+            assertMatchesTypeOutput(type, "adder")
+        );
+
+        assertEquals(
+            "public Runnable printAll(final List<String> items) { return () -> items.forEach(s -> System.out.println(s.trim())); }",
+            assertMatchesTypeOutput(type, "printAll")
+        );
+
+        assertMatchesTypeOutput(type, "factory");
+    }
+
+    @Test
+    public void testHiddenMembersAreNotRendered() throws Throwable {
+        final TypeDefinition type = lookupResource("/Lambdas.class");
+
+        //
+        // The lambda bodies and the default constructor are not part of the type's output, so only
+        // a placeholder is written for them.
+        //
+        for (final MethodDefinition method : type.getDeclaredMethods()) {
+            if (method.isSynthetic() || method.isConstructor()) {
+                assertEquals("// Lambdas." + method.getName(), decompileMethod(method));
+            }
+        }
+    }
+
+    private static String assertMatchesTypeOutput(final TypeDefinition type, final String methodName) {
+        return assertMatchesTypeOutput(type, decompileType(type), findMethod(type, methodName, null));
+    }
+
+    private static String assertMatchesTypeOutput(final TypeDefinition type, final String typeOutput, final MethodDefinition method) {
+        final String methodOutput = decompileMethod(method);
+
+        assertFalse(methodOutput, methodOutput.startsWith("//"));
+        assertTrue(type.getName() + ":\n" + typeOutput + "\ndoes not contain:\n" + methodOutput, typeOutput.contains(methodOutput));
+
+        return methodOutput;
+    }
+
+    private static MethodDefinition findMethod(final TypeDefinition type, final String name, final String signature) {
+        for (final MethodDefinition method : type.getDeclaredMethods()) {
+            if (method.getName().equals(name) && (signature == null || method.getErasedSignature().equals(signature))) {
+                return method;
+            }
+        }
+
+        fail("Method not found: " + type.getName() + "." + name);
+        return null;
+    }
+
+    private static TypeDefinition lookupType(final Class<?> clazz) {
+        return resolve(createMetadataSystem().lookupType(clazz.getName().replace('.', '/')));
+    }
+
+    private static TypeDefinition lookupResource(final String name) throws URISyntaxException {
+        final File file = new File(MethodDecompilationTests.class.getResource(name).toURI());
+        return resolve(createMetadataSystem().lookupType(file.getPath()));
+    }
+
+    private static MetadataSystem createMetadataSystem() {
+        return new MetadataSystem(new InputTypeLoader());
+    }
+
+    private static TypeDefinition resolve(final TypeReference type) {
+        assertNotNull(type);
+
+        final TypeDefinition resolvedType = type.resolve();
+
+        assertNotNull(resolvedType);
+        return resolvedType;
+    }
+
+    private static String decompileType(final TypeDefinition type) {
+        final PlainTextOutput output = new PlainTextOutput();
+        final DecompilerSettings settings = settings();
+
+        settings.getLanguage().decompileType(type, output, options(settings));
+
+        return normalize(output.toString());
+    }
+
+    private static String decompileMethod(final MethodDefinition method) {
+        final PlainTextOutput output = new PlainTextOutput();
+        final DecompilerSettings settings = settings();
+
+        settings.getLanguage().decompileMethod(method, output, options(settings));
+
+        return normalize(output.toString());
+    }
+
+    private static DecompilerSettings settings() {
+        final DecompilerSettings settings = defaultSettings();
+        settings.setFormattingOptions(JavaFormattingOptions.createDefault());
+        return settings;
+    }
+
+    private static DecompilationOptions options(final DecompilerSettings settings) {
+        final DecompilationOptions options = new DecompilationOptions();
+
+        options.setSettings(settings);
+        options.setFullDecompilation(true);
+
+        return options;
+    }
+
+    private static String normalize(final String text) {
+        return WHITESPACE.matcher(text.trim()).replaceAll(" ");
+    }
+}
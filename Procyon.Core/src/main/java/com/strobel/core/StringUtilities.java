@@ -723,7 +723,7 @@ public final class StringUtilities {
         return sb.toString();
     }
 
-    private static boolean shouldEscape(final char ch, final boolean quote, final boolean isUnicodeSupported) {
+    public static boolean shouldEscape(final char ch, final boolean quote, final boolean isUnicodeSupported) {
         switch (ch) {
             case '\0':
             case '\b':
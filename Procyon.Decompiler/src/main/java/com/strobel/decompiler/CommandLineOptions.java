@@ -73,6 +73,17 @@ public class CommandLineOptions {
         description = "Output Raw Bytecode instead of Java.")
     private boolean _rawBytecode;
 
+    @Parameter(
+        names = { "--json-ast" },
+        description = "Output the Java syntax tree as JSON, with source spans and bytecode offsets.")
+    private boolean _jsonAst;
+
+    @Parameter(
+        names = { "-xi", "--xref-index" },
+        description = "Write an index of type and member definitions and references to the specified file " +
+                      "(only decompiled files written to the output directory are indexed; incompatible with -ln and -sl).")
+    private String _crossReferenceIndexFile;
+
     @Parameter(
         names = { "-u", "--unoptimized" },
         description = "Show unoptimized code (only in combination with -b).")
@@ -98,6 +109,11 @@ public class CommandLineOptions {
         description = "Include line numbers in raw bytecode mode; supports Java mode with -o only.")
     private boolean _includeLineNumbers;
 
+    @Parameter(
+        names = { "-smf", "--with-stack-map-frames" },
+        description = "Include the StackMapTable frames of each method in raw bytecode mode.")
+    private boolean _includeStackMapFrames;
+
     @Parameter(
         names = { "-sl", "--stretch-lines" },
         description = "Stretch Java lines to match original line numbers (only in combination with -o) [EXPERIMENTAL].")
@@ -124,6 +140,18 @@ public class CommandLineOptions {
         description = "Use a color scheme designed for consoles with light background colors.")
     private boolean _useLightColorScheme;
 
+    @Parameter(
+        names = { "--daemon" },
+        description = "Run as a daemon which accepts decompilation requests on the specified loopback port, " +
+                      "keeping loaded metadata warm between requests.")
+    private Integer _daemonPort;
+
+    @Parameter(
+        names = { "--daemon-connect" },
+        description = "Submit this request to a daemon listening on the specified loopback port " +
+                      "instead of decompiling in this process.")
+    private Integer _daemonConnectPort;
+
     @Parameter(
         names = { "--unicode" },
         description = "Enable Unicode output (printable non-ASCII characters will not be escaped).")
@@ -141,6 +169,14 @@ public class CommandLineOptions {
         return _rawBytecode;
     }
 
+    public final boolean isJsonAst() {
+        return _jsonAst;
+    }
+
+    public final void setJsonAst(final boolean jsonAst) {
+        _jsonAst = jsonAst;
+    }
+
     public final boolean getFlattenSwitchBlocks() {
         return _flattenSwitchBlocks;
     }
@@ -237,6 +273,14 @@ public class CommandLineOptions {
         _includeLineNumbers = includeLineNumbers;
     }
 
+    public final boolean getIncludeStackMapFrames() {
+        return _includeStackMapFrames;
+    }
+
+    public final void setIncludeStackMapFrames(final boolean includeStackMapFrames) {
+        _includeStackMapFrames = includeStackMapFrames;
+    }
+
     public final boolean getStretchLines() {
         return _stretchLines;
     }
@@ -277,6 +321,30 @@ public class CommandLineOptions {
         _useLightColorScheme = useLightColorScheme;
     }
 
+    public final String getCrossReferenceIndexFile() {
+        return _crossReferenceIndexFile;
+    }
+
+    public final void setCrossReferenceIndexFile(final String crossReferenceIndexFile) {
+        _crossReferenceIndexFile = crossReferenceIndexFile;
+    }
+
+    public final Integer getDaemonPort() {
+        return _daemonPort;
+    }
+
+    public final void setDaemonPort(final Integer daemonPort) {
+        _daemonPort = daemonPort;
+    }
+
+    public final Integer getDaemonConnectPort() {
+        return _daemonConnectPort;
+    }
+
+    public final void setDaemonConnectPort(final Integer daemonConnectPort) {
+        _daemonConnectPort = daemonConnectPort;
+    }
+
     public final boolean isUnicodeOutputEnabled() {
         return _isUnicodeOutputEnabled;
     }
@@ -0,0 +1,798 @@
+/*
+ * DecompilerDaemon.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.beust.jcommander.JCommander;
+import com.strobel.assembler.InputTypeLoader;
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.CompositeTypeLoader;
+import com.strobel.assembler.metadata.JarTypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.core.ExceptionUtilities;
+import com.strobel.core.StringUtilities;
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.languages.java.ast.MethodBodyCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+
+/**
+ * A long-running decompiler which accepts requests on a loopback port.  Each request carries the
+ * client's working directory and command line, so every request has its own settings, while the
+ * metadata loaded from the class path and from input files stays warm between requests.  Cached
+ * metadata is reloaded whenever a file it was loaded from changes.  Each cached metadata system has
+ * its own {@link MethodBodyCache}, which survives such reloads, so a changed type is re-decompiled
+ * without rebuilding the bodies of its unchanged methods; the cache is dropped along with the
+ * metadata system when that is evicted.
+ * <p/>
+ * Requests are handled one at a time, in the order they are accepted.  Only clients which can read
+ * the daemon's token file, which is created in the user's home directory and readable only by its
+ * owner, may submit requests; a connection which does not present the token, or which does not send
+ * a complete request within {@link #REQUEST_TIMEOUT} milliseconds, is closed without a response.
+ *
+ * @author Mike Strobel
+ */
+public final class DecompilerDaemon {
+    private final static int PROTOCOL_MAGIC = 0x50584444;
+    private final static int PROTOCOL_VERSION = 2;
+    private final static int MAX_ARGUMENTS = 4096;
+    private final static int MAX_CACHED_JARS = 8;
+    private final static int TOKEN_LENGTH = 32;
+    private final static int REQUEST_TIMEOUT = 30000;
+
+    private final static int CHANNEL_EXIT = 0;
+    private final static int CHANNEL_OUT = 1;
+    private final static int CHANNEL_ERR = 2;
+
+    private final int _port;
+    private final int _requestTimeout;
+    private final byte[] _token;
+    private final WarmMetadataSystemSource _metadataSystemSource;
+
+    private volatile ServerSocket _server;
+
+    public DecompilerDaemon(final int port) {
+        this(port, REQUEST_TIMEOUT);
+    }
+
+    DecompilerDaemon(final int port, final int requestTimeout) {
+        _port = VerifyArgument.inRange(0, 0xFFFF, port, "port");
+        _requestTimeout = VerifyArgument.isPositive(requestTimeout, "requestTimeout");
+        _token = new byte[TOKEN_LENGTH];
+        _metadataSystemSource = new WarmMetadataSystemSource();
+
+        new SecureRandom().nextBytes(_token);
+    }
+
+    public void run() throws IOException {
+        try (final ServerSocket server = new ServerSocket(_port, 50, InetAddress.getLoopbackAddress())) {
+            final File tokenFile = writeTokenFile(server.getLocalPort(), _token);
+
+            _server = server;
+
+            try {
+                System.err.printf("Decompiler daemon listening on port %d.\n", server.getLocalPort());
+
+                while (!server.isClosed()) {
+                    try (final Socket socket = server.accept()) {
+                        handleRequest(socket);
+                    }
+                    catch (SocketTimeoutException e) {
+                        System.err.println("Closed a connection which did not send a request in time.");
+                    }
+                    catch (IOException e) {
+                        if (!server.isClosed()) {
+                            System.err.println(ExceptionUtilities.getMessage(e));
+                        }
+                    }
+                }
+            }
+            finally {
+                _server = null;
+                Files.deleteIfExists(tokenFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Stops accepting requests, causing {@link #run()} to return once the request being handled
+     * (if any) has completed.
+     */
+    void stop() throws IOException {
+        final ServerSocket server = _server;
+
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Submits a command line to a daemon listening on the specified port, copying the daemon's
+     * console output to {@code out} and {@code err}.
+     *
+     * @return The exit code reported by the daemon.
+     */
+    public static int submit(final int port, final String[] args, final PrintStream out, final PrintStream err)
+        throws IOException {
+
+        VerifyArgument.notNull(args, "args");
+        VerifyArgument.notNull(out, "out");
+        VerifyArgument.notNull(err, "err");
+
+        final byte[] token = readTokenFile(port);
+
+        try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            final DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            request.writeInt(PROTOCOL_MAGIC);
+            request.writeInt(PROTOCOL_VERSION);
+            request.write(token);
+            request.writeUTF(new File("").getAbsolutePath());
+            request.writeInt(args.length);
+
+            for (final String arg : args) {
+                request.writeUTF(arg);
+            }
+
+            request.flush();
+
+            final DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final byte[] buffer = new byte[ChannelOutputStream.BUFFER_SIZE];
+
+            while (true) {
+                final int channel = response.readUnsignedByte();
+
+                if (channel == CHANNEL_EXIT) {
+                    out.flush();
+                    err.flush();
+                    return response.readInt();
+                }
+
+                final int length = response.readInt();
+
+                if (length < 0 || length > buffer.length) {
+                    throw new IOException("Malformed response from decompiler daemon.");
+                }
+
+                response.readFully(buffer, 0, length);
+
+                final PrintStream target = channel == CHANNEL_ERR ? err : out;
+
+                target.write(buffer, 0, length);
+                target.flush();
+            }
+        }
+    }
+
+    private void handleRequest(final Socket socket) throws IOException {
+        //
+        // Never wait indefinitely on a client; a connection which stalls before its request has been
+        // read would otherwise block every request queued behind it.
+        //
+        socket.setSoTimeout(_requestTimeout);
+
+        final DataInputStream request = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+        if (request.readInt() != PROTOCOL_MAGIC || request.readInt() != PROTOCOL_VERSION) {
+            throw new IOException("Ignoring unrecognized request from " + socket.getRemoteSocketAddress() + ".");
+        }
+
+        final byte[] token = new byte[TOKEN_LENGTH];
+
+        request.readFully(token);
+
+        if (!MessageDigest.isEqual(token, _token)) {
+            throw new IOException("Ignoring unauthorized request from " + socket.getRemoteSocketAddress() + ".");
+        }
+
+        final File workingDirectory = new File(request.readUTF());
+        final int argumentCount = request.readInt();
+
+        if (argumentCount < 0 || argumentCount > MAX_ARGUMENTS) {
+            throw new IOException("Ignoring malformed request from " + socket.getRemoteSocketAddress() + ".");
+        }
+
+        final String[] args = new String[argumentCount];
+
+        for (int i = 0; i < argumentCount; i++) {
+            args[i] = request.readUTF();
+        }
+
+        final DataOutputStream response = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        final PrintStream out = new PrintStream(new ChannelOutputStream(response, CHANNEL_OUT), false);
+        final PrintStream err = new PrintStream(new ChannelOutputStream(response, CHANNEL_ERR), true);
+
+        int exitCode;
+
+        try {
+            exitCode = execute(workingDirectory, args, out, err);
+        }
+        catch (Throwable t) {
+            t.printStackTrace(err);
+            exitCode = -1;
+        }
+
+        out.flush();
+        err.flush();
+
+        synchronized (response) {
+            response.writeByte(CHANNEL_EXIT);
+            response.writeInt(exitCode);
+            response.flush();
+        }
+    }
+
+    private int execute(final File workingDirectory, final String[] args, final PrintStream out, final PrintStream err) {
+        final CommandLineOptions options = new CommandLineOptions();
+        final JCommander jCommander;
+
+        try {
+            jCommander = new JCommander(options);
+            jCommander.setAllowAbbreviatedOptions(true);
+            jCommander.parse(args);
+        }
+        catch (Throwable t) {
+            err.println(ExceptionUtilities.getMessage(t));
+            return -1;
+        }
+
+        if (options.getPrintUsage() ||
+            options.getClassNames().isEmpty() && StringUtilities.isNullOrWhitespace(options.getJarFile())) {
+
+            final StringBuilder usage = new StringBuilder();
+            jCommander.usage(usage);
+            out.print(usage);
+            return 0;
+        }
+
+        //
+        // Paths on the command line are relative to the client's working directory, not ours.
+        //
+
+        options.setJarFile(resolvePath(workingDirectory, options.getJarFile()));
+        options.setOutputDirectory(resolvePath(workingDirectory, options.getOutputDirectory()));
+        options.setCrossReferenceIndexFile(resolvePath(workingDirectory, options.getCrossReferenceIndexFile()));
+
+        final List<String> typeNames = options.getClassNames();
+
+        for (int i = 0; i < typeNames.size(); i++) {
+            final String typeName = typeNames.get(i);
+
+            if (StringUtilities.endsWithIgnoreCase(typeName, ".class")) {
+                typeNames.set(i, resolvePath(workingDirectory, typeName));
+                continue;
+            }
+
+            final File classFile = new File(
+                workingDirectory,
+                typeName.replace('.', File.separatorChar).replace('/', File.separatorChar) + ".class"
+            );
+
+            if (classFile.isFile()) {
+                typeNames.set(i, classFile.getPath());
+            }
+        }
+
+        return DecompilerDriver.decompile(options, _metadataSystemSource, out, err);
+    }
+
+    private static String resolvePath(final File workingDirectory, final String path) {
+        if (StringUtilities.isNullOrWhitespace(path) || new File(path).isAbsolute()) {
+            return path;
+        }
+        return new File(workingDirectory, path).getPath();
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Token File">
+
+    private static File getTokenFile(final int port) {
+        return new File(new File(System.getProperty("user.home"), ".procyon"), "daemon-" + port + ".token");
+    }
+
+    private static File writeTokenFile(final int port, final byte[] token) throws IOException {
+        final File file = getTokenFile(port);
+        final Path path = file.toPath();
+        final Path directory = path.getParent();
+
+        //
+        // Any token left behind by an earlier daemon on the same port is discarded rather than
+        // overwritten, so the new file is always created with owner-only permissions.
+        //
+
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            if (!Files.isDirectory(directory)) {
+                Files.createDirectories(
+                    directory,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"))
+                );
+            }
+
+            Files.deleteIfExists(path);
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        else {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(path);
+            Files.createFile(path);
+
+            if (!file.setReadable(false, false) || !file.setReadable(true, true) ||
+                !file.setWritable(false, false) || !file.setWritable(true, true)) {
+
+                Files.deleteIfExists(path);
+                throw new IOException("Could not restrict access to token file '" + file + "'.");
+            }
+        }
+
+        Files.write(path, token);
+        file.deleteOnExit();
+
+        return file;
+    }
+
+    private static byte[] readTokenFile(final int port) throws IOException {
+        final File file = getTokenFile(port);
+
+        if (!file.isFile()) {
+            throw new IOException(
+                String.format("No decompiler daemon token found at '%s'; is a daemon running on port %d?", file, port)
+            );
+        }
+
+        final byte[] token = Files.readAllBytes(file.toPath());
+
+        if (token.length != TOKEN_LENGTH) {
+            throw new IOException("Malformed decompiler daemon token at '" + file + "'.");
+        }
+
+        return token;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Warm Metadata">
+
+    private final static class WarmMetadataSystemSource extends MetadataSystemSource {
+        private final List<FileStamp> _classPathStamps;
+        private final Map<File, CachedMetadataSystem> _jars;
+
+        private CachedMetadataSystem _inputs;
+
+        WarmMetadataSystemSource() {
+            _classPathStamps = new ArrayList<>();
+
+            final String classPath = System.getProperty("java.class.path");
+
+            if (classPath != null) {
+                for (final String entry : classPath.split(Pattern.quote(File.pathSeparator))) {
+                    if (!StringUtilities.isNullOrEmpty(entry)) {
+                        _classPathStamps.add(FileStamp.of(new File(entry)));
+                    }
+                }
+            }
+
+            _jars = new CachedJarMap();
+        }
+
+        @Override
+        MetadataSystem getMetadataSystem() {
+            discardStaleEntries();
+
+            if (_inputs == null) {
+                _inputs = new CachedMetadataSystem(null);
+            }
+
+            return _inputs.getMetadataSystem();
+        }
+
+        @Override
+        JarFile getJarFile(final File file) throws IOException {
+            return getCachedJar(file).getJarFile();
+        }
+
+        @Override
+        MethodBodyCache getMethodBodyCache(final MetadataSystem metadataSystem) {
+            if (_inputs != null && _inputs.owns(metadataSystem)) {
+                return _inputs.getMethodBodyCache();
+            }
+
+            for (final CachedMetadataSystem cached : _jars.values()) {
+                if (cached.owns(metadataSystem)) {
+                    return cached.getMethodBodyCache();
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        MetadataSystem getMetadataSystem(final File jarFile) throws IOException {
+            return getCachedJar(jarFile).getMetadataSystem();
+        }
+
+        private CachedMetadataSystem getCachedJar(final File file) throws IOException {
+            discardStaleEntries();
+
+            final File key = file.getCanonicalFile();
+
+            CachedMetadataSystem cached = _jars.get(key);
+
+            if (cached == null) {
+                _jars.put(key, cached = new CachedMetadataSystem(new JarFile(key)));
+            }
+
+            return cached;
+        }
+
+        private void discardStaleEntries() {
+            boolean classPathChanged = false;
+
+            for (final FileStamp stamp : _classPathStamps) {
+                if (!stamp.isCurrent()) {
+                    classPathChanged = true;
+                    break;
+                }
+            }
+
+            if (classPathChanged) {
+                final List<FileStamp> refreshed = FileStamp.refresh(_classPathStamps);
+
+                _classPathStamps.clear();
+                _classPathStamps.addAll(refreshed);
+            }
+
+            if (_inputs != null && (classPathChanged || _inputs.isStale())) {
+                try {
+                    _inputs = _inputs.reload();
+                }
+                catch (IOException ignored) {
+                    _inputs.close();
+                    _inputs = null;
+                }
+            }
+
+            for (final Iterator<Map.Entry<File, CachedMetadataSystem>> it = _jars.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<File, CachedMetadataSystem> entry = it.next();
+                final CachedMetadataSystem cached = entry.getValue();
+
+                if (classPathChanged || cached.isStale()) {
+                    try {
+                        entry.setValue(cached.reload());
+                    }
+                    catch (IOException ignored) {
+                        //
+                        // The jar file has been removed, or can no longer be read.
+                        //
+                        cached.close();
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private final static class CachedJarMap extends LinkedHashMap<File, CachedMetadataSystem> {
+        private static final long serialVersionUID = 4713364580931757474L;
+
+        CachedJarMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<File, CachedMetadataSystem> eldest) {
+            if (size() > MAX_CACHED_JARS) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final static class CachedMetadataSystem {
+        private final JarFile _jarFile;
+        private final FileStamp _jarFileStamp;
+        private final InputTypeLoader _typeLoader;
+        private final NoRetryMetadataSystem _metadataSystem;
+        private final Map<File, FileStamp> _fileStamps;
+        private final MethodBodyCache _methodBodyCache;
+
+        CachedMetadataSystem(final JarFile jarFile) {
+            this(jarFile, new MethodBodyCache());
+        }
+
+        private CachedMetadataSystem(final JarFile jarFile, final MethodBodyCache methodBodyCache) {
+            _jarFile = jarFile;
+            _methodBodyCache = methodBodyCache;
+            _jarFileStamp = jarFile != null ? FileStamp.of(new File(jarFile.getName())) : null;
+            _fileStamps = new LinkedHashMap<>();
+            _typeLoader = new StampingTypeLoader(_fileStamps);
+
+            _metadataSystem = new NoRetryMetadataSystem(
+                jarFile != null ? new CompositeTypeLoader(new JarTypeLoader(jarFile), _typeLoader)
+                                : _typeLoader
+            );
+        }
+
+        final JarFile getJarFile() {
+            return _jarFile;
+        }
+
+        final MetadataSystem getMetadataSystem() {
+            //
+            // A type missing from an earlier request may have been added since.
+            //
+            _metadataSystem.clearFailedTypes();
+            return _metadataSystem;
+        }
+
+        final MethodBodyCache getMethodBodyCache() {
+            return _methodBodyCache;
+        }
+
+        final boolean owns(final MetadataSystem metadataSystem) {
+            return _metadataSystem == metadataSystem;
+        }
+
+        final boolean isStale() {
+            if (_jarFileStamp != null && !_jarFileStamp.isCurrent()) {
+                return true;
+            }
+
+            for (final FileStamp stamp : _fileStamps.values()) {
+                if (!stamp.isCurrent()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Creates a fresh metadata system over the same jar file (if any) and closes this one.  Bodies
+         * are cached by their contents, so the cache is handed over to the new metadata system.
+         */
+        final CachedMetadataSystem reload() throws IOException {
+            final JarFile jarFile = _jarFile != null ? new JarFile(_jarFile.getName()) : null;
+
+            closeJarFile();
+
+            return new CachedMetadataSystem(jarFile, _methodBodyCache);
+        }
+
+        final void close() {
+            closeJarFile();
+            _methodBodyCache.clear();
+        }
+
+        private void closeJarFile() {
+            if (_jarFile != null) {
+                try {
+                    _jarFile.close();
+                }
+                catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Stamps each class file before reading it.  A file which changes while (or after) it is read is
+     * then always seen as stale by the next request, whereas a stamp taken after reading could record
+     * the changed file and hide the change from every later request.  Only the first stamp of a file
+     * is kept, for the same reason.
+     */
+    private final static class StampingTypeLoader extends InputTypeLoader {
+        private final Map<File, FileStamp> _fileStamps;
+
+        StampingTypeLoader(final Map<File, FileStamp> fileStamps) {
+            _fileStamps = fileStamps;
+        }
+
+        @Override
+        protected boolean tryLoadFile(final File file, final Buffer buffer) {
+            final FileStamp stamp = FileStamp.of(file);
+
+            if (!super.tryLoadFile(file, buffer)) {
+                return false;
+            }
+
+            if (!_fileStamps.containsKey(file)) {
+                _fileStamps.put(file, stamp);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Records the modification time and size of a file.  A directory is stamped with the latest
+     * modification time in its tree and the number and total size of the files in it, so adding,
+     * removing, or rewriting a class file anywhere beneath it is noticed.
+     */
+    private final static class FileStamp {
+        final File file;
+        final long lastModified;
+        final long length;
+        final long fileCount;
+
+        private FileStamp(final File file, final long lastModified, final long length, final long fileCount) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.fileCount = fileCount;
+        }
+
+        static FileStamp of(final File file) {
+            if (!file.isDirectory()) {
+                return new FileStamp(file, file.lastModified(), file.length(), 0L);
+            }
+
+            final ArrayDeque<File> directories = new ArrayDeque<>();
+
+            long lastModified = 0L;
+            long length = 0L;
+            long fileCount = 0L;
+
+            directories.push(file);
+
+            while (!directories.isEmpty()) {
+                final File directory = directories.pop();
+                final File[] children = directory.listFiles();
+
+                lastModified = Math.max(lastModified, directory.lastModified());
+
+                if (children == null) {
+                    continue;
+                }
+
+                for (final File child : children) {
+                    if (child.isDirectory()) {
+                        //
+                        // Don't follow links to directories; they may lead back into the tree.
+                        //
+                        if (!Files.isSymbolicLink(child.toPath())) {
+                            directories.push(child);
+                        }
+                        continue;
+                    }
+
+                    lastModified = Math.max(lastModified, child.lastModified());
+                    length += child.length();
+                    fileCount++;
+                }
+            }
+
+            return new FileStamp(file, lastModified, length, fileCount);
+        }
+
+        final boolean isCurrent() {
+            final FileStamp current = of(file);
+
+            return current.lastModified == lastModified &&
+                   current.length == length &&
+                   current.fileCount == fileCount;
+        }
+
+        static List<FileStamp> refresh(final List<FileStamp> stamps) {
+            final List<FileStamp> result = new ArrayList<>(stamps.size());
+
+            for (final FileStamp stamp : stamps) {
+                result.add(of(stamp.file));
+            }
+
+            return result;
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="ChannelOutputStream Class">
+
+    /**
+     * Buffers console output and writes it to the client in frames tagged with the channel
+     * ({@code out} or {@code err}) it was written to.  Closing the stream only flushes it.
+     */
+    private final static class ChannelOutputStream extends OutputStream {
+        final static int BUFFER_SIZE = 8192;
+
+        private final DataOutputStream _response;
+        private final int _channel;
+        private final byte[] _buffer = new byte[BUFFER_SIZE];
+
+        private int _count;
+
+        ChannelOutputStream(final DataOutputStream response, final int channel) {
+            _response = response;
+            _channel = channel;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (_count == _buffer.length) {
+                flushBuffer();
+            }
+            _buffer[_count++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] b, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (_count == _buffer.length) {
+                    flushBuffer();
+                }
+
+                final int n = Math.min(length, _buffer.length - _count);
+
+                System.arraycopy(b, offset, _buffer, _count, n);
+
+                _count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+
+            synchronized (_response) {
+                _response.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        private void flushBuffer() throws IOException {
+            if (_count == 0) {
+                return;
+            }
+
+            synchronized (_response) {
+                _response.writeByte(_channel);
+                _response.writeInt(_count);
+                _response.write(_buffer, 0, _count);
+            }
+
+            _count = 0;
+        }
+    }
+
+    // </editor-fold>
+}
@@ -2,7 +2,6 @@ package com.strobel.decompiler;
 
 import com.beust.jcommander.JCommander;
 import com.strobel.annotations.NotNull;
-import com.strobel.assembler.InputTypeLoader;
 import com.strobel.assembler.metadata.*;
 import com.strobel.core.ExceptionUtilities;
 import com.strobel.core.StringUtilities;
@@ -12,13 +11,16 @@ import com.strobel.decompiler.languages.Languages;
 import com.strobel.decompiler.languages.LineNumberPosition;
 import com.strobel.decompiler.languages.TypeDecompilationResults;
 import com.strobel.decompiler.languages.java.JavaFormattingOptions;
+import com.strobel.decompiler.languages.java.JsonAstLanguage;
 import com.strobel.io.PathHelper;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.text.DateFormat;
@@ -26,9 +28,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.ConsoleHandler;
@@ -58,6 +58,35 @@ public class DecompilerDriver {
 
         configureLogging(options);
 
+        if (options.getDaemonPort() != null) {
+            try {
+                new DecompilerDaemon(options.getDaemonPort()).run();
+            }
+            catch (Throwable t) {
+                System.err.println(ExceptionUtilities.getMessage(t));
+                System.exit(-1);
+            }
+            return;
+        }
+
+        if (options.getDaemonConnectPort() != null) {
+            final int exitCode;
+
+            try {
+                exitCode = DecompilerDaemon.submit(options.getDaemonConnectPort(), args, System.out, System.err);
+            }
+            catch (Throwable t) {
+                System.err.println(ExceptionUtilities.getMessage(t));
+                System.exit(-1);
+                return;
+            }
+
+            if (exitCode != 0) {
+                System.exit(exitCode);
+            }
+            return;
+        }
+
         final String jarFile = options.getJarFile();
         final boolean decompileJar = !StringUtilities.isNullOrWhitespace(jarFile);
 
@@ -68,6 +97,22 @@ public class DecompilerDriver {
             return;
         }
 
+        final int exitCode = decompile(options, new UncachedMetadataSystemSource(), System.out, System.err);
+
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    static int decompile(
+        final CommandLineOptions options,
+        final MetadataSystemSource metadataSystemSource,
+        final PrintStream out,
+        final PrintStream err) {
+
+        final List<String> typeNames = options.getClassNames();
+        final String jarFile = options.getJarFile();
+        final boolean decompileJar = !StringUtilities.isNullOrWhitespace(jarFile);
         final DecompilerSettings settings = new DecompilerSettings();
 
         settings.setFlattenSwitchBlocks(options.getFlattenSwitchBlocks());
@@ -78,11 +123,11 @@ public class DecompilerDriver {
         settings.setExcludeNestedTypes(options.getExcludeNestedTypes());
         settings.setOutputDirectory(options.getOutputDirectory());
         settings.setIncludeLineNumbersInBytecode(options.getIncludeLineNumbers());
+        settings.setIncludeStackMapFramesInBytecode(options.getIncludeStackMapFrames());
         settings.setRetainPointlessSwitches(options.getRetainPointlessSwitches());
         settings.setUnicodeOutputEnabled(options.isUnicodeOutputEnabled());
         settings.setMergeVariables(options.getMergeVariables());
         settings.setShowDebugLineNumbers(options.getShowDebugLineNumbers());
-        settings.setTypeLoader(new InputTypeLoader());
 
         if (options.isRawBytecode()) {
             settings.setLanguage(Languages.bytecode());
@@ -93,6 +138,9 @@ public class DecompilerDriver {
                                         : Languages.bytecodeAst()
             );
         }
+        else if (options.isJsonAst()) {
+            settings.setLanguage(Languages.javaAstJson());
+        }
 
         final DecompilationOptions decompilationOptions = new DecompilationOptions();
 
@@ -103,27 +151,54 @@ public class DecompilerDriver {
             settings.setFormattingOptions(JavaFormattingOptions.createDefault());
         }
 
+        final String crossReferenceIndexFile = options.getCrossReferenceIndexFile();
+        final CrossReferenceIndex crossReferenceIndex = StringUtilities.isNullOrWhitespace(crossReferenceIndexFile) ? null
+                                                                                                                 : new CrossReferenceIndex();
+
+        if (crossReferenceIndex != null && (options.getIncludeLineNumbers() || options.getStretchLines())) {
+            //
+            // Line number formatting rewrites each file after it is written, which would invalidate
+            // the positions recorded in the index.
+            //
+            err.println("The cross-reference index (-xi) cannot be combined with -ln or -sl.");
+            return -1;
+        }
+
         if (decompileJar) {
             try {
-                decompileJar(jarFile, options, decompilationOptions);
+                decompileJar(jarFile, metadataSystemSource, options, decompilationOptions, crossReferenceIndex, out, err);
             }
             catch (Throwable t) {
-                System.err.println(ExceptionUtilities.getMessage(t));
-                System.exit(-1);
+                err.println(ExceptionUtilities.getMessage(t));
+                return -1;
             }
         }
         else {
-            final MetadataSystem metadataSystem = new NoRetryMetadataSystem(settings.getTypeLoader());
+            final MetadataSystem metadataSystem = metadataSystemSource.getMetadataSystem();
+
+            settings.setMethodBodyCache(metadataSystemSource.getMethodBodyCache(metadataSystem));
 
             for (final String typeName : typeNames) {
                 try {
-                    decompileType(metadataSystem, typeName, options, decompilationOptions, true);
+                    decompileType(metadataSystem, typeName, options, decompilationOptions, crossReferenceIndex, out, err, true);
                 }
                 catch (Throwable t) {
-                    t.printStackTrace();
+                    t.printStackTrace(err);
                 }
             }
         }
+
+        if (crossReferenceIndex != null) {
+            try (final OutputStream stream = new FileOutputStream(crossReferenceIndexFile)) {
+                crossReferenceIndex.save(stream);
+            }
+            catch (Throwable t) {
+                err.println(ExceptionUtilities.getMessage(t));
+                return -1;
+            }
+        }
+
+        return 0;
     }
 
     private static void configureLogging(final CommandLineOptions options) {
@@ -170,8 +245,12 @@ public class DecompilerDriver {
 
     private static void decompileJar(
         final String jarFilePath,
+        final MetadataSystemSource metadataSystemSource,
         final CommandLineOptions commandLineOptions,
-        final DecompilationOptions decompilationOptions) throws IOException {
+        final DecompilationOptions decompilationOptions,
+        final CrossReferenceIndex crossReferenceIndex,
+        final PrintStream out,
+        final PrintStream err) throws IOException {
 
         final File jarFile = new File(jarFilePath);
 
@@ -180,19 +259,14 @@ public class DecompilerDriver {
         }
 
         final DecompilerSettings settings = decompilationOptions.getSettings();
-        final JarFile jar = new JarFile(jarFile);
+        final JarFile jar = metadataSystemSource.getJarFile(jarFile);
         final Enumeration<JarEntry> entries = jar.entries();
 
         settings.setShowSyntheticMembers(false);
 
-        settings.setTypeLoader(
-            new CompositeTypeLoader(
-                new JarTypeLoader(jar),
-                settings.getTypeLoader()
-            )
-        );
+        final MetadataSystem metadataSystem = metadataSystemSource.getMetadataSystem(jarFile);
 
-        final MetadataSystem metadataSystem = new NoRetryMetadataSystem(settings.getTypeLoader());
+        settings.setMethodBodyCache(metadataSystemSource.getMethodBodyCache(metadataSystem));
 
         while (entries.hasMoreElements()) {
             final JarEntry entry = entries.nextElement();
@@ -205,10 +279,10 @@ public class DecompilerDriver {
             final String internalName = StringUtilities.removeRight(name, ".class");
 
             try {
-                decompileType(metadataSystem, internalName, commandLineOptions, decompilationOptions, false);
+                decompileType(metadataSystem, internalName, commandLineOptions, decompilationOptions, crossReferenceIndex, out, err, false);
             }
             catch (Throwable t) {
-                t.printStackTrace();
+                t.printStackTrace(err);
             }
         }
     }
@@ -218,6 +292,9 @@ public class DecompilerDriver {
         final String typeName,
         final CommandLineOptions commandLineOptions,
         final DecompilationOptions options,
+        final CrossReferenceIndex crossReferenceIndex,
+        final PrintStream out,
+        final PrintStream err,
         final boolean includeNested) throws IOException {
 
         final TypeReference type;
@@ -240,7 +317,7 @@ public class DecompilerDriver {
         final TypeDefinition resolvedType;
 
         if (type == null || (resolvedType = type.resolve()) == null) {
-            System.err.printf("!!! ERROR: Failed to load class %s.\n", typeName);
+            err.printf("!!! ERROR: Failed to load class %s.\n", typeName);
             return;
         }
 
@@ -248,12 +325,14 @@ public class DecompilerDriver {
             return;
         }
 
-        final Writer writer = createWriter(resolvedType, settings);
+        final Writer writer = createWriter(resolvedType, settings, out);
         final boolean writeToFile = writer instanceof FileOutputWriter;
         final PlainTextOutput output;
 
         if (writeToFile) {
-            output = new PlainTextOutput(writer);
+            output = crossReferenceIndex != null
+                     ? new CrossReferencingTextOutput(writer, crossReferenceIndex, ((FileOutputWriter) writer).getFile().getPath())
+                     : new PlainTextOutput(writer);
         }
         else {
             output = new AnsiTextOutput(
@@ -270,7 +349,7 @@ public class DecompilerDriver {
         }
 
         if (writeToFile) {
-            System.out.printf("Decompiling %s...\n", typeName);
+            out.printf("Decompiling %s...\n", typeName);
         }
 
         TypeDecompilationResults decompResults = settings.getLanguage().decompileType(resolvedType, output, options);
@@ -279,11 +358,13 @@ public class DecompilerDriver {
         writer.close();
         
         // If we're writing to a file and we were asked to include line numbers in any way,
-        // then reformat the file to include that line number information.
+        // then reformat the file to include that line number information.  JSON output is
+        // never reformatted: its line numbers refer to the embedded source, not to the file.
         List<LineNumberPosition> lineNumberPositions = decompResults.getLineNumberPositions();
         if ( lineNumberPositions != null
                 && (commandLineOptions.getIncludeLineNumbers()
                         || commandLineOptions.getStretchLines())
+                && !(settings.getLanguage() instanceof JsonAstLanguage)
                 && (writer instanceof FileOutputWriter)) {
             EnumSet<LineNumberOption> lineNumberOptions = EnumSet.noneOf( LineNumberOption.class);
             if ( commandLineOptions.getIncludeLineNumbers()) {
@@ -298,12 +379,16 @@ public class DecompilerDriver {
         }        
     }
 
-    private static Writer createWriter(final TypeDefinition type, final DecompilerSettings settings) throws IOException {
+    private static Writer createWriter(
+        final TypeDefinition type,
+        final DecompilerSettings settings,
+        final PrintStream out) throws IOException {
+
         final String outputDirectory = settings.getOutputDirectory();
 
         if (StringUtilities.isNullOrWhitespace(outputDirectory)) {
             return new OutputStreamWriter(
-                System.out,
+                out,
                 settings.isUnicodeOutputEnabled() ? Charset.forName("UTF-8")
                                                   : Charset.defaultCharset()
             );
@@ -395,33 +480,3 @@ final class BriefLogFormatter extends Formatter {
             .append(lineSep).toString();
     }
 }
-
-final class NoRetryMetadataSystem extends MetadataSystem {
-    private final Set<String> _failedTypes = new HashSet<>();
-
-    NoRetryMetadataSystem() {
-    }
-
-    NoRetryMetadataSystem(final String classPath) {
-        super(classPath);
-    }
-
-    NoRetryMetadataSystem(final ITypeLoader typeLoader) {
-        super(typeLoader);
-    }
-
-    @Override
-    protected TypeDefinition resolveType(final String descriptor, final boolean mightBePrimitive) {
-        if (_failedTypes.contains(descriptor)) {
-            return null;
-        }
-
-        final TypeDefinition result = super.resolveType(descriptor, mightBePrimitive);
-
-        if (result == null) {
-            _failedTypes.add(descriptor);
-        }
-
-        return result;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,42 @@
+/*
+ * MetadataSystemSource.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.decompiler.languages.java.ast.MethodBodyCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.JarFile;
+
+/**
+ * Supplies the {@link MetadataSystem} used to resolve the types named in a request, and the
+ * one used to resolve the contents of a jar file.  A single run of the driver creates new
+ * instances every time; a {@link DecompilerDaemon} keeps them warm between requests.
+ */
+abstract class MetadataSystemSource {
+    abstract MetadataSystem getMetadataSystem();
+
+    abstract JarFile getJarFile(final File file) throws IOException;
+
+    abstract MetadataSystem getMetadataSystem(final File jarFile) throws IOException;
+
+    /**
+     * Gets the cache of decompiled method bodies to use with {@code metadataSystem}, which must have
+     * been supplied by this source, or {@code null} if bodies should not be cached.
+     */
+    MethodBodyCache getMethodBodyCache(final MetadataSystem metadataSystem) {
+        return null;
+    }
+}
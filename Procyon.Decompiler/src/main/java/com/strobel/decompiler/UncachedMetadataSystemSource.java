@@ -0,0 +1,58 @@
+/*
+ * UncachedMetadataSystemSource.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.InputTypeLoader;
+import com.strobel.assembler.metadata.CompositeTypeLoader;
+import com.strobel.assembler.metadata.JarTypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+
+/**
+ * Creates a new {@link MetadataSystem} for every request, opening each jar file once.
+ */
+class UncachedMetadataSystemSource extends MetadataSystemSource {
+    private final Map<File, JarFile> _jarFiles = new HashMap<>();
+
+    @Override
+    MetadataSystem getMetadataSystem() {
+        return new NoRetryMetadataSystem(new InputTypeLoader());
+    }
+
+    @Override
+    JarFile getJarFile(final File file) throws IOException {
+        JarFile jarFile = _jarFiles.get(file);
+
+        if (jarFile == null) {
+            _jarFiles.put(file, jarFile = new JarFile(file));
+        }
+
+        return jarFile;
+    }
+
+    @Override
+    MetadataSystem getMetadataSystem(final File jarFile) throws IOException {
+        return new NoRetryMetadataSystem(
+            new CompositeTypeLoader(
+                new JarTypeLoader(getJarFile(jarFile)),
+                new InputTypeLoader()
+            )
+        );
+    }
+}
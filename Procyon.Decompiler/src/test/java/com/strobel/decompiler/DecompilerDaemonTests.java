@@ -0,0 +1,318 @@
+/*
+ * DecompilerDaemonTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DecompilerDaemonTests {
+    private final static String SAMPLE = "com/strobel/decompiler/DecompilerDaemonTests$Sample";
+
+    //
+    // The wire format of a request, which clients other than DecompilerDaemon.submit() rely on.
+    //
+    private final static int PROTOCOL_MAGIC = 0x50584444;
+    private final static int PROTOCOL_VERSION = 2;
+    private final static int TOKEN_LENGTH = 32;
+
+    private final static int REQUEST_TIMEOUT = 500;
+    private final static long STARTUP_TIMEOUT = 30000L;
+
+    @SuppressWarnings("UnusedDeclaration")
+    static class Sample {
+        String version() {
+            return "VERSION_A";
+        }
+    }
+
+    private File _directory;
+    private String _userHome;
+    private int _port;
+    private DecompilerDaemon _daemon;
+    private Thread _daemonThread;
+
+    @Before
+    public void startDaemon() throws Exception {
+        _directory = Files.createTempDirectory("procyon-daemon").toFile();
+
+        //
+        // Keep the daemon's token file out of the real home directory.
+        //
+        _userHome = System.getProperty("user.home");
+        System.setProperty("user.home", _directory.getPath());
+
+        try (final ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            _port = probe.getLocalPort();
+        }
+
+        _daemon = new DecompilerDaemon(_port, REQUEST_TIMEOUT);
+
+        _daemonThread = new Thread(
+            new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        _daemon.run();
+                    }
+                    catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            },
+            "Decompiler Daemon"
+        );
+
+        _daemonThread.setDaemon(true);
+        _daemonThread.start();
+
+        //
+        // The token file is written once the daemon is listening.
+        //
+        final File tokenFile = new File(new File(_directory, ".procyon"), "daemon-" + _port + ".token");
+        final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+
+        while (!tokenFile.isFile() || tokenFile.length() != TOKEN_LENGTH) {
+            if (!_daemonThread.isAlive() || System.currentTimeMillis() > deadline) {
+                fail("The daemon did not start.");
+            }
+            Thread.sleep(10L);
+        }
+    }
+
+    @After
+    public void stopDaemon() throws Exception {
+        try {
+            _daemon.stop();
+            _daemonThread.join(STARTUP_TIMEOUT);
+            assertFalse("The daemon did not stop.", _daemonThread.isAlive());
+        }
+        finally {
+            System.setProperty("user.home", _userHome);
+            delete(_directory);
+        }
+    }
+
+    @Test
+    public void testDecompilesInputFile() throws Throwable {
+        final File classFile = writeSample("VERSION_A");
+        final Response response = submit(classFile.getPath());
+
+        assertEquals(response.err, 0, response.exitCode);
+        assertTrue(response.out, response.out.contains("class Sample"));
+        assertTrue(response.out, response.out.contains("\"VERSION_A\""));
+    }
+
+    @Test
+    public void testReloadsChangedInputFile() throws Throwable {
+        final File classFile = writeSample("VERSION_A");
+
+        assertTrue(submit(classFile.getPath()).out.contains("\"VERSION_A\""));
+
+        //
+        // The rewritten file has the same size, so only its modification time tells the daemon that
+        // the metadata it loaded from the file is stale.
+        //
+        final long lastModified = classFile.lastModified();
+
+        writeSample("VERSION_B");
+        assertTrue(classFile.setLastModified(lastModified + 10000L));
+
+        final Response response = submit(classFile.getPath());
+
+        assertEquals(response.err, 0, response.exitCode);
+        assertTrue(response.out, response.out.contains("\"VERSION_B\""));
+        assertFalse(response.out, response.out.contains("\"VERSION_A\""));
+    }
+
+    @Test
+    public void testRejectsUnauthorizedRequests() throws Throwable {
+        final byte[] wrongToken = new byte[TOKEN_LENGTH];
+
+        Arrays.fill(wrongToken, (byte) 0x5A);
+
+        assertClosedWithoutResponse(PROTOCOL_MAGIC, PROTOCOL_VERSION, wrongToken);
+        assertClosedWithoutResponse(PROTOCOL_MAGIC, PROTOCOL_VERSION + 1, readToken());
+        assertClosedWithoutResponse(0xCAFEBABE, PROTOCOL_VERSION, readToken());
+
+        //
+        // A well-formed request which presents the token is still answered.
+        //
+        assertEquals(0, submit(writeSample("VERSION_A").getPath()).exitCode);
+    }
+
+    @Test
+    public void testClosesStalledConnection() throws Throwable {
+        final File classFile = writeSample("VERSION_A");
+
+        try (final Socket stalled = connect()) {
+            final DataOutputStream request = new DataOutputStream(stalled.getOutputStream());
+
+            request.writeInt(PROTOCOL_MAGIC);
+            request.writeInt(PROTOCOL_VERSION);
+            request.write(readToken(), 0, TOKEN_LENGTH / 2);
+            request.flush();
+
+            //
+            // The request queued behind the incomplete one is handled once that times out.
+            //
+            final long start = System.currentTimeMillis();
+            final Response response = submit(classFile.getPath());
+
+            assertEquals(response.err, 0, response.exitCode);
+            assertTrue(response.out, response.out.contains("\"VERSION_A\""));
+            assertTrue(System.currentTimeMillis() - start < STARTUP_TIMEOUT);
+
+            assertEquals(-1, stalled.getInputStream().read());
+        }
+    }
+
+    private Response submit(final String... args) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        final int exitCode = DecompilerDaemon.submit(_port, args, new PrintStream(out, true), new PrintStream(err, true));
+
+        return new Response(exitCode, out.toString(), err.toString());
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), _port);
+        socket.setSoTimeout((int) STARTUP_TIMEOUT);
+        return socket;
+    }
+
+    private void assertClosedWithoutResponse(final int magic, final int version, final byte[] token) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream request = new DataOutputStream(bytes);
+
+        request.writeInt(magic);
+        request.writeInt(version);
+        request.write(token);
+        request.writeUTF(_directory.getPath());
+        request.writeInt(1);
+        request.writeUTF(SAMPLE);
+        request.flush();
+
+        try (final Socket socket = connect()) {
+            final int response;
+
+            try {
+                socket.getOutputStream().write(bytes.toByteArray());
+                response = socket.getInputStream().read();
+            }
+            catch (SocketException ignored) {
+                //
+                // The daemon stops reading at the first bad field, so it may reset the connection
+                // before the rest of the request has been written; that is no response, too.
+                //
+                return;
+            }
+
+            assertEquals(-1, response);
+        }
+    }
+
+    private byte[] readToken() throws IOException {
+        return Files.readAllBytes(new File(new File(_directory, ".procyon"), "daemon-" + _port + ".token").toPath());
+    }
+
+    /**
+     * Writes the {@link Sample} class to a file outside the class path, with the string returned by
+     * its {@code version()} method replaced by another of the same length.
+     */
+    private File writeSample(final String version) throws IOException {
+        final byte[] original = readSampleClass();
+        final byte[] search = "VERSION_A".getBytes("US-ASCII");
+        final byte[] replacement = version.getBytes("US-ASCII");
+
+        assertEquals(search.length, replacement.length);
+
+        final int offset = indexOf(original, search);
+
+        assertTrue(offset >= 0);
+        System.arraycopy(replacement, 0, original, offset, replacement.length);
+
+        final File classFile = new File(_directory, "Sample.class");
+
+        Files.write(classFile.toPath(), original);
+
+        return classFile;
+    }
+
+    private static byte[] readSampleClass() throws IOException {
+        try (final InputStream stream = DecompilerDaemonTests.class.getResourceAsStream("/" + SAMPLE + ".class")) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+
+            for (int n; (n = stream.read(buffer)) > 0; ) {
+                bytes.write(buffer, 0, n);
+            }
+
+            return bytes.toByteArray();
+        }
+    }
+
+    private static int indexOf(final byte[] data, final byte[] search) {
+        outer:
+        for (int i = 0; i + search.length <= data.length; i++) {
+            for (int j = 0; j < search.length; j++) {
+                if (data[i + j] != search[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private final static class Response {
+        final int exitCode;
+        final String out;
+        final String err;
+
+        Response(final int exitCode, final String out, final String err) {
+            this.exitCode = exitCode;
+            this.out = out;
+            this.err = err;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * DecompilerDriverTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.beust.jcommander.JCommander;
+import com.strobel.core.StringUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DecompilerDriverTests {
+    private final static String SAMPLE = "com/strobel/decompiler/DecompilerDriverTests$Sample";
+
+    @SuppressWarnings("UnusedDeclaration")
+    static class Sample {
+        private int count;
+        private int caf\u00e9;
+
+        int increment() {
+            return ++count + caf\u00e9;
+        }
+
+        String describe() {
+            return "Count: " + increment();
+        }
+    }
+
+    private File _directory;
+    private ByteArrayOutputStream _errors;
+
+    @Before
+    public void setUp() throws IOException {
+        _directory = Files.createTempDirectory("procyon-driver").toFile();
+        _errors = new ByteArrayOutputStream();
+    }
+
+    @After
+    public void tearDown() {
+        delete(_directory);
+    }
+
+    @Test
+    public void testCrossReferencePositionsMatchWrittenFiles() throws Throwable {
+        final File indexFile = new File(_directory, "index.xref");
+        final File outputDirectory = new File(_directory, "out");
+
+        assertEquals(0, decompile("-o", outputDirectory.getPath(), "-xi", indexFile.getPath(), SAMPLE));
+
+        final CrossReferenceIndex index;
+
+        try (final InputStream stream = new FileInputStream(indexFile)) {
+            index = CrossReferenceIndex.load(stream);
+        }
+
+        assertSpans(index.find("L" + SAMPLE + ";"), "Sample", 1);
+        assertSpans(index.find(SAMPLE + ".count:I"), "count", 2);
+        assertSpans(index.find(SAMPLE + ".increment()I"), "increment", 2);
+
+        //
+        // Unicode output is disabled, so the non-ASCII character is escaped in the written file.
+        //
+        assertSpans(index.find(SAMPLE + ".caf\u00e9:I"), "caf\\u00e9", 2);
+    }
+
+    @Test
+    public void testCrossReferenceRejectsLineNumberFormatting() throws Throwable {
+        final File indexFile = new File(_directory, "index.xref");
+        final File outputDirectory = new File(_directory, "out");
+
+        for (final String option : new String[] { "-ln", "-sl" }) {
+            assertEquals(-1, decompile("-o", outputDirectory.getPath(), "-xi", indexFile.getPath(), option, SAMPLE));
+            assertFalse(indexFile.exists());
+            assertFalse(outputDirectory.exists());
+            assertTrue(_errors.toString().contains("-xi"));
+        }
+    }
+
+    @Test
+    public void testJsonAstOutputIgnoresLineNumberFormatting() throws Throwable {
+        final File outputDirectory = new File(_directory, "out");
+        final File jsonFile = new File(outputDirectory, SAMPLE + ".ast.json");
+
+        assertEquals(0, decompile("--json-ast", "-o", outputDirectory.getPath(), SAMPLE));
+
+        final String expected = new String(Files.readAllBytes(jsonFile.toPath()), "US-ASCII");
+
+        for (final String option : new String[] { "-ln", "-sl" }) {
+            assertEquals(0, decompile("--json-ast", "-o", outputDirectory.getPath(), option, SAMPLE));
+            assertEquals(option, expected, new String(Files.readAllBytes(jsonFile.toPath()), "US-ASCII"));
+        }
+
+        final Map<?, ?> document = (Map<?, ?>) new JsonReader(expected).read();
+        final String source = (String) document.get("source");
+        final Map<?, ?> root = (Map<?, ?>) document.get("root");
+
+        assertEquals("procyon-java-ast", document.get("format"));
+        assertEquals(1L, document.get("version"));
+        assertEquals("CompilationUnit", root.get("kind"));
+
+        //
+        // The spans of identifiers must select their names from the embedded source, in which
+        // non-ASCII characters are escaped.
+        //
+        final String[] lines = source.split("\n", -1);
+        final List<Map<?, ?>> identifiers = new ArrayList<>();
+
+        collectNodes(root, "Identifier", identifiers);
+
+        assertFalse(identifiers.isEmpty());
+
+        boolean foundIncrement = false;
+
+        for (final Map<?, ?> identifier : identifiers) {
+            final List<?> span = (List<?>) identifier.get("span");
+
+            if (span == null) {
+                continue;
+            }
+
+            final String line = lines[((Long) span.get(0)).intValue() - 1];
+            final String text = line.substring(((Long) span.get(1)).intValue() - 1, ((Long) span.get(3)).intValue() - 1);
+
+            assertEquals(span.toString(), StringUtilities.escape((String) identifier.get("name")), text);
+            foundIncrement |= "increment".equals(text);
+        }
+
+        assertTrue(foundIncrement);
+    }
+
+    private int decompile(final String... args) {
+        final CommandLineOptions options = new CommandLineOptions();
+
+        new JCommander(options).parse(args);
+
+        return DecompilerDriver.decompile(
+            options,
+            new UncachedMetadataSystemSource(),
+            new PrintStream(new ByteArrayOutputStream()),
+            new PrintStream(_errors, true)
+        );
+    }
+
+    private static void assertSpans(final List<CrossReferenceIndex.Location> locations, final String expected, final int minimumCount)
+        throws IOException {
+
+        assertTrue(String.valueOf(locations), locations.size() >= minimumCount);
+
+        for (final CrossReferenceIndex.Location location : locations) {
+            final List<String> lines = Files.readAllLines(new File(location.getFileName()).toPath(), Charset.defaultCharset());
+            final String line = lines.get(location.getRow() - 1);
+            final int start = location.getColumn() - 1;
+
+            assertEquals(location.toString(), expected, line.substring(start, start + location.getLength()));
+        }
+    }
+
+    private static void collectNodes(final Map<?, ?> node, final String kind, final List<Map<?, ?>> nodes) {
+        if (kind.equals(node.get("kind"))) {
+            nodes.add(node);
+        }
+
+        final List<?> children = (List<?>) node.get("children");
+
+        if (children != null) {
+            for (final Object child : children) {
+                collectNodes((Map<?, ?>) child, kind, nodes);
+            }
+        }
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * A strict reader for the subset of JSON the decompiler emits:  objects become maps, arrays
+     * become lists, and integers become longs.
+     */
+    private final static class JsonReader {
+        private final String _text;
+        private int _position;
+
+        JsonReader(final String text) {
+            _text = text.trim();
+        }
+
+        Object read() {
+            final Object value = readValue();
+
+            if (_position != _text.length()) {
+                throw error("trailing content");
+            }
+
+            return value;
+        }
+
+        private Object readValue() {
+            if (_position >= _text.length()) {
+                throw error("unexpected end of input");
+            }
+
+            final char c = _text.charAt(_position);
+
+            switch (c) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                case 't':
+                    return readLiteral("true", Boolean.TRUE);
+                case 'f':
+                    return readLiteral("false", Boolean.FALSE);
+                case 'n':
+                    return readLiteral("null", null);
+                default:
+                    if (c == '-' || Character.isDigit(c)) {
+                        return readNumber();
+                    }
+                    throw error("unexpected character '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> readObject() {
+            final Map<String, Object> object = new LinkedHashMap<>();
+
+            expect('{');
+
+            if (!tryExpect('}')) {
+                do {
+                    final String key = readString();
+
+                    expect(':');
+
+                    if (object.put(key, readValue()) != null) {
+                        throw error("duplicate key '" + key + "'");
+                    }
+                }
+                while (tryExpect(','));
+
+                expect('}');
+            }
+
+            return object;
+        }
+
+        private List<Object> readArray() {
+            final List<Object> array = new ArrayList<>();
+
+            expect('[');
+
+            if (!tryExpect(']')) {
+                do {
+                    array.add(readValue());
+                }
+                while (tryExpect(','));
+
+                expect(']');
+            }
+
+            return array;
+        }
+
+        private String readString() {
+            final StringBuilder sb = new StringBuilder();
+
+            expect('"');
+
+            while (true) {
+                if (_position >= _text.length()) {
+                    throw error("unterminated string");
+                }
+
+                final char c = _text.charAt(_position++);
+
+                if (c == '"') {
+                    return sb.toString();
+                }
+
+                if (c < 0x20) {
+                    throw error("unescaped control character");
+                }
+
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+
+                final char e = _text.charAt(_position++);
+
+                switch (e) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append(e);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        sb.append((char) Integer.parseInt(_text.substring(_position, _position + 4), 16));
+                        _position += 4;
+                        break;
+                    default:
+                        throw error("invalid escape '" + e + "'");
+                }
+            }
+        }
+
+        private Long readNumber() {
+            final int start = _position;
+
+            if (_text.charAt(_position) == '-') {
+                _position++;
+            }
+
+            while (_position < _text.length() && Character.isDigit(_text.charAt(_position))) {
+                _position++;
+            }
+
+            return Long.parseLong(_text.substring(start, _position));
+        }
+
+        private Object readLiteral(final String literal, final Object value) {
+            if (!_text.startsWith(literal, _position)) {
+                throw error("invalid literal");
+            }
+
+            _position += literal.length();
+            return value;
+        }
+
+        private void expect(final char c) {
+            if (!tryExpect(c)) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        private boolean tryExpect(final char c) {
+            if (_position < _text.length() && _text.charAt(_position) == c) {
+                _position++;
+                return true;
+            }
+
+            return false;
+        }
+
+        private IllegalStateException error(final String message) {
+            return new IllegalStateException("Invalid JSON at offset " + _position + ": " + message);
+        }
+    }
+}
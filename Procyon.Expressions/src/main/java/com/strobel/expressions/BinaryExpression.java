@@ -64,6 +64,8 @@ public class BinaryExpression extends Expression {
             switch (_left.getNodeType()) {
                 case MemberAccess:
                     return reduceMember();
+                case ArrayIndex:
+                    return reduceIndex();
                 default:
                     return reduceVariable();
             }
@@ -148,6 +150,39 @@ public class BinaryExpression extends Expression {
         return Expression.assign(_left, r);
     }
 
+    private Expression reduceIndex() {
+        // a[i] (op)= r => temp1 = a; temp2 = i; temp3 = temp1[temp2] (op) r; temp1[temp2] = temp3; temp3
+        final BinaryExpression index = (BinaryExpression)_left;
+        final ParameterExpression temp1 = variable(index.getLeft().getType(), "temp1");
+        final ParameterExpression temp2 = variable(index.getRight().getType(), "temp2");
+
+        final ExpressionType op = getBinaryOpFromAssignmentOp(getNodeType());
+
+        Expression value = Expression.makeBinary(
+            op,
+            Expression.arrayIndex(temp1, temp2),
+            _right,
+            getMethod()
+        );
+
+        final LambdaExpression<?> conversion = getConversion();
+
+        if (conversion != null) {
+            value = Expression.invoke(conversion, value);
+        }
+
+        final ParameterExpression temp3 = variable(value.getType(), "temp3");
+
+        return Expression.block(
+            new ParameterExpression[]{temp1, temp2, temp3},
+            Expression.assign(temp1, index.getLeft()),
+            Expression.assign(temp2, index.getRight()),
+            Expression.assign(temp3, value),
+            Expression.assign(Expression.arrayIndex(temp1, temp2), temp3),
+            temp3
+        );
+    }
+
     private Expression reduceMember() {
         final MemberExpression member = (MemberExpression)_left;
 
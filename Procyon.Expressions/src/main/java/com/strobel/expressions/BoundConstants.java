@@ -23,11 +23,15 @@ import com.strobel.core.VerifyArgument;
 import com.strobel.reflection.Type;
 import com.strobel.reflection.Types;
 import com.strobel.reflection.emit.CodeGenerator;
+import com.strobel.reflection.emit.FieldBuilder;
 import com.strobel.reflection.emit.LocalBuilder;
 
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author strobelm
@@ -46,6 +50,9 @@ final class BoundConstants {
     /** Bytecode locals for storing frequently used constants */
     private final HashMap<TypedConstant, LocalBuilder> _cache = new HashMap<>();
 
+    /** Typed fields of the generated class for constants, initialized from the closure when constructed */
+    private final LinkedHashMap<TypedConstant, FieldBuilder> _fields = new LinkedHashMap<>();
+
     int count() {
         return _values.size();
     }
@@ -70,6 +77,12 @@ final class BoundConstants {
             throw Error.cannotCompileConstant(value);
         }
 
+        if (lc.canEmitConstantFields()) {
+            lc.generator.emitThis();
+            lc.generator.getField(getConstantField(lc, value, type));
+            return;
+        }
+
         final LocalBuilder local = _cache.get(new TypedConstant(value, type));
         
         if (local != null) {
@@ -89,7 +102,11 @@ final class BoundConstants {
         lc.generator.getField(Type.of(Closure.class).getField("constants"));
     }
 
-    private void emitConstantFromArray(final LambdaCompiler lc, final Object value, final Type type) {
+    private void emitConstantFromArray(final LambdaCompiler lc, final Object value, final Type<?> type) {
+        emitConstantFromArray(lc.generator, value, type);
+    }
+
+    private void emitConstantFromArray(final CodeGenerator generator, final Object value, final Type<?> type) {
         MutableInteger index = _indexes.get(value);
         
         if (index == null) {
@@ -97,12 +114,59 @@ final class BoundConstants {
             _values.add(value);
         }
 
-        lc.generator.emitInteger(index.getValue());
-        lc.generator.emitLoadElement(Types.Object);
-        lc.generator.emitConversion(Types.Object, type);
+        generator.emitInteger(index.getValue());
+        generator.emitLoadElement(Types.Object);
+        generator.emitConversion(Types.Object, type);
+    }
+
+    private FieldBuilder getConstantField(final LambdaCompiler lc, final Object value, final Type<?> type) {
+        final TypedConstant reference = new TypedConstant(value, type);
+
+        FieldBuilder field = _fields.get(reference);
+
+        if (field == null) {
+            field = lc.typeBuilder.defineField(
+                "$__constant" + _fields.size(),
+                type.getErasedType(),
+                Modifier.PRIVATE | Modifier.FINAL
+            );
+
+            _fields.put(reference, field);
+        }
+
+        return field;
+    }
+
+    /**
+     * Emits the initialization of the constant fields into the constructor of the generated class,
+     * which takes the closure as its first argument.  Each constant is loaded out of the closure
+     * and cast once, when the delegate is created, rather than every time the lambda reads it.
+     */
+    void emitInitializeConstantFields(final CodeGenerator ctor) {
+        for (final Map.Entry<TypedConstant, FieldBuilder> entry : _fields.entrySet()) {
+            final FieldBuilder field = entry.getValue();
+
+            ctor.emitThis();
+            ctor.emitLoadArgument(0);
+            ctor.getField(Type.of(Closure.class).getField("constants"));
+
+            emitConstantFromArray(ctor, entry.getKey().value, field.getFieldType());
+
+            ctor.putField(field);
+        }
     }
 
     void emitCacheConstants(final LambdaCompiler lc) {
+        // The same lambda can be in multiple places in the tree, so we
+        // need to clear any fields from last time.
+        _fields.clear();
+
+        if (lc.canEmitConstantFields()) {
+            // Constants get fields of their own, which are as cheap to load
+            // as locals.
+            return;
+        }
+
         int count = 0;
 
         for (final TypedConstant reference : _references.keySet()) {
@@ -0,0 +1,34 @@
+/*
+ * ColumnStorage.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+/**
+ * Describes how a column passed to a {@link ColumnarEvaluator} stores its values.
+ *
+ * @author Mike Strobel
+ */
+public enum ColumnStorage {
+    /**
+     * An array whose element type is the type of the corresponding lambda parameter, e.g.,
+     * an {@code int[]} for an {@code int} parameter.
+     */
+    Array,
+
+    /**
+     * A {@link java.nio.ByteBuffer} holding consecutive values of the corresponding primitive
+     * lambda parameter, in the buffer's byte order.  A {@code boolean} is stored as a single
+     * byte, which is {@code true} if it is not zero.
+     */
+    Buffer
+}
@@ -0,0 +1,200 @@
+/*
+ * ColumnarCompiler.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.compilerservices.DebugInfoGenerator;
+import com.strobel.core.ArrayUtilities;
+import com.strobel.reflection.MethodInfo;
+import com.strobel.reflection.PrimitiveTypes;
+import com.strobel.reflection.Type;
+import com.strobel.reflection.Types;
+import com.strobel.util.ContractUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.strobel.expressions.Expression.*;
+
+/**
+ * Compiles a lambda over scalar parameters into a {@link ColumnarEvaluator}, which loops over a
+ * range of rows stored column by column.  For a lambda {@code (int x, double y) -> body}, a
+ * projection is compiled as if it were:
+ * <pre>
+ * (Object[] columns, Object output, int start, int end) -> {
+ *     int[] column0 = (int[]) columns[0];
+ *     double[] column1 = (double[]) columns[1];
+ *     R[] results = (R[]) output;
+ *     for (int row = start; row < end; row++) {
+ *         results[row] = body(column0[row], column1[row]);
+ *     }
+ *     return end - start;
+ * }
+ * </pre>
+ * The lambda is inlined into the loop, so each row is evaluated without a call through the
+ * lambda's interface and without boxing, and the JIT is left with a simple counted loop.  A
+ * selection of a {@code boolean} lambda sets or clears bit {@code row} of a {@code long[]} bitmap
+ * instead, and returns the number of rows selected.
+ *
+ * @author Mike Strobel
+ */
+final class ColumnarCompiler {
+    private final static Type<ByteBuffer> ByteBufferType = Type.of(ByteBuffer.class);
+
+    private ColumnarCompiler() {
+        throw ContractUtils.unreachable();
+    }
+
+    static ColumnarEvaluator compileProjection(final LambdaExpression<?> lambda, final ColumnStorage... storage) {
+        if (lambda.getReturnType() == PrimitiveTypes.Void) {
+            throw Error.argumentCannotBeOfTypeVoid();
+        }
+
+        return compile(lambda, storage, false);
+    }
+
+    static ColumnarEvaluator compileSelection(final LambdaExpression<?> lambda, final ColumnStorage... storage) {
+        if (lambda.getReturnType() != PrimitiveTypes.Boolean) {
+            throw Error.argumentMustBeBoolean();
+        }
+
+        return compile(lambda, storage, true);
+    }
+
+    private static ColumnarEvaluator compile(
+        final LambdaExpression<?> lambda,
+        final ColumnStorage[] storage,
+        final boolean selection) {
+
+        final ParameterExpressionList parameters = lambda.getParameters();
+        final boolean allArrays = ArrayUtilities.isNullOrEmpty(storage);
+
+        if (!allArrays && storage.length != parameters.size()) {
+            throw Error.incorrectNumberOfColumns();
+        }
+
+        final ParameterExpression columns = parameter(Types.Object.makeArrayType(), "columns");
+        final ParameterExpression output = parameter(Types.Object, "output");
+        final ParameterExpression start = parameter(PrimitiveTypes.Integer, "start");
+        final ParameterExpression end = parameter(PrimitiveTypes.Integer, "end");
+        final ParameterExpression row = variable(PrimitiveTypes.Integer, "row");
+
+        final List<ParameterExpression> variables = new ArrayList<>();
+        final List<Expression> body = new ArrayList<>();
+        final Expression[] arguments = new Expression[parameters.size()];
+
+        //
+        // Cast each column to its actual type once, up front, rather than once per row.
+        //
+        for (int i = 0; i < arguments.length; i++) {
+            final Type<?> parameterType = parameters.get(i).getType();
+            final boolean buffer = !allArrays && storage[i] == ColumnStorage.Buffer;
+            final ParameterExpression column = variable(
+                buffer ? ByteBufferType : parameterType.makeArrayType(),
+                "column" + i
+            );
+
+            variables.add(column);
+            body.add(assign(column, convert(arrayIndex(columns, constant(i)), column.getType())));
+
+            arguments[i] = buffer ? readBuffer(column, row, parameterType)
+                                  : arrayIndex(column, row);
+        }
+
+        final Expression value = invoke(lambda, arguments);
+        final Expression loopBody;
+        final Expression result;
+
+        if (selection) {
+            final ParameterExpression bitmap = variable(PrimitiveTypes.Long.makeArrayType(), "bitmap");
+            final ParameterExpression count = variable(PrimitiveTypes.Integer, "count");
+            final Expression word = arrayIndex(bitmap, unsignedRightShift(row, constant(6)));
+            final Expression mask = leftShift(constant(1L), row);
+
+            variables.add(bitmap);
+            variables.add(count);
+
+            body.add(assign(bitmap, convert(output, bitmap.getType())));
+            body.add(assign(count, constant(0)));
+
+            loopBody = ifThenElse(
+                value,
+                block(orAssign(word, mask), preIncrementAssign(count)),
+                andAssign(word, onesComplement(mask))
+            );
+
+            result = count;
+        }
+        else {
+            final ParameterExpression results = variable(lambda.getReturnType().makeArrayType(), "results");
+
+            variables.add(results);
+
+            body.add(assign(results, convert(output, results.getType())));
+
+            loopBody = assign(arrayIndex(results, row), value);
+            result = subtract(end, start);
+        }
+
+        body.add(makeFor(row, start, lessThan(row, end), preIncrementAssign(row), loopBody));
+        body.add(result);
+
+        final LambdaExpression<ColumnarEvaluator> evaluator = lambda(
+            Type.of(ColumnarEvaluator.class),
+            block(
+                variables.toArray(new ParameterExpression[variables.size()]),
+                body.toArray(new Expression[body.size()])
+            ),
+            columns,
+            output,
+            start,
+            end
+        );
+
+        evaluator.setCreationContext(lambda.getCreationContext());
+
+        //
+        // Bypass the compiled lambda cache: it would replace the lambda's constants with loads
+        // from the closure, which the JIT cannot fold into the loop.
+        //
+        return LambdaCompiler.compile(evaluator, DebugInfoGenerator.empty()).getInstance();
+    }
+
+    private static Expression readBuffer(final Expression buffer, final Expression row, final Type<?> type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return notEqual(convert(call(buffer, getMethod("get"), row), PrimitiveTypes.Integer), constant(0));
+            case BYTE:
+                return call(buffer, getMethod("get"), row);
+            case SHORT:
+                return call(buffer, getMethod("getShort"), leftShift(row, constant(1)));
+            case CHAR:
+                return call(buffer, getMethod("getChar"), leftShift(row, constant(1)));
+            case INT:
+                return call(buffer, getMethod("getInt"), leftShift(row, constant(2)));
+            case LONG:
+                return call(buffer, getMethod("getLong"), leftShift(row, constant(3)));
+            case FLOAT:
+                return call(buffer, getMethod("getFloat"), leftShift(row, constant(2)));
+            case DOUBLE:
+                return call(buffer, getMethod("getDouble"), leftShift(row, constant(3)));
+            default:
+                throw Error.bufferColumnMustBePrimitive(type);
+        }
+    }
+
+    private static MethodInfo getMethod(final String name) {
+        return ByteBufferType.getMethod(name, PrimitiveTypes.Integer);
+    }
+}
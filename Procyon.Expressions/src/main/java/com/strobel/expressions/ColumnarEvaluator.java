@@ -0,0 +1,32 @@
+/*
+ * ColumnarEvaluator.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+/**
+ * Evaluates a lambda over a range of rows whose arguments are stored column by column.  Created
+ * by {@link LambdaExpression#compileProjection} and {@link LambdaExpression#compileSelection}.
+ *
+ * @author Mike Strobel
+ */
+public interface ColumnarEvaluator {
+    /**
+     * Evaluates the lambda for each row from {@code start} (inclusive) to {@code end} (exclusive).
+     * The value of the lambda's {@code i}th parameter for a row is taken from {@code columns[i]},
+     * and each row's result is written into {@code output} at the same row index.
+     *
+     * @return the number of rows evaluated for a projection, or the number of rows selected for
+     *         a selection.
+     */
+    int evaluate(final Object[] columns, final Object output, final int start, final int end);
+}
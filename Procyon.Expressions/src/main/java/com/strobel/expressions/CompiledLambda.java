@@ -0,0 +1,82 @@
+/*
+ * CompiledLambda.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.compilerservices.Closure;
+import com.strobel.reflection.BindingFlags;
+import com.strobel.reflection.MemberInfo;
+import com.strobel.reflection.MemberList;
+import com.strobel.reflection.MemberType;
+import com.strobel.reflection.MethodInfo;
+import com.strobel.reflection.Type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * The class generated for a lambda, from which any number of delegates may be created.  If the
+ * class takes a {@link Closure}, each delegate is constructed with its own closure over a set of
+ * constants; otherwise, each is simply a new instance.
+ *
+ * @author Mike Strobel
+ */
+final class CompiledLambda<T> {
+    private final Constructor<T> _constructor;
+    private final Object[] _constants;
+    private final MethodInfo _method;
+
+    CompiledLambda(final Type<T> interfaceType, final Class<T> generatedClass, final Object[] constants) {
+        try {
+            _constructor = constants != null ? generatedClass.getConstructor(Closure.class)
+                                             : generatedClass.getConstructor();
+        }
+        catch (NoSuchMethodException e) {
+            throw Error.couldNotCreateDelegate(e);
+        }
+
+        final MemberList<? extends MemberInfo> method = Type.of(generatedClass).findMembers(
+            MemberType.methodsOnly(),
+            BindingFlags.PublicInstanceDeclared,
+            Type.FilterMethodOverride,
+            interfaceType.getMethods().get(0)
+        );
+
+        _constants = constants;
+        _method = (MethodInfo) method.get(0);
+    }
+
+    /**
+     * The constants the generated class was compiled against, or {@code null} if it does not take
+     * a closure.
+     */
+    Object[] getConstants() {
+        return _constants;
+    }
+
+    Delegate<T> createDelegate() {
+        return createDelegate(_constants);
+    }
+
+    Delegate<T> createDelegate(final Object[] constants) {
+        try {
+            final T instance = _constants != null ? _constructor.newInstance(new Closure(constants, null))
+                                                  : _constructor.newInstance();
+
+            return new Delegate<>(instance, _method);
+        }
+        catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw Error.couldNotCreateDelegate(e);
+        }
+    }
+}
@@ -0,0 +1,596 @@
+/*
+ * CompiledLambdaCache.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.compilerservices.DebugInfoGenerator;
+import com.strobel.reflection.Type;
+import com.strobel.util.ContractUtils;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the classes generated by {@link LambdaExpression#compile()}, keyed on the structure of
+ * the expression tree rather than its identity.  Constants are not part of the structure: the
+ * cached class loads them from its closure, so compiling a tree which differs from an earlier one
+ * only in its constant values just creates a new instance of the earlier tree's class.  Primitive
+ * constants are kept in arrays of their own type, so the cached class reads them without unboxing.
+ * <p/>
+ * Two trees have the same structure if they have the same node types, result types, methods,
+ * fields, constructors, and lambda types, and use their parameters and labels in the same places.
+ * Constants are compared by type alone, except {@code null}s and switch case test values, which
+ * the generated code depends on.  Trees containing quoted nodes, user-defined operators, or
+ * switches with custom comparisons are never cached, as they cannot be rewritten faithfully.
+ * Extension nodes are reduced by the optimizer before the shape is taken, so trees containing
+ * them are cached by their reductions.
+ * <p/>
+ * The cache may be disabled by setting the {@code com.strobel.expressions.CompiledLambdaCache.Disable}
+ * system property to {@code true}.  The property is checked on every compilation, so it may be
+ * changed at run time.
+ *
+ * @author Mike Strobel
+ */
+public final class CompiledLambdaCache {
+    private final static String DisableCacheProperty = "com.strobel.expressions.CompiledLambdaCache.Disable";
+    private final static int MAX_ENTRIES = 1024;
+
+    private final static ConcurrentHashMap<ShapeKey, Entry<?>> Entries = new ConcurrentHashMap<>();
+    private final static AtomicLong Hits = new AtomicLong();
+    private final static AtomicLong Misses = new AtomicLong();
+
+    private CompiledLambdaCache() {
+        throw ContractUtils.unreachable();
+    }
+
+    /**
+     * Returns the number of compilations which reused a cached class.
+     */
+    public static long getHitCount() {
+        return Hits.get();
+    }
+
+    /**
+     * Returns the number of compilations which generated a new class, including those of trees
+     * which cannot be cached.
+     */
+    public static long getMissCount() {
+        return Misses.get();
+    }
+
+    public static int getSize() {
+        return Entries.size();
+    }
+
+    public static void clear() {
+        Entries.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Delegate<T> compile(final LambdaExpression<T> originalLambda) {
+        if (Boolean.getBoolean(DisableCacheProperty)) {
+            return LambdaCompiler.compile(originalLambda, DebugInfoGenerator.empty());
+        }
+
+        //
+        // Optimize before taking the shape of the tree: once its constants have been replaced
+        // with loads from the closure, they can no longer be folded.
+        //
+        final LambdaExpression<T> lambda = Optimizer.optimize(originalLambda);
+        final ShapeBuilder shape = new ShapeBuilder(null);
+
+        shape.visit(lambda);
+
+        if (!shape.isCacheable()) {
+            Misses.incrementAndGet();
+            return LambdaCompiler.compile(lambda, DebugInfoGenerator.empty());
+        }
+
+        final ShapeKey key = shape.getKey();
+        final Object[] values = shape.getValues();
+        final Entry<T> entry = (Entry<T>) Entries.get(key);
+
+        if (entry != null) {
+            Hits.incrementAndGet();
+            return entry.createDelegate(values);
+        }
+
+        Misses.incrementAndGet();
+
+        //
+        // Compile against placeholder arrays rather than the actual values, so the cache does not
+        // keep them alive.  Every delegate gets its own copy of the closure constants, with the
+        // placeholders swapped out for arrays holding its values.
+        //
+        final ValueLayout layout = new ValueLayout(shape.getValueTypes());
+        final LambdaExpression<T> parameterizedLambda = (LambdaExpression<T>) new ShapeBuilder(layout).visit(lambda);
+
+        final Entry<T> newEntry = new Entry<>(
+            LambdaCompiler.compileLambda(parameterizedLambda, DebugInfoGenerator.empty(), null),
+            layout
+        );
+
+        if (Entries.size() >= MAX_ENTRIES) {
+            Entries.clear();
+        }
+
+        Entries.putIfAbsent(key, newEntry);
+
+        return newEntry.createDelegate(values);
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Entry Class">
+
+    private final static class Entry<T> {
+        private final CompiledLambda<T> _lambda;
+        private final ValueLayout _layout;
+
+        Entry(final CompiledLambda<T> lambda, final ValueLayout layout) {
+            _lambda = lambda;
+            _layout = layout;
+        }
+
+        Delegate<T> createDelegate(final Object[] values) {
+            final Object[] constants = _lambda.getConstants();
+
+            if (constants == null) {
+                return _lambda.createDelegate();
+            }
+
+            return _lambda.createDelegate(substitute(constants, _layout.createArrays(values)));
+        }
+
+        /**
+         * Copies a closure's constants, replacing the placeholders with {@code arrays}.  The only
+         * other arrays among them are the constants of nested lambdas, which may refer to the
+         * placeholders themselves, so those are copied too.
+         */
+        private Object[] substitute(final Object[] constants, final Object[] arrays) {
+            final Object[] result = constants.clone();
+
+            for (int i = 0; i < result.length; i++) {
+                final Object constant = result[i];
+                final int placeholder = _layout.indexOfPlaceholder(constant);
+
+                if (placeholder >= 0) {
+                    result[i] = arrays[placeholder];
+                }
+                else if (constant instanceof Object[]) {
+                    result[i] = substitute((Object[]) constant, arrays);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="ValueLayout Class">
+
+    /**
+     * Assigns each constant of a tree a slot in one of several arrays: an array of each primitive
+     * type for constants of that type, and an {@code Object[]} for everything else.
+     */
+    private final static class ValueLayout {
+        private final Object[] _placeholders;
+        private final int[] _arrays;
+        private final int[] _slots;
+
+        ValueLayout(final Type<?>[] types) {
+            final ArrayList<Class<?>> elementTypes = new ArrayList<>();
+            final ArrayList<Integer> lengths = new ArrayList<>();
+
+            _arrays = new int[types.length];
+            _slots = new int[types.length];
+
+            for (int i = 0; i < types.length; i++) {
+                final Class<?> elementType = types[i].isPrimitive() ? types[i].getErasedClass() : Object.class;
+
+                int array = elementTypes.indexOf(elementType);
+
+                if (array < 0) {
+                    array = elementTypes.size();
+                    elementTypes.add(elementType);
+                    lengths.add(0);
+                }
+
+                _arrays[i] = array;
+                _slots[i] = lengths.get(array);
+
+                lengths.set(array, _slots[i] + 1);
+            }
+
+            _placeholders = new Object[elementTypes.size()];
+
+            for (int i = 0; i < _placeholders.length; i++) {
+                _placeholders[i] = Array.newInstance(elementTypes.get(i), lengths.get(i));
+            }
+        }
+
+        int indexOfPlaceholder(final Object value) {
+            for (int i = 0; i < _placeholders.length; i++) {
+                if (_placeholders[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Expression createElement(final int index, final Type<?> type) {
+            final Object placeholder = _placeholders[_arrays[index]];
+
+            final Expression element = Expression.arrayIndex(
+                Expression.constant(placeholder, Type.of(placeholder.getClass())),
+                Expression.constant(_slots[index])
+            );
+
+            return type.isPrimitive() ? element : Expression.convert(element, type);
+        }
+
+        Object[] createArrays(final Object[] values) {
+            final Object[] arrays = new Object[_placeholders.length];
+
+            for (int i = 0; i < arrays.length; i++) {
+                arrays[i] = Array.newInstance(
+                    _placeholders[i].getClass().getComponentType(),
+                    Array.getLength(_placeholders[i])
+                );
+            }
+
+            for (int i = 0; i < values.length; i++) {
+                Array.set(arrays[_arrays[i]], _slots[i], values[i]);
+            }
+
+            return arrays;
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="ShapeKey Class">
+
+    private final static class ShapeKey {
+        private final Object[] _tokens;
+        private final int _hashCode;
+
+        ShapeKey(final Object[] tokens) {
+            _tokens = tokens;
+            _hashCode = Arrays.hashCode(tokens);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return this == o ||
+                   o instanceof ShapeKey &&
+                   ((ShapeKey) o)._hashCode == _hashCode &&
+                   Arrays.equals(((ShapeKey) o)._tokens, _tokens);
+        }
+    }
+
+    private final static class IdentityToken {
+        private final Object _value;
+
+        IdentityToken(final Object value) {
+            _value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(_value);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof IdentityToken && ((IdentityToken) o)._value == _value;
+        }
+    }
+
+    private enum Token {
+        Null,
+        Constant,
+        NullConstant,
+        Parameter,
+        Label
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="ShapeBuilder Class">
+
+    /**
+     * Walks an expression tree, recording its structure and collecting its constant values.  If
+     * given a value layout, it also rewrites the tree, replacing each constant with a load from
+     * its slot in the layout.
+     */
+    private final static class ShapeBuilder extends ExpressionVisitor {
+        private final ArrayList<Object> _tokens = new ArrayList<>();
+        private final ArrayList<Object> _values = new ArrayList<>();
+        private final ArrayList<Type<?>> _valueTypes = new ArrayList<>();
+        private final IdentityHashMap<ParameterExpression, Integer> _parameters = new IdentityHashMap<>();
+        private final IdentityHashMap<LabelTarget, Integer> _labels = new IdentityHashMap<>();
+        private final ValueLayout _layout;
+
+        private boolean _isCacheable = true;
+        private int _switchTestDepth;
+
+        ShapeBuilder(final ValueLayout layout) {
+            _layout = layout;
+        }
+
+        boolean isCacheable() {
+            return _isCacheable;
+        }
+
+        ShapeKey getKey() {
+            return new ShapeKey(_tokens.toArray());
+        }
+
+        Object[] getValues() {
+            return _values.toArray();
+        }
+
+        Type<?>[] getValueTypes() {
+            return _valueTypes.toArray(new Type<?>[_valueTypes.size()]);
+        }
+
+        private void add(final Object token) {
+            _tokens.add(token);
+        }
+
+        private void addIdentity(final Object value) {
+            _tokens.add(value != null ? new IdentityToken(value) : Token.Null);
+        }
+
+        @Override
+        public Expression visit(final Expression node) {
+            if (node == null) {
+                add(Token.Null);
+                return null;
+            }
+
+            add(node.getClass());
+            add(node.getNodeType());
+            addIdentity(node.getType());
+
+            return super.visit(node);
+        }
+
+        @Override
+        protected Expression visitExtension(final Expression node) {
+            _isCacheable = false;
+            return node;
+        }
+
+        @Override
+        protected Expression visitConstant(final ConstantExpression node) {
+            final Object value = node.getValue();
+
+            if (_switchTestDepth > 0) {
+                add(value != null ? value : Token.NullConstant);
+                return node;
+            }
+
+            if (value == null) {
+                add(Token.NullConstant);
+                return node;
+            }
+
+            add(Token.Constant);
+
+            final int index = _values.size();
+
+            _values.add(value);
+            _valueTypes.add(node.getType());
+
+            if (_layout == null) {
+                return node;
+            }
+
+            return _layout.createElement(index, node.getType());
+        }
+
+        @Override
+        protected Expression visitParameter(final ParameterExpression node) {
+            final Integer index = _parameters.get(node);
+
+            add(Token.Parameter);
+
+            if (index != null) {
+                add(index);
+            }
+            else {
+                _parameters.put(node, _parameters.size());
+                add(_parameters.size() - 1);
+                add(node.getName());
+            }
+
+            return node;
+        }
+
+        @Override
+        protected LabelTarget visitLabelTarget(final LabelTarget node) {
+            if (node == null) {
+                add(Token.Null);
+                return null;
+            }
+
+            final Integer index = _labels.get(node);
+
+            add(Token.Label);
+
+            if (index != null) {
+                add(index);
+            }
+            else {
+                _labels.put(node, _labels.size());
+                add(_labels.size() - 1);
+                add(node.getName());
+                addIdentity(node.getType());
+            }
+
+            return node;
+        }
+
+        @Override
+        protected Expression visitUnary(final UnaryExpression node) {
+            if (node.getNodeType() == ExpressionType.Quote || node.getMethod() != null) {
+                _isCacheable = false;
+                return node;
+            }
+
+            return super.visitUnary(node);
+        }
+
+        @Override
+        protected Expression visitBinary(final BinaryExpression node) {
+            if (node.getMethod() != null) {
+                _isCacheable = false;
+                return node;
+            }
+
+            add(node.getConversion() != null);
+            return super.visitBinary(node);
+        }
+
+        @Override
+        protected Expression visitTypeBinary(final TypeBinaryExpression node) {
+            addIdentity(node.getTypeOperand());
+            return super.visitTypeBinary(node);
+        }
+
+        @Override
+        protected Expression visitMember(final MemberExpression node) {
+            addIdentity(node.getMember());
+            return super.visitMember(node);
+        }
+
+        @Override
+        protected Expression visitMethodCall(final MethodCallExpression node) {
+            addIdentity(node.getMethod());
+            add(node.getArgumentCount());
+            return super.visitMethodCall(node);
+        }
+
+        @Override
+        protected Expression visitNew(final NewExpression node) {
+            addIdentity(node.getConstructor());
+            add(node.getArgumentCount());
+            return super.visitNew(node);
+        }
+
+        @Override
+        protected Expression visitNewArray(final NewArrayExpression node) {
+            add(node.getExpressions().size());
+            return super.visitNewArray(node);
+        }
+
+        @Override
+        protected Expression visitInvocation(final InvocationExpression node) {
+            add(node.getArgumentCount());
+            return super.visitInvocation(node);
+        }
+
+        @Override
+        protected Expression visitConcat(final ConcatExpression node) {
+            add(node.getOperands().size());
+            return super.visitConcat(node);
+        }
+
+        @Override
+        protected Expression visitBlock(final BlockExpression node) {
+            add(node.getExpressionCount());
+            add(node.getVariables().size());
+            return super.visitBlock(node);
+        }
+
+        @Override
+        protected <T> LambdaExpression<T> visitLambda(final LambdaExpression<T> node) {
+            add(node.getParameters().size());
+            add(node.isTailCall());
+            add(String.valueOf(node.getName()));
+            addIdentity(node.getCreationContext());
+            return super.visitLambda(node);
+        }
+
+        @Override
+        protected Expression visitGoto(final GotoExpression node) {
+            add(node.getKind());
+            return super.visitGoto(node);
+        }
+
+        @Override
+        protected Expression visitRuntimeVariables(final RuntimeVariablesExpression node) {
+            add(node.getVariables().size());
+            return super.visitRuntimeVariables(node);
+        }
+
+        @Override
+        protected Expression visitTry(final TryExpression node) {
+            add(node.getHandlers().size());
+            return super.visitTry(node);
+        }
+
+        @Override
+        protected CatchBlock visitCatchBlock(final CatchBlock node) {
+            addIdentity(node.getTest());
+            add(node.getVariable() != null);
+            return super.visitCatchBlock(node);
+        }
+
+        @Override
+        protected Expression visitSwitch(final SwitchExpression node) {
+            if (node.getComparison() != null) {
+                _isCacheable = false;
+                return node;
+            }
+
+            add(node.getOptions());
+            add(node.getCases().size());
+            return super.visitSwitch(node);
+        }
+
+        @Override
+        protected SwitchCase visitSwitchCase(final SwitchCase node) {
+            add(node.getTestValues().size());
+
+            //
+            // Switch case test values are compiled into the switch itself, so they are part of the
+            // structure, and stay constants.
+            //
+            _switchTestDepth++;
+
+            final ExpressionList<? extends Expression> testValues;
+
+            try {
+                testValues = visit(node.getTestValues());
+            }
+            finally {
+                _switchTestDepth--;
+            }
+
+            return node.update(testValues, visit(node.getBody()));
+        }
+    }
+
+    // </editor-fold>
+}
@@ -19,9 +19,11 @@ package com.strobel.expressions;
 import com.strobel.core.VerifyArgument;
 import com.strobel.reflection.MethodInfo;
 import com.strobel.reflection.TargetInvocationException;
+import com.strobel.reflection.TypeList;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 
 /**
  * @author Mike Strobel
@@ -48,10 +50,15 @@ public final class Delegate<T> {
     public final MethodHandle getMethodHandle() {
         if (_methodHandle == null) {
             try {
+                //
+                // The raw method may be erased (e.g., for an interpreted delegate, whose method
+                // is the interface method itself), so adapt the handle to the resolved signature.
+                //
                 _methodHandle = MethodHandles
                     .lookup()
                     .unreflect(_method.getRawMethod())
-                    .bindTo(_instance);
+                    .bindTo(_instance)
+                    .asType(resolvedMethodType());
             }
             catch (IllegalAccessException e) {
                 throw new IllegalStateException("Could not resolve method handle.");
@@ -60,6 +67,17 @@ public final class Delegate<T> {
         return _methodHandle;
     }
 
+    private MethodType resolvedMethodType() {
+        final TypeList parameterTypes = _method.getParameters().getParameterTypes();
+        final Class<?>[] parameterClasses = new Class<?>[parameterTypes.size()];
+
+        for (int i = 0; i < parameterClasses.length; i++) {
+            parameterClasses[i] = parameterTypes.get(i).getErasedClass();
+        }
+
+        return MethodType.methodType(_method.getReturnType().getErasedClass(), parameterClasses);
+    }
+
     public final Object invokeDynamic(final Object... args) throws TargetInvocationException {
         try {
             if (_spreadInvoker == null) {
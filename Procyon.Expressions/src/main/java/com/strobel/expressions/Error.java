@@ -806,4 +806,19 @@ final class Error {
             "from a MethodHandle."
         );
     }
+
+    public static IllegalArgumentException bufferColumnMustBePrimitive(final Type<?> type) {
+        return new IllegalArgumentException(
+            format(
+                "A column of type '%s' cannot be stored in a buffer; only primitive columns may be.",
+                type.getName()
+            )
+        );
+    }
+
+    public static IllegalArgumentException incorrectNumberOfColumns() {
+        return new IllegalArgumentException(
+            "The number of column storage kinds must match the number of lambda parameters."
+        );
+    }
 }
@@ -863,6 +863,10 @@ public abstract class Expression {
                 return preDecrementAssign(operand, method);
             case PostDecrementAssign:
                 return postDecrementAssign(operand, method);
+            case IsNull:
+                return isNull(operand);
+            case IsNotNull:
+                return isNotNull(operand);
             default:
                 throw Error.unhandledUnary(unaryType);
         }
@@ -2988,6 +2992,7 @@ public abstract class Expression {
                 break;
 
             case Parameter:
+            case ArrayIndex:
                 canWrite = true;
                 break;
         }
@@ -30,8 +30,10 @@ import com.strobel.util.TypeUtils;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -41,10 +43,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 @SuppressWarnings({ "unchecked", "PackageVisibleField", "UnusedParameters", "UnusedDeclaration", "ConstantConditions" })
 final class LambdaCompiler {
     final static AtomicInteger nextId = new AtomicInteger();
+    final static int MaxBatchSize = 256;
     final static Type<Closure> closureType = Type.of(Closure.class);
 
     final LambdaExpression<?> lambda;
-    final TypeBuilder         typeBuilder;
+    final TypeBuilder<?>      typeBuilder;
     final MethodBuilder       methodBuilder;
     final CodeGenerator       generator;
 
@@ -55,6 +58,7 @@ final class LambdaCompiler {
 
     private ConstructorBuilder _constructorBuilder;
     private boolean            _hasClosureArgument;
+    private boolean            _ownsConstructor;
     private FieldBuilder       _closureField;
     private CompilerScope      _scope;
     private LabelScopeInfo     _labelBlock = new LabelScopeInfo(null, LabelScopeKind.Lambda);
@@ -94,6 +98,7 @@ final class LambdaCompiler {
         _scope = tree.scopes.get(lambda);
         _boundConstants = tree.constants.get(lambda);
         _freeLocals = new KeyedQueue<>();
+        _ownsConstructor = true;
 
         if (_scope.needsClosure || _boundConstants.count() > 0) {
             ensureClosure();
@@ -138,6 +143,47 @@ final class LambdaCompiler {
         initializeMethod();
     }
 
+    /**
+     * Creates a compiler for one of several lambdas being compiled into the same class.  The
+     * lambda is emitted as a private method of that class, and always has access to the closure.
+     */
+    private LambdaCompiler(
+        final AnalyzedTree tree,
+        final LambdaExpression<?> lambda,
+        final TypeBuilder<?> typeBuilder,
+        final FieldBuilder closureField) {
+
+        this.lambda = lambda;
+        this.typeBuilder = typeBuilder;
+
+        final MethodInfo interfaceMethod = lambda.getType().getMethods().get(0);
+
+        methodBuilder = typeBuilder.defineMethod(
+            getUniqueMethodName(),
+            Modifier.PRIVATE | Modifier.FINAL,
+            interfaceMethod.getReturnType(),
+            interfaceMethod.getParameters().getParameterTypes(),
+            interfaceMethod.getThrownTypes()
+        );
+
+        final ParameterExpressionList lambdaParameters = lambda.getParameters();
+
+        for (int i = 0, n = lambdaParameters.size(); i < n; i++) {
+            methodBuilder.defineParameter(i, lambdaParameters.get(i).getName());
+        }
+
+        generator = methodBuilder.getCodeGenerator();
+
+        _tree = tree;
+        _scope = tree.scopes.get(lambda);
+        _boundConstants = tree.constants.get(lambda);
+        _freeLocals = new KeyedQueue<>();
+        _hasClosureArgument = true;
+        _closureField = closureField;
+
+        initializeMethod();
+    }
+
     private LambdaCompiler(final LambdaCompiler parent, final LambdaExpression lambda) {
         _tree = parent._tree;
         _freeLocals = parent._freeLocals;
@@ -147,6 +193,7 @@ final class LambdaCompiler {
         this._constructorBuilder = parent._constructorBuilder;
         this.generator = parent.generator;
         _hasClosureArgument = parent._hasClosureArgument;
+        _ownsConstructor = parent._ownsConstructor;
         this.typeBuilder = parent.typeBuilder;
         _scope = _tree.scopes.get(lambda);
         _boundConstants = parent._boundConstants;
@@ -177,6 +224,15 @@ final class LambdaCompiler {
         return _hasClosureArgument;
     }
 
+    /**
+     * Returns whether bound constants may be stored in fields of the generated class.  This is only
+     * possible when the class is instantiated for this lambda alone, by a constructor which this
+     * compiler emits once the lambda body is complete.
+     */
+    boolean canEmitConstantFields() {
+        return _hasClosureArgument && _ownsConstructor;
+    }
+
     boolean emitDebugSymbols() {
         return _tree.getDebugInfoGenerator() != null;
     }
@@ -282,6 +338,23 @@ final class LambdaCompiler {
         final LambdaExpression<T> lambda,
         final DebugInfoGenerator debugInfoGenerator) {
 
+        return compile(lambda, debugInfoGenerator, null);
+    }
+
+    static <T> Delegate<T> compile(
+        final LambdaExpression<T> lambda,
+        final DebugInfoGenerator debugInfoGenerator,
+        final GeneratedClassLoader classLoader) {
+
+        return compileLambda(lambda, debugInfoGenerator, classLoader).createDelegate();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> CompiledLambda<T> compileLambda(
+        final LambdaExpression<T> lambda,
+        final DebugInfoGenerator debugInfoGenerator,
+        final GeneratedClassLoader classLoader) {
+
         // 1. Bind lambda
         final Pair<AnalyzedTree, LambdaExpression<T>> result = analyzeLambda(lambda);
         final AnalyzedTree tree = result.getFirst();
@@ -292,44 +365,22 @@ final class LambdaCompiler {
         // 2. Create lambda compiler
         final LambdaCompiler c = new LambdaCompiler(tree, analyzedLambda);
 
+        //
+        // Any lambdas nested within this one are defined into the same class loader.
+        //
+        c.typeBuilder.setClassLoader(classLoader);
+
         // 3. emit
         c.emitLambdaBody();
+        c.finishConstructor();
 
         final Type<T> generatedType = (Type<T>) c.typeBuilder.createType();
-        final Class<T> generatedClass = generatedType.getErasedClass();
-
-        return c.createDelegate(generatedClass);
-    }
-
-    @SuppressWarnings("unchecked")
-    private <T> Delegate<T> createDelegate(final Class<T> generatedClass) {
-        try {
-            final T instance;
-
-            if (_hasClosureArgument) {
-                final Constructor<?> constructor = generatedClass.getConstructor(Closure.class);
-                final Closure closure = new Closure(_boundConstants.toArray(), null);
-                instance = (T) constructor.newInstance(closure);
-            }
-            else {
-                instance = generatedClass.newInstance();
-            }
-
-            final MemberList<? extends MemberInfo> method = Type.of(generatedClass).findMembers(
-                MemberType.methodsOnly(),
-                BindingFlags.PublicInstanceDeclared,
-                Type.FilterMethodOverride,
-                lambda.getType().getMethods().get(0)
-            );
 
-            return new Delegate<>(
-                instance,
-                (MethodInfo) method.get(0)
-            );
-        }
-        catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            throw Error.couldNotCreateDelegate(e);
-        }
+        return new CompiledLambda<>(
+            lambda.getType(),
+            generatedType.getErasedClass(),
+            c._hasClosureArgument ? c._boundConstants.toArray() : null
+        );
     }
 
     static <T> void compile(
@@ -351,6 +402,221 @@ final class LambdaCompiler {
         c.emitLambdaBody();
     }
 
+    /**
+     * Compiles {@code lambdas}, emitting those with the same type and creation package into a
+     * shared class, up to {@link #MaxBatchSize} lambdas per class.  Returns the delegates in the
+     * same order as the lambdas.
+     */
+    static List<Delegate<?>> compileAll(
+        final List<? extends LambdaExpression<?>> lambdas,
+        final GeneratedClassLoader classLoader) {
+
+        final Delegate<?>[] delegates = new Delegate<?>[lambdas.size()];
+        final List<List<Integer>> batches = new ArrayList<>();
+
+        for (int i = 0, n = lambdas.size(); i < n; i++) {
+            final LambdaExpression<?> lambda = lambdas.get(i);
+
+            List<Integer> batch = null;
+
+            for (final List<Integer> candidate : batches) {
+                final LambdaExpression<?> first = lambdas.get(candidate.get(0));
+
+                if (candidate.size() < MaxBatchSize &&
+                    first.getType().isEquivalentTo(lambda.getType()) &&
+                    getPackage(first.getCreationContext()) == getPackage(lambda.getCreationContext())) {
+
+                    batch = candidate;
+                    break;
+                }
+            }
+
+            if (batch == null) {
+                batch = new ArrayList<>();
+                batches.add(batch);
+            }
+
+            batch.add(i);
+        }
+
+        for (final List<Integer> batch : batches) {
+            final LambdaExpression<?>[] batchLambdas = new LambdaExpression<?>[batch.size()];
+
+            for (int i = 0; i < batchLambdas.length; i++) {
+                batchLambdas[i] = lambdas.get(batch.get(i));
+            }
+
+            final Delegate<?>[] batchDelegates = compileBatch(batchLambdas, classLoader);
+
+            for (int i = 0; i < batchDelegates.length; i++) {
+                delegates[batch.get(i)] = batchDelegates[i];
+            }
+        }
+
+        return Arrays.asList(delegates);
+    }
+
+    /**
+     * Compiles lambdas of the same type into a single class.  Each lambda becomes a private method
+     * of the class, and the interface method dispatches to one of them based on an id which, along
+     * with the lambda's closure, is passed to the class's constructor.
+     */
+    private static Delegate<?>[] compileBatch(final LambdaExpression<?>[] lambdas, final GeneratedClassLoader classLoader) {
+        final LambdaExpression<?> first = lambdas[0];
+        final MethodInfo interfaceMethod = first.getType().getMethods().get(0);
+
+        final TypeBuilder<?> typeBuilder = new TypeBuilder<>(
+            getUniqueLambdaName("f__LambdaBatch", first.getCreationContext()),
+            Modifier.PUBLIC | Modifier.FINAL,
+            Types.Object,
+            Type.list(first.getType())
+        );
+
+        typeBuilder.setClassLoader(classLoader);
+
+        final FieldBuilder closureField = typeBuilder.defineField(
+            "$__closure",
+            closureType,
+            Modifier.PRIVATE | Modifier.FINAL
+        );
+
+        final FieldBuilder idField = typeBuilder.defineField(
+            "$__id",
+            PrimitiveTypes.Integer,
+            Modifier.PRIVATE | Modifier.FINAL
+        );
+
+        final ConstructorBuilder constructor = typeBuilder.defineConstructor(
+            Modifier.PUBLIC,
+            Type.list(closureType, PrimitiveTypes.Integer)
+        );
+
+        final CodeGenerator ctor = constructor.getCodeGenerator();
+
+        ctor.emitThis();
+        ctor.call(Types.Object.getConstructors().get(0));
+        ctor.emitThis();
+        ctor.emitLoadArgument(0);
+        ctor.putField(closureField);
+        ctor.emitThis();
+        ctor.emitLoadArgument(1);
+        ctor.putField(idField);
+        ctor.emitReturn();
+
+        final MethodBuilder[] methods = new MethodBuilder[lambdas.length];
+        final Object[][] constants = new Object[lambdas.length][];
+
+        for (int i = 0; i < lambdas.length; i++) {
+            final Pair<AnalyzedTree, ? extends LambdaExpression<?>> result = analyzeLambda(lambdas[i]);
+            final AnalyzedTree tree = result.getFirst();
+
+            tree.setDebugInfoGenerator(DebugInfoGenerator.empty());
+
+            final LambdaCompiler c = new LambdaCompiler(tree, result.getSecond(), typeBuilder, closureField);
+
+            c.emitLambdaBody();
+
+            methods[i] = c.methodBuilder;
+            constants[i] = c._boundConstants.toArray();
+        }
+
+        emitBatchDispatch(typeBuilder, interfaceMethod, idField, methods);
+
+        final Class<?> generatedClass = typeBuilder.createType().getErasedClass();
+
+        final MethodInfo method = (MethodInfo) Type.of(generatedClass).findMembers(
+            MemberType.methodsOnly(),
+            BindingFlags.PublicInstanceDeclared,
+            Type.FilterMethodOverride,
+            interfaceMethod
+        ).get(0);
+
+        final Delegate<?>[] delegates = new Delegate<?>[lambdas.length];
+
+        try {
+            final Constructor<?> generatedConstructor = generatedClass.getConstructor(
+                Closure.class,
+                int.class
+            );
+
+            for (int i = 0; i < lambdas.length; i++) {
+                delegates[i] = new Delegate<>(
+                    generatedConstructor.newInstance(new Closure(constants[i], null), i),
+                    method
+                );
+            }
+        }
+        catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw Error.couldNotCreateDelegate(e);
+        }
+
+        return delegates;
+    }
+
+    private static void emitBatchDispatch(
+        final TypeBuilder<?> typeBuilder,
+        final MethodInfo interfaceMethod,
+        final FieldBuilder idField,
+        final MethodBuilder[] methods) {
+
+        final MethodBuilder dispatcher = typeBuilder.defineMethod(
+            interfaceMethod.getName(),
+            Modifier.PUBLIC | Modifier.FINAL,
+            interfaceMethod.getReturnType(),
+            interfaceMethod.getParameters().getParameterTypes(),
+            interfaceMethod.getThrownTypes()
+        );
+
+        typeBuilder.defineMethodOverride(dispatcher, interfaceMethod);
+
+        final CodeGenerator code = dispatcher.getCodeGenerator();
+        final int last = methods.length - 1;
+
+        if (last == 0) {
+            emitBatchForward(code, methods[0]);
+            return;
+        }
+
+        //
+        // The id is always in range, so the last lambda doubles as the default case.
+        //
+        final int[] keys = new int[last];
+
+        for (int i = 0; i < last; i++) {
+            keys[i] = i;
+        }
+
+        code.emitThis();
+        code.getField(idField);
+
+        code.emitSwitch(
+            keys,
+            new SwitchCallback() {
+                @Override
+                public void emitCase(final int key, final Label breakTarget) {
+                    emitBatchForward(code, methods[key]);
+                }
+
+                @Override
+                public void emitDefault(final Label breakTarget) {
+                    emitBatchForward(code, methods[last]);
+                }
+            },
+            SwitchOptions.PreferTable
+        );
+    }
+
+    private static void emitBatchForward(final CodeGenerator code, final MethodBuilder method) {
+        code.emitThis();
+
+        for (int i = 0, n = method.getParameterTypes().size(); i < n; i++) {
+            code.emitLoadArgument(i);
+        }
+
+        code.call(OpCode.INVOKESPECIAL, method);
+        code.emitReturn(method.getReturnType());
+    }
+
     private static <T> Pair<AnalyzedTree, LambdaExpression<T>> analyzeLambda(final LambdaExpression<T> lambda) {
         // Spill the stack for any exception handling blocks or other
         // constructs which require entering with an empty stack.
@@ -852,7 +1118,7 @@ final class LambdaCompiler {
         final int emitAs = flags & CompilationFlags.EmitAsTypeMask;
 
         // Emit the target array.
-        emitExpression(left);
+        emitExpression(index.getLeft());
 
         // Emit the index.
         emitExpression(index.getRight());
@@ -2761,6 +3027,11 @@ final class LambdaCompiler {
 */
         compiler = new LambdaCompiler(_tree, lambda);
 
+        //
+        // The nested lambda must be visible to the outer one, so define it into the same class loader.
+        //
+        compiler.typeBuilder.setClassLoader(typeBuilder.getClassLoader());
+
         // 2. Emit the lambda
         compiler.emitLambdaBody(_scope, false, CompilationFlags.EmitAsNoTail);
 
@@ -2771,6 +3042,7 @@ final class LambdaCompiler {
         // 3. emit the delegate creation in the outer lambda
         emitDelegateConstruction(compiler);
 
+        compiler.finishConstructor();
         compiler.typeBuilder.createType();
     }
 
@@ -2779,18 +3051,7 @@ final class LambdaCompiler {
     }
 
     static String getUniqueLambdaName(final String name, final Class<?> creationContext) {
-        Package p;
-
-        if (creationContext != null) {
-            p = creationContext.getPackage();
-
-            if (p == null) {
-                p = LambdaCompiler.class.getPackage();
-            }
-        }
-        else {
-            p = LambdaCompiler.class.getPackage();
-        }
+        final Package p = getPackage(creationContext);
 
         if (name != null) {
             return String.format("%s.%s[0x%3$04x]", p.getName(), name, nextId.getAndIncrement());
@@ -2799,6 +3060,18 @@ final class LambdaCompiler {
         return String.format("%s.f__Lambda[0x%2$04x]", p.getName(), nextId.getAndIncrement());
     }
 
+    private static Package getPackage(final Class<?> creationContext) {
+        if (creationContext != null) {
+            final Package p = creationContext.getPackage();
+
+            if (p != null) {
+                return p;
+            }
+        }
+
+        return LambdaCompiler.class.getPackage();
+    }
+
     private void emitLambdaBody() {
         // The lambda body is the "last" expression of the lambda
         final int tailCallFlag = lambda.isTailCall() ? CompilationFlags.EmitAsTail : CompilationFlags.EmitAsNoTail;
@@ -2930,6 +3203,25 @@ final class LambdaCompiler {
         ctor.emitThis();
         ctor.emitLoadArgument(0);
         ctor.putField(_closureField);
+
+        if (!_ownsConstructor) {
+            ctor.emitReturn();
+        }
+    }
+
+    private void finishConstructor() {
+        if (!canEmitConstantFields()) {
+            return;
+        }
+
+        //
+        // The constant fields are only known once the lambda body has been emitted, so their
+        // initialization is left until the end of the constructor.
+        //
+        final CodeGenerator ctor = _constructorBuilder.getCodeGenerator();
+
+        _boundConstants.emitInitializeConstantFields(ctor);
+
         ctor.emitReturn();
     }
 
@@ -3981,7 +4273,8 @@ final class LambdaCompiler {
 
         final boolean isEnum = type.isEnum();
         final int[] keys = new int[tests];
-        final HashMap<Integer, Expression> caseBodies = new HashMap<>();
+        final HashMap<Integer, SwitchCase> caseBodies = new HashMap<>();
+        final HashMap<SwitchCase, Label> caseLabels = new HashMap<>();
 
         int i = 0;
 
@@ -4002,8 +4295,8 @@ final class LambdaCompiler {
 
                 keys[i++] = key;
 
-                if (k == m - 1) {
-                    caseBodies.put(key, switchCase.getBody());
+                if (!caseBodies.containsKey(key)) {
+                    caseBodies.put(key, switchCase);
                 }
             }
         }
@@ -4021,12 +4314,30 @@ final class LambdaCompiler {
             new SwitchCallback() {
                 @Override
                 public void emitCase(final int key, final Label breakTarget) throws Exception {
-                    final Expression body = caseBodies.get(key);
+                    final SwitchCase switchCase = caseBodies.get(key);
 
-                    if (body == null) {
+                    if (switchCase == null) {
                         return;
                     }
 
+                    //
+                    // Once the keys are sorted, the test values of a case are no longer adjacent,
+                    // so we cannot fall through to the body.  Emit it at its first key and jump
+                    // there from the others.
+                    //
+                    final Label caseLabel = caseLabels.get(switchCase);
+
+                    if (caseLabel != null) {
+                        generator.emitGoto(caseLabel);
+                        return;
+                    }
+
+                    final Label bodyLabel = generator.defineLabel();
+
+                    caseLabels.put(switchCase, bodyLabel);
+                    generator.markLabel(bodyLabel);
+
+                    final Expression body = switchCase.getBody();
                     final Type nodeType = node.getType();
 
                     if (nodeType == PrimitiveTypes.Void) {
@@ -20,6 +20,7 @@ import com.strobel.compilerservices.CallerResolver;
 import com.strobel.compilerservices.DebugInfoGenerator;
 import com.strobel.core.StringUtilities;
 import com.strobel.core.VerifyArgument;
+import com.strobel.reflection.GeneratedClassLoader;
 import com.strobel.reflection.MethodInfo;
 import com.strobel.reflection.Type;
 import com.strobel.reflection.emit.MethodBuilder;
@@ -27,6 +28,7 @@ import com.strobel.reflection.emit.TypeBuilder;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Modifier;
+import java.util.List;
 
 /**
  * @author Mike Strobel
@@ -132,16 +134,94 @@ public final class LambdaExpression<T> extends Expression {
         return _creationContext;
     }
 
+    final void setCreationContext(final Class<?> creationContext) {
+        _creationContext = creationContext;
+    }
+
     public final T compile() {
         return compileDelegate().getInstance();
     }
 
     public final Delegate<T> compileDelegate() {
-        return LambdaCompiler.compile(this, DebugInfoGenerator.empty());
+        return CompiledLambdaCache.compile(this);
+    }
+
+    /**
+     * Compiles this lambda, defining the generated classes into {@code classLoader} so that they
+     * can be unloaded along with it.  Classes in a separate class loader are in a separate runtime
+     * package, so the lambda may only access public types and members of other classes.
+     */
+    public final T compile(final GeneratedClassLoader classLoader) {
+        return compileDelegate(classLoader).getInstance();
+    }
+
+    public final Delegate<T> compileDelegate(final GeneratedClassLoader classLoader) {
+        VerifyArgument.notNull(classLoader, "classLoader");
+        return LambdaCompiler.compile(this, DebugInfoGenerator.empty(), classLoader);
+    }
+
+    /**
+     * Creates a delegate which interprets this lambda until it has been invoked often enough to
+     * be worth compiling, then compiles it in the background.  Best suited to lambdas which may
+     * only run a few times.  See {@link TieredCompilation}.
+     */
+    public final T compileTiered() {
+        return compileTieredDelegate().getInstance();
+    }
+
+    public final Delegate<T> compileTieredDelegate() {
+        return TieredCompilation.createDelegate(this);
+    }
+
+    /**
+     * Compiles {@code lambdas} together, emitting lambdas of the same type as methods of a shared
+     * class rather than each into a class of its own.  Compiling a large set of lambdas this way
+     * defines far fewer classes than compiling them one at a time.  The delegates are returned in
+     * the same order as the lambdas.
+     */
+    public static <T> List<Delegate<T>> compileAll(final List<? extends LambdaExpression<T>> lambdas) {
+        return compileAll(lambdas, null);
+    }
+
+    /**
+     * Compiles {@code lambdas} together, as {@link #compileAll(List)} does, defining the generated
+     * classes into {@code classLoader} so that they can be unloaded along with it.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<Delegate<T>> compileAll(
+        final List<? extends LambdaExpression<T>> lambdas,
+        final GeneratedClassLoader classLoader) {
+
+        VerifyArgument.noNullElements(lambdas, "lambdas");
+
+        final List<?> delegates = LambdaCompiler.compileAll(lambdas, classLoader);
+
+        return (List<Delegate<T>>) delegates;
+    }
+
+    /**
+     * Compiles this lambda into an evaluator which applies it to a range of rows stored column by
+     * column, writing each row's result into an array of the lambda's return type.  The lambda is
+     * inlined into a loop over the rows, so they are evaluated without a call through the lambda's
+     * interface and without boxing.  {@code storage} describes each column; if it is empty, every
+     * column is an array.  See {@link ColumnarEvaluator}.
+     */
+    public final ColumnarEvaluator compileProjection(final ColumnStorage... storage) {
+        return ColumnarCompiler.compileProjection(this, storage);
+    }
+
+    /**
+     * Compiles this {@code boolean} lambda into an evaluator which applies it to a range of rows
+     * stored column by column, as {@link #compileProjection} does.  Rather than an array of results,
+     * the evaluator takes a {@code long[]} bitmap: bit {@code row % 64} of element {@code row / 64}
+     * is set if the lambda returns {@code true} for that row, and cleared otherwise.
+     */
+    public final ColumnarEvaluator compileSelection(final ColumnStorage... storage) {
+        return ColumnarCompiler.compileSelection(this, storage);
     }
 
     public final MethodHandle compileHandle() {
-        return LambdaCompiler.compile(this, DebugInfoGenerator.empty()).getMethodHandle();
+        return CompiledLambdaCache.compile(this).getMethodHandle();
     }
 
     public final void compileToMethod(final MethodBuilder methodBuilder) {
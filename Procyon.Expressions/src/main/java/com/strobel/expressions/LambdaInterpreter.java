@@ -0,0 +1,1413 @@
+/*
+ * LambdaInterpreter.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.reflection.ConstructorInfo;
+import com.strobel.reflection.DynamicMethod;
+import com.strobel.reflection.FieldInfo;
+import com.strobel.reflection.MethodInfo;
+import com.strobel.reflection.PrimitiveTypes;
+import com.strobel.reflection.Type;
+import com.strobel.util.ContractUtils;
+import com.strobel.util.TypeUtils;
+
+import javax.lang.model.type.TypeKind;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Evaluates a lambda by walking its expression tree rather than generating a class for it.  An
+ * interpreted lambda runs far slower than a compiled one, but costs next to nothing to create, so
+ * it is the better choice for a lambda which only runs a handful of times.
+ * <p/>
+ * The semantics follow those of {@link LambdaCompiler}.  Reducible nodes are reduced once, up
+ * front.  Trees the interpreter cannot evaluate faithfully are rejected by {@link #tryCreate}:
+ * those containing quoted, extension, or runtime variables nodes, catch filters, dynamic method
+ * calls, or jumps into (rather than out of) a block.
+ *
+ * @author Mike Strobel
+ */
+final class LambdaInterpreter {
+    private final LambdaExpression<?> _lambda;
+    private final IdentityHashMap<Expression, Expression> _reductions;
+
+    private LambdaInterpreter(final LambdaExpression<?> lambda, final IdentityHashMap<Expression, Expression> reductions) {
+        _lambda = lambda;
+        _reductions = reductions;
+    }
+
+    /**
+     * Returns an interpreter for {@code lambda}, or {@code null} if it cannot be interpreted.
+     */
+    static LambdaInterpreter tryCreate(final LambdaExpression<?> lambda) {
+        final Analyzer analyzer = new Analyzer();
+
+        try {
+            analyzer.visit(lambda);
+        }
+        catch (RuntimeException ignored) {
+            //
+            // Let the compiler report whatever is wrong with the tree.
+            //
+            return null;
+        }
+
+        if (!analyzer.isSupported()) {
+            return null;
+        }
+
+        return new LambdaInterpreter(lambda, analyzer.reductions);
+    }
+
+    Object invoke(final Object[] arguments) throws Throwable {
+        return invokeLambda(_lambda, null, arguments);
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Lambdas and Invocation">
+
+    private Object invokeLambda(final LambdaExpression<?> lambda, final Frame parent, final Object[] arguments) throws Throwable {
+        final ParameterExpressionList parameters = lambda.getParameters();
+        final Frame frame = new Frame(parent);
+
+        for (int i = 0, n = parameters.size(); i < n; i++) {
+            frame.declare(parameters.get(i), arguments[i]);
+        }
+
+        final Expression body = lambda.getBody();
+        final Object result = evaluate(body, frame);
+
+        return convert(result, body.getType(), lambda.getReturnType());
+    }
+
+    private Object createInstance(final LambdaExpression<?> lambda, final Frame frame) {
+        final Class<?> interfaceClass = lambda.getType().getErasedClass();
+
+        return Proxy.newProxyInstance(
+            interfaceClass.getClassLoader(),
+            new Class<?>[] { interfaceClass },
+            new ClosureHandler(lambda, frame)
+        );
+    }
+
+    private Object evaluateInvocation(final InvocationExpression node, final Frame frame) throws Throwable {
+        final Expression expression = node.getExpression();
+
+        if (expression instanceof LambdaExpression<?>) {
+            return invokeLambda(
+                (LambdaExpression<?>) expression,
+                frame,
+                evaluateArguments(node.getArguments(), frame)
+            );
+        }
+
+        final Object target = evaluate(expression, frame);
+        final Object[] arguments = evaluateArguments(node.getArguments(), frame);
+
+        return invokeMethod(Expression.getInvokeMethod(expression), target, arguments);
+    }
+
+    static Object invokeObjectMethod(final Object proxy, final Method method, final Object[] arguments) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == arguments[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return proxy.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+    }
+
+    private final class ClosureHandler implements InvocationHandler {
+        private final LambdaExpression<?> _lambda;
+        private final Frame _frame;
+
+        ClosureHandler(final LambdaExpression<?> lambda, final Frame frame) {
+            _lambda = lambda;
+            _frame = frame;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            return invokeLambda(_lambda, _frame, args);
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Evaluation">
+
+    private Object evaluate(final Expression expression, final Frame frame) throws Throwable {
+        Expression node = expression;
+
+        while (node.canReduce()) {
+            final Expression reduced = _reductions.get(node);
+            node = reduced != null ? reduced : node.reduceAndCheck();
+        }
+
+        switch (node.getNodeType()) {
+            case Constant:
+                return ((ConstantExpression) node).getValue();
+
+            case Parameter:
+                return frame.get((ParameterExpression) node);
+
+            case DefaultValue:
+                return defaultValue(node.getType());
+
+            case Convert:
+            case ConvertChecked:
+                return evaluateConvert((UnaryExpression) node, frame);
+
+            case Unbox: {
+                final UnaryExpression unbox = (UnaryExpression) node;
+                return convert(evaluate(unbox.getOperand(), frame), unbox.getOperand().getType(), unbox.getType());
+            }
+
+            case ArrayLength:
+            case IsNull:
+            case IsNotNull:
+            case IsTrue:
+            case IsFalse:
+            case Not:
+            case OnesComplement:
+            case Negate:
+            case UnaryPlus:
+            case Increment:
+            case Decrement:
+                return evaluateUnary((UnaryExpression) node, frame);
+
+            case Throw:
+                return evaluateThrow((UnaryExpression) node, frame);
+
+            case Add:
+            case Subtract:
+            case Multiply:
+            case Divide:
+            case Modulo:
+            case And:
+            case Or:
+            case ExclusiveOr:
+            case LeftShift:
+            case RightShift:
+            case UnsignedRightShift:
+            case Equal:
+            case NotEqual:
+            case LessThan:
+            case LessThanOrEqual:
+            case GreaterThan:
+            case GreaterThanOrEqual:
+            case ReferenceEqual:
+            case ReferenceNotEqual:
+            case ArrayIndex:
+                return evaluateBinary((BinaryExpression) node, frame);
+
+            case AndAlso:
+            case OrElse:
+                return evaluateLogical((BinaryExpression) node, frame);
+
+            case Coalesce:
+                return evaluateCoalesce((BinaryExpression) node, frame);
+
+            case Assign:
+                return evaluateAssign((BinaryExpression) node, frame);
+
+            case InstanceOf:
+                return evaluateInstanceOf((TypeBinaryExpression) node, frame);
+
+            case Conditional:
+                return evaluateConditional((ConditionalExpression) node, frame);
+
+            case Block:
+                return evaluateBlock((BlockExpression) node, frame);
+
+            case Call:
+                return evaluateMethodCall((MethodCallExpression) node, frame);
+
+            case New:
+                return evaluateNew((NewExpression) node, frame);
+
+            case NewArrayInit:
+            case NewArrayBounds:
+                return evaluateNewArray((NewArrayExpression) node, frame);
+
+            case MemberAccess:
+                return evaluateMember((MemberExpression) node, frame);
+
+            case Invoke:
+                return evaluateInvocation((InvocationExpression) node, frame);
+
+            case Lambda:
+                return createInstance((LambdaExpression<?>) node, frame);
+
+            case Goto:
+                return evaluateGoto((GotoExpression) node, frame);
+
+            case Label:
+                return evaluateLabel((LabelExpression) node, frame);
+
+            case Loop:
+                return evaluateLoop((LoopExpression) node, frame);
+
+            case Switch:
+                return evaluateSwitch((SwitchExpression) node, frame);
+
+            case Try:
+                return evaluateTry((TryExpression) node, frame);
+
+            default:
+                throw ContractUtils.unreachable();
+        }
+    }
+
+    private Object[] evaluateArguments(final ExpressionList<? extends Expression> arguments, final Frame frame) throws Throwable {
+        final Object[] values = new Object[arguments.size()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluate(arguments.get(i), frame);
+        }
+
+        return values;
+    }
+
+    private Object evaluateConvert(final UnaryExpression node, final Frame frame) throws Throwable {
+        final Expression operand = node.getOperand();
+        final Object value = evaluate(operand, frame);
+
+        if (node.getMethod() != null) {
+            return invokeUnaryMethod(node.getMethod(), value);
+        }
+
+        return convert(value, operand.getType(), node.getType());
+    }
+
+    private Object evaluateUnary(final UnaryExpression node, final Frame frame) throws Throwable {
+        final ExpressionType op = node.getNodeType();
+        final Object value = evaluate(node.getOperand(), frame);
+
+        if (node.getMethod() != null) {
+            return invokeUnaryMethod(node.getMethod(), value);
+        }
+
+        switch (op) {
+            case IsNull:
+                return value == null;
+            case IsNotNull:
+                return value != null;
+        }
+
+        if (value == null) {
+            throw new NullPointerException();
+        }
+
+        switch (op) {
+            case ArrayLength:
+                return Array.getLength(value);
+
+            case IsTrue:
+                return (Boolean) value;
+
+            case IsFalse:
+                return !(Boolean) value;
+        }
+
+        return convertPrimitive(
+            evaluateUnaryOperator(op, TypeUtils.getUnderlyingPrimitiveOrSelf(node.getOperand().getType()).getKind(), value),
+            TypeUtils.getUnderlyingPrimitiveOrSelf(node.getType()).getKind()
+        );
+    }
+
+    private Object evaluateThrow(final UnaryExpression node, final Frame frame) throws Throwable {
+        final Expression operand = node.getOperand();
+
+        if (operand == null) {
+            throw frame.getCaughtException();
+        }
+
+        final Object exception = evaluate(operand, frame);
+
+        if (exception == null) {
+            throw new NullPointerException();
+        }
+
+        throw (Throwable) exception;
+    }
+
+    private Object evaluateBinary(final BinaryExpression node, final Frame frame) throws Throwable {
+        if (node.getMethod() != null) {
+            return evaluateBinaryMethod(node, frame);
+        }
+
+        final ExpressionType op = node.getNodeType();
+        final Expression left = node.getLeft();
+        final Expression right = node.getRight();
+        final Object leftValue = evaluate(left, frame);
+        final Object rightValue = evaluate(right, frame);
+
+        switch (op) {
+            case ArrayIndex:
+                if (leftValue == null) {
+                    throw new NullPointerException();
+                }
+                return Array.get(leftValue, toNumber(rightValue).intValue());
+
+            case ReferenceEqual:
+                return leftValue == rightValue;
+
+            case ReferenceNotEqual:
+                return leftValue != rightValue;
+        }
+
+        final Type<?> leftType = TypeUtils.getUnderlyingPrimitiveOrSelf(left.getType());
+        final Type<?> rightType = TypeUtils.getUnderlyingPrimitiveOrSelf(right.getType());
+
+        if (leftType == PrimitiveTypes.Boolean && rightType == PrimitiveTypes.Boolean) {
+            return evaluateBooleanOperator(op, (Boolean) leftValue, (Boolean) rightValue);
+        }
+
+        if (TypeUtils.isArithmetic(leftType) && TypeUtils.isArithmetic(rightType)) {
+            return convertPrimitive(
+                evaluateArithmeticOperator(op, leftType, rightType, leftValue, rightValue),
+                TypeUtils.getUnderlyingPrimitiveOrSelf(node.getType()).getKind()
+            );
+        }
+
+        switch (op) {
+            case Equal:
+                return leftValue == rightValue;
+            case NotEqual:
+                return leftValue != rightValue;
+            default:
+                throw ContractUtils.unreachable();
+        }
+    }
+
+    private Object evaluateBinaryMethod(final BinaryExpression node, final Frame frame) throws Throwable {
+        final MethodInfo method = node.getMethod();
+        final Expression left = node.getLeft();
+        final Expression right = node.getRight();
+
+        if (method.isStatic()) {
+            final Object leftValue = evaluate(left, frame);
+            return invokeMethod(method, null, leftValue, evaluate(right, frame));
+        }
+
+        if (TypeUtils.isSameOrSubType(method.getDeclaringType(), left.getType())) {
+            final Object leftValue = evaluate(left, frame);
+            return invokeMethod(method, leftValue, evaluate(right, frame));
+        }
+
+        final Object rightValue = evaluate(right, frame);
+        return invokeMethod(method, rightValue, evaluate(left, frame));
+    }
+
+    private Object evaluateLogical(final BinaryExpression node, final Frame frame) throws Throwable {
+        final boolean isAndAlso = node.getNodeType() == ExpressionType.AndAlso;
+        final boolean left = (Boolean) evaluate(node.getLeft(), frame);
+
+        if (left != isAndAlso) {
+            return left;
+        }
+
+        final boolean right = (Boolean) evaluate(node.getRight(), frame);
+
+        return right;
+    }
+
+    private Object evaluateCoalesce(final BinaryExpression node, final Frame frame) throws Throwable {
+        final Expression left = node.getLeft();
+        final Object leftValue = evaluate(left, frame);
+
+        if (leftValue == null) {
+            final Expression right = node.getRight();
+            return convert(evaluate(right, frame), right.getType(), node.getType());
+        }
+
+        final LambdaExpression<?> conversion = node.getConversion();
+
+        if (conversion != null) {
+            return invokeLambda(conversion, frame, new Object[] { leftValue });
+        }
+
+        return convert(leftValue, left.getType(), node.getType());
+    }
+
+    private Object evaluateAssign(final BinaryExpression node, final Frame frame) throws Throwable {
+        final Expression left = node.getLeft();
+        final Expression right = node.getRight();
+
+        switch (left.getNodeType()) {
+            case Parameter: {
+                final Object value = convert(evaluate(right, frame), right.getType(), left.getType());
+                frame.set((ParameterExpression) left, value);
+                return value;
+            }
+
+            case MemberAccess: {
+                final MemberExpression member = (MemberExpression) left;
+                final FieldInfo field = (FieldInfo) member.getMember();
+                final Object target = field.isStatic() ? null : evaluate(member.getTarget(), frame);
+                final Object value = convert(evaluate(right, frame), right.getType(), left.getType());
+
+                if (target == null && !field.isStatic()) {
+                    throw new NullPointerException();
+                }
+
+                field.getRawField().set(target, value);
+                return value;
+            }
+
+            case ArrayIndex: {
+                final BinaryExpression index = (BinaryExpression) left;
+                final Object array = evaluate(index.getLeft(), frame);
+                final Object position = evaluate(index.getRight(), frame);
+                final Object value = convert(evaluate(right, frame), right.getType(), left.getType());
+
+                if (array == null) {
+                    throw new NullPointerException();
+                }
+
+                Array.set(array, toNumber(position).intValue(), value);
+                return value;
+            }
+
+            default:
+                throw Error.invalidLValue(left.getNodeType());
+        }
+    }
+
+    private Object evaluateInstanceOf(final TypeBinaryExpression node, final Frame frame) throws Throwable {
+        final Object value = evaluate(node.getOperand(), frame);
+
+        switch (ConstantCheck.analyzeInstanceOf(node)) {
+            case KnownTrue:
+                return true;
+            case KnownFalse:
+                return false;
+            case KnownAssignable:
+                return value != null;
+            default:
+                return node.getTypeOperand().getErasedClass().isInstance(value);
+        }
+    }
+
+    private Object evaluateConditional(final ConditionalExpression node, final Frame frame) throws Throwable {
+        final Object result = (Boolean) evaluate(node.getTest(), frame)
+                              ? evaluate(node.getIfTrue(), frame)
+                              : evaluate(node.getIfFalse(), frame);
+
+        return node.getType() == PrimitiveTypes.Void ? null : result;
+    }
+
+    private Object evaluateBlock(final BlockExpression node, final Frame frame) throws Throwable {
+        final ParameterExpressionList variables = node.getVariables();
+        final ExpressionList<? extends Expression> expressions = node.getExpressions();
+        final Frame blockFrame;
+
+        if (variables.size() == 0) {
+            blockFrame = frame;
+        }
+        else {
+            blockFrame = new Frame(frame);
+
+            for (int i = 0, n = variables.size(); i < n; i++) {
+                final ParameterExpression variable = variables.get(i);
+                blockFrame.declare(variable, defaultValue(variable.getType()));
+            }
+        }
+
+        Object result = null;
+
+        for (int i = 0, n = expressions.size(); i < n; ) {
+            try {
+                result = evaluate(expressions.get(i), blockFrame);
+                i++;
+            }
+            catch (ControlTransfer transfer) {
+                //
+                // If the jump targets one of our own labels, resume execution there; otherwise,
+                // it belongs to an enclosing node.
+                //
+                final int labelIndex = indexOfLabel(expressions, transfer.target);
+
+                if (labelIndex < 0) {
+                    throw transfer;
+                }
+
+                result = transfer.value;
+                i = labelIndex + 1;
+            }
+        }
+
+        return node.getType() == PrimitiveTypes.Void ? null : result;
+    }
+
+    private static int indexOfLabel(final ExpressionList<? extends Expression> expressions, final LabelTarget target) {
+        for (int i = 0, n = expressions.size(); i < n; i++) {
+            final Expression expression = expressions.get(i);
+
+            if (expression instanceof LabelExpression &&
+                ((LabelExpression) expression).getTarget() == target) {
+
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object evaluateMethodCall(final MethodCallExpression node, final Frame frame) throws Throwable {
+        final MethodInfo method = node.getMethod();
+        final Object target = method.isStatic() ? null : evaluate(node.getTarget(), frame);
+
+        return invokeMethod(method, target, evaluateArguments(node.getArguments(), frame));
+    }
+
+    private Object evaluateNew(final NewExpression node, final Frame frame) throws Throwable {
+        final ConstructorInfo constructor = node.getConstructor();
+        final Object[] arguments = evaluateArguments(node.getArguments(), frame);
+
+        try {
+            return constructor.getRawConstructor().newInstance(arguments);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Object evaluateNewArray(final NewArrayExpression node, final Frame frame) throws Throwable {
+        final ExpressionList<? extends Expression> expressions = node.getExpressions();
+
+        if (node.getNodeType() == ExpressionType.NewArrayInit) {
+            final Type<?> elementType = node.getType().getElementType();
+            final Object array = Array.newInstance(elementType.getErasedClass(), expressions.size());
+
+            for (int i = 0, n = expressions.size(); i < n; i++) {
+                final Expression element = expressions.get(i);
+                Array.set(array, i, convert(evaluate(element, frame), element.getType(), elementType));
+            }
+
+            return array;
+        }
+
+        final int[] dimensions = new int[expressions.size()];
+        Type<?> componentType = node.getType();
+
+        for (int i = 0; i < dimensions.length; i++) {
+            dimensions[i] = toNumber(evaluate(expressions.get(i), frame)).intValue();
+            componentType = componentType.getElementType();
+        }
+
+        return Array.newInstance(componentType.getErasedClass(), dimensions);
+    }
+
+    private Object evaluateMember(final MemberExpression node, final Frame frame) throws Throwable {
+        final FieldInfo field = (FieldInfo) node.getMember();
+
+        if (field.isStatic()) {
+            return field.getRawField().get(null);
+        }
+
+        final Object target = evaluate(node.getTarget(), frame);
+
+        if (target == null) {
+            throw new NullPointerException();
+        }
+
+        return field.getRawField().get(target);
+    }
+
+    private Object evaluateGoto(final GotoExpression node, final Frame frame) throws Throwable {
+        final Expression value = node.getValue();
+        final LabelTarget target = node.getTarget();
+
+        Object result = null;
+
+        if (value != null) {
+            result = evaluate(value, frame);
+
+            if (target.getType() == PrimitiveTypes.Void) {
+                result = null;
+            }
+            else {
+                result = convert(result, value.getType(), target.getType());
+            }
+        }
+
+        throw new ControlTransfer(target, result, node.getKind() == GotoExpressionKind.Return);
+    }
+
+    private Object evaluateLabel(final LabelExpression node, final Frame frame) throws Throwable {
+        final Expression defaultValue = node.getDefaultValue();
+
+        if (defaultValue == null) {
+            return null;
+        }
+
+        try {
+            return evaluate(defaultValue, frame);
+        }
+        catch (ControlTransfer transfer) {
+            if (transfer.target != node.getTarget()) {
+                throw transfer;
+            }
+            return transfer.value;
+        }
+    }
+
+    private Object evaluateLoop(final LoopExpression node, final Frame frame) throws Throwable {
+        final LabelTarget breakTarget = node.getBreakTarget();
+        final LabelTarget continueTarget = node.getContinueTarget();
+
+        while (true) {
+            try {
+                evaluate(node.getBody(), frame);
+            }
+            catch (ControlTransfer transfer) {
+                if (transfer.target == breakTarget) {
+                    return transfer.value;
+                }
+                if (transfer.target != continueTarget) {
+                    throw transfer;
+                }
+            }
+        }
+    }
+
+    private Object evaluateSwitch(final SwitchExpression node, final Frame frame) throws Throwable {
+        final Object value = evaluate(node.getSwitchValue(), frame);
+        final MethodInfo comparison = node.getComparison();
+
+        if (value == null && comparison == null) {
+            throw new NullPointerException();
+        }
+
+        Expression body = findSwitchCase(node, value, frame);
+
+        if (body == null) {
+            body = node.getDefaultBody();
+        }
+
+        if (body == null) {
+            return null;
+        }
+
+        final Object result = evaluate(body, frame);
+
+        return node.getType() == PrimitiveTypes.Void ? null : result;
+    }
+
+    private Expression findSwitchCase(final SwitchExpression node, final Object value, final Frame frame) throws Throwable {
+        final MethodInfo comparison = node.getComparison();
+
+        for (final SwitchCase switchCase : node.getCases()) {
+            final ExpressionList<? extends Expression> testValues = switchCase.getTestValues();
+
+            for (int i = 0, n = testValues.size(); i < n; i++) {
+                final Object testValue = evaluate(testValues.get(i), frame);
+
+                final boolean matches = comparison != null
+                                        ? (Boolean) invokeOperator(comparison, value, testValue)
+                                        : value.equals(testValue);
+
+                if (matches) {
+                    return switchCase.getBody();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private Object evaluateTry(final TryExpression node, final Frame frame) throws Throwable {
+        final Expression finallyBlock = node.getFinallyBlock();
+        final Object result;
+
+        try {
+            result = evaluate(node.getBody(), frame);
+        }
+        catch (ControlTransfer transfer) {
+            //
+            // As in compiled code, only a return runs the finally block on the way out.
+            //
+            if (finallyBlock != null && transfer.isReturn) {
+                evaluate(finallyBlock, frame);
+            }
+            throw transfer;
+        }
+        catch (Throwable t) {
+            try {
+                return evaluateHandler(node, t, frame);
+            }
+            finally {
+                if (finallyBlock != null) {
+                    evaluate(finallyBlock, frame);
+                }
+            }
+        }
+
+        if (finallyBlock != null) {
+            evaluate(finallyBlock, frame);
+        }
+
+        return node.getType() == PrimitiveTypes.Void ? null : result;
+    }
+
+    private Object evaluateHandler(final TryExpression node, final Throwable t, final Frame frame) throws Throwable {
+        for (final CatchBlock handler : node.getHandlers()) {
+            if (!handler.getTest().getErasedClass().isInstance(t)) {
+                continue;
+            }
+
+            final Frame handlerFrame = new Frame(frame);
+            final ParameterExpression variable = handler.getVariable();
+
+            handlerFrame.caughtException = t;
+
+            if (variable != null) {
+                handlerFrame.declare(variable, t);
+            }
+
+            final Object result = evaluate(handler.getBody(), handlerFrame);
+
+            return node.getType() == PrimitiveTypes.Void ? null : result;
+        }
+
+        throw t;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Operators and Conversions">
+
+    static Object evaluateUnaryOperator(final ExpressionType op, final TypeKind kind, final Object value) {
+        switch (op) {
+            case Not:
+            case OnesComplement:
+                if (kind == TypeKind.BOOLEAN) {
+                    return !(Boolean) value;
+                }
+                else if (kind == TypeKind.LONG) {
+                    return ~toNumber(value).longValue();
+                }
+                else {
+                    return ~toNumber(value).intValue();
+                }
+
+            case UnaryPlus:
+                return value;
+
+            case Negate:
+            case Increment:
+            case Decrement: {
+                final int delta = op == ExpressionType.Increment ? 1 : -1;
+
+                switch (kind) {
+                    case LONG:
+                        return op == ExpressionType.Negate ? -toNumber(value).longValue()
+                                                           : toNumber(value).longValue() + delta;
+                    case FLOAT:
+                        return op == ExpressionType.Negate ? -toNumber(value).floatValue()
+                                                           : toNumber(value).floatValue() + delta;
+                    case DOUBLE:
+                        return op == ExpressionType.Negate ? -toNumber(value).doubleValue()
+                                                           : toNumber(value).doubleValue() + delta;
+                    default:
+                        return op == ExpressionType.Negate ? -toNumber(value).intValue()
+                                                           : toNumber(value).intValue() + delta;
+                }
+            }
+
+            default:
+                throw Error.unhandledUnary(op);
+        }
+    }
+
+    static Object evaluateBooleanOperator(final ExpressionType op, final boolean left, final boolean right) {
+        switch (op) {
+            case And:
+                return left & right;
+            case Or:
+                return left | right;
+            case ExclusiveOr:
+            case NotEqual:
+                return left ^ right;
+            case Equal:
+                return left == right;
+            default:
+                throw ContractUtils.unreachable();
+        }
+    }
+
+    static Object evaluateArithmeticOperator(
+        final ExpressionType op,
+        final Type<?> leftType,
+        final Type<?> rightType,
+        final Object left,
+        final Object right) {
+
+        final Type<?> operandType = Expression.performBinaryNumericPromotion(leftType, rightType);
+
+        switch (operandType.getKind()) {
+            case LONG: {
+                final long l = toNumber(left).longValue();
+                final long r = toNumber(right).longValue();
+
+                switch (op) {
+                    case Add: return l + r;
+                    case Subtract: return l - r;
+                    case Multiply: return l * r;
+                    case Divide: return l / r;
+                    case Modulo: return l % r;
+                    case And: return l & r;
+                    case Or: return l | r;
+                    case ExclusiveOr: return l ^ r;
+                    case LeftShift: return l << (int) r;
+                    case RightShift: return l >> (int) r;
+                    case UnsignedRightShift: return l >>> (int) r;
+                    case Equal: return l == r;
+                    case NotEqual: return l != r;
+                    case LessThan: return l < r;
+                    case LessThanOrEqual: return l <= r;
+                    case GreaterThan: return l > r;
+                    case GreaterThanOrEqual: return l >= r;
+                }
+                break;
+            }
+
+            case FLOAT: {
+                final float l = toNumber(left).floatValue();
+                final float r = toNumber(right).floatValue();
+
+                switch (op) {
+                    case Add: return l + r;
+                    case Subtract: return l - r;
+                    case Multiply: return l * r;
+                    case Divide: return l / r;
+                    case Modulo: return l % r;
+                    case Equal: return l == r;
+                    case NotEqual: return l != r;
+                    case LessThan: return l < r;
+                    case LessThanOrEqual: return l <= r;
+                    case GreaterThan: return l > r;
+                    case GreaterThanOrEqual: return l >= r;
+                }
+                break;
+            }
+
+            case DOUBLE: {
+                final double l = toNumber(left).doubleValue();
+                final double r = toNumber(right).doubleValue();
+
+                switch (op) {
+                    case Add: return l + r;
+                    case Subtract: return l - r;
+                    case Multiply: return l * r;
+                    case Divide: return l / r;
+                    case Modulo: return l % r;
+                    case Equal: return l == r;
+                    case NotEqual: return l != r;
+                    case LessThan: return l < r;
+                    case LessThanOrEqual: return l <= r;
+                    case GreaterThan: return l > r;
+                    case GreaterThanOrEqual: return l >= r;
+                }
+                break;
+            }
+
+            default: {
+                final int l = toNumber(left).intValue();
+                final int r = toNumber(right).intValue();
+
+                switch (op) {
+                    case Add: return l + r;
+                    case Subtract: return l - r;
+                    case Multiply: return l * r;
+                    case Divide: return l / r;
+                    case Modulo: return l % r;
+                    case And: return l & r;
+                    case Or: return l | r;
+                    case ExclusiveOr: return l ^ r;
+                    case LeftShift: return l << r;
+                    case RightShift: return l >> r;
+                    case UnsignedRightShift: return l >>> r;
+                    case Equal: return l == r;
+                    case NotEqual: return l != r;
+                    case LessThan: return l < r;
+                    case LessThanOrEqual: return l <= r;
+                    case GreaterThan: return l > r;
+                    case GreaterThanOrEqual: return l >= r;
+                }
+                break;
+            }
+        }
+
+        throw ContractUtils.unreachable();
+    }
+
+    /**
+     * Converts {@code value} from {@code sourceType} to {@code targetType}, following the rules
+     * of {@code CodeGenerator.emitConversion()}: numeric conversions between primitive and boxed
+     * types, and checked casts otherwise.
+     */
+    private static Object convert(final Object value, final Type<?> sourceType, final Type<?> targetType) {
+        if (targetType == PrimitiveTypes.Void) {
+            return null;
+        }
+
+        if (sourceType == targetType || sourceType.isEquivalentTo(targetType)) {
+            return value;
+        }
+
+        final Type<?> unboxedTargetType = TypeUtils.getUnderlyingPrimitiveOrSelf(targetType);
+
+        if (unboxedTargetType.isPrimitive()) {
+            if (value == null) {
+                if (targetType.isPrimitive()) {
+                    throw new NullPointerException();
+                }
+                return null;
+            }
+
+            if (sourceType.isPrimitive() || TypeUtils.isAutoUnboxed(sourceType)) {
+                return convertPrimitive(value, unboxedTargetType.getKind());
+            }
+
+            return cast(value, TypeUtils.getBoxedType(unboxedTargetType).getErasedClass());
+        }
+
+        return cast(value, targetType.getErasedClass());
+    }
+
+    private static Object cast(final Object value, final Class<?> targetClass) {
+        if (value != null && !targetClass.isInstance(value)) {
+            throw new ClassCastException(value.getClass().getName() + " cannot be cast to " + targetClass.getName());
+        }
+        return value;
+    }
+
+    static Object convertPrimitive(final Object value, final TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return (Boolean) value;
+            case BYTE:
+                return toNumber(value).byteValue();
+            case CHAR:
+                return value instanceof Character ? value : (char) toNumber(value).intValue();
+            case SHORT:
+                return toNumber(value).shortValue();
+            case INT:
+                return toNumber(value).intValue();
+            case LONG:
+                return toNumber(value).longValue();
+            case FLOAT:
+                return toNumber(value).floatValue();
+            case DOUBLE:
+                return toNumber(value).doubleValue();
+            default:
+                return value;
+        }
+    }
+
+    private static Number toNumber(final Object value) {
+        if (value instanceof Character) {
+            return (int) (Character) value;
+        }
+        return (Number) value;
+    }
+
+    private static Object defaultValue(final Type<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return Boolean.FALSE;
+            case BYTE:
+                return (byte) 0;
+            case CHAR:
+                return '\0';
+            case SHORT:
+                return (short) 0;
+            case INT:
+                return 0;
+            case LONG:
+                return 0L;
+            case FLOAT:
+                return 0f;
+            case DOUBLE:
+                return 0d;
+            default:
+                return null;
+        }
+    }
+
+    private static Object invokeUnaryMethod(final MethodInfo method, final Object operand) throws Throwable {
+        if (method.isStatic()) {
+            return invokeMethod(method, null, operand);
+        }
+        return invokeMethod(method, operand);
+    }
+
+    private static Object invokeOperator(final MethodInfo method, final Object left, final Object right) throws Throwable {
+        if (method.isStatic()) {
+            return invokeMethod(method, null, left, right);
+        }
+        return invokeMethod(method, left, right);
+    }
+
+    private static Object invokeMethod(final MethodInfo method, final Object target, final Object... arguments) throws Throwable {
+        try {
+            return method.getRawMethod().invoke(target, arguments);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Frame Class">
+
+    private final static class Frame {
+        private final Frame _parent;
+        private final IdentityHashMap<ParameterExpression, Object> _values = new IdentityHashMap<>();
+
+        Throwable caughtException;
+
+        Frame(final Frame parent) {
+            _parent = parent;
+        }
+
+        void declare(final ParameterExpression variable, final Object value) {
+            _values.put(variable, value);
+        }
+
+        Object get(final ParameterExpression variable) {
+            return find(variable)._values.get(variable);
+        }
+
+        void set(final ParameterExpression variable, final Object value) {
+            find(variable)._values.put(variable, value);
+        }
+
+        Throwable getCaughtException() {
+            for (Frame frame = this; frame != null; frame = frame._parent) {
+                if (frame.caughtException != null) {
+                    return frame.caughtException;
+                }
+            }
+            throw ContractUtils.unreachable();
+        }
+
+        private Frame find(final ParameterExpression variable) {
+            for (Frame frame = this; frame != null; frame = frame._parent) {
+                if (frame._values.containsKey(variable)) {
+                    return frame;
+                }
+            }
+            throw Error.undefinedVariable(variable.getName(), variable.getType(), "");
+        }
+    }
+
+    /**
+     * Thrown by a goto to unwind the interpreter to the node which defines its target.
+     */
+    private final static class ControlTransfer extends RuntimeException {
+        private static final long serialVersionUID = -6083532218826359416L;
+
+        final LabelTarget target;
+        final Object value;
+        final boolean isReturn;
+
+        ControlTransfer(final LabelTarget target, final Object value, final boolean isReturn) {
+            super(null, null, false, false);
+            this.target = target;
+            this.value = value;
+            this.isReturn = isReturn;
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Analyzer Class">
+
+    /**
+     * Determines whether a tree can be interpreted, reducing any reducible nodes along the way.
+     * A goto is only supported if its target is defined by an enclosing node: a label in an
+     * enclosing block, an enclosing label, or an enclosing loop's break or continue target.
+     */
+    private final static class Analyzer extends ExpressionVisitor {
+        final IdentityHashMap<Expression, Expression> reductions = new IdentityHashMap<>();
+
+        private ArrayList<LabelTarget> _labels = new ArrayList<>();
+        private boolean _isSupported = true;
+
+        boolean isSupported() {
+            return _isSupported;
+        }
+
+        @Override
+        public Expression visit(final Expression node) {
+            if (node == null || !_isSupported) {
+                return node;
+            }
+
+            if (node.canReduce()) {
+                final Expression reduced = node.reduceAndCheck();
+                reductions.put(node, reduced);
+                visit(reduced);
+                return node;
+            }
+
+            return super.visit(node);
+        }
+
+        private void makeAccessible(final AccessibleObject member) {
+            if (member == null) {
+                _isSupported = false;
+                return;
+            }
+
+            if (!member.isAccessible()) {
+                try {
+                    member.setAccessible(true);
+                }
+                catch (SecurityException ignored) {
+                    _isSupported = false;
+                }
+            }
+        }
+
+        @Override
+        protected <T> LambdaExpression<T> visitLambda(final LambdaExpression<T> node) {
+            if (!node.getType().isInterface()) {
+                _isSupported = false;
+                return node;
+            }
+
+            //
+            // Jumps cannot cross lambda boundaries.
+            //
+            final ArrayList<LabelTarget> outerLabels = _labels;
+
+            _labels = new ArrayList<>();
+
+            try {
+                return super.visitLambda(node);
+            }
+            finally {
+                _labels = outerLabels;
+            }
+        }
+
+        @Override
+        protected Expression visitBlock(final BlockExpression node) {
+            final ExpressionList<? extends Expression> expressions = node.getExpressions();
+            final int labelCount = _labels.size();
+
+            for (int i = 0, n = expressions.size(); i < n; i++) {
+                final Expression expression = expressions.get(i);
+
+                if (expression instanceof LabelExpression) {
+                    _labels.add(((LabelExpression) expression).getTarget());
+                }
+            }
+
+            try {
+                return super.visitBlock(node);
+            }
+            finally {
+                trimLabels(labelCount);
+            }
+        }
+
+        @Override
+        protected Expression visitLabel(final LabelExpression node) {
+            final int labelCount = _labels.size();
+
+            _labels.add(node.getTarget());
+
+            try {
+                return super.visitLabel(node);
+            }
+            finally {
+                trimLabels(labelCount);
+            }
+        }
+
+        @Override
+        protected Expression visitLoop(final LoopExpression node) {
+            final int labelCount = _labels.size();
+
+            if (node.getBreakTarget() != null) {
+                _labels.add(node.getBreakTarget());
+            }
+
+            if (node.getContinueTarget() != null) {
+                _labels.add(node.getContinueTarget());
+            }
+
+            try {
+                return super.visitLoop(node);
+            }
+            finally {
+                trimLabels(labelCount);
+            }
+        }
+
+        private void trimLabels(final int size) {
+            while (_labels.size() > size) {
+                _labels.remove(_labels.size() - 1);
+            }
+        }
+
+        @Override
+        protected Expression visitGoto(final GotoExpression node) {
+            if (!_labels.contains(node.getTarget())) {
+                _isSupported = false;
+                return node;
+            }
+            return super.visitGoto(node);
+        }
+
+        @Override
+        protected Expression visitExtension(final Expression node) {
+            _isSupported = false;
+            return node;
+        }
+
+        @Override
+        protected Expression visitForEach(final ForEachExpression node) {
+            _isSupported = false;
+            return node;
+        }
+
+        @Override
+        protected Expression visitFor(final ForExpression node) {
+            _isSupported = false;
+            return node;
+        }
+
+        @Override
+        protected Expression visitRuntimeVariables(final RuntimeVariablesExpression node) {
+            _isSupported = false;
+            return node;
+        }
+
+        @Override
+        protected Expression visitParameter(final ParameterExpression node) {
+            if (SelfExpression.isSelfOrSuper(node)) {
+                _isSupported = false;
+            }
+            return node;
+        }
+
+        @Override
+        protected Expression visitUnary(final UnaryExpression node) {
+            if (node.getNodeType() == ExpressionType.Quote) {
+                _isSupported = false;
+                return node;
+            }
+
+            if (node.getMethod() != null) {
+                makeAccessible(node.getMethod().getRawMethod());
+            }
+
+            return super.visitUnary(node);
+        }
+
+        @Override
+        protected Expression visitBinary(final BinaryExpression node) {
+            final MethodInfo method = node.getMethod();
+
+            if (method != null) {
+                final ExpressionType nodeType = node.getNodeType();
+
+                if (nodeType == ExpressionType.AndAlso || nodeType == ExpressionType.OrElse) {
+                    _isSupported = false;
+                    return node;
+                }
+
+                makeAccessible(method.getRawMethod());
+            }
+
+            return super.visitBinary(node);
+        }
+
+        @Override
+        protected Expression visitMember(final MemberExpression node) {
+            makeAccessible(((FieldInfo) node.getMember()).getRawField());
+            return super.visitMember(node);
+        }
+
+        @Override
+        protected Expression visitMethodCall(final MethodCallExpression node) {
+            //
+            // Signature polymorphic methods cannot be called reflectively.
+            //
+            if (node.getMethod() instanceof DynamicMethod) {
+                _isSupported = false;
+                return node;
+            }
+
+            makeAccessible(node.getMethod().getRawMethod());
+            return super.visitMethodCall(node);
+        }
+
+        @Override
+        protected Expression visitNew(final NewExpression node) {
+            makeAccessible(node.getConstructor().getRawConstructor());
+            return super.visitNew(node);
+        }
+
+        @Override
+        protected Expression visitInvocation(final InvocationExpression node) {
+            final Expression expression = node.getExpression();
+
+            if (!(expression instanceof LambdaExpression<?>)) {
+                makeAccessible(Expression.getInvokeMethod(expression).getRawMethod());
+            }
+
+            return super.visitInvocation(node);
+        }
+
+        @Override
+        protected Expression visitSwitch(final SwitchExpression node) {
+            if (node.getComparison() != null) {
+                makeAccessible(node.getComparison().getRawMethod());
+            }
+            return super.visitSwitch(node);
+        }
+
+        @Override
+        protected CatchBlock visitCatchBlock(final CatchBlock node) {
+            if (node.getFilter() != null) {
+                _isSupported = false;
+                return node;
+            }
+            return super.visitCatchBlock(node);
+        }
+    }
+
+    // </editor-fold>
+}
@@ -18,56 +18,679 @@ package com.strobel.expressions;
 
 import com.strobel.reflection.PrimitiveTypes;
 import com.strobel.reflection.Type;
+import com.strobel.reflection.Types;
 import com.strobel.util.TypeUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import static com.strobel.expressions.Expression.*;
 
 /**
+ * Simplifies an expression tree before it is compiled.  Folds operators and conversions over
+ * constants, removes dead branches, propagates constant block variables, hoists loop-invariant
+ * arithmetic out of loops, and replaces multiplications by powers of two with shifts.  Only
+ * rewrites which cannot change the observable behavior of the tree are applied: nothing which may
+ * throw or have side effects is ever moved or removed.
+ * <p/>
+ * The optimizer may be disabled with the {@code com.strobel.expressions.Optimizer.Disable} system
+ * property.
+ *
  * @author strobelm
  */
 final class Optimizer extends ExpressionVisitor {
-    private final static Optimizer OPTIMIZER = new Optimizer();
-    
+    private final static String DisableOptimizerProperty = "com.strobel.expressions.Optimizer.Disable";
+    private final static boolean Enabled = !Boolean.getBoolean(DisableOptimizerProperty);
+
+    private final Set<ParameterExpression> _unstableVariables;
+    private final boolean _canHoist;
+
+    private Optimizer(final VariableUsage usage) {
+        //
+        // Variables written by a nested lambda may change whenever that lambda runs, and those
+        // exposed through runtimeVariables() whenever anything does; neither is ever invariant.
+        //
+        _unstableVariables = newIdentitySet();
+        _unstableVariables.addAll(usage.getVariablesWrittenInLambdas());
+        _unstableVariables.addAll(usage.getExposedVariables());
+        _canHoist = !usage.hasOpaqueNodes();
+    }
+
     static Expression optimize(final Expression node) {
-        return OPTIMIZER.visit(node);
+        if (!Enabled || node == null) {
+            return node;
+        }
+
+        final VariableUsage usage = new VariableUsage();
+
+        usage.visit(node);
+
+        return new Optimizer(usage).visit(node);
+    }
+
+    static <T> LambdaExpression<T> optimize(final LambdaExpression<T> node) {
+        if (!Enabled) {
+            return node;
+        }
+
+        final VariableUsage usage = new VariableUsage();
+
+        usage.visit(node.getBody());
+
+        return new Optimizer(usage).visitLambda(node);
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Visitor Overrides">
+
+    @Override
+    protected Expression visitBinary(final BinaryExpression node) {
+        final Expression visited = super.visitBinary(node);
+
+        if (visited instanceof BinaryExpression) {
+            return simplifyBinary((BinaryExpression) visited);
+        }
+
+        return visited;
+    }
+
+    @Override
+    protected Expression visitUnary(final UnaryExpression node) {
+        final Expression visited = super.visitUnary(node);
+
+        if (visited instanceof UnaryExpression) {
+            return simplifyUnary((UnaryExpression) visited);
+        }
+
+        return visited;
+    }
+
+    @Override
+    protected Expression visitConditional(final ConditionalExpression node) {
+        final Expression visited = super.visitConditional(node);
+
+        if (!(visited instanceof ConditionalExpression)) {
+            return visited;
+        }
+
+        final ConditionalExpression conditional = (ConditionalExpression) visited;
+        final Expression test = conditional.getTest();
+
+        if (!isNonNullConstant(test)) {
+            return conditional;
+        }
+
+        final boolean testValue = (Boolean) ((ConstantExpression) test).getValue();
+        final Expression taken = testValue ? conditional.getIfTrue() : conditional.getIfFalse();
+        final Expression discarded = testValue ? conditional.getIfFalse() : conditional.getIfTrue();
+
+        if (containsLabels(discarded)) {
+            return conditional;
+        }
+
+        final Expression result = withType(taken, conditional.getType());
+
+        return result != null ? result : conditional;
     }
 
-    static <T> LambdaExpression<T> optimize(final LambdaExpression<T> node) {
-        return OPTIMIZER.visitLambda(node);
-    }
+    @Override
+    protected Expression visitSwitch(final SwitchExpression node) {
+        final Expression visited = super.visitSwitch(node);
+
+        if (!(visited instanceof SwitchExpression)) {
+            return visited;
+        }
+
+        final SwitchExpression switchExpression = (SwitchExpression) visited;
+        final Expression switchValue = switchExpression.getSwitchValue();
+
+        if (switchExpression.getComparison() != null || !isNonNullConstant(switchValue)) {
+            return switchExpression;
+        }
+
+        final Object value = ((ConstantExpression) switchValue).getValue();
+
+        Expression taken = null;
+
+        for (final SwitchCase switchCase : switchExpression.getCases()) {
+            for (final Expression testValue : switchCase.getTestValues()) {
+                if (!(testValue instanceof ConstantExpression) || testValue.getType() != switchValue.getType()) {
+                    return switchExpression;
+                }
+
+                if (taken == null && value.equals(((ConstantExpression) testValue).getValue())) {
+                    taken = switchCase.getBody();
+                }
+            }
+        }
+
+        if (taken == null) {
+            taken = switchExpression.getDefaultBody();
+
+            if (taken == null) {
+                if (switchExpression.getType() != PrimitiveTypes.Void) {
+                    return switchExpression;
+                }
+                taken = empty();
+            }
+        }
+
+        for (final SwitchCase switchCase : switchExpression.getCases()) {
+            if (switchCase.getBody() != taken && containsLabels(switchCase.getBody())) {
+                return switchExpression;
+            }
+        }
+
+        final Expression defaultBody = switchExpression.getDefaultBody();
+
+        if (defaultBody != null && defaultBody != taken && containsLabels(defaultBody)) {
+            return switchExpression;
+        }
+
+        final Expression result = withType(taken, switchExpression.getType());
+
+        return result != null ? result : switchExpression;
+    }
+
+    @Override
+    protected Expression visitConcat(final ConcatExpression node) {
+        final Expression visited = super.visitConcat(node);
+
+        if (!(visited instanceof ConcatExpression)) {
+            return visited;
+        }
+
+        final ExpressionList<? extends Expression> operands = ((ConcatExpression) visited).getOperands();
+        final List<Expression> newOperands = new ArrayList<>();
+
+        StringBuilder run = null;
+        boolean changed = false;
+
+        for (int i = 0, n = operands.size(); i < n; i++) {
+            final Expression operand = operands.get(i);
+
+            if (!isStringConvertibleConstant(operand)) {
+                if (run != null) {
+                    newOperands.add(constant(run.toString()));
+                    run = null;
+                }
+                newOperands.add(operand);
+                continue;
+            }
+
+            if (run != null || !ConstantCheck.isStringLiteral(operand)) {
+                changed = true;
+            }
+
+            if (run == null) {
+                run = new StringBuilder();
+            }
+
+            run.append(String.valueOf(((ConstantExpression) operand).getValue()));
+        }
+
+        if (run != null) {
+            newOperands.add(constant(run.toString()));
+        }
+
+        if (newOperands.size() == 1 && newOperands.get(0) instanceof ConstantExpression) {
+            return newOperands.get(0);
+        }
+
+        if (!changed || newOperands.size() < 2) {
+            return visited;
+        }
+
+        return concat(new ExpressionList<>(newOperands.toArray(new Expression[newOperands.size()])));
+    }
+
+    @Override
+    protected Expression visitBlock(final BlockExpression node) {
+        final Expression visited = super.visitBlock(node);
+
+        if (visited instanceof BlockExpression) {
+            return inlineVariables((BlockExpression) visited);
+        }
+
+        return visited;
+    }
+
+    @Override
+    protected Expression visitLoop(final LoopExpression node) {
+        final Expression visited = super.visitLoop(node);
+
+        if (!(visited instanceof LoopExpression)) {
+            return visited;
+        }
+
+        final LoopExpression loop = (LoopExpression) visited;
+        final InvariantHoister hoister = createHoister(loop.getBody(), null);
+
+        if (hoister == null) {
+            return loop;
+        }
+
+        final Expression body = hoister.visit(loop.getBody());
+
+        if (!hoister.hasHoistedExpressions()) {
+            return loop;
+        }
+
+        return hoister.wrap(loop.update(loop.getBreakTarget(), loop.getContinueTarget(), body));
+    }
+
+    @Override
+    protected Expression visitForEach(final ForEachExpression node) {
+        final Expression visited = super.visitForEach(node);
+
+        if (!(visited instanceof ForEachExpression)) {
+            return visited;
+        }
+
+        final ForEachExpression forEach = (ForEachExpression) visited;
+        final InvariantHoister hoister = createHoister(forEach.getBody(), forEach.getVariable());
+
+        if (hoister == null) {
+            return forEach;
+        }
+
+        final Expression body = hoister.visit(forEach.getBody());
+
+        if (!hoister.hasHoistedExpressions()) {
+            return forEach;
+        }
+
+        return hoister.wrap(
+            forEach.update(
+                forEach.getVariable(),
+                forEach.getSequence(),
+                body,
+                forEach.getBreakTarget(),
+                forEach.getContinueTarget()
+            )
+        );
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Unary and Binary Simplification">
+
+    private Expression simplify(final Expression node) {
+        if (node instanceof BinaryExpression) {
+            return simplifyBinary((BinaryExpression) node);
+        }
+        if (node instanceof UnaryExpression) {
+            return simplifyUnary((UnaryExpression) node);
+        }
+        return node;
+    }
+
+    private Expression simplifyBinary(final BinaryExpression node) {
+        Expression reduced = foldConstantBinary(node);
+
+        if (reduced != null) {
+            return reduced;
+        }
+
+        reduced = reduceNullConstantComparison(node);
+
+        if (reduced != null) {
+            return simplify(reduced);
+        }
+
+        reduced = reduceBooleanConstantComparison(node);
+
+        if (reduced != null) {
+            return simplify(reduced);
+        }
+
+        reduced = reduceLogicalConstant(node);
+
+        if (reduced != null) {
+            return reduced;
+        }
+
+        reduced = reduceIntegralIdentity(node);
+
+        if (reduced != null) {
+            return reduced;
+        }
+
+        return node;
+    }
+
+    private Expression simplifyUnary(final UnaryExpression node) {
+        Expression reduced = foldConstantUnary(node);
+
+        if (reduced != null) {
+            return reduced;
+        }
+
+        reduced = reduceNullConstantCheck(node);
+
+        if (reduced != null) {
+            return reduced;
+        }
+
+        reduced = reduceDoubleNot(node);
+
+        if (reduced != null) {
+            return reduced;
+        }
+
+        return node;
+    }
+
+    private Expression foldConstantUnary(final UnaryExpression node) {
+        final Expression operand = node.getOperand();
+
+        if (node.getMethod() != null || !isNonNullConstant(operand)) {
+            return null;
+        }
+
+        final Type<?> operandType = TypeUtils.getUnderlyingPrimitiveOrSelf(operand.getType());
+        final Type<?> resultType = TypeUtils.getUnderlyingPrimitiveOrSelf(node.getType());
+        final Object value = ((ConstantExpression) operand).getValue();
+        final ExpressionType nodeType = node.getNodeType();
+
+        if (nodeType != ExpressionType.Convert && !operand.getType().isPrimitive()) {
+            return null;
+        }
+
+        switch (nodeType) {
+            case Convert:
+                if (operandType == resultType && operandType.isPrimitive() ||
+                    TypeUtils.isArithmetic(operandType) && TypeUtils.isArithmetic(resultType)) {
+
+                    return ConstantExpression.make(
+                        LambdaInterpreter.convertPrimitive(value, resultType.getKind()),
+                        node.getType()
+                    );
+                }
+                return null;
+
+            case IsTrue:
+            case IsFalse:
+                if (operandType == PrimitiveTypes.Boolean) {
+                    return ConstantExpression.make(
+                        nodeType == ExpressionType.IsTrue ? value : !(Boolean) value,
+                        node.getType()
+                    );
+                }
+                return null;
+
+            case Not:
+                if (operandType != PrimitiveTypes.Boolean && !TypeUtils.isIntegral(operandType)) {
+                    return null;
+                }
+                break;
+
+            case Negate:
+            case UnaryPlus:
+            case OnesComplement:
+                if (!TypeUtils.isArithmetic(operandType)) {
+                    return null;
+                }
+                break;
+
+            default:
+                return null;
+        }
+
+        return ConstantExpression.make(
+            LambdaInterpreter.convertPrimitive(
+                LambdaInterpreter.evaluateUnaryOperator(nodeType, operandType.getKind(), value),
+                resultType.getKind()
+            ),
+            node.getType()
+        );
+    }
+
+    private Expression foldConstantBinary(final BinaryExpression node) {
+        final Expression left = node.getLeft();
+        final Expression right = node.getRight();
+
+        if (node.getMethod() != null || !isNonNullConstant(left) || !isNonNullConstant(right)) {
+            return null;
+        }
+
+        final Type<?> leftType = left.getType();
+        final Type<?> rightType = right.getType();
+
+        if (!leftType.isPrimitive() || !rightType.isPrimitive()) {
+            return null;
+        }
+
+        final Object leftValue = ((ConstantExpression) left).getValue();
+        final Object rightValue = ((ConstantExpression) right).getValue();
+        final ExpressionType nodeType = node.getNodeType();
+
+        if (leftType == PrimitiveTypes.Boolean && rightType == PrimitiveTypes.Boolean) {
+            switch (nodeType) {
+                case And:
+                case Or:
+                case ExclusiveOr:
+                case Equal:
+                case NotEqual:
+                    return ConstantExpression.make(
+                        LambdaInterpreter.evaluateBooleanOperator(nodeType, (Boolean) leftValue, (Boolean) rightValue),
+                        node.getType()
+                    );
+
+                default:
+                    return null;
+            }
+        }
+
+        if (!TypeUtils.isArithmetic(leftType) || !TypeUtils.isArithmetic(rightType)) {
+            return null;
+        }
+
+        final Type<?> operandType = performBinaryNumericPromotion(leftType, rightType);
+
+        switch (nodeType) {
+            case Divide:
+            case Modulo:
+                //
+                // Leave integral division by zero to throw at run time.
+                //
+                if (TypeUtils.isIntegral(operandType) &&
+                    LambdaInterpreter.convertPrimitive(rightValue, operandType.getKind()).equals(
+                        LambdaInterpreter.convertPrimitive(0, operandType.getKind()))) {
+
+                    return null;
+                }
+                break;
+
+            case And:
+            case Or:
+            case ExclusiveOr:
+            case LeftShift:
+            case RightShift:
+            case UnsignedRightShift:
+                if (!TypeUtils.isIntegral(operandType)) {
+                    return null;
+                }
+                break;
+
+            case Add:
+            case Subtract:
+            case Multiply:
+            case Equal:
+            case NotEqual:
+            case LessThan:
+            case LessThanOrEqual:
+            case GreaterThan:
+            case GreaterThanOrEqual:
+                break;
+
+            default:
+                return null;
+        }
+
+        return ConstantExpression.make(
+            LambdaInterpreter.convertPrimitive(
+                LambdaInterpreter.evaluateArithmeticOperator(nodeType, leftType, rightType, leftValue, rightValue),
+                TypeUtils.getUnderlyingPrimitiveOrSelf(node.getType()).getKind()
+            ),
+            node.getType()
+        );
+    }
+
+    private Expression reduceLogicalConstant(final BinaryExpression node) {
+        final ExpressionType nodeType = node.getNodeType();
+
+        if (nodeType != ExpressionType.AndAlso && nodeType != ExpressionType.OrElse) {
+            return null;
+        }
+
+        final Expression left = node.getLeft();
+        final Expression right = node.getRight();
+
+        if (node.getMethod() != null ||
+            node.getType() != PrimitiveTypes.Boolean ||
+            left.getType() != PrimitiveTypes.Boolean ||
+            right.getType() != PrimitiveTypes.Boolean) {
+
+            return null;
+        }
+
+        //
+        // The identity element (true for &&, false for ||) may simply be dropped; the other value
+        // short circuits everything to its right, and anything to its left with no side effects.
+        //
+        final boolean identity = nodeType == ExpressionType.AndAlso;
+
+        if (isBooleanConstant(left, identity)) {
+            return right;
+        }
+
+        if (isBooleanConstant(left, !identity)) {
+            return left;
+        }
+
+        if (isBooleanConstant(right, identity)) {
+            return left;
+        }
+
+        if (isBooleanConstant(right, !identity) && isPure(left)) {
+            return right;
+        }
+
+        return null;
+    }
+
+    private Expression reduceIntegralIdentity(final BinaryExpression node) {
+        final Type<?> type = node.getType();
+        final Expression left = node.getLeft();
+        final Expression right = node.getRight();
+
+        if (node.getMethod() != null ||
+            type != PrimitiveTypes.Integer && type != PrimitiveTypes.Long ||
+            left.getType() != type ||
+            right.getType() != type) {
+
+            return null;
+        }
+
+        final Long leftValue = integralValue(left);
+        final Long rightValue = integralValue(right);
+
+        if (leftValue == null && rightValue == null) {
+            return null;
+        }
+
+        switch (node.getNodeType()) {
+            case Add:
+            case Or:
+            case ExclusiveOr:
+                if (isValue(rightValue, 0)) {
+                    return left;
+                }
+                if (isValue(leftValue, 0)) {
+                    return right;
+                }
+                return null;
+
+            case Subtract:
+                if (isValue(rightValue, 0)) {
+                    return left;
+                }
+                if (isValue(leftValue, 0)) {
+                    return negate(right);
+                }
+                return null;
+
+            case Multiply:
+                if (rightValue != null) {
+                    return reduceMultiply(left, rightValue, type);
+                }
+                return reduceMultiply(right, leftValue, type);
+
+            case Divide:
+                if (isValue(rightValue, 1)) {
+                    return left;
+                }
+                return null;
+
+            case And:
+                if (isValue(rightValue, -1)) {
+                    return left;
+                }
+                if (isValue(leftValue, -1)) {
+                    return right;
+                }
+                if (isValue(rightValue, 0) && isPure(left)) {
+                    return right;
+                }
+                if (isValue(leftValue, 0) && isPure(right)) {
+                    return left;
+                }
+                return null;
+
+            case LeftShift:
+            case RightShift:
+            case UnsignedRightShift: {
+                final long mask = type == PrimitiveTypes.Long ? 0x3F : 0x1F;
 
-    @Override
-    protected Expression visitBinary(final BinaryExpression node) {
-        Expression reduced = reduceNullConstantComparison(node);
+                if (rightValue != null && (rightValue & mask) == 0) {
+                    return left;
+                }
+                return null;
+            }
 
-        if (reduced != null) {
-            return visit(reduced);
+            default:
+                return null;
         }
-        
-        reduced = reduceBooleanConstantComparison(node);
+    }
 
-        if (reduced != null) {
-            return visit(reduced);
+    private Expression reduceMultiply(final Expression operand, final long factor, final Type<?> type) {
+        if (factor == 1) {
+            return operand;
         }
 
-        return super.visitBinary(node);
-    }
-    
-    @Override
-    protected Expression visitUnary(final UnaryExpression node) {
-        Expression reduced = reduceNullConstantCheck(node);
+        if (factor == -1) {
+            return negate(operand);
+        }
 
-        if (reduced != null) {
-            return visit(reduced);
+        if (factor == 0) {
+            return isPure(operand) ? ConstantExpression.make(LambdaInterpreter.convertPrimitive(0, type.getKind()), type)
+                                   : null;
         }
 
-        reduced = reduceDoubleNot(node);
+        if (factor > 0 && (factor & (factor - 1)) == 0) {
+            final int shift = Long.numberOfTrailingZeros(factor);
 
-        if (reduced != null) {
-            return visit(reduced);
+            return leftShift(
+                operand,
+                ConstantExpression.make(LambdaInterpreter.convertPrimitive(shift, type.getKind()), type)
+            );
         }
 
-        return super.visitUnary(node);
+        return null;
     }
 
     private Expression reduceNullConstantCheck(final UnaryExpression node) {
@@ -95,10 +718,10 @@ final class Optimizer extends ExpressionVisitor {
                 return block(operand, constant(Boolean.FALSE));
             }
         }
-        
+
         return null;
     }
-    
+
     private Expression reduceDoubleNot(final UnaryExpression node) {
         final Type<?> type = node.getType();
         final Expression operand = node.getOperand();
@@ -109,21 +732,28 @@ final class Optimizer extends ExpressionVisitor {
 
         final ExpressionType nodeType = node.getNodeType();
         final ExpressionType operandNodeType = operand.getNodeType();
-        
+
         if ((nodeType == ExpressionType.Not || nodeType == ExpressionType.IsFalse) &&
             (operandNodeType == ExpressionType.Not || operandNodeType == ExpressionType.IsFalse)) {
-            
-            return ((UnaryExpression)operand).getOperand();
+
+            final UnaryExpression innerNot = (UnaryExpression) operand;
+
+            if (node.getMethod() == null &&
+                innerNot.getMethod() == null &&
+                innerNot.getOperand().getType() == PrimitiveTypes.Boolean) {
+
+                return innerNot.getOperand();
+            }
         }
 
         return null;
     }
 
     private Expression reduceNullConstantComparison(final BinaryExpression node) {
-        final Expression left = visit(node.getLeft());
-        final Expression right = visit(node.getRight());
+        final Expression left = node.getLeft();
+        final Expression right = node.getRight();
 
-        if (node.getType() != PrimitiveTypes.Boolean) {
+        if (node.getType() != PrimitiveTypes.Boolean || node.getMethod() != null) {
             return null;
         }
 
@@ -159,12 +789,13 @@ final class Optimizer extends ExpressionVisitor {
     }
 
     private Expression reduceBooleanConstantComparison(final BinaryExpression node) {
-        final Expression left = visit(node.getLeft());
-        final Expression right = visit(node.getRight());
+        final Expression left = node.getLeft();
+        final Expression right = node.getRight();
 
         final ExpressionType nodeType = node.getNodeType();
 
         if (node.getType() != PrimitiveTypes.Boolean ||
+            node.getMethod() != null ||
             nodeType != ExpressionType.Equal && nodeType != ExpressionType.NotEqual) {
             return null;
         }
@@ -179,7 +810,7 @@ final class Optimizer extends ExpressionVisitor {
                 return constant(nodeType == ExpressionType.NotEqual);
             }
             // expr [op] true
-            if (TypeUtils.getUnderlyingPrimitiveOrSelf(left.getType()) == PrimitiveTypes.Boolean) {
+            if (left.getType() == PrimitiveTypes.Boolean) {
                 return nodeType == ExpressionType.Equal ? left : isFalse(left);
             }
             return null;
@@ -195,7 +826,7 @@ final class Optimizer extends ExpressionVisitor {
                 return constant(nodeType == ExpressionType.NotEqual);
             }
             // expr [op] false
-            if (TypeUtils.getUnderlyingPrimitiveOrSelf(left.getType()) == PrimitiveTypes.Boolean) {
+            if (left.getType() == PrimitiveTypes.Boolean) {
                 return nodeType == ExpressionType.Equal ? isFalse(left) : left;
             }
             return null;
@@ -203,17 +834,622 @@ final class Optimizer extends ExpressionVisitor {
 
         if (ConstantCheck.isTrue(left)) {
             // true [op] expr
-            if (TypeUtils.getUnderlyingPrimitiveOrSelf(right.getType()) == PrimitiveTypes.Boolean) {
+            if (right.getType() == PrimitiveTypes.Boolean) {
                 return nodeType == ExpressionType.Equal ? right : isFalse(right);
             }
         }
         else if (ConstantCheck.isFalse(left)) {
             // false [op] expr
-            if (TypeUtils.getUnderlyingPrimitiveOrSelf(right.getType()) == PrimitiveTypes.Boolean) {
+            if (right.getType() == PrimitiveTypes.Boolean) {
                 return nodeType == ExpressionType.NotEqual ? right : isFalse(right);
             }
         }
 
         return null;
     }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Block Variable Inlining">
+
+    /**
+     * Removes block variables which are assigned exactly once, by a statement of the block itself,
+     * and either always hold a constant or are only read by the very next statement.
+     */
+    private Expression inlineVariables(final BlockExpression node) {
+        final ParameterExpressionList variables = node.getVariables();
+
+        if (variables.isEmpty()) {
+            return node;
+        }
+
+        final List<Expression> statements = new ArrayList<>();
+        final List<ParameterExpression> remainingVariables = new ArrayList<>();
+
+        for (final Expression statement : node.getExpressions()) {
+            statements.add(statement);
+        }
+
+        for (final ParameterExpression variable : variables) {
+            remainingVariables.add(variable);
+        }
+
+        boolean changed = false;
+
+        for (int i = 0; i < statements.size() - 1; i++) {
+            final Expression statement = statements.get(i);
+
+            if (statement.getNodeType() != ExpressionType.Assign) {
+                continue;
+            }
+
+            final BinaryExpression assignment = (BinaryExpression) statement;
+
+            if (!(assignment.getLeft() instanceof ParameterExpression)) {
+                continue;
+            }
+
+            final ParameterExpression variable = (ParameterExpression) assignment.getLeft();
+            final Expression value = assignment.getRight();
+            final boolean isConstant = value instanceof ConstantExpression;
+            final boolean isNextStatement = !isConstant && statements.get(i + 1) == variable;
+
+            if (!isConstant && !isNextStatement ||
+                value.getType() != variable.getType() ||
+                !remainingVariables.contains(variable) ||
+                !canInline(variable, value, statements, i, isNextStatement)) {
+
+                continue;
+            }
+
+            if (isNextStatement) {
+                statements.set(i + 1, value);
+            }
+            else {
+                final ParameterReplacer replacer = new ParameterReplacer(variable, value);
+
+                for (int j = i + 1; j < statements.size(); j++) {
+                    final Expression original = statements.get(j);
+                    final Expression replaced = replacer.visit(original);
+
+                    statements.set(j, replaced != original ? visit(replaced) : original);
+                }
+            }
+
+            statements.remove(i);
+            remainingVariables.remove(variable);
+            changed = true;
+            i--;
+        }
+
+        if (!changed) {
+            return node;
+        }
+
+        if (remainingVariables.isEmpty() &&
+            statements.size() == 1 &&
+            statements.get(0).getType() == node.getType()) {
+
+            return statements.get(0);
+        }
+
+        return block(
+            node.getType(),
+            new ParameterExpressionList(remainingVariables.toArray(new ParameterExpression[remainingVariables.size()])),
+            new ExpressionList<>(statements.toArray(new Expression[statements.size()]))
+        );
+    }
+
+    private static boolean canInline(
+        final ParameterExpression variable,
+        final Expression value,
+        final List<Expression> statements,
+        final int index,
+        final boolean isNextStatement) {
+
+        final VariableUsage before = new VariableUsage();
+        final VariableUsage after = new VariableUsage();
+
+        for (int i = 0; i < index; i++) {
+            before.visit(statements.get(i));
+        }
+
+        before.visit(value);
+
+        for (int i = index + 1; i < statements.size(); i++) {
+            after.visit(statements.get(i));
+        }
+
+        //
+        // A label after the assignment could be the target of a jump from before it, in which
+        // case the variable would be read without having been assigned.
+        //
+        if (before.hasOpaqueNodes() ||
+            before.isUsed(variable) ||
+            after.hasOpaqueNodes() ||
+            after.hasLabels() ||
+            after.getWriteCount(variable) != 0 ||
+            after.isDeclared(variable) ||
+            after.isExposed(variable)) {
+
+            return false;
+        }
+
+        return !isNextStatement || after.getReadCount(variable) == 1;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Loop-Invariant Hoisting">
+
+    private InvariantHoister createHoister(final Expression body, final ParameterExpression loopVariable) {
+        if (!_canHoist) {
+            return null;
+        }
+
+        final VariableUsage usage = new VariableUsage();
+
+        usage.visit(body);
+
+        if (usage.hasOpaqueNodes()) {
+            return null;
+        }
+
+        final Set<ParameterExpression> variantVariables = newIdentitySet();
+
+        variantVariables.addAll(_unstableVariables);
+        variantVariables.addAll(usage.getWrittenVariables());
+        variantVariables.addAll(usage.getDeclaredVariables());
+
+        if (loopVariable != null) {
+            variantVariables.add(loopVariable);
+        }
+
+        return new InvariantHoister(variantVariables);
+    }
+
+    /**
+     * Replaces the largest invariant subexpressions of a loop body with temporaries which are
+     * assigned once, before the loop.  Only arithmetic which can neither throw nor have side
+     * effects is considered, so evaluating it early, or when the loop body would never have
+     * reached it, is unobservable.
+     */
+    private final static class InvariantHoister extends ExpressionVisitor {
+        private final Set<ParameterExpression> _variantVariables;
+        private final List<ParameterExpression> _temporaries = new ArrayList<>();
+        private final List<Expression> _initializers = new ArrayList<>();
+
+        InvariantHoister(final Set<ParameterExpression> variantVariables) {
+            _variantVariables = variantVariables;
+        }
+
+        boolean hasHoistedExpressions() {
+            return !_temporaries.isEmpty();
+        }
+
+        Expression wrap(final Expression loop) {
+            final Expression[] statements = new Expression[_initializers.size() + 1];
+
+            _initializers.toArray(statements);
+            statements[statements.length - 1] = loop;
+
+            return block(
+                loop.getType(),
+                new ParameterExpressionList(_temporaries.toArray(new ParameterExpression[_temporaries.size()])),
+                statements
+            );
+        }
+
+        @Override
+        public Expression visit(final Expression node) {
+            if ((node instanceof UnaryExpression || node instanceof BinaryExpression) && isInvariant(node)) {
+                final ParameterExpression temporary = variable(node.getType(), "$invariant");
+
+                _temporaries.add(temporary);
+                _initializers.add(assign(temporary, node));
+
+                return temporary;
+            }
+
+            return super.visit(node);
+        }
+
+        @Override
+        protected SwitchCase visitSwitchCase(final SwitchCase node) {
+            return node.update(node.getTestValues(), visit(node.getBody()));
+        }
+
+        @Override
+        protected <T> LambdaExpression<T> visitLambda(final LambdaExpression<T> node) {
+            //
+            // A nested lambda may run long after the loop exits, or not at all; leave it alone.
+            //
+            return node;
+        }
+
+        private boolean isInvariant(final Expression node) {
+            switch (node.getNodeType()) {
+                case Constant:
+                    return true;
+
+                case Parameter:
+                    return !_variantVariables.contains(node);
+
+                case Negate:
+                case UnaryPlus:
+                case Not:
+                case OnesComplement:
+                case Convert: {
+                    final UnaryExpression unary = (UnaryExpression) node;
+                    final Expression operand = unary.getOperand();
+
+                    return unary.getMethod() == null &&
+                           unary.getType().isPrimitive() &&
+                           operand.getType().isPrimitive() &&
+                           isInvariant(operand);
+                }
+
+                case Divide:
+                case Modulo:
+                    //
+                    // Integral division may throw, so it is never hoisted.
+                    //
+                    return !TypeUtils.isIntegral(node.getType()) &&
+                           isInvariantBinary((BinaryExpression) node);
+
+                case Add:
+                case Subtract:
+                case Multiply:
+                case And:
+                case Or:
+                case ExclusiveOr:
+                case LeftShift:
+                case RightShift:
+                case UnsignedRightShift:
+                case Equal:
+                case NotEqual:
+                case LessThan:
+                case LessThanOrEqual:
+                case GreaterThan:
+                case GreaterThanOrEqual:
+                    return isInvariantBinary((BinaryExpression) node);
+
+                default:
+                    return false;
+            }
+        }
+
+        private boolean isInvariantBinary(final BinaryExpression node) {
+            final Expression left = node.getLeft();
+            final Expression right = node.getRight();
+
+            return node.getMethod() == null &&
+                   node.getType().isPrimitive() &&
+                   left.getType().isPrimitive() &&
+                   right.getType().isPrimitive() &&
+                   isInvariant(left) &&
+                   isInvariant(right);
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Helper Methods">
+
+    private static <T> Set<T> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+    }
+
+    private static boolean isNonNullConstant(final Expression node) {
+        return node instanceof ConstantExpression && ((ConstantExpression) node).getValue() != null;
+    }
+
+    private static boolean isBooleanConstant(final Expression node, final boolean value) {
+        return value ? ConstantCheck.isTrue(node) : ConstantCheck.isFalse(node);
+    }
+
+    private static boolean isStringConvertibleConstant(final Expression node) {
+        if (!(node instanceof ConstantExpression)) {
+            return false;
+        }
+
+        final Type<?> type = node.getType();
+
+        return type == Types.String || TypeUtils.getUnderlyingPrimitiveOrSelf(type).isPrimitive();
+    }
+
+    private static boolean isPure(final Expression node) {
+        switch (node.getNodeType()) {
+            case Constant:
+            case Parameter:
+            case DefaultValue:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Long integralValue(final Expression node) {
+        if (!isNonNullConstant(node)) {
+            return null;
+        }
+
+        final Object value = ((ConstantExpression) node).getValue();
+
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+
+        return null;
+    }
+
+    private static boolean isValue(final Long value, final long expected) {
+        return value != null && value == expected;
+    }
+
+    private static boolean containsLabels(final Expression node) {
+        final VariableUsage usage = new VariableUsage();
+        usage.visit(node);
+        return usage.hasLabels() || usage.hasOpaqueNodes();
+    }
+
+    /**
+     * Returns {@code node} as an expression of type {@code type}, or {@code null} if that would
+     * require a conversion.
+     */
+    private static Expression withType(final Expression node, final Type<?> type) {
+        final Type<?> nodeType = node.getType();
+
+        if (nodeType == type) {
+            return node;
+        }
+
+        if (type == PrimitiveTypes.Void || !nodeType.isPrimitive() && type.isAssignableFrom(nodeType)) {
+            return block(type, node);
+        }
+
+        return null;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="VariableUsage Class">
+
+    /**
+     * Records how the variables referenced by a tree are used: how often each is read and written,
+     * which are declared within it, and which are written from within a nested lambda or exposed
+     * through {@code runtimeVariables()}.
+     */
+    private final static class VariableUsage extends ExpressionVisitor {
+        private final Map<ParameterExpression, Integer> _reads = new IdentityHashMap<>();
+        private final Map<ParameterExpression, Integer> _writes = new IdentityHashMap<>();
+        private final Set<ParameterExpression> _declared = newIdentitySet();
+        private final Set<ParameterExpression> _exposed = newIdentitySet();
+        private final Set<ParameterExpression> _writtenInLambdas = newIdentitySet();
+
+        private int _lambdaDepth;
+        private boolean _hasLabels;
+        private boolean _hasOpaqueNodes;
+
+        int getReadCount(final ParameterExpression variable) {
+            final Integer count = _reads.get(variable);
+            return count != null ? count : 0;
+        }
+
+        int getWriteCount(final ParameterExpression variable) {
+            final Integer count = _writes.get(variable);
+            return count != null ? count : 0;
+        }
+
+        boolean isUsed(final ParameterExpression variable) {
+            return _reads.containsKey(variable) ||
+                   _writes.containsKey(variable) ||
+                   _declared.contains(variable) ||
+                   _exposed.contains(variable);
+        }
+
+        boolean isDeclared(final ParameterExpression variable) {
+            return _declared.contains(variable);
+        }
+
+        boolean isExposed(final ParameterExpression variable) {
+            return _exposed.contains(variable);
+        }
+
+        Set<ParameterExpression> getWrittenVariables() {
+            return _writes.keySet();
+        }
+
+        Set<ParameterExpression> getDeclaredVariables() {
+            return _declared;
+        }
+
+        Set<ParameterExpression> getExposedVariables() {
+            return _exposed;
+        }
+
+        Set<ParameterExpression> getVariablesWrittenInLambdas() {
+            return _writtenInLambdas;
+        }
+
+        boolean hasLabels() {
+            return _hasLabels;
+        }
+
+        boolean hasOpaqueNodes() {
+            return _hasOpaqueNodes;
+        }
+
+        private static void increment(final Map<ParameterExpression, Integer> counts, final ParameterExpression variable) {
+            final Integer count = counts.get(variable);
+            counts.put(variable, count != null ? count + 1 : 1);
+        }
+
+        private void recordWrite(final ParameterExpression variable) {
+            increment(_writes, variable);
+
+            if (_lambdaDepth > 0) {
+                _writtenInLambdas.add(variable);
+            }
+        }
+
+        private void recordDeclarations(final ParameterExpressionList variables) {
+            for (final ParameterExpression variable : variables) {
+                _declared.add(variable);
+            }
+        }
+
+        @Override
+        protected Expression visitParameter(final ParameterExpression node) {
+            increment(_reads, node);
+            return node;
+        }
+
+        @Override
+        protected Expression visitBinary(final BinaryExpression node) {
+            final ExpressionType nodeType = node.getNodeType();
+
+            if (!(node.getLeft() instanceof ParameterExpression) || !isAssignment(nodeType)) {
+                return super.visitBinary(node);
+            }
+
+            final ParameterExpression variable = (ParameterExpression) node.getLeft();
+
+            if (nodeType != ExpressionType.Assign) {
+                increment(_reads, variable);
+            }
+
+            recordWrite(variable);
+            visit(node.getConversion());
+            visit(node.getRight());
+
+            return node;
+        }
+
+        @Override
+        protected Expression visitUnary(final UnaryExpression node) {
+            switch (node.getNodeType()) {
+                case PreIncrementAssign:
+                case PreDecrementAssign:
+                case PostIncrementAssign:
+                case PostDecrementAssign:
+                    if (node.getOperand() instanceof ParameterExpression) {
+                        final ParameterExpression variable = (ParameterExpression) node.getOperand();
+
+                        increment(_reads, variable);
+                        recordWrite(variable);
+
+                        return node;
+                    }
+                    break;
+            }
+
+            return super.visitUnary(node);
+        }
+
+        @Override
+        protected Expression visitBlock(final BlockExpression node) {
+            recordDeclarations(node.getVariables());
+            return super.visitBlock(node);
+        }
+
+        @Override
+        protected CatchBlock visitCatchBlock(final CatchBlock node) {
+            if (node.getVariable() != null) {
+                _declared.add(node.getVariable());
+            }
+            return super.visitCatchBlock(node);
+        }
+
+        @Override
+        protected Expression visitForEach(final ForEachExpression node) {
+            _declared.add(node.getVariable());
+            return super.visitForEach(node);
+        }
+
+        @Override
+        protected Expression visitFor(final ForExpression node) {
+            _declared.add(node.getVariable());
+            return super.visitFor(node);
+        }
+
+        @Override
+        protected <T> LambdaExpression<T> visitLambda(final LambdaExpression<T> node) {
+            recordDeclarations(node.getParameters());
+
+            ++_lambdaDepth;
+
+            try {
+                return super.visitLambda(node);
+            }
+            finally {
+                --_lambdaDepth;
+            }
+        }
+
+        @Override
+        protected Expression visitRuntimeVariables(final RuntimeVariablesExpression node) {
+            for (final ParameterExpression variable : node.getVariables()) {
+                _exposed.add(variable);
+            }
+
+            return node;
+        }
+
+        @Override
+        protected Expression visitLabel(final LabelExpression node) {
+            _hasLabels = true;
+            return super.visitLabel(node);
+        }
+
+        @Override
+        protected Expression visitExtension(final Expression node) {
+            //
+            // We cannot see what an unknown node does with its variables.
+            //
+            _hasOpaqueNodes = true;
+            return node;
+        }
+
+        private static boolean isAssignment(final ExpressionType nodeType) {
+            switch (nodeType) {
+                case Assign:
+                case AddAssign:
+                case AndAssign:
+                case DivideAssign:
+                case ExclusiveOrAssign:
+                case LeftShiftAssign:
+                case ModuloAssign:
+                case MultiplyAssign:
+                case OrAssign:
+                case RightShiftAssign:
+                case UnsignedRightShiftAssign:
+                case SubtractAssign:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="ParameterReplacer Class">
+
+    private final static class ParameterReplacer extends ExpressionVisitor {
+        private final ParameterExpression _variable;
+        private final Expression _replacement;
+
+        ParameterReplacer(final ParameterExpression variable, final Expression replacement) {
+            _variable = variable;
+            _replacement = replacement;
+        }
+
+        @Override
+        protected Expression visitParameter(final ParameterExpression node) {
+            return node == _variable ? _replacement : node;
+        }
+    }
+
+    // </editor-fold>
 }
@@ -33,6 +33,10 @@ final class SelfExpression extends ParameterExpression {
     public Type<?> getType() {
         return _type;
     }
+
+    static boolean isSelfOrSuper(final ParameterExpression node) {
+        return node instanceof SelfExpression || node instanceof SuperExpression;
+    }
 }
 
 /**
@@ -138,7 +138,7 @@ final class StackSpiller {
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     static <T> LambdaExpression<T> analyzeLambda(final LambdaExpression<T> lambda) {
-        return /*Optimizer.optimize(lambda)*/lambda.accept(new StackSpiller(Stack.Empty));
+        return Optimizer.optimize(lambda).accept(new StackSpiller(Stack.Empty));
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -709,6 +709,8 @@ final class StackSpiller {
                 return rewriteMemberAssignment(node, stack);
             case Parameter:
                 return rewriteVariableAssignment(node, stack);
+            case ArrayIndex:
+                return rewriteIndexAssignment(node, stack);
             case Extension:
                 return rewriteExtensionAssignment(node, stack);
             default:
@@ -756,6 +758,28 @@ final class StackSpiller {
         return new Result(RewriteAction.None, node);
     }
 
+    private Result rewriteIndexAssignment(final BinaryExpression node, final Stack stack) {
+        final BinaryExpression index = (BinaryExpression)node.getLeft();
+        final ChildRewriter cr = new ChildRewriter(stack, 3);
+
+        // The array executes on the stack in current state, and the index
+        // and value are executed on a non-empty stack.
+        cr.add(index.getLeft());
+        cr.add(index.getRight());
+        cr.add(node.getRight());
+
+        if (cr.didRewrite()) {
+            return cr.Finish(
+                Expression.assign(
+                    Expression.arrayIndex(cr.get(0), cr.get(1)),
+                    cr.get(2)
+                )
+            );
+        }
+
+        return new Result(RewriteAction.None, node);
+    }
+
     private Result rewriteNewArrayExpression(final Expression expr, final Stack stack) {
         final NewArrayExpression node = (NewArrayExpression)expr;
         final Stack newStack;
@@ -830,7 +854,7 @@ final class StackSpiller {
         // we do need to rebuild the tree above us so it includes the new node.
         final RewriteAction action = (analyzedLambda == node) ? RewriteAction.None : RewriteAction.Copy;
 
-        return new Result(action, expr);
+        return new Result(action, analyzedLambda);
     }
 
     private Result rewriteInvocationExpression(final Expression expr, final Stack stack) {
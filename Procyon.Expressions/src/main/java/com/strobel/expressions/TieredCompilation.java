@@ -0,0 +1,194 @@
+/*
+ * TieredCompilation.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.reflection.MethodInfo;
+import com.strobel.util.ContractUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates delegates which start out interpreted and are compiled once they get hot.  Generating,
+ * loading, and verifying a class for a lambda often costs more than the handful of times it will
+ * ever run; a tiered delegate interprets its lambda instead, and after a number of invocations
+ * compiles it on a background thread and switches over to the compiled code.  Until then, it
+ * creates no classes beyond the proxy class for its interface, which is shared by every lambda of
+ * that type.
+ * <p/>
+ * The number of invocations after which a lambda is compiled may be set with the
+ * {@code com.strobel.expressions.TieredCompilation.Threshold} system property; a threshold of
+ * zero or less disables interpretation.  Lambdas which cannot be interpreted are compiled up
+ * front.
+ * <p/>
+ * Once compiled, a tiered delegate still dispatches through its proxy, which costs more than
+ * calling a compiled delegate directly.  Callers which hold on to a delegate for a hot path should
+ * check {@link #isCompiled(Object)} and, once it returns {@code true}, replace the delegate with
+ * one from {@link LambdaExpression#compileDelegate()}, which reuses the class generated in the
+ * background.
+ *
+ * @author Mike Strobel
+ */
+public final class TieredCompilation {
+    private final static String ThresholdProperty = "com.strobel.expressions.TieredCompilation.Threshold";
+    private final static int DefaultThreshold = 64;
+    private final static int Threshold = Integer.getInteger(ThresholdProperty, DefaultThreshold);
+    private final static Logger logger = Logger.getLogger(TieredCompilation.class.getName());
+
+    private TieredCompilation() {
+        throw ContractUtils.unreachable();
+    }
+
+    /**
+     * Returns the number of invocations after which a tiered delegate is compiled.
+     */
+    public static int getCompileThreshold() {
+        return Threshold;
+    }
+
+    /**
+     * Returns whether {@code instance}, the instance of a delegate created by
+     * {@link LambdaExpression#compileTiered()}, now runs compiled code rather than interpreting
+     * its lambda.
+     */
+    public static boolean isCompiled(final Object instance) {
+        if (instance == null || !Proxy.isProxyClass(instance.getClass())) {
+            return true;
+        }
+
+        final InvocationHandler handler = Proxy.getInvocationHandler(instance);
+
+        return !(handler instanceof TieredHandler<?>) ||
+               ((TieredHandler<?>) handler)._compiledInvoker != null;
+    }
+
+    static <T> Delegate<T> createDelegate(final LambdaExpression<T> lambda) {
+        return createDelegate(lambda, Threshold);
+    }
+
+    static <T> Delegate<T> createDelegate(final LambdaExpression<T> lambda, final int threshold) {
+        final LambdaInterpreter interpreter = threshold > 0 && lambda.getType().isInterface()
+                                              ? LambdaInterpreter.tryCreate(lambda)
+                                              : null;
+
+        if (interpreter == null) {
+            return CompiledLambdaCache.compile(lambda);
+        }
+
+        final Class<T> interfaceClass = lambda.getType().getErasedClass();
+        final MethodInfo invokeMethod = Expression.getInvokeMethod(lambda);
+
+        final Object instance = Proxy.newProxyInstance(
+            interfaceClass.getClassLoader(),
+            new Class<?>[] { interfaceClass },
+            new TieredHandler<>(lambda, interpreter, threshold)
+        );
+
+        return new Delegate<>(interfaceClass.cast(instance), invokeMethod);
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="TieredHandler Class">
+
+    private final static class TieredHandler<T> implements InvocationHandler {
+        private final LambdaExpression<T> _lambda;
+        private final LambdaInterpreter _interpreter;
+        private final int _threshold;
+        private final AtomicInteger _invocationCount = new AtomicInteger();
+
+        //
+        // The compiled delegate's method handle, taking its arguments as an Object[] and returning
+        // an Object, so that it can be invoked exactly with the arguments of a proxied call.
+        //
+        private volatile MethodHandle _compiledInvoker;
+
+        TieredHandler(final LambdaExpression<T> lambda, final LambdaInterpreter interpreter, final int threshold) {
+            _lambda = lambda;
+            _interpreter = interpreter;
+            _threshold = threshold;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return LambdaInterpreter.invokeObjectMethod(proxy, method, args);
+            }
+
+            final MethodHandle compiledInvoker = _compiledInvoker;
+
+            if (compiledInvoker != null) {
+                return (Object) compiledInvoker.invokeExact(args);
+            }
+
+            if (_invocationCount.incrementAndGet() == _threshold) {
+                BackgroundCompiler.Instance.execute(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            compile();
+                        }
+                    }
+                );
+            }
+
+            return _interpreter.invoke(args);
+        }
+
+        private void compile() {
+            final MethodHandle methodHandle;
+
+            try {
+                methodHandle = CompiledLambdaCache.compile(_lambda).getMethodHandle();
+            }
+            catch (RuntimeException | LinkageError e) {
+                //
+                // The interpreter accepted a tree the compiler could not handle; just keep
+                // interpreting it.
+                //
+                logger.log(Level.WARNING, "Unable to compile a tiered lambda; it will remain interpreted.", e);
+                return;
+            }
+
+            _compiledInvoker = methodHandle
+                .asType(methodHandle.type().generic())
+                .asSpreader(Object[].class, methodHandle.type().parameterCount());
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="BackgroundCompiler Class">
+
+    private final static class BackgroundCompiler {
+        final static Executor Instance = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, "Lambda Compiler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+        );
+    }
+
+    // </editor-fold>
+}
@@ -85,6 +85,8 @@ public final class UnaryExpression extends Expression {
             switch (_operand.getNodeType()) {
                 case MemberAccess:
                     return reduceMember();
+                case ArrayIndex:
+                    return reduceIndex();
                 default:
                     return reduceVariable();
             }
@@ -146,6 +148,36 @@ public final class UnaryExpression extends Expression {
         }
     }
 
+    private Expression reduceIndex() {
+        final BinaryExpression index = (BinaryExpression)_operand;
+        final ParameterExpression temp1 = parameter(index.getLeft().getType(), null);
+        final ParameterExpression temp2 = parameter(index.getRight().getType(), null);
+        final Expression element = arrayIndex(temp1, temp2);
+
+        if (isPrefix()) {
+            // (op) a[i] => temp1 = a; temp2 = i; temp1[temp2] = op(temp1[temp2])
+            return block(
+                new ParameterExpression[]{temp1, temp2},
+                assign(temp1, index.getLeft()),
+                assign(temp2, index.getRight()),
+                assign(element, functionalOp(element))
+            );
+        }
+
+        // a[i] (op) => temp1 = a; temp2 = i; temp3 = temp1[temp2]; temp1[temp2] = op(temp3); temp3
+
+        final ParameterExpression temp3 = parameter(element.getType(), null);
+
+        return block(
+            new ParameterExpression[]{temp1, temp2, temp3},
+            assign(temp1, index.getLeft()),
+            assign(temp2, index.getRight()),
+            assign(temp3, element),
+            assign(element, functionalOp(temp3)),
+            temp3
+        );
+    }
+
     private boolean isPrefix() {
         return _nodeType == ExpressionType.PreIncrementAssign || _nodeType == ExpressionType.PreDecrementAssign;
     }
@@ -0,0 +1,193 @@
+/*
+ * ColumnarEvaluatorTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.reflection.PrimitiveTypes;
+import com.strobel.reflection.Type;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static com.strobel.expressions.Expression.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Mike Strobel
+ */
+public class ColumnarEvaluatorTests extends AbstractExpressionTest {
+    interface IntDoubleToDouble {
+        double apply(int a, double b);
+    }
+
+    interface IntLongToLong {
+        long apply(int a, long b);
+    }
+
+    interface IntPredicate {
+        boolean test(int x);
+    }
+
+    interface BooleanDoublePredicate {
+        boolean test(boolean flag, double value);
+    }
+
+    @Test
+    public void testProjectionOverArrays() throws Throwable {
+        final ParameterExpression a = parameter(PrimitiveTypes.Integer, "a");
+        final ParameterExpression b = parameter(PrimitiveTypes.Double, "b");
+
+        final LambdaExpression<IntDoubleToDouble> lambda = lambda(
+            Type.of(IntDoubleToDouble.class),
+            multiply(convert(a, PrimitiveTypes.Double), b),
+            a,
+            b
+        );
+
+        final int[] as = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        final double[] bs = { 0.5, 1.5, 2.5, 3.5, 4.5, 5.5, 6.5, 7.5, 8.5, 9.5 };
+        final double[] results = new double[as.length];
+
+        Arrays.fill(results, -1d);
+
+        assertEquals(6, lambda.compileProjection().evaluate(new Object[] { as, bs }, results, 2, 8));
+
+        for (int row = 0; row < results.length; row++) {
+            final double expected = row >= 2 && row < 8 ? as[row] * bs[row] : -1d;
+            assertEquals(expected, results[row], 0d);
+        }
+    }
+
+    @Test
+    public void testProjectionOverBuffers() throws Throwable {
+        final ParameterExpression a = parameter(PrimitiveTypes.Integer, "a");
+        final ParameterExpression b = parameter(PrimitiveTypes.Long, "b");
+
+        final LambdaExpression<IntLongToLong> lambda = lambda(
+            Type.of(IntLongToLong.class),
+            add(convert(a, PrimitiveTypes.Long), b),
+            a,
+            b
+        );
+
+        final int rows = 100;
+        final ByteBuffer as = ByteBuffer.allocate(rows * 4).order(ByteOrder.LITTLE_ENDIAN);
+        final long[] bs = new long[rows];
+        final long[] results = new long[rows];
+
+        for (int row = 0; row < rows; row++) {
+            as.putInt(row * 4, -row);
+            bs[row] = (long) row << 32;
+        }
+
+        final ColumnarEvaluator evaluator = lambda.compileProjection(ColumnStorage.Buffer, ColumnStorage.Array);
+
+        assertEquals(rows, evaluator.evaluate(new Object[] { as, bs }, results, 0, rows));
+
+        for (int row = 0; row < rows; row++) {
+            assertEquals(((long) row << 32) - row, results[row]);
+        }
+    }
+
+    @Test
+    public void testSelectionAcrossWordBoundaries() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        final LambdaExpression<IntPredicate> lambda = lambda(
+            Type.of(IntPredicate.class),
+            equal(modulo(x, constant(3)), constant(0)),
+            x
+        );
+
+        final int rows = 256;
+        final int start = 60;
+        final int end = 140;
+        final int[] xs = new int[rows];
+
+        for (int row = 0; row < rows; row++) {
+            xs[row] = row * 7;
+        }
+
+        int expectedCount = 0;
+
+        for (int row = start; row < end; row++) {
+            if (xs[row] % 3 == 0) {
+                expectedCount++;
+            }
+        }
+
+        final ColumnarEvaluator evaluator = lambda.compileSelection();
+
+        //
+        // The range [60, 140) spans three words of the bitmap.  Rows inside it must have their bits
+        // set or cleared regardless of the bitmap's prior contents; rows outside it must keep theirs.
+        //
+        for (final long fill : new long[] { 0L, -1L }) {
+            final long[] bitmap = new long[rows / 64];
+
+            Arrays.fill(bitmap, fill);
+
+            assertEquals(expectedCount, evaluator.evaluate(new Object[] { xs }, bitmap, start, end));
+
+            for (int row = 0; row < rows; row++) {
+                final boolean selected = (bitmap[row >>> 6] & (1L << row)) != 0;
+                final boolean expected = row >= start && row < end ? xs[row] % 3 == 0 : fill != 0L;
+
+                assertEquals("row " + row, expected, selected);
+            }
+        }
+    }
+
+    @Test
+    public void testSelectionOverBuffers() throws Throwable {
+        final ParameterExpression flag = parameter(PrimitiveTypes.Boolean, "flag");
+        final ParameterExpression value = parameter(PrimitiveTypes.Double, "value");
+
+        final LambdaExpression<BooleanDoublePredicate> lambda = lambda(
+            Type.of(BooleanDoublePredicate.class),
+            andAlso(flag, greaterThan(value, constant(0.5d))),
+            flag,
+            value
+        );
+
+        final int rows = 130;
+        final ByteBuffer flags = ByteBuffer.allocate(rows);
+        final ByteBuffer values = ByteBuffer.allocate(rows * 8);
+        final long[] bitmap = new long[3];
+
+        int expectedCount = 0;
+
+        for (int row = 0; row < rows; row++) {
+            final boolean f = row % 2 == 0;
+            final double v = (row % 5) / 4d;
+
+            flags.put(row, (byte) (f ? row | 1 : 0));
+            values.putDouble(row * 8, v);
+
+            if (f && v > 0.5d) {
+                expectedCount++;
+            }
+        }
+
+        final ColumnarEvaluator evaluator = lambda.compileSelection(ColumnStorage.Buffer, ColumnStorage.Buffer);
+
+        assertEquals(expectedCount, evaluator.evaluate(new Object[] { flags, values }, bitmap, 0, rows));
+
+        for (int row = 0; row < rows; row++) {
+            final boolean selected = (bitmap[row >>> 6] & (1L << row)) != 0;
+            assertEquals("row " + row, row % 2 == 0 && (row % 5) / 4d > 0.5d, selected);
+        }
+    }
+}
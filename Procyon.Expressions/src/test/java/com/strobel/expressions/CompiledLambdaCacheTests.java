@@ -0,0 +1,333 @@
+/*
+ * CompiledLambdaCacheTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.reflection.PrimitiveTypes;
+import com.strobel.reflection.Type;
+import com.strobel.reflection.Types;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.strobel.expressions.Expression.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Mike Strobel
+ */
+public class CompiledLambdaCacheTests extends AbstractExpressionTest {
+    private final static String DISABLE_PROPERTY = "com.strobel.expressions.CompiledLambdaCache.Disable";
+
+    interface IntToString {
+        String apply(int x);
+    }
+
+    interface IntToInt {
+        int apply(int x);
+    }
+
+    interface IntToObject {
+        Object apply(int x);
+    }
+
+    private long _hits;
+    private long _misses;
+
+    @Before
+    public void resetCache() {
+        CompiledLambdaCache.clear();
+        _hits = CompiledLambdaCache.getHitCount();
+        _misses = CompiledLambdaCache.getMissCount();
+    }
+
+    @Test
+    public void testSameShapeWithDifferentConstantsHits() throws Throwable {
+        final List<String> firstList = Arrays.asList("a", "b");
+        final List<String> secondList = Arrays.asList("c");
+
+        final IntToString first = mixedConstants(3, 0.5d, "one", firstList).compile();
+
+        assertCounts(0, 1);
+        assertEquals(1, CompiledLambdaCache.getSize());
+
+        final IntToString second = mixedConstants(-7, 2.25d, "two", secondList).compile();
+
+        assertCounts(1, 1);
+        assertEquals(1, CompiledLambdaCache.getSize());
+        assertNotSame(first, second);
+
+        //
+        // Each delegate must see its own constants, however the calls are interleaved.
+        //
+        assertEquals("one:13:5.0:[a, b]", first.apply(10));
+        assertEquals("two:3:22.5:[c]", second.apply(10));
+        assertEquals("one:4:0.5:[a, b]", first.apply(1));
+    }
+
+    @Test
+    public void testNestedLambdasSeeTheirOwnConstants() throws Throwable {
+        final IntToInt first = nestedConstants(3, 100).compile();
+        final IntToInt second = nestedConstants(5, 1000).compile();
+
+        assertCounts(1, 1);
+
+        assertEquals(3 * 3 + 100, first.apply(3));
+        assertEquals(5 * 3 + 1000, second.apply(3));
+        assertEquals(3 * 4 + 100, first.apply(4));
+    }
+
+    @Test
+    public void testNullConstantsAreNotInterchangeable() throws Throwable {
+        final IntToObject withValue = objectConstant("value").compile();
+        final IntToObject withNull = objectConstant(null).compile();
+
+        assertCounts(0, 2);
+        assertEquals(2, CompiledLambdaCache.getSize());
+
+        assertEquals("value", withValue.apply(0));
+        assertNull(withNull.apply(0));
+
+        //
+        // Another null constant in the same place has the same structure.
+        //
+        assertNull(objectConstant(null).compile().apply(0));
+        assertCounts(1, 2);
+    }
+
+    @Test
+    public void testSwitchTestValuesAreNotInterchangeable() throws Throwable {
+        final IntToString matchesOne = switchOn(1).compile();
+        final IntToString matchesTwo = switchOn(2).compile();
+
+        assertCounts(0, 2);
+
+        assertEquals("match", matchesOne.apply(1));
+        assertEquals("other", matchesOne.apply(2));
+        assertEquals("other", matchesTwo.apply(1));
+        assertEquals("match", matchesTwo.apply(2));
+
+        assertEquals("match", switchOn(1).compile().apply(1));
+        assertCounts(1, 2);
+    }
+
+    @Test
+    public void testLoopsAreCachedWithTheirConstants() throws Throwable {
+        for (int i = 0; i < 2; i++) {
+            final int limit = 3 + i;
+            final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+            final ParameterExpression total = variable(PrimitiveTypes.Integer, "total");
+            final ParameterExpression index = variable(PrimitiveTypes.Integer, "i");
+
+            final LambdaExpression<IntToInt> lambda = lambda(
+                Type.of(IntToInt.class),
+                block(
+                    new ParameterExpressionList(total),
+                    assign(total, constant(0)),
+                    makeFor(
+                        index,
+                        constant(0),
+                        lessThan(index, constant(limit)),
+                        preIncrementAssign(index),
+                        addAssign(total, x)
+                    ),
+                    total
+                ),
+                x
+            );
+
+            assertEquals(ExpressionType.Extension, ((BlockExpression) lambda.getBody()).getExpression(1).getNodeType());
+            assertEquals(limit * 5, lambda.compile().apply(5));
+        }
+
+        assertCounts(1, 1);
+        assertEquals(1, CompiledLambdaCache.getSize());
+    }
+
+    @Test
+    public void testExtensionNodesAreCachedByTheirReductions() throws Throwable {
+        final IntToInt first = addConstant(7).compile();
+        final IntToInt second = addConstant(11).compile();
+
+        assertCounts(1, 1);
+
+        assertEquals(8, first.apply(1));
+        assertEquals(12, second.apply(1));
+    }
+
+    @Test
+    public void testQuotedNodesAreNotCached() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        final LambdaExpression<IntToInt> inner = lambda(Type.of(IntToInt.class), x, x);
+        final Expression quote = new UnaryExpression(ExpressionType.Quote, inner, inner.getType(), null);
+
+        final LambdaExpression<IntToObject> lambda = lambda(
+            Type.of(IntToObject.class),
+            quote,
+            parameter(PrimitiveTypes.Integer, "y")
+        );
+
+        //
+        // The compiler does not support quotes, but whether or not compilation succeeds, the
+        // cache must count the tree as a miss without recording an entry for it.
+        //
+        try {
+            lambda.compile();
+        }
+        catch (Throwable ignored) {
+        }
+
+        assertCounts(0, 1);
+        assertEquals(0, CompiledLambdaCache.getSize());
+    }
+
+    @Test
+    public void testDisablePropertyBypassesCache() throws Throwable {
+        final String oldValue = System.getProperty(DISABLE_PROPERTY);
+
+        System.setProperty(DISABLE_PROPERTY, "true");
+
+        try {
+            compileSameShapeTwice();
+
+            assertCounts(0, 0);
+            assertEquals(0, CompiledLambdaCache.getSize());
+        }
+        finally {
+            if (oldValue != null) {
+                System.setProperty(DISABLE_PROPERTY, oldValue);
+            }
+            else {
+                System.clearProperty(DISABLE_PROPERTY);
+            }
+        }
+
+        compileSameShapeTwice();
+
+        assertCounts(1, 1);
+        assertEquals(1, CompiledLambdaCache.getSize());
+    }
+
+    private static void compileSameShapeTwice() {
+        final IntToString first = mixedConstants(1, 1d, "first", Arrays.asList("x")).compile();
+        final IntToString second = mixedConstants(2, 2d, "second", Arrays.asList("y")).compile();
+
+        assertEquals("first:3:2.0:[x]", first.apply(2));
+        assertEquals("second:4:4.0:[y]", second.apply(2));
+    }
+
+    private void assertCounts(final long hits, final long misses) {
+        assertEquals("hits", hits, CompiledLambdaCache.getHitCount() - _hits);
+        assertEquals("misses", misses, CompiledLambdaCache.getMissCount() - _misses);
+    }
+
+    private static LambdaExpression<IntToString> mixedConstants(
+        final int i,
+        final double d,
+        final String s,
+        final List<String> list) {
+
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        return lambda(
+            Type.of(IntToString.class),
+            concat(
+                constant(s),
+                constant(":"),
+                add(x, constant(i)),
+                constant(":"),
+                multiply(convert(x, PrimitiveTypes.Double), constant(d)),
+                constant(":"),
+                constant(list, Types.List)
+            ),
+            x
+        );
+    }
+
+    private static LambdaExpression<IntToInt> addConstant(final int value) {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+        return lambda(Type.of(IntToInt.class), new AddConstantExpression(x, value), x);
+    }
+
+    /**
+     * Builds a lambda which invokes a nested one.  Avoid powers of two for {@code factor}, or the
+     * optimizer turns the multiplication into a shift, which has a different shape.
+     */
+    private static LambdaExpression<IntToInt> nestedConstants(final int factor, final int offset) {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+        final ParameterExpression y = parameter(PrimitiveTypes.Integer, "y");
+
+        final LambdaExpression<IntToInt> inner = lambda(
+            Type.of(IntToInt.class),
+            add(multiply(y, constant(factor)), constant(offset)),
+            y
+        );
+
+        return lambda(Type.of(IntToInt.class), invoke(inner, x), x);
+    }
+
+    private static LambdaExpression<IntToObject> objectConstant(final Object value) {
+        return lambda(
+            Type.of(IntToObject.class),
+            constant(value, Types.Object),
+            parameter(PrimitiveTypes.Integer, "x")
+        );
+    }
+
+    private static LambdaExpression<IntToString> switchOn(final int value) {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        return lambda(
+            Type.of(IntToString.class),
+            makeSwitch(
+                x,
+                constant("other"),
+                switchCase(constant("match"), constant(value))
+            ),
+            x
+        );
+    }
+
+    private final static class AddConstantExpression extends Expression {
+        private final Expression _operand;
+        private final int _value;
+
+        AddConstantExpression(final Expression operand, final int value) {
+            _operand = operand;
+            _value = value;
+        }
+
+        @Override
+        public ExpressionType getNodeType() {
+            return ExpressionType.Extension;
+        }
+
+        @Override
+        public Type<?> getType() {
+            return PrimitiveTypes.Integer;
+        }
+
+        @Override
+        public boolean canReduce() {
+            return true;
+        }
+
+        @Override
+        public Expression reduce() {
+            return add(_operand, constant(_value));
+        }
+    }
+}
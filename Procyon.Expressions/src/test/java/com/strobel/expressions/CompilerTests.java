@@ -26,6 +26,7 @@ import org.junit.Test;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -1293,6 +1294,71 @@ public final class CompilerTests extends AbstractExpressionTest {
         assertEquals("return", dequeue());
     }
 
+    @Test
+    public void testCompileAllDispatchesById() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+        final ParameterExpression s = parameter(Types.String, "s");
+        final List<LambdaExpression<?>> lambdas = new ArrayList<>();
+
+        //
+        // Interleave two delegate types so that each batch's ids differ from the lambdas' positions
+        // in the input list.
+        //
+        for (int i = 0; i < 4; i++) {
+            lambdas.add(lambda(Type.of(IntTransform.class), add(x, constant(i)), x));
+            lambdas.add(lambda(Type.of(ITest.class), concat(constant("n" + i + ":"), x), x));
+        }
+
+        final List<Delegate<Object>> delegates = compileAllUnchecked(lambdas);
+
+        assertEquals(lambdas.size(), delegates.size());
+
+        for (int i = 0; i < 4; i++) {
+            final Object transform = delegates.get(2 * i).getInstance();
+            final Object test = delegates.get(2 * i + 1).getInstance();
+
+            assertEquals(10 + i, ((IntTransform) transform).transform(10));
+            assertEquals("n" + i + ":7", ((ITest) test).testNumber(7));
+            assertSame(delegates.get(0).getInstance().getClass(), transform.getClass());
+            assertSame(delegates.get(1).getInstance().getClass(), test.getClass());
+        }
+
+        assertNotSame(delegates.get(0).getInstance().getClass(), delegates.get(1).getInstance().getClass());
+    }
+
+    @Test
+    public void testCompileAllSplitsLargeBatches() throws Throwable {
+        final int count = LambdaCompiler.MaxBatchSize + 44;
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+        final List<LambdaExpression<IntTransform>> lambdas = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final LambdaExpression<IntTransform> lambda = lambda(Type.of(IntTransform.class), multiply(x, constant(i)), x);
+            lambdas.add(lambda);
+        }
+
+        final List<Delegate<IntTransform>> delegates = LambdaExpression.compileAll(lambdas);
+
+        assertEquals(count, delegates.size());
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(2 * i, delegates.get(i).getInstance().transform(2));
+        }
+
+        final Class<?> firstBatch = delegates.get(0).getInstance().getClass();
+        final Class<?> secondBatch = delegates.get(LambdaCompiler.MaxBatchSize).getInstance().getClass();
+
+        assertSame(firstBatch, delegates.get(LambdaCompiler.MaxBatchSize - 1).getInstance().getClass());
+        assertSame(secondBatch, delegates.get(count - 1).getInstance().getClass());
+        assertNotSame(firstBatch, secondBatch);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Delegate<Object>> compileAllUnchecked(final List<LambdaExpression<?>> lambdas) {
+        final List<?> mixed = lambdas;
+        return LambdaExpression.compileAll((List<LambdaExpression<Object>>) mixed);
+    }
+
     static <T> T invoke(final Callable<T> callback) {
         try {
             return callback.call();
@@ -1338,4 +1404,8 @@ public final class CompilerTests extends AbstractExpressionTest {
     interface ITest {
         String testNumber(int number);
     }
+
+    interface IntTransform {
+        int transform(final int x);
+    }
 }
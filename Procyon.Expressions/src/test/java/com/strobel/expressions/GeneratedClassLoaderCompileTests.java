@@ -0,0 +1,134 @@
+/*
+ * GeneratedClassLoaderCompileTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.core.delegates.Func;
+import com.strobel.core.delegates.Func1;
+import com.strobel.reflection.GeneratedClassLoader;
+import com.strobel.reflection.Type;
+import com.strobel.reflection.Types;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import static com.strobel.expressions.Expression.*;
+import static org.junit.Assert.*;
+
+/**
+ * Lambdas compiled into a {@link GeneratedClassLoader} live in a separate runtime package, so the
+ * delegate types used here are all public.
+ *
+ * @author Mike Strobel
+ */
+public class GeneratedClassLoaderCompileTests extends AbstractExpressionTest {
+    private final static long COLLECTION_TIMEOUT = 30000L;
+
+    @Test
+    public void testCompileIntoLoader() throws Throwable {
+        final GeneratedClassLoader loader = new GeneratedClassLoader();
+        final Func1<String, String> delegate = greeting().compile(loader);
+
+        assertSame(loader, delegate.getClass().getClassLoader());
+        assertEquals("Hello, world!", delegate.apply("world"));
+
+        //
+        // Without a loader, the classes still go into the system class loader.
+        //
+        assertSame(ClassLoader.getSystemClassLoader(), greeting().compile().getClass().getClassLoader());
+    }
+
+    @Test
+    public void testNestedLambdasShareTheLoader() throws Throwable {
+        final GeneratedClassLoader loader = new GeneratedClassLoader();
+        final Func1<String, Func<String>> outer = nestedGreeting().compile(loader);
+        final Func<String> inner = outer.apply("nested");
+
+        assertSame(loader, outer.getClass().getClassLoader());
+        assertSame(loader, inner.getClass().getClassLoader());
+        assertNotSame(outer.getClass(), inner.getClass());
+        assertEquals("Hello, nested!", inner.invoke());
+    }
+
+    @Test
+    public void testReflectedTypeOfCompiledLambda() throws Throwable {
+        final GeneratedClassLoader loader = new GeneratedClassLoader();
+        final Func1<String, String> delegate = greeting().compile(loader);
+        final Type<?> type = Type.of(delegate.getClass());
+
+        assertSame(type, Type.of(delegate.getClass()));
+        assertSame(delegate.getClass(), type.getErasedClass());
+        assertTrue(Type.of(Func1.class).isAssignableFrom(type));
+    }
+
+    @Test
+    public void testLoaderIsCollectedWithItsLambdas() throws Throwable {
+        final WeakReference<?>[] references = compileAndInvoke();
+        final long deadline = System.currentTimeMillis() + COLLECTION_TIMEOUT;
+
+        for (final WeakReference<?> reference : references) {
+            while (reference.get() != null) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("The generated class loader or one of its classes was not collected.");
+                }
+
+                System.gc();
+                Thread.sleep(10L);
+            }
+        }
+    }
+
+    /**
+     * Compiles and runs a lambda with a nested closure, then returns weak references to the loader
+     * and both generated classes, so that nothing else on the stack keeps them alive.
+     */
+    private static WeakReference<?>[] compileAndInvoke() {
+        final GeneratedClassLoader loader = new GeneratedClassLoader();
+        final Func1<String, Func<String>> outer = nestedGreeting().compile(loader);
+        final Func<String> inner = outer.apply("collected");
+
+        assertEquals("Hello, collected!", inner.invoke());
+        assertNotNull(Type.of(outer.getClass()).getMethods());
+
+        return new WeakReference<?>[] {
+            new WeakReference<>(loader),
+            new WeakReference<>(outer.getClass()),
+            new WeakReference<>(inner.getClass())
+        };
+    }
+
+    private static LambdaExpression<Func1<String, String>> greeting() {
+        final ParameterExpression name = parameter(Types.String, "name");
+
+        return lambda(
+            Type.of(Func1.class).makeGenericType(Types.String, Types.String),
+            concat(constant("Hello, "), name, constant("!")),
+            name
+        );
+    }
+
+    private static LambdaExpression<Func1<String, Func<String>>> nestedGreeting() {
+        final ParameterExpression name = parameter(Types.String, "name");
+
+        final LambdaExpression<Func<String>> inner = lambda(
+            Type.of(Func.class).makeGenericType(Types.String),
+            concat(constant("Hello, "), name, constant("!"))
+        );
+
+        return lambda(
+            Type.of(Func1.class).makeGenericType(Types.String, inner.getType()),
+            inner,
+            name
+        );
+    }
+}
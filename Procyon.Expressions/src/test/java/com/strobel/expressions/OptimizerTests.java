@@ -0,0 +1,382 @@
+/*
+ * OptimizerTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.reflection.PrimitiveTypes;
+import com.strobel.reflection.Type;
+import com.strobel.reflection.Types;
+import org.junit.Test;
+
+import static com.strobel.expressions.Expression.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Mike Strobel
+ */
+public class OptimizerTests extends AbstractExpressionTest {
+    interface IntFunc3 {
+        int apply(int a, int b, int n);
+    }
+
+    interface IntFunc1 {
+        int apply(int x);
+    }
+
+    public static boolean touch() {
+        push("touched");
+        return true;
+    }
+
+    @Test
+    public void testFoldsConstantOperators() throws Throwable {
+        assertConstant(14, Optimizer.optimize(add(constant(2), multiply(constant(3), constant(4)))));
+        assertConstant(-5, Optimizer.optimize(negate(constant(5))));
+        assertConstant(5L, Optimizer.optimize(convert(constant(5), PrimitiveTypes.Long)));
+        assertConstant(true, Optimizer.optimize(lessThan(constant(1), constant(2))));
+        assertConstant(false, Optimizer.optimize(and(constant(true), constant(false))));
+        assertConstant(7, Optimizer.optimize(modulo(constant(7), constant(9))));
+        assertConstant(Float.POSITIVE_INFINITY, Optimizer.optimize(divide(constant(1f), constant(0f))));
+    }
+
+    @Test
+    public void testIntegralDivisionByZeroIsNotFolded() throws Throwable {
+        final Expression[] nodes = {
+            divide(constant(1), constant(0)),
+            modulo(constant(1), constant(0)),
+            divide(constant(1L), constant(0L)),
+            modulo(constant(1L), constant(0L))
+        };
+
+        for (final Expression node : nodes) {
+            final Expression optimized = Optimizer.optimize(node);
+
+            assertEquals(node.getNodeType(), optimized.getNodeType());
+
+            try {
+                lambda(node).compileHandle().invoke();
+                fail("Expected an ArithmeticException.");
+            }
+            catch (ArithmeticException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void testReducesLogicalConstants() throws Throwable {
+        final ParameterExpression p = parameter(PrimitiveTypes.Boolean, "p");
+        final Expression touch = call(Type.of(OptimizerTests.class), "touch");
+
+        assertSame(p, Optimizer.optimize(andAlso(constant(true), p)));
+        assertSame(p, Optimizer.optimize(orElse(p, constant(false))));
+        assertConstant(false, Optimizer.optimize(andAlso(constant(false), p)));
+        assertConstant(false, Optimizer.optimize(andAlso(p, constant(false))));
+        assertConstant(true, Optimizer.optimize(orElse(p, constant(true))));
+
+        //
+        // The left operand has side effects, so it must still be evaluated.
+        //
+        final Expression optimized = Optimizer.optimize(andAlso(touch, constant(false)));
+
+        assertEquals(ExpressionType.AndAlso, optimized.getNodeType());
+        assertResultFalse(andAlso(touch, constant(false)));
+        assertEquals("touched", dequeue());
+    }
+
+    @Test
+    public void testReducesIntegralIdentities() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        assertSame(x, Optimizer.optimize(add(x, constant(0))));
+        assertSame(x, Optimizer.optimize(multiply(constant(1), x)));
+        assertSame(x, Optimizer.optimize(divide(x, constant(1))));
+        assertSame(x, Optimizer.optimize(and(x, constant(-1))));
+        assertSame(x, Optimizer.optimize(leftShift(x, constant(32))));
+        assertConstant(0, Optimizer.optimize(multiply(x, constant(0))));
+        assertEquals(ExpressionType.Negate, Optimizer.optimize(subtract(constant(0), x)).getNodeType());
+
+        final Expression shift = Optimizer.optimize(multiply(x, constant(8)));
+
+        assertEquals(ExpressionType.LeftShift, shift.getNodeType());
+        assertConstant(3, ((BinaryExpression) shift).getRight());
+
+        final LambdaExpression<IntFunc1> lambda = lambda(Type.of(IntFunc1.class), multiply(x, constant(8)), x);
+        final IntFunc1 delegate = lambda.compile();
+
+        assertEquals(-24, delegate.apply(-3));
+        assertEquals(Integer.MIN_VALUE, delegate.apply(1 << 28));
+    }
+
+    @Test
+    public void testReducesComparisonsWithConstants() throws Throwable {
+        final ParameterExpression s = parameter(Types.String, "s");
+        final ParameterExpression b = parameter(PrimitiveTypes.Boolean, "b");
+
+        assertEquals(ExpressionType.IsNull, Optimizer.optimize(equal(s, constant(null, Types.String))).getNodeType());
+        assertEquals(ExpressionType.IsNotNull, Optimizer.optimize(notEqual(constant(null, Types.String), s)).getNodeType());
+        assertSame(b, Optimizer.optimize(equal(b, constant(true))));
+        assertSame(b, Optimizer.optimize(notEqual(constant(false), b)));
+        assertEquals(ExpressionType.IsFalse, Optimizer.optimize(equal(b, constant(false))).getNodeType());
+        assertSame(b, Optimizer.optimize(not(not(b))));
+    }
+
+    @Test
+    public void testRemovesDeadBranches() throws Throwable {
+        assertConstant(1, Optimizer.optimize(condition(constant(true), constant(1), constant(2))));
+        assertConstant(2, Optimizer.optimize(condition(constant(false), constant(1), constant(2))));
+
+        final Expression switchExpression = makeSwitch(
+            constant(2),
+            constant(0),
+            switchCase(constant(10), constant(1)),
+            switchCase(constant(20), constant(2))
+        );
+
+        assertConstant(20, Optimizer.optimize(switchExpression));
+        assertResultEquals(switchExpression, 20);
+
+        final Expression noMatch = makeSwitch(
+            constant(3),
+            constant(0),
+            switchCase(constant(10), constant(1)),
+            switchCase(constant(20), constant(2))
+        );
+
+        assertConstant(0, Optimizer.optimize(noMatch));
+    }
+
+    @Test
+    public void testKeepsDiscardedBranchesContainingLabels() throws Throwable {
+        final LabelTarget target = label(PrimitiveTypes.Integer);
+
+        final Expression conditional = condition(
+            constant(true),
+            constant(1),
+            label(target, constant(2))
+        );
+
+        assertEquals(ExpressionType.Conditional, Optimizer.optimize(conditional).getNodeType());
+        assertResultEquals(conditional, 1);
+
+        final LabelTarget caseTarget = label(PrimitiveTypes.Integer);
+
+        final Expression switchExpression = makeSwitch(
+            constant(1),
+            constant(0),
+            switchCase(constant(10), constant(1)),
+            switchCase(label(caseTarget, constant(20)), constant(2))
+        );
+
+        assertEquals(ExpressionType.Switch, Optimizer.optimize(switchExpression).getNodeType());
+        assertResultEquals(switchExpression, 10);
+    }
+
+    @Test
+    public void testFoldsConstantConcatenation() throws Throwable {
+        final ParameterExpression s = parameter(Types.String, "s");
+
+        assertConstant("a1true", Optimizer.optimize(concat(constant("a"), constant(1), constant(true))));
+
+        final Expression optimized = Optimizer.optimize(
+            concat(constant("a"), constant("b"), s, constant(1), constant(2))
+        );
+
+        assertTrue(optimized instanceof ConcatExpression);
+
+        final ExpressionList<? extends Expression> operands = ((ConcatExpression) optimized).getOperands();
+
+        assertEquals(3, operands.size());
+        assertConstant("ab", operands.get(0));
+        assertSame(s, operands.get(1));
+        assertConstant("12", operands.get(2));
+    }
+
+    @Test
+    public void testInlinesConstantVariables() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+        final ParameterExpression v = variable(PrimitiveTypes.Integer, "v");
+
+        final Expression optimized = Optimizer.optimize(
+            block(
+                new ParameterExpression[] { v },
+                assign(v, constant(5)),
+                add(x, v)
+            )
+        );
+
+        assertEquals(ExpressionType.Add, optimized.getNodeType());
+        assertSame(x, ((BinaryExpression) optimized).getLeft());
+        assertConstant(5, ((BinaryExpression) optimized).getRight());
+    }
+
+    @Test
+    public void testInlinesVariableReadByNextStatement() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+        final ParameterExpression v = variable(PrimitiveTypes.Integer, "v");
+
+        final Expression inlined = Optimizer.optimize(
+            block(
+                new ParameterExpression[] { v },
+                assign(v, add(x, constant(1))),
+                v
+            )
+        );
+
+        assertEquals(ExpressionType.Add, inlined.getNodeType());
+        assertSame(x, ((BinaryExpression) inlined).getLeft());
+
+        //
+        // A variable which is read again later must keep its assignment.
+        //
+        final Expression readTwice = block(
+            new ParameterExpression[] { v },
+            assign(v, add(x, constant(1))),
+            v,
+            multiply(v, v)
+        );
+
+        final Expression optimized = Optimizer.optimize(readTwice);
+
+        assertTrue(optimized instanceof BlockExpression);
+        assertEquals(1, ((BlockExpression) optimized).getVariables().size());
+        assertEquals(ExpressionType.Assign, ((BlockExpression) optimized).getExpressions().get(0).getNodeType());
+        final LambdaExpression<IntFunc1> lambda = lambda(Type.of(IntFunc1.class), readTwice, x);
+
+        assertEquals(16, lambda.compile().apply(3));
+
+        //
+        // A statement with side effects between the assignment and the read must still run after
+        // the value has been computed.
+        //
+        final Expression touch = call(Type.of(OptimizerTests.class), "touch");
+        final ParameterExpression b = variable(PrimitiveTypes.Boolean, "b");
+
+        final Expression reordered = block(
+            new ParameterExpression[] { b },
+            assign(b, touch),
+            makePush(constant("after")),
+            b
+        );
+
+        assertTrue(Optimizer.optimize(reordered) instanceof BlockExpression);
+        assertResultTrue(reordered);
+        assertEquals("touched", dequeue());
+        assertEquals("after", dequeue());
+    }
+
+    @Test
+    public void testHoistsLoopInvariants() throws Throwable {
+        final ParameterExpression a = parameter(PrimitiveTypes.Integer, "a");
+        final ParameterExpression b = parameter(PrimitiveTypes.Integer, "b");
+        final ParameterExpression n = parameter(PrimitiveTypes.Integer, "n");
+
+        final ParameterExpression i = variable(PrimitiveTypes.Integer, "i");
+        final ParameterExpression sum = variable(PrimitiveTypes.Integer, "sum");
+        final LabelTarget breakLabel = label();
+
+        final LoopExpression loop = loop(
+            block(
+                ifThen(greaterThanOrEqual(i, n), makeBreak(breakLabel)),
+                addAssign(sum, add(multiply(a, b), i)),
+                preIncrementAssign(i)
+            ),
+            breakLabel
+        );
+
+        final Expression optimized = Optimizer.optimize(loop);
+
+        assertTrue(optimized instanceof BlockExpression);
+
+        final BlockExpression hoisted = (BlockExpression) optimized;
+
+        assertEquals(1, hoisted.getVariables().size());
+        assertEquals(ExpressionType.Multiply, ((BinaryExpression) hoisted.getExpressions().get(0)).getRight().getNodeType());
+        assertEquals(ExpressionType.Loop, hoisted.getResult().getNodeType());
+
+        final LambdaExpression<IntFunc3> lambda = lambda(
+            Type.of(IntFunc3.class),
+            block(
+                new ParameterExpression[] { i, sum },
+                assign(i, constant(0)),
+                assign(sum, constant(0)),
+                loop,
+                sum
+            ),
+            a,
+            b,
+            n
+        );
+
+        final IntFunc3 delegate = lambda.compile();
+
+        assertEquals(70, delegate.apply(3, 4, 5));
+        assertEquals(0, delegate.apply(3, 4, 0));
+    }
+
+    @Test
+    public void testDoesNotHoistOutOfZeroIterationLoops() throws Throwable {
+        final ParameterExpression a = parameter(PrimitiveTypes.Integer, "a");
+        final ParameterExpression b = parameter(PrimitiveTypes.Integer, "b");
+        final ParameterExpression n = parameter(PrimitiveTypes.Integer, "n");
+
+        final ParameterExpression i = variable(PrimitiveTypes.Integer, "i");
+        final ParameterExpression sum = variable(PrimitiveTypes.Integer, "sum");
+        final LabelTarget breakLabel = label();
+
+        //
+        // The quotient is invariant, but it may throw; evaluating it before a loop which never
+        // runs would throw where the original tree does not.
+        //
+        final LoopExpression loop = loop(
+            block(
+                ifThen(greaterThanOrEqual(i, n), makeBreak(breakLabel)),
+                addAssign(sum, divide(a, b)),
+                preIncrementAssign(i)
+            ),
+            breakLabel
+        );
+
+        assertEquals(ExpressionType.Loop, Optimizer.optimize(loop).getNodeType());
+
+        final LambdaExpression<IntFunc3> lambda = lambda(
+            Type.of(IntFunc3.class),
+            block(
+                new ParameterExpression[] { i, sum },
+                assign(i, constant(0)),
+                assign(sum, constant(0)),
+                loop,
+                sum
+            ),
+            a,
+            b,
+            n
+        );
+
+        final IntFunc3 delegate = lambda.compile();
+
+        assertEquals(0, delegate.apply(1, 0, 0));
+        assertEquals(6, delegate.apply(6, 3, 3));
+
+        try {
+            delegate.apply(1, 0, 1);
+            fail("Expected an ArithmeticException.");
+        }
+        catch (ArithmeticException ignored) {
+        }
+    }
+
+    private static void assertConstant(final Object expected, final Expression node) {
+        assertTrue("Expected a constant, but found: " + node, node instanceof ConstantExpression);
+        assertEquals(expected, ((ConstantExpression) node).getValue());
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * TieredCompilationTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.expressions;
+
+import com.strobel.core.MutableInteger;
+import com.strobel.core.delegates.Func;
+import com.strobel.reflection.PrimitiveTypes;
+import com.strobel.reflection.TargetInvocationException;
+import com.strobel.reflection.Type;
+import com.strobel.reflection.Types;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.strobel.expressions.Expression.*;
+import static org.junit.Assert.*;
+
+/**
+ * Runs lambdas through both the compiler and the interpreter behind {@link LambdaExpression#compileTiered()},
+ * and checks that they agree.
+ *
+ * @author Mike Strobel
+ */
+public class TieredCompilationTests extends AbstractExpressionTest {
+    private final static long COMPILE_TIMEOUT = 30000L;
+
+    interface IntBinaryOperator {
+        int apply(int a, int b);
+    }
+
+    interface IntToLong {
+        long apply(int x);
+    }
+
+    interface DoubleToInt {
+        int apply(double x);
+    }
+
+    interface IntToString {
+        String apply(int x);
+    }
+
+    interface StringToInt {
+        int apply(String s);
+    }
+
+    interface IntegerToInt {
+        int apply(Integer x);
+    }
+
+    public static int checkPositive(final int x) {
+        if (x < 0) {
+            throw new IllegalArgumentException("x");
+        }
+        return x * 2;
+    }
+
+    @Test
+    public void testArithmetic() throws Throwable {
+        final ParameterExpression a = parameter(PrimitiveTypes.Integer, "a");
+        final ParameterExpression b = parameter(PrimitiveTypes.Integer, "b");
+
+        final LambdaExpression<IntBinaryOperator> lambda = lambda(
+            Type.of(IntBinaryOperator.class),
+            subtract(
+                add(multiply(a, b), divide(a, b)),
+                leftShift(modulo(a, b), constant(3))
+            ),
+            a,
+            b
+        );
+
+        final int[] values = { 0, 1, -1, 7, -13, 1000003, Integer.MAX_VALUE, Integer.MIN_VALUE };
+
+        for (final int x : values) {
+            for (final int y : values) {
+                assertSameOutcome(lambda, x, y);
+            }
+        }
+
+        assertEquals(7 * 3 + 7 / 3 - ((7 % 3) << 3), interpreted(lambda).apply(7, 3));
+    }
+
+    @Test
+    public void testConversions() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        final LambdaExpression<IntToLong> narrowing = lambda(
+            Type.of(IntToLong.class),
+            add(
+                convert(convert(x, PrimitiveTypes.Byte), PrimitiveTypes.Long),
+                add(
+                    convert(convert(x, PrimitiveTypes.Character), PrimitiveTypes.Long),
+                    convert(convert(x, PrimitiveTypes.Float), PrimitiveTypes.Long)
+                )
+            ),
+            x
+        );
+
+        for (final int value : new int[] { 0, 127, 128, -129, 65535, 65536, 16777217, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+            assertSameOutcome(narrowing, value);
+        }
+
+        final ParameterExpression d = parameter(PrimitiveTypes.Double, "d");
+
+        final LambdaExpression<DoubleToInt> truncation = lambda(
+            Type.of(DoubleToInt.class),
+            add(
+                convert(d, PrimitiveTypes.Integer),
+                convert(convert(d, PrimitiveTypes.Short), PrimitiveTypes.Integer)
+            ),
+            d
+        );
+
+        for (final double value : new double[] { 0d, -0.5d, 1.9d, -1.9d, 40000.7d, 1e20d, -1e20d, Double.NaN, Double.POSITIVE_INFINITY }) {
+            assertSameOutcome(truncation, value);
+        }
+    }
+
+    @Test
+    public void testConcat() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        final LambdaExpression<IntToString> lambda = lambda(
+            Type.of(IntToString.class),
+            concat(
+                constant("x="),
+                x,
+                constant(", half="),
+                divide(convert(x, PrimitiveTypes.Double), constant(2d)),
+                constant(", null="),
+                constant(null, Types.String),
+                constant(", flag="),
+                greaterThan(x, constant(0))
+            ),
+            x
+        );
+
+        for (final int value : new int[] { 0, 5, -3, Integer.MAX_VALUE }) {
+            assertSameOutcome(lambda, value);
+        }
+
+        assertEquals("x=5, half=2.5, null=null, flag=true", interpreted(lambda).apply(5));
+    }
+
+    @Test
+    public void testSwitch() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        final LambdaExpression<IntToString> intSwitch = lambda(
+            Type.of(IntToString.class),
+            makeSwitch(
+                x,
+                constant("other"),
+                switchCase(constant("small"), constant(1), constant(2)),
+                switchCase(constant("three"), constant(3)),
+                switchCase(constant("large"), constant(1000), constant(-1000))
+            ),
+            x
+        );
+
+        for (final int value : new int[] { 0, 1, 2, 3, 4, 1000, -1000, 999 }) {
+            assertSameOutcome(intSwitch, value);
+        }
+
+        final ParameterExpression s = parameter(Types.String, "s");
+
+        final LambdaExpression<StringToInt> stringSwitch = lambda(
+            Type.of(StringToInt.class),
+            makeSwitch(
+                s,
+                constant(-1),
+                switchCase(constant(1), constant("one"), constant("uno")),
+                switchCase(constant(2), constant("two"))
+            ),
+            s
+        );
+
+        for (final String value : new String[] { "one", "uno", "two", "three", "" }) {
+            assertSameOutcome(stringSwitch, value);
+        }
+    }
+
+    @Test
+    public void testTryFinally() throws Throwable {
+        final MutableInteger counter = new MutableInteger(0);
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        final LambdaExpression<IntToLong> lambda = lambda(
+            Type.of(IntToLong.class),
+            convert(
+                tryFinally(
+                    call(Type.of(TieredCompilationTests.class), "checkPositive", x),
+                    call(constant(counter), "increment")
+                ),
+                PrimitiveTypes.Long
+            ),
+            x
+        );
+
+        for (final int value : new int[] { 4, -4 }) {
+            counter.setValue(0);
+            final Object compiled = outcome(lambda.compileDelegate(), value);
+            assertEquals(1, counter.getValue());
+
+            counter.setValue(0);
+            final Object interpreted = outcome(interpretedDelegate(lambda), value);
+            assertEquals(1, counter.getValue());
+
+            assertEquals(compiled, interpreted);
+        }
+
+        assertEquals(IllegalArgumentException.class, outcome(interpretedDelegate(lambda), -1));
+    }
+
+    @Test
+    public void testUnboxNull() throws Throwable {
+        final ParameterExpression x = parameter(Types.Integer, "x");
+
+        final LambdaExpression<IntegerToInt> lambda = lambda(
+            Type.of(IntegerToInt.class),
+            add(unbox(x), constant(1)),
+            x
+        );
+
+        assertSameOutcome(lambda, 41);
+        assertSameOutcome(lambda, (Object) null);
+        assertEquals(NullPointerException.class, outcome(interpretedDelegate(lambda), (Object) null));
+    }
+
+    @Test
+    public void testSwitchesToCompiledCodeAtThreshold() throws Throwable {
+        final ParameterExpression a = parameter(PrimitiveTypes.Integer, "a");
+        final ParameterExpression b = parameter(PrimitiveTypes.Integer, "b");
+
+        final LambdaExpression<IntBinaryOperator> lambda = lambda(
+            Type.of(IntBinaryOperator.class),
+            add(multiply(a, constant(10)), b),
+            a,
+            b
+        );
+
+        final IntBinaryOperator delegate = TieredCompilation.createDelegate(lambda, 3).getInstance();
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(10 * i + 1, delegate.apply(i, 1));
+            assertFalse(TieredCompilation.isCompiled(delegate));
+        }
+
+        //
+        // The call which reaches the threshold schedules compilation, but is itself interpreted.
+        //
+        assertEquals(21, delegate.apply(2, 1));
+        awaitCompilation(delegate);
+
+        assertEquals(42, delegate.apply(4, 2));
+        assertEquals(-10 * 7 + 3, delegate.apply(-7, 3));
+        assertEquals(Integer.MAX_VALUE * 10 + 5, delegate.apply(Integer.MAX_VALUE, 5));
+    }
+
+    @Test
+    public void testZeroArgumentLambdaSwitchesToCompiledCode() throws Throwable {
+        final MutableInteger counter = new MutableInteger(0);
+
+        final LambdaExpression<Func<String>> lambda = lambda(
+            Type.of(Func.class).makeGenericType(Types.String),
+            concat(
+                constant(""),
+                call(call(constant(counter), "increment"), "getValue")
+            )
+        );
+
+        final Func<String> delegate = TieredCompilation.createDelegate(lambda, 2).getInstance();
+
+        assertEquals("1", delegate.invoke());
+        assertFalse(TieredCompilation.isCompiled(delegate));
+
+        assertEquals("2", delegate.invoke());
+        awaitCompilation(delegate);
+
+        //
+        // Proxies pass a null argument array to zero-argument methods, which the compiled invoker
+        // must accept as well as the interpreter does.
+        //
+        assertEquals("3", delegate.invoke());
+        assertEquals("4", delegate.invoke());
+    }
+
+    @Test
+    public void testVoidLambdaSwitchesToCompiledCode() throws Throwable {
+        final LambdaExpression<Runnable> lambda = lambda(
+            Type.of(Runnable.class),
+            makePush(constant("ran"))
+        );
+
+        final Runnable delegate = TieredCompilation.createDelegate(lambda, 2).getInstance();
+
+        queue().clear();
+
+        delegate.run();
+        assertFalse(TieredCompilation.isCompiled(delegate));
+        delegate.run();
+
+        awaitCompilation(delegate);
+
+        delegate.run();
+
+        assertEquals(Arrays.<Object>asList("ran", "ran", "ran"), Arrays.asList(queue().toArray()));
+        queue().clear();
+    }
+
+    @Test
+    public void testUncompiledThresholdNeverCompiles() throws Throwable {
+        final ParameterExpression x = parameter(PrimitiveTypes.Integer, "x");
+
+        final LambdaExpression<IntToLong> lambda = lambda(
+            Type.of(IntToLong.class),
+            convert(x, PrimitiveTypes.Long),
+            x
+        );
+
+        final IntToLong delegate = interpreted(lambda);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals((long) i, delegate.apply(i));
+        }
+
+        assertFalse(TieredCompilation.isCompiled(delegate));
+        assertTrue(TieredCompilation.isCompiled(lambda.compile()));
+    }
+
+    private static <T> T interpreted(final LambdaExpression<T> lambda) {
+        return interpretedDelegate(lambda).getInstance();
+    }
+
+    private static <T> Delegate<T> interpretedDelegate(final LambdaExpression<T> lambda) {
+        //
+        // A threshold which is never reached keeps the delegate interpreted for the whole test.
+        //
+        final Delegate<T> delegate = TieredCompilation.createDelegate(lambda, Integer.MAX_VALUE);
+
+        assertFalse("The lambda should be interpreted.", TieredCompilation.isCompiled(delegate.getInstance()));
+
+        return delegate;
+    }
+
+    private static void assertSameOutcome(final LambdaExpression<?> lambda, final Object... arguments) {
+        final Object expected = outcome(lambda.compileDelegate(), arguments);
+        final Object actual = outcome(interpretedDelegate(lambda), arguments);
+
+        assertEquals(Arrays.toString(arguments), expected, actual);
+    }
+
+    /**
+     * Returns the result of invoking {@code delegate}, or the class of the exception it throws.
+     */
+    private static Object outcome(final Delegate<?> delegate, final Object... arguments) {
+        try {
+            return delegate.invokeDynamic(arguments);
+        }
+        catch (TargetInvocationException e) {
+            return e.getCause().getClass();
+        }
+    }
+
+    private static void awaitCompilation(final Object delegate) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + COMPILE_TIMEOUT;
+
+        while (!TieredCompilation.isCompiled(delegate)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("The delegate was not compiled in the background.");
+            }
+            Thread.sleep(10L);
+        }
+    }
+}
@@ -197,6 +197,16 @@ public enum BindingFlags {
         }
     }
 
+    static int mask(final Set<BindingFlags> bindingFlags) {
+        int mask = 0;
+
+        for (final BindingFlags flag : bindingFlags) {
+            mask |= flag._mask;
+        }
+
+        return mask;
+    }
+
     static Set<BindingFlags> fromMask(final int mask) {
         BindingFlags singleValue = null;
         EnumSet<BindingFlags> newSet = null;
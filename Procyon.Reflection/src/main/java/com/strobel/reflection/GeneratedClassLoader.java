@@ -0,0 +1,189 @@
+/*
+ * GeneratedClassLoader.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.reflection;
+
+import com.strobel.core.VerifyArgument;
+import com.strobel.reflection.emit.GenericParameterBuilder;
+import com.strobel.reflection.emit.TypeBuilder;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.ProtectionDomain;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A class loader for classes generated by {@link TypeBuilder}, which allows them to be unloaded.
+ * Classes defined by the system class loader (the {@link TypeBuilder} default) live as long as
+ * the VM does; classes defined by a {@code GeneratedClassLoader} are collected, along with the
+ * loader, once nothing refers to the loader, its classes, or their instances.  Use one loader per
+ * compilation unit or session, and let go of it when done.
+ * <p/>
+ * The reflected {@link Type}s of generated classes are cached by the loader which defined them
+ * rather than in the global type cache, so they do not keep their classes alive.  Classes in one
+ * {@code GeneratedClassLoader} may refer by name to classes in any other live one.
+ *
+ * @author Mike Strobel
+ */
+public final class GeneratedClassLoader extends ClassLoader {
+    private final static ConcurrentHashMap<String, LoaderReference> DefinedClasses = new ConcurrentHashMap<>();
+    private final static ReferenceQueue<GeneratedClassLoader> StaleReferences = new ReferenceQueue<>();
+
+    final TypeCache typeCache = new TypeCache(this);
+
+    public GeneratedClassLoader() {
+        this(ClassLoader.getSystemClassLoader());
+    }
+
+    public GeneratedClassLoader(final ClassLoader parent) {
+        super(VerifyArgument.notNull(parent, "parent"));
+    }
+
+    public Class<?> defineClass(final String name, final byte[] classBytes, final ProtectionDomain protectionDomain) {
+        VerifyArgument.notNullOrWhitespace(name, "name");
+        VerifyArgument.notNull(classBytes, "classBytes");
+
+        expungeStaleReferences();
+
+        final Class<?> definedClass = defineClass(name, classBytes, 0, classBytes.length, protectionDomain);
+
+        DefinedClasses.put(name, new LoaderReference(name, this));
+
+        return definedClass;
+    }
+
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        //
+        // Anything we defined ourselves has already been found by loadClass(), so only look for
+        // classes defined by other generated class loaders.
+        //
+        final LoaderReference reference = DefinedClasses.get(name);
+        final GeneratedClassLoader loader = reference != null ? reference.get() : null;
+
+        if (loader != null && loader != this) {
+            final Class<?> loadedClass = loader.findLoadedClass(name);
+
+            if (loadedClass != null) {
+                return loadedClass;
+            }
+        }
+
+        throw new ClassNotFoundException(name);
+    }
+
+    private static void expungeStaleReferences() {
+        LoaderReference reference;
+
+        while ((reference = (LoaderReference) StaleReferences.poll()) != null) {
+            DefinedClasses.remove(reference.name, reference);
+        }
+    }
+
+    /**
+     * Returns the {@code GeneratedClassLoader} which defined {@code type} or any of the types it is
+     * composed of (its element type, type arguments, bounds, etc.), or {@code null} if there is no
+     * such loader, in which case {@code type} may safely be cached for the life of the VM.
+     */
+    static GeneratedClassLoader definingLoader(final Type<?> type) {
+        if (type == null) {
+            return null;
+        }
+
+        if (type instanceof TypeBuilder) {
+            return ((TypeBuilder<?>) type).getClassLoader();
+        }
+
+        if (type instanceof GenericParameterBuilder) {
+            return definingLoader(type.getDeclaringType());
+        }
+
+        if (type.hasElementType()) {
+            return definingLoader(type.getElementType());
+        }
+
+        if (type.isWildcardType()) {
+            final GeneratedClassLoader loader = definingLoader(type.getExtendsBound());
+
+            if (loader != null || !type.hasSuperBound()) {
+                return loader;
+            }
+
+            return definingLoader(type.getSuperBound());
+        }
+
+        if (type.isGenericParameter()) {
+            final MethodBase declaringMethod = type.getDeclaringMethod();
+
+            return declaringMethod != null ? definingLoader(declaringMethod.getDeclaringType())
+                                           : definingLoader(type.getDeclaringType());
+        }
+
+        if (type.isCompoundType()) {
+            final GeneratedClassLoader loader = definingLoader(type.getBaseType());
+
+            if (loader != null) {
+                return loader;
+            }
+
+            return definingLoader(type.getInterfaces());
+        }
+
+        if (type.isGenericType() && !type.isGenericTypeDefinition()) {
+            final GeneratedClassLoader loader = definingLoader(type.getGenericTypeDefinition());
+
+            if (loader != null) {
+                return loader;
+            }
+
+            return definingLoader(type.getTypeArguments());
+        }
+
+        return definingLoader(type.getErasedClass());
+    }
+
+    static GeneratedClassLoader definingLoader(final TypeList types) {
+        if (types == null) {
+            return null;
+        }
+
+        for (int i = 0, n = types.size(); i < n; i++) {
+            final GeneratedClassLoader loader = definingLoader(types.get(i));
+
+            if (loader != null) {
+                return loader;
+            }
+        }
+
+        return null;
+    }
+
+    static GeneratedClassLoader definingLoader(final Class<?> clazz) {
+        if (clazz == null) {
+            return null;
+        }
+
+        final ClassLoader loader = clazz.getClassLoader();
+
+        return loader instanceof GeneratedClassLoader ? (GeneratedClassLoader) loader : null;
+    }
+
+    private final static class LoaderReference extends WeakReference<GeneratedClassLoader> {
+        final String name;
+
+        LoaderReference(final String name, final GeneratedClassLoader loader) {
+            super(loader, StaleReferences);
+            this.name = name;
+        }
+    }
+}
@@ -31,8 +31,8 @@ class GenericParameter<T> extends Type<T> {
     private Type _lowerBound;
     private MethodInfo _declaringMethod;
     private Type _declaringType;
-    private Class<T> _erasedClass;
-    private TypeVariable<?> _typeVariable;
+    private volatile Class<T> _erasedClass;
+    private volatile TypeVariable<?> _typeVariable;
 
     GenericParameter(final String name, TypeVariable<?> typeVariable, final int position) {
         _typeVariable = typeVariable;
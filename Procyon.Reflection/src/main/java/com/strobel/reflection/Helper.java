@@ -18,6 +18,7 @@ import com.strobel.collections.ListBuffer;
 import com.strobel.core.Comparer;
 import com.strobel.core.StringUtilities;
 import com.strobel.core.VerifyArgument;
+import com.strobel.reflection.TypeRelationCache.Relation;
 import com.strobel.reflection.emit.TypeBuilder;
 import com.strobel.util.TypeUtils;
 
@@ -27,6 +28,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.strobel.collections.ListBuffer.lb;
 
@@ -176,6 +178,17 @@ final class Helper {
             return true;
         }
 
+        final Object cached = RelationCache.find(Relation.Assignable, sourceType, targetType);
+
+        if (cached != null) {
+            return (Boolean) cached;
+        }
+
+        return memoize(Relation.Assignable, sourceType, targetType, isAssignableCore(sourceType, targetType));
+    }
+
+    private static boolean isAssignableCore(final Type<?> sourceType, final Type<?> targetType) {
+
         if (targetType.isGenericParameter() || targetType.hasExtendsBound()) {
             return isAssignable(sourceType, targetType.getExtendsBound());
         }
@@ -195,6 +208,16 @@ final class Helper {
     }
 
     public static boolean isConvertible(final Type sourceType, final Type targetType) {
+        final Object cached = RelationCache.find(Relation.Convertible, sourceType, targetType);
+
+        if (cached != null) {
+            return (Boolean) cached;
+        }
+
+        return memoize(Relation.Convertible, sourceType, targetType, isConvertibleCore(sourceType, targetType));
+    }
+
+    private static boolean isConvertibleCore(final Type<?> sourceType, final Type<?> targetType) {
         final boolean tPrimitive = sourceType.isPrimitive();
         final boolean sPrimitive = targetType.isPrimitive();
 
@@ -272,7 +295,13 @@ final class Helper {
     }
 
     public static Type asSuper(final Type type, final Type other) {
-        return AsSuperVisitor.visit(type, other);
+        final Object cached = RelationCache.find(Relation.AsSuper, type, other);
+
+        if (cached != null) {
+            return TypeRelationCache.unwrap(cached);
+        }
+
+        return memoize(Relation.AsSuper, type, other, AsSuperVisitor.visit(type, other));
     }
 
     public static boolean isSuperType(final Type type, final Type other) {
@@ -306,6 +335,21 @@ final class Helper {
             return true;
         }
 
+        final Relation relation = capture ? Relation.Subtype : Relation.SubtypeNoCapture;
+        final Object cached = RelationCache.find(relation, t, p);
+
+        if (cached != null) {
+            return (Boolean) cached;
+        }
+
+        return memoize(relation, t, p, isSubtypeCore(t, p, capture));
+    }
+
+    private static boolean isSubtypeCore(final Type<?> t, final Type<?> p, final boolean capture) {
+        if (isUnrelatedClassType(t, p)) {
+            return false;
+        }
+
         if (p.isCompoundType()) {
             final Type baseType = p.getBaseType();
 
@@ -485,7 +529,13 @@ final class Helper {
     }
 
     static boolean containsType(final Type t, final Type p) {
-        return ContainsTypeRelation.visit(t, p);
+        final Object cached = RelationCache.find(Relation.ContainsType, t, p);
+
+        if (cached != null) {
+            return (Boolean) cached;
+        }
+
+        return memoize(Relation.ContainsType, t, p, ContainsTypeRelation.visit(t, p));
     }
 
     static boolean containsTypeEquivalent(ImmutableList<Type<?>> ts, ImmutableList<Type<?>> tp) {
@@ -1274,9 +1324,8 @@ final class Helper {
             return Boolean.FALSE;
         }
 
-        private final Set<TypePair> cache = new HashSet<>();
-
         private boolean containsTypeRecursive(final Type t, final Type s) {
+            final Set<TypePair> cache = PendingTypeArgumentChecks.get();
             final TypePair pair = new TypePair(t, s);
             if (cache.add(pair)) {
                 try {
@@ -1385,6 +1434,61 @@ final class Helper {
         }
     };
 
+    // <editor-fold defaultstate="collapsed" desc="Relation Memoization">
+
+    private final static TypeRelationCache RelationCache = new TypeRelationCache();
+
+    //
+    // The pairs whose type arguments are being compared further up the stack (see IsSubtypeRelation).
+    // The relation visitors are shared, so these are tracked per thread.
+    //
+    private final static ThreadLocal<Set<TypePair>> PendingTypeArgumentChecks = new ThreadLocal<Set<TypePair>>() {
+        @Override
+        protected Set<TypePair> initialValue() {
+            return new HashSet<>();
+        }
+    };
+
+    private static <R> R memoize(final Relation relation, final Type<?> t, final Type<?> p, final R result) {
+        //
+        // A result computed while a pair's type arguments are being compared further up the stack
+        // may depend on what was assumed about that pair, so it is not kept.
+        //
+        if (!PendingTypeArgumentChecks.get().isEmpty()) {
+            return result;
+        }
+
+        return RelationCache.put(relation, t, p, result);
+    }
+
+    /**
+     * Enables or disables the relation memo, along with the erased supertype check which rules out
+     * unrelated class types.  While disabled, every relation is computed structurally.
+     */
+    static void setRelationMemoizationEnabled(final boolean enabled) {
+        RelationCache.setEnabled(enabled);
+    }
+
+    private static boolean isUnrelatedClassType(final Type<?> t, final Type<?> p) {
+        return RelationCache.isEnabled() &&
+               isStableClassType(t) &&
+               isStableClassType(p) &&
+               !t.getCache().getErasedSuperTypes().contains(p.getErasedClass());
+    }
+
+    private static boolean isStableClassType(final Type<?> t) {
+        return t != Type.Bottom &&
+               t != Type.NullType &&
+               !t.isPrimitive() &&
+               !t.isArray() &&
+               !t.isGenericParameter() &&
+               !t.isWildcardType() &&
+               !t.isCompoundType() &&
+               TypeRelationCache.isStable(t);
+    }
+
+    // </editor-fold>
+
     public static void adapt(
         final Type source,
         final Type target,
@@ -1732,7 +1836,7 @@ final class Helper {
         }
     };
 
-    private final static Map<Type, ImmutableList<Type<?>>> closureCache = new HashMap<>();
+    private final static Map<Type<?>, ImmutableList<Type<?>>> closureCache = new ConcurrentHashMap<>();
 
     public static ImmutableList<Type<?>> insert(final ImmutableList<Type<?>> cl, final Type t) {
         if (cl.isEmpty() || precedes(t, cl.head)) {
@@ -1795,7 +1899,9 @@ final class Helper {
             for (ImmutableList<Type<?>> l = interfaces(t); l.nonEmpty(); l = l.tail) {
                 cl = union(cl, closure(l.head));
             }
-            closureCache.put(t, cl);
+            if (GeneratedClassLoader.definingLoader(t) == null) {
+                closureCache.put(t, cl);
+            }
         }
         return cl;
     }
@@ -46,7 +46,14 @@ final class Resolver {
     void resolveMembers(final ReflectedType<?> type, final int flags) {
         final Frame frame = new Frame(type, null);
 
-        this.visit(type, frame, flags);
+        Type.CACHE.beginResolution();
+
+        try {
+            this.visit(type, frame, flags);
+        }
+        finally {
+            Type.CACHE.endResolution();
+        }
     }
 
     public final class Frame {
@@ -402,7 +409,14 @@ final class Resolver {
     }
 
     public Type<?> resolve(final java.lang.reflect.Type type) {
-        return resolveExisting(null, type, true);
+        Type.CACHE.beginResolution();
+
+        try {
+            return resolveExisting(null, type, true);
+        }
+        finally {
+            Type.CACHE.endResolution();
+        }
     }
 
     private Type<?> visit(final java.lang.reflect.Type type, final Frame frame) {
@@ -958,7 +972,7 @@ class ReflectedType<T> extends Type<T> {
     private          Type<? super T> _baseType;
     private          TypeList        _interfaces;
     private volatile int             _flags;
-    private          boolean         _completed;
+    private volatile boolean         _completed;
     private          Type<?>         _declaringType;
     private          MethodBase      _declaringMethod;
 
@@ -1226,14 +1240,18 @@ class ReflectedType<T> extends Type<T> {
             return;
         }
 
-        _completed = true;
-
         if (_genericParameters == null || _genericParameters.isEmpty()) {
             _typeBindings = TypeBindings.empty();
         }
         else {
             _typeBindings = TypeBindings.createUnbound(list(_genericParameters));
         }
+
+        //
+        // Publish last: readers which see the type completed without taking the lock must also
+        // see its bindings.
+        //
+        _completed = true;
     }
 
     @Override
@@ -1268,6 +1286,12 @@ class ReflectedType<T> extends Type<T> {
 
     @Override
     protected Type makeGenericTypeCore(final TypeList typeArguments) {
+        final Type<?> genericType = CACHE.findPublishedGenericType(getGenericTypeDefinition(), typeArguments);
+
+        if (genericType != null) {
+            return genericType;
+        }
+
         synchronized (CACHE_LOCK) {
             return CACHE.getGenericType(getGenericTypeDefinition(), typeArguments);
         }
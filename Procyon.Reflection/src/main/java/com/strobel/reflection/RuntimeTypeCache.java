@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 enum MemberListType {
     All,
@@ -39,14 +40,13 @@ enum MemberListType {
 }
 
 /**
+ * Per-type cache of names, members and member lookups.  It may be shared freely between threads:
+ * the member caches are created on first use and filled under their own locks, and only immutable
+ * lists and results are ever published from them.
+ *
  * @author strobelm
  */
 final class RuntimeTypeCache<T> {
-    private enum WhatsCached {
-        Nothing,
-        EnclosingType
-    }
-
     private enum CacheType {
         Method,
         Constructor,
@@ -57,7 +57,7 @@ final class RuntimeTypeCache<T> {
         NestedType
     }
 
-    private WhatsCached _whatsCached;
+    private volatile boolean _enclosingTypeCached;
     private Class<T> _erasedClass;
     private Type<T> _runtimeType;
     private Type<?> _enclosingType;
@@ -67,11 +67,15 @@ final class RuntimeTypeCache<T> {
     private String _internalName;
     private String _genericSignature;
     private Package _package;
-    private MemberInfoCache<RuntimeMethodInfo> _methodCache;
-    private MemberInfoCache<RuntimeConstructorInfo> _constructorCache;
-    private MemberInfoCache<RuntimeFieldInfo> _fieldCache;
-    private MemberInfoCache<Type<?>> _interfaceCache;
-    private MemberInfoCache<Type<?>> _nestedTypeCache;
+    private volatile MemberInfoCache<RuntimeMethodInfo> _methodCache;
+    private volatile MemberInfoCache<RuntimeConstructorInfo> _constructorCache;
+    private volatile MemberInfoCache<RuntimeFieldInfo> _fieldCache;
+    private volatile MemberInfoCache<Type<?>> _interfaceCache;
+    private volatile MemberInfoCache<Type<?>> _nestedTypeCache;
+
+    private volatile Set<Class<?>> _erasedSuperTypes;
+
+    private final ConcurrentHashMap<LookupKey, Object> _lookups = new ConcurrentHashMap<>();
 
 //    private static HashMap<RuntimeMethodInfo, RuntimeMethodInfo> _methodInstantiations;
 
@@ -146,10 +150,43 @@ final class RuntimeTypeCache<T> {
         return _runtimeType;
     }
 
+    /**
+     * Returns the erased classes of this type and of all its supertypes, which lets subtype checks
+     * between class types rule out unrelated types without walking the hierarchy.
+     */
+    Set<Class<?>> getErasedSuperTypes() {
+        Set<Class<?>> erasedSuperTypes = _erasedSuperTypes;
+
+        if (erasedSuperTypes == null) {
+            erasedSuperTypes = new HashSet<>();
+            collectErasedSuperTypes(_runtimeType, erasedSuperTypes);
+            _erasedSuperTypes = erasedSuperTypes;
+        }
+
+        return erasedSuperTypes;
+    }
+
+    private static void collectErasedSuperTypes(final Type<?> type, final Set<Class<?>> erasedSuperTypes) {
+        if (type == null || type == Type.NullType || !erasedSuperTypes.add(type.getErasedClass())) {
+            return;
+        }
+
+        collectErasedSuperTypes(type.getBaseType(), erasedSuperTypes);
+
+        final TypeList interfaces = type.getExplicitInterfaces();
+
+        for (int i = 0, n = interfaces.size(); i < n; i++) {
+            collectErasedSuperTypes(interfaces.get(i), erasedSuperTypes);
+        }
+    }
+
     Type<?> getEnclosingType() {
-        if (_whatsCached != WhatsCached.EnclosingType) {
+        if (!_enclosingTypeCached) {
+            //
+            // The volatile write below publishes the enclosing type along with it.
+            //
             _enclosingType = getRuntimeType().getDeclaringType();
-            _whatsCached = WhatsCached.EnclosingType;
+            _enclosingTypeCached = true;
         }
         return _enclosingType;
     }
@@ -230,114 +267,285 @@ final class RuntimeTypeCache<T> {
     }
 */
 
-    ArrayList<RuntimeMethodInfo> getMethodList(final MemberListType listType, final String name) {
-        if (_methodCache == null) {
+    private MemberInfoCache<RuntimeMethodInfo> methodCache() {
+        MemberInfoCache<RuntimeMethodInfo> cache = _methodCache;
+
+        if (cache == null) {
             synchronized (Type.CACHE_LOCK) {
-                if (_methodCache == null) {
-                    _methodCache = new MemberInfoCache<>(this);
+                if ((cache = _methodCache) == null) {
+                    _methodCache = cache = new MemberInfoCache<>(this);
                 }
             }
         }
 
-        return _methodCache.getMemberList(listType, name, CacheType.Method);
+        return cache;
     }
 
-    ArrayList<RuntimeConstructorInfo> getConstructorList(final MemberListType listType, final String name) {
-        if (_constructorCache == null) {
+    private MemberInfoCache<RuntimeConstructorInfo> constructorCache() {
+        MemberInfoCache<RuntimeConstructorInfo> cache = _constructorCache;
+
+        if (cache == null) {
             synchronized (Type.CACHE_LOCK) {
-                if (_constructorCache == null) {
-                    _constructorCache = new MemberInfoCache<>(this);
+                if ((cache = _constructorCache) == null) {
+                    _constructorCache = cache = new MemberInfoCache<>(this);
                 }
             }
         }
 
-        return _constructorCache.getMemberList(listType, name, CacheType.Constructor);
+        return cache;
     }
 
-    ArrayList<RuntimeFieldInfo> getFieldList(final MemberListType listType, final String name) {
-        if (_fieldCache == null) {
+    private MemberInfoCache<RuntimeFieldInfo> fieldCache() {
+        MemberInfoCache<RuntimeFieldInfo> cache = _fieldCache;
+
+        if (cache == null) {
             synchronized (Type.CACHE_LOCK) {
-                if (_fieldCache == null) {
-                    _fieldCache = new MemberInfoCache<>(this);
+                if ((cache = _fieldCache) == null) {
+                    _fieldCache = cache = new MemberInfoCache<>(this);
                 }
             }
         }
 
-        return _fieldCache.getMemberList(listType, name, CacheType.Field);
+        return cache;
     }
 
-    ArrayList<Type<?>> getInterfaceList(final MemberListType listType, final String name) {
-        if (_interfaceCache == null) {
+    private MemberInfoCache<Type<?>> interfaceCache() {
+        MemberInfoCache<Type<?>> cache = _interfaceCache;
+
+        if (cache == null) {
             synchronized (Type.CACHE_LOCK) {
-                if (_interfaceCache == null) {
-                    _interfaceCache = new MemberInfoCache<>(this);
+                if ((cache = _interfaceCache) == null) {
+                    _interfaceCache = cache = new MemberInfoCache<>(this);
                 }
             }
         }
 
-        return _interfaceCache.getMemberList(listType, name, CacheType.Interface);
+        return cache;
     }
 
-    ArrayList<Type<?>> getNestedTypeList(final MemberListType listType, final String name) {
-        if (_nestedTypeCache == null) {
+    private MemberInfoCache<Type<?>> nestedTypeCache() {
+        MemberInfoCache<Type<?>> cache = _nestedTypeCache;
+
+        if (cache == null) {
             synchronized (Type.CACHE_LOCK) {
-                if (_nestedTypeCache == null) {
-                    _nestedTypeCache = new MemberInfoCache<>(this);
+                if ((cache = _nestedTypeCache) == null) {
+                    _nestedTypeCache = cache = new MemberInfoCache<>(this);
                 }
             }
         }
 
-        return _nestedTypeCache.getMemberList(listType, name, CacheType.NestedType);
+        return cache;
+    }
+
+    ArrayList<RuntimeMethodInfo> getMethodList(final MemberListType listType, final String name) {
+        return methodCache().getMemberList(listType, name, CacheType.Method);
+    }
+
+    ArrayList<RuntimeConstructorInfo> getConstructorList(final MemberListType listType, final String name) {
+        return constructorCache().getMemberList(listType, name, CacheType.Constructor);
+    }
+
+    ArrayList<RuntimeFieldInfo> getFieldList(final MemberListType listType, final String name) {
+        return fieldCache().getMemberList(listType, name, CacheType.Field);
+    }
+
+    ArrayList<Type<?>> getInterfaceList(final MemberListType listType, final String name) {
+        return interfaceCache().getMemberList(listType, name, CacheType.Interface);
+    }
+
+    ArrayList<Type<?>> getNestedTypeList(final MemberListType listType, final String name) {
+        return nestedTypeCache().getMemberList(listType, name, CacheType.NestedType);
     }
 
     MethodBase getMethod(final Type<? super T> declaringType, final MethodInfo method) {
-        if (_methodCache == null) {
-            synchronized (Type.CACHE_LOCK) {
-                if (_methodCache == null) {
-                    _methodCache = new MemberInfoCache<>(this);
+        return methodCache().addMethod(declaringType, method, CacheType.Method);
+    }
+
+    MethodBase getConstructor(final Type<? super T> declaringType, final MethodInfo constructor) {
+        return constructorCache().addMethod(declaringType, constructor, CacheType.Constructor);
+    }
+
+    FieldInfo getField(final FieldInfo field) {
+        return fieldCache().addField(field);
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Lookup Memoization">
+
+    //
+    // Each distinct lookup signature is cached until this many have been seen for a type; past that,
+    // lookups still work, they just aren't remembered.
+    //
+    private final static int MAX_MEMOIZED_LOOKUPS = 512;
+
+    private final static Object NULL_RESULT = new Object();
+
+    enum LookupKind {
+        Member,
+        Members,
+        FindMembers,
+        Field,
+        Fields,
+        Method,
+        Methods,
+        Constructor,
+        Constructors,
+        NestedType,
+        NestedTypes
+    }
+
+    /**
+     * Creates the key under which the result of a public member lookup on this type is memoized, or
+     * returns {@code null} if the result should not be memoized because some parameter type might
+     * still change (e.g., it is a {@code TypeBuilder}).  Parameter types are compared by identity.
+     */
+    LookupKey lookupKey(
+        final LookupKind kind,
+        final String name,
+        final Set<BindingFlags> bindingFlags,
+        final int options,
+        final Type<?>[] parameterTypes) {
+
+        if (parameterTypes != null) {
+            for (final Type<?> parameterType : parameterTypes) {
+                if (!TypeRelationCache.isStable(parameterType)) {
+                    return null;
                 }
             }
         }
 
-        return _methodCache.addMethod(declaringType, method, CacheType.Method);
+        return new LookupKey(
+            kind,
+            name,
+            BindingFlags.mask(bindingFlags),
+            options,
+            parameterTypes != null ? parameterTypes.clone() : null
+        );
     }
 
-    MethodBase getConstructor(final Type<? super T> declaringType, final MethodInfo constructor) {
-        if (_constructorCache == null) {
-            synchronized (Type.CACHE_LOCK) {
-                if (_constructorCache == null) {
-                    _constructorCache = new MemberInfoCache<>(this);
+    /**
+     * Returns the memoized result for {@code key}, or {@code null} if there is none.  A memoized
+     * {@code null} result is returned as a sentinel; pass the value through {@link #unwrap}.
+     */
+    Object findLookup(final LookupKey key) {
+        return key != null ? _lookups.get(key) : null;
+    }
+
+    <R> R memoize(final LookupKey key, final R result) {
+        if (key == null || _lookups.size() >= MAX_MEMOIZED_LOOKUPS) {
+            return result;
+        }
+
+        final Object existing = _lookups.putIfAbsent(key, result != null ? result : NULL_RESULT);
+
+        return existing != null ? RuntimeTypeCache.<R>unwrap(existing) : result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <R> R unwrap(final Object value) {
+        return value == NULL_RESULT ? null : (R)value;
+    }
+
+    final static class LookupKey {
+        private final LookupKind _kind;
+        private final String _name;
+        private final int _bindingFlags;
+        private final int _options;
+        private final Type<?>[] _parameterTypes;
+        private final int _hashCode;
+
+        private LookupKey(
+            final LookupKind kind,
+            final String name,
+            final int bindingFlags,
+            final int options,
+            final Type<?>[] parameterTypes) {
+
+            _kind = kind;
+            _name = name;
+            _bindingFlags = bindingFlags;
+            _options = options;
+            _parameterTypes = parameterTypes;
+
+            int h = kind.hashCode();
+
+            h = h * 31 + (name != null ? name.hashCode() : 0);
+            h = h * 31 + bindingFlags;
+            h = h * 31 + options;
+
+            if (parameterTypes != null) {
+                h = h * 31 + parameterTypes.length;
+
+                for (final Type<?> parameterType : parameterTypes) {
+                    h = h * 31 + System.identityHashCode(parameterType);
                 }
             }
+
+            _hashCode = h;
         }
 
-        return _constructorCache.addMethod(declaringType, constructor, CacheType.Constructor);
-    }
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
 
-    FieldInfo getField(final FieldInfo field) {
-        if (_fieldCache == null) {
-            synchronized (Type.CACHE_LOCK) {
-                if (_fieldCache == null) {
-                    _fieldCache = new MemberInfoCache<>(this);
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof LookupKey)) {
+                return false;
+            }
+
+            final LookupKey other = (LookupKey) o;
+
+            if (_hashCode != other._hashCode ||
+                _kind != other._kind ||
+                _bindingFlags != other._bindingFlags ||
+                _options != other._options ||
+                !StringUtilities.equals(_name, other._name)) {
+
+                return false;
+            }
+
+            if (_parameterTypes == null || other._parameterTypes == null) {
+                return _parameterTypes == other._parameterTypes;
+            }
+
+            if (_parameterTypes.length != other._parameterTypes.length) {
+                return false;
+            }
+
+            for (int i = 0; i < _parameterTypes.length; i++) {
+                if (_parameterTypes[i] != other._parameterTypes[i]) {
+                    return false;
                 }
             }
+
+            return true;
         }
-        return _fieldCache.addField(field);
     }
 
+    // </editor-fold>
+
+    /**
+     * Lists are published through concurrent maps (or a volatile field) only after they have been
+     * merged with the global list, and are never modified afterward, so lookups need no locking.
+     * Merging happens under the cache's own monitor.
+     */
     @SuppressWarnings("unchecked")
     final static class MemberInfoCache<T extends MemberInfo> {
-        private HashMap<String, ArrayList<T>> _caseSensitiveMembers;
-        private HashMap<String, ArrayList<T>> _caseInsensitiveMembers;
+        private final ConcurrentHashMap<String, ArrayList<T>> _caseSensitiveMembers = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, ArrayList<T>> _caseInsensitiveMembers = new ConcurrentHashMap<>();
         private ArrayList<T> _root;
-        private boolean _cacheComplete;
+        private volatile ArrayList<T> _allMembers;
 
         // This is the strong reference back to the cache
         private RuntimeTypeCache<?> _typeCache;
 
         private MemberInfoCache(final RuntimeTypeCache<?> typeCache) {
             _typeCache = VerifyArgument.notNull(typeCache, "typeCache");
-            _cacheComplete = false;
         }
 
         Type<?> getReflectedType() {
@@ -372,101 +580,73 @@ final class RuntimeTypeCache<T> {
 
             switch (listType) {
                 case CaseSensitive:
-                    if (_caseSensitiveMembers == null) {
-                        return populate(name, listType, cacheType);
-                    }
-
-                    list = _caseSensitiveMembers.get(name);
-
-                    if (list == null) {
-                        return populate(name, listType, cacheType);
-                    }
-
-                    return list;
+                    list = name != null ? _caseSensitiveMembers.get(name) : null;
+                    break;
 
                 case All:
-                    if (_cacheComplete) {
-                        return _root;
-                    }
-
-                    return populate(null, listType, cacheType);
+                    list = _allMembers;
+                    break;
 
                 default:
-                    if (_caseInsensitiveMembers == null) {
-                        return populate(name, listType, cacheType);
-                    }
-
-                    list = _caseInsensitiveMembers.get(name);
-
-                    if (list == null) {
-                        return populate(name, listType, cacheType);
-                    }
+                    list = name != null ? _caseInsensitiveMembers.get(name) : null;
+                    break;
+            }
 
-                    return list;
+            if (list != null) {
+                return list;
             }
+
+            return populate(name, listType, cacheType);
         }
 
         final ArrayList<T> insert(final ArrayList<T> list, final String name, final MemberListType listType) {
-            boolean preallocationComplete = false;
+            synchronized (this) {
+                if (_root == null) {
+                    _root = new ArrayList<>(list.size());
+                }
 
-            ArrayList<T> result = list;
+                final ConcurrentHashMap<String, ArrayList<T>> members;
 
-            synchronized (this) {
-                try {
+                switch (listType) {
+                    case CaseSensitive:
+                        members = name != null ? _caseSensitiveMembers : null;
+                        break;
 
-                    if (listType == MemberListType.CaseSensitive) {
-                        if (_caseSensitiveMembers == null) {
-                            _caseSensitiveMembers = new HashMap<>(1);
-                        }
-                    }
-                    else if (listType == MemberListType.CaseInsensitive) {
-                        if (_caseInsensitiveMembers == null) {
-                            _caseInsensitiveMembers = new HashMap<>(1);
+                    case CaseInsensitive:
+                        members = name != null ? _caseInsensitiveMembers : null;
+                        break;
+
+                    case All:
+                        if (_allMembers != null) {
+                            return _allMembers;
                         }
-                    }
 
-                    if (_root == null) {
-                        _root = new ArrayList<>(list.size());
-                    }
+                        mergeWithGlobalList(list);
+                        _allMembers = list;
+                        return list;
+
+                    default:
+                        members = null;
+                        break;
+                }
 
-                    preallocationComplete = true;
+                if (members == null) {
+                    mergeWithGlobalList(list);
+                    return list;
                 }
-                finally {
-                    if (preallocationComplete) {
-                        if (listType == MemberListType.CaseSensitive) {
-                            // Ensure we always return a list that has been merged with the global list.
-                            final ArrayList<T> cachedList = _caseSensitiveMembers.get(name);
-                            if (cachedList == null) {
-                                mergeWithGlobalList(list);
-                                _caseSensitiveMembers.put(name, list);
-                            }
-                            else {
-                                result = cachedList;
-                            }
-                        }
-                        else if (listType == MemberListType.CaseInsensitive) {
-                            // Ensure we always return a list that has been merged with the global list.
-                            final ArrayList<T> cachedList = _caseInsensitiveMembers.get(name);
-                            if (cachedList == null) {
-                                mergeWithGlobalList(list);
-                                _caseInsensitiveMembers.put(name, list);
-                            }
-                            else {
-                                result = cachedList;
-                            }
-                        }
-                        else {
-                            mergeWithGlobalList(list);
-                        }
 
-                        if (listType == MemberListType.All) {
-                            _cacheComplete = true;
-                        }
-                    }
+                // Ensure we always return a list that has been merged with the global list.
+                final ArrayList<T> cachedList = members.get(name);
+
+                if (cachedList != null) {
+                    return cachedList;
                 }
-            }
 
-            return result;
+                mergeWithGlobalList(list);
+                members.put(name, list);
+
+                return list;
+            }
         }
 
         final MethodBase addMethod(final Type<?> declaringType, final MethodBase method, final CacheType cacheType) {
@@ -19,6 +19,8 @@ import com.strobel.core.ArrayUtilities;
 import com.strobel.core.Comparer;
 import com.strobel.core.StringUtilities;
 import com.strobel.core.VerifyArgument;
+import com.strobel.reflection.RuntimeTypeCache.LookupKey;
+import com.strobel.reflection.RuntimeTypeCache.LookupKind;
 import com.strobel.reflection.emit.TypeBuilder;
 import com.strobel.util.ContractUtils;
 import com.strobel.util.EmptyArrayCache;
@@ -159,7 +161,7 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
         return Type.of(Object.class);
     }
 
-    private TypeList _interfaces;
+    private volatile TypeList _interfaces;
 
     public TypeList getInterfaces() {
         if (_interfaces == null) {
@@ -560,6 +562,19 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
             return MemberList.empty();
         }
 
+        final RuntimeTypeCache<T> cache = getCache();
+        final LookupKey key = cache.lookupKey(LookupKind.Member, name, bindingFlags, MemberType.mask(memberTypes), null);
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
+        return cache.memoize(key, getMemberCore(name, bindingFlags, memberTypes));
+    }
+
+    private MemberList<?> getMemberCore(final String name, final Set<BindingFlags> bindingFlags, final Set<MemberType> memberTypes) {
+
         MethodInfo[] methods = EmptyMethods;
         ConstructorInfo[] constructors = EmptyConstructors;
         FieldInfo[] fields = EmptyFields;
@@ -648,7 +663,18 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     }
 
     public FieldInfo getField(final String name, final Set<BindingFlags> bindingFlags) {
+        final RuntimeTypeCache<T> cache = getCache();
+        final LookupKey key = cache.lookupKey(LookupKind.Field, name, bindingFlags, 0, null);
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
+        return cache.memoize(key, getFieldCore(name, bindingFlags));
+    }
 
+    private FieldInfo getFieldCore(final String name, final Set<BindingFlags> bindingFlags) {
         final FieldInfo[] candidates = getFieldCandidates(
             name,
             bindingFlags,
@@ -705,6 +731,31 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
         final CallingConvention callingConvention,
         final Type... parameterTypes) {
 
+        final RuntimeTypeCache<T> cache = getCache();
+
+        final LookupKey key = cache.lookupKey(
+            LookupKind.Method,
+            name,
+            bindingFlags,
+            lookupOptions(callingConvention),
+            parameterTypes
+        );
+
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
+        return cache.memoize(key, getMethodCore(name, bindingFlags, callingConvention, parameterTypes));
+    }
+
+    private MethodInfo getMethodCore(
+        final String name,
+        final Set<BindingFlags> bindingFlags,
+        final CallingConvention callingConvention,
+        final Type<?>... parameterTypes) {
+
         final MethodInfo[] candidates = getMethodBaseCandidates(
             MemberType.Method,
             name,
@@ -752,6 +803,30 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
         final CallingConvention callingConvention,
         final Type... parameterTypes) {
 
+        final RuntimeTypeCache<T> cache = getCache();
+
+        final LookupKey key = cache.lookupKey(
+            LookupKind.Constructor,
+            null,
+            bindingFlags,
+            lookupOptions(callingConvention),
+            parameterTypes
+        );
+
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
+        return cache.memoize(key, getConstructorCore(bindingFlags, callingConvention, parameterTypes));
+    }
+
+    private ConstructorInfo getConstructorCore(
+        final Set<BindingFlags> bindingFlags,
+        final CallingConvention callingConvention,
+        final Type<?>... parameterTypes) {
+
         final ConstructorInfo[] candidates = getMethodBaseCandidates(
             MemberType.Constructor,
             null,
@@ -807,6 +882,18 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     }
 
     public MemberList getMembers(final Set<BindingFlags> bindingFlags, final Set<MemberType> memberTypes) {
+        final RuntimeTypeCache<T> cache = getCache();
+        final LookupKey key = cache.lookupKey(LookupKind.Members, null, bindingFlags, MemberType.mask(memberTypes), null);
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
+        return cache.memoize(key, getMembersCore(bindingFlags, memberTypes));
+    }
+
+    private MemberList<?> getMembersCore(final Set<BindingFlags> bindingFlags, final Set<MemberType> memberTypes) {
         MethodInfo[] methods = EmptyMethods;
         ConstructorInfo[] constructors = EmptyConstructors;
         FieldInfo[] fields = EmptyFields;
@@ -895,6 +982,30 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
         final Set<BindingFlags> bindingAttr,
         final MemberFilter filter,
         final Object filterCriteria)
+    {
+        if (filter != null) {
+            return findMembersCore(memberTypes, bindingAttr, filter, filterCriteria);
+        }
+
+        //
+        // Without a filter, the result depends only on the member types and binding flags.
+        //
+        final RuntimeTypeCache<T> cache = getCache();
+        final LookupKey key = cache.lookupKey(LookupKind.FindMembers, null, bindingAttr, MemberType.mask(memberTypes), null);
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
+        return cache.memoize(key, findMembersCore(memberTypes, bindingAttr, null, filterCriteria));
+    }
+
+    private MemberList<? extends MemberInfo> findMembersCore(
+        final Set<MemberType> memberTypes,
+        final Set<BindingFlags> bindingAttr,
+        final MemberFilter filter,
+        final Object filterCriteria)
     {
         final MethodList m;
         final ConstructorList c;
@@ -955,13 +1066,21 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     }
 
     public FieldList getFields(final Set<BindingFlags> bindingFlags) {
+        final RuntimeTypeCache<T> cache = getCache();
+        final LookupKey key = cache.lookupKey(LookupKind.Fields, null, bindingFlags, 0, null);
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
         final FieldInfo[] candidates = getFieldCandidates(null, bindingFlags, false);
 
         if (candidates == null || candidates.length == 0) {
-            return FieldList.empty();
+            return cache.memoize(key, FieldList.empty());
         }
 
-        return new FieldList(candidates);
+        return cache.memoize(key, new FieldList(candidates));
     }
 
     public final MethodList getMethods() {
@@ -973,6 +1092,14 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     }
 
     public MethodList getMethods(final Set<BindingFlags> bindingFlags, final CallingConvention callingConvention) {
+        final RuntimeTypeCache<T> cache = getCache();
+        final LookupKey key = cache.lookupKey(LookupKind.Methods, null, bindingFlags, lookupOptions(callingConvention), null);
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
         final MethodInfo[] candidates = getMethodBaseCandidates(
             MemberType.Method,
             null,
@@ -983,10 +1110,10 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
         );
 
         if (candidates == null || candidates.length == 0) {
-            return MethodList.empty();
+            return cache.memoize(key, MethodList.empty());
         }
 
-        return new MethodList(candidates);
+        return cache.memoize(key, new MethodList(candidates));
     }
 
     public final ConstructorList getConstructors() {
@@ -994,6 +1121,14 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     }
 
     public ConstructorList getConstructors(final Set<BindingFlags> bindingFlags) {
+        final RuntimeTypeCache<T> cache = getCache();
+        final LookupKey key = cache.lookupKey(LookupKind.Constructors, null, bindingFlags, 0, null);
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
         final ConstructorInfo[] candidates = getMethodBaseCandidates(
             MemberType.Constructor,
             null,
@@ -1004,10 +1139,10 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
         );
 
         if (candidates == null || candidates.length == 0) {
-            return ConstructorList.empty();
+            return cache.memoize(key, ConstructorList.empty());
         }
 
-        return new ConstructorList(candidates);
+        return cache.memoize(key, new ConstructorList(candidates));
     }
 
     public final TypeList getNestedTypes() {
@@ -1015,13 +1150,21 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     }
 
     public TypeList getNestedTypes(final Set<BindingFlags> bindingFlags) {
+        final RuntimeTypeCache<T> cache = getCache();
+        final LookupKey key = cache.lookupKey(LookupKind.NestedTypes, null, bindingFlags, 0, null);
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
         final Type[] candidates = getNestedTypeCandidates(null, bindingFlags, false);
 
         if (ArrayUtilities.isNullOrEmpty(candidates)) {
-            return TypeList.empty();
+            return cache.memoize(key, TypeList.empty());
         }
 
-        return list(candidates);
+        return cache.memoize(key, list(candidates));
     }
 
     public final Type<?> getNestedType(final String fullName) {
@@ -1031,6 +1174,18 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     public Type<?> getNestedType(final String fullName, final Set<BindingFlags> bindingFlags) {
         VerifyArgument.notNull(fullName, "fullName");
 
+        final RuntimeTypeCache<T> cache = getCache();
+        final LookupKey key = cache.lookupKey(LookupKind.NestedType, fullName, bindingFlags, 0, null);
+        final Object result = cache.findLookup(key);
+
+        if (result != null) {
+            return RuntimeTypeCache.unwrap(result);
+        }
+
+        return cache.memoize(key, getNestedTypeCore(fullName, bindingFlags));
+    }
+
+    private Type<?> getNestedTypeCore(final String fullName, final Set<BindingFlags> bindingFlags) {
         final String name;
 
         if (fullName != null) {
@@ -1098,6 +1253,12 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     public Type<T[]> makeArrayType() {
+        final Type<T[]> arrayType = CACHE.findPublishedArrayType(this);
+
+        if (arrayType != null) {
+            return arrayType;
+        }
+
         synchronized (CACHE_LOCK) {
             return CACHE.getArrayType(this);
         }
@@ -1116,7 +1277,7 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
         );
     }
 
-    private ErasedType<T> _erasedType;
+    private volatile ErasedType<T> _erasedType;
 
     public final Type<?> getErasedType() {
         if (isGenericParameter()) {
@@ -1516,6 +1677,12 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     }
 
     public static <T> Type<T> of(final Class<T> clazz) {
+        final Type<T> cachedType = CACHE.findPublished(clazz);
+
+        if (cachedType != null) {
+            return cachedType;
+        }
+
         synchronized (CACHE_LOCK) {
             final Type<T> reflectedType = CACHE.find(clazz);
 
@@ -1825,7 +1992,7 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
     // TYPE HIERARCHY AND MEMBER RESOLUTION INFO                                                                          //
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-    private RuntimeTypeCache<T> _cache;
+    private volatile RuntimeTypeCache<T> _cache;
 
     final RuntimeTypeCache<T> getCache() {
         if (_cache == null) {
@@ -2218,6 +2385,10 @@ public abstract class Type<T> extends MemberInfo implements java.lang.reflect.Ty
         return true;
     }
 
+    private static int lookupOptions(final CallingConvention callingConvention) {
+        return callingConvention != null ? callingConvention.ordinal() + 1 : 0;
+    }
+
     private static FilterOptions getFilterOptions(final String name, final Set<BindingFlags> bindingFlags, final boolean allowPrefixLookup) {
         String filterName = name;
         boolean prefixLookup = false;
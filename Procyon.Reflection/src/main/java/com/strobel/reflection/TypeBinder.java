@@ -389,25 +389,33 @@ class TypeBinder extends TypeMapper<TypeBindings> {
         final TypeBindings newTypeBindings = visitTypeBindings(oldTypeBindings, bindings);
 
         if (oldTypeBindings != newTypeBindings) {
-            final Type<?> cachedType = Type.CACHE.find(
-                Type.CACHE.key(
-                    type.getErasedClass(),
-                    newTypeBindings.getBoundTypes()
-                )
+            final TypeCache.Key key = Type.CACHE.key(
+                type.getErasedClass(),
+                newTypeBindings.getBoundTypes()
             );
 
+            final Type<?> cachedType = Type.CACHE.findPublished(key);
+
             if (cachedType != null) {
                 return cachedType;
             }
 
-            final GenericType genericType = new GenericType(
-                type.getGenericTypeDefinition(),
-                newTypeBindings
-            );
+            synchronized (Type.CACHE_LOCK) {
+                final Type<?> existingType = Type.CACHE.find(key);
+
+                if (existingType != null) {
+                    return existingType;
+                }
+
+                final GenericType<?> genericType = new GenericType<>(
+                    type.getGenericTypeDefinition(),
+                    newTypeBindings
+                );
 
-            Type.CACHE.add(genericType);
+                Type.CACHE.add(genericType);
 
-            return genericType;
+                return genericType;
+            }
         }
 
         return type;
@@ -13,17 +13,42 @@
 
 package com.strobel.reflection;
 
-import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Reads ({@code find*}) are lock-free and may be made from any thread.  Anything which may add to
+ * the cache must hold {@link Type#CACHE_LOCK}, so that each type is only ever constructed once.
+ * <p/>
+ * While the {@link Resolver} is running, the cache may hold types which are still being built, as
+ * self-referential types must be visible to their own resolution.  Callers which do not hold the
+ * lock must therefore use the {@code findPublished*} methods, which report a miss until every
+ * resolution in progress has finished; the caller then retries under the lock.
+ * <p/>
+ * Types which involve classes defined by a {@link GeneratedClassLoader} are not held by the global
+ * cache; it forwards them to the cache owned by that loader, so they can be collected with it.
+ *
  * @author strobelm
  */
 @SuppressWarnings("unchecked")
 final class TypeCache {
 
-    private final LinkedHashMap<Key, Type> _map = new LinkedHashMap<>();
-    private final LinkedHashMap<Class<?>, Type<?>> _erasedMap = new LinkedHashMap<>();
-    private final LinkedHashMap<Type<?>, Type<?>> _arrayMap = new LinkedHashMap<>();
+    private final GeneratedClassLoader _classLoader;
+    private final ConcurrentHashMap<Key, Type<?>> _map = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Type<?>> _erasedMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Type<?>, Type<?>> _arrayMap = new ConcurrentHashMap<>();
+
+    //
+    // Only modified while holding CACHE_LOCK; volatile so that lock-free readers see it.
+    //
+    private volatile int _resolutionDepth;
+
+    TypeCache() {
+        this(null);
+    }
+
+    TypeCache(final GeneratedClassLoader classLoader) {
+        _classLoader = classLoader;
+    }
 
     public Key key(final Class<?> simpleType) {
         return new Key(simpleType);
@@ -33,12 +58,66 @@ final class TypeCache {
         return new Key(simpleType, typeArguments);
     }
 
-    public Type find(final Key key) {
-        return _map.get(key);
+    void beginResolution() {
+        assert Thread.holdsLock(Type.CACHE_LOCK);
+        _resolutionDepth++;
+    }
+
+    void endResolution() {
+        assert Thread.holdsLock(Type.CACHE_LOCK);
+        _resolutionDepth--;
+    }
+
+    public Type<?> findPublished(final Key key) {
+        return published(find(key));
+    }
+
+    public <T> Type<T[]> findPublishedArrayType(final Type<T> elementType) {
+        return published(findArrayType(elementType));
+    }
+
+    public <T> Type<T> findPublishedGenericType(final Type<T> typeDefinition, final TypeList typeArguments) {
+        return published(findGenericType(typeDefinition, typeArguments));
+    }
+
+    public <T> Type<T> findPublished(final Class<T> clazz) {
+        return published(find(clazz));
+    }
+
+    private <T extends Type<?>> T published(final T type) {
+        //
+        // The type is read before the resolution depth: if it was added by a resolution, it is only
+        // returned if that resolution had already finished, and so had completed the type.
+        //
+        return _resolutionDepth == 0 ? type : null;
+    }
+
+    public Type<?> find(final Key key) {
+        final Type<?> type = _map.get(key);
+
+        if (type != null) {
+            return type;
+        }
+
+        final TypeCache owner = owner(key);
+
+        return owner != null ? owner._map.get(key) : null;
+    }
+
+    public <T> Type<T[]> findArrayType(final Type<T> elementType) {
+        final Type<T[]> arrayType = (Type<T[]>)_arrayMap.get(elementType);
+
+        if (arrayType != null) {
+            return arrayType;
+        }
+
+        final TypeCache owner = owner(elementType);
+
+        return owner != null ? (Type<T[]>)owner._arrayMap.get(elementType) : null;
     }
 
     public <T> Type<T[]> getArrayType(final Type<T> elementType) {
-        Type<T[]> arrayType = (Type<T[]>)_arrayMap.get(elementType);
+        Type<T[]> arrayType = findArrayType(elementType);
 
         if (arrayType != null) {
             return arrayType;
@@ -50,61 +129,78 @@ final class TypeCache {
         return arrayType;
     }
 
+    public <T> Type<T> findGenericType(final Type<T> typeDefinition, final TypeList typeArguments) {
+        return (Type<T>)find(key(typeDefinition.getErasedClass(), typeArguments));
+    }
+
     public <T> Type<T> getGenericType(final Type<T> typeDefinition, final TypeList typeArguments) {
         final Key key = key(
             typeDefinition.getErasedClass(),
             typeArguments
         );
 
-        Type genericType = _map.get(key);
+        Type<?> genericType = find(key);
 
         if (genericType == null) {
-            genericType = new GenericType(
+            genericType = new GenericType<>(
                 typeDefinition.getGenericTypeDefinition(),
                 typeArguments
             );
 
-            final Type existing = _map.put(key, genericType);
+            final TypeCache owner = owner(key);
+            final Type<?> existing = (owner != null ? owner : this)._map.putIfAbsent(key, genericType);
 
             if (existing != null) {
-                return existing;
+                return (Type<T>)existing;
             }
         }
 
-        return genericType;
+        return (Type<T>)genericType;
     }
 
     public <T> Type<T> find(final Class<T> clazz) {
-        return (Type<T>)_erasedMap.get(clazz);
+        final Type<T> type = (Type<T>)_erasedMap.get(clazz);
+
+        if (type != null || _classLoader != null) {
+            return type;
+        }
+
+        final GeneratedClassLoader loader = GeneratedClassLoader.definingLoader(clazz);
+
+        return loader != null ? (Type<T>)loader.typeCache._erasedMap.get(clazz) : null;
     }
 
     public int size() {
         return _map.size();
     }
 
-    public void put(final Key key, final Type type) {
+    public void put(final Key key, final Type<?> type) {
+        final TypeCache owner = owner(key);
+
+        if (owner != null) {
+            owner.put(key, type);
+            return;
+        }
+
         final Class<?> erasedType = key._erasedType;
 
         if (!_erasedMap.containsKey(erasedType)) {
             if (type.isGenericType() && !type.isGenericTypeDefinition()) {
-                _erasedMap.put(erasedType, type.getGenericTypeDefinition());
+                _erasedMap.putIfAbsent(erasedType, type.getGenericTypeDefinition());
             }
             else {
-                _erasedMap.put(erasedType, type);
+                _erasedMap.putIfAbsent(erasedType, type);
             }
         }
 
         _map.put(key, type);
 
         if (type.isArray()) {
-            final Type elementType = type.getElementType();
-            if (!_arrayMap.containsKey(elementType)) {
-                _arrayMap.put(elementType, type);
-            }
+            _arrayMap.putIfAbsent(type.getElementType(), type);
         }
     }
 
-    public void add(final Type type) {
+    public void add(final Type<?> type) {
         final TypeList typeArguments;
 
         if (type.isGenericType()) {
@@ -117,6 +213,34 @@ final class TypeCache {
         put(key(type.getErasedClass(), typeArguments), type);
     }
 
+    /**
+     * Returns the cache of the generated class loader which owns types with the given key, or
+     * {@code null} if they belong in this cache.
+     */
+    private TypeCache owner(final Key key) {
+        if (_classLoader != null) {
+            return null;
+        }
+
+        GeneratedClassLoader loader = GeneratedClassLoader.definingLoader(key._erasedType);
+
+        if (loader == null) {
+            loader = GeneratedClassLoader.definingLoader(key._typeParameters);
+        }
+
+        return loader != null ? loader.typeCache : null;
+    }
+
+    private TypeCache owner(final Type<?> type) {
+        if (_classLoader != null) {
+            return null;
+        }
+
+        final GeneratedClassLoader loader = GeneratedClassLoader.definingLoader(type);
+
+        return loader != null ? loader.typeCache : null;
+    }
+
     static class Key {
         private final Class<?> _erasedType;
         private final TypeList _typeParameters;
@@ -171,8 +295,8 @@ final class TypeCache {
             }
 
             for (int i = 0, n = _typeParameters.size(); i < n; ++i) {
-                final Type parameter = _typeParameters.get(i);
-                final Type otherParameter = otherArguments.get(i);
+                final Type<?> parameter = _typeParameters.get(i);
+                final Type<?> otherParameter = otherArguments.get(i);
                 if (parameter == null) {
                     if (otherParameter != null) {
                         return false;
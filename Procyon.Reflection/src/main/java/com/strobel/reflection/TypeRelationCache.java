@@ -0,0 +1,172 @@
+/*
+ * TypeRelationCache.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.reflection;
+
+import com.strobel.reflection.emit.GenericParameterBuilder;
+import com.strobel.reflection.emit.TypeBuilder;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes the results of the type relations in {@link Helper} (subtyping, assignability, etc.),
+ * keyed on the identity of the types involved.  Only types which can never change are memoized:
+ * anything involving a {@link TypeBuilder} or {@link GenericParameterBuilder} is not, and nor is
+ * anything involving a captured type variable, as every capture creates new ones.
+ * <p/>
+ * Entries are never added speculatively, so recursive relations (e.g., over F-bounded type
+ * variables) simply compute their results as they would without the cache.  The table is bounded;
+ * when it fills up, it is cleared and starts over.
+ *
+ * @author Mike Strobel
+ */
+final class TypeRelationCache {
+    private final static int MAX_ENTRIES = 16384;
+    private final static Object NULL_RESULT = new Object();
+
+    enum Relation {
+        Subtype,
+        SubtypeNoCapture,
+        Assignable,
+        Convertible,
+        ContainsType,
+        AsSuper
+    }
+
+    private final ConcurrentHashMap<Key, Object> _map = new ConcurrentHashMap<>();
+    private volatile boolean _enabled = true;
+
+    boolean isEnabled() {
+        return _enabled;
+    }
+
+    /**
+     * Enables or disables memoization, clearing the table either way.  While disabled, nothing is
+     * found or stored, which lets tests compare memoized results against freshly computed ones.
+     */
+    void setEnabled(final boolean enabled) {
+        _enabled = enabled;
+        _map.clear();
+    }
+
+    /**
+     * Returns the memoized result of {@code relation} for {@code t} and {@code p}, or {@code null} if
+     * there is none.  A memoized {@code null} result is returned as a sentinel; pass the value
+     * through {@link #unwrap}.
+     */
+    Object find(final Relation relation, final Type<?> t, final Type<?> p) {
+        if (!_enabled || _map.isEmpty()) {
+            return null;
+        }
+        return _map.get(new Key(relation, t, p));
+    }
+
+    <R> R put(final Relation relation, final Type<?> t, final Type<?> p, final R result) {
+        if (!_enabled || !isStable(t) || !isStable(p)) {
+            return result;
+        }
+
+        if (_map.size() >= MAX_ENTRIES) {
+            _map.clear();
+        }
+
+        _map.put(new Key(relation, t, p), result != null ? result : NULL_RESULT);
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <R> R unwrap(final Object value) {
+        return value == NULL_RESULT ? null : (R) value;
+    }
+
+    /**
+     * Returns whether {@code type} (and everything it is composed of) is fixed, such that any
+     * relation involving it can be memoized by identity.  Types involving classes defined by a
+     * {@link GeneratedClassLoader} are not, as the memo would keep them from being unloaded.
+     */
+    static boolean isStable(final Type<?> type) {
+        return isFixed(type) && GeneratedClassLoader.definingLoader(type) == null;
+    }
+
+    private static boolean isFixed(final Type<?> type) {
+        if (type == null ||
+            type instanceof TypeBuilder ||
+            type instanceof GenericParameterBuilder ||
+            type instanceof ICapturedType) {
+
+            return false;
+        }
+
+        if (type.hasElementType()) {
+            return isFixed(type.getElementType());
+        }
+
+        if (type.isWildcardType()) {
+            return isFixed(type.getExtendsBound()) &&
+                   (!type.hasSuperBound() || isFixed(type.getSuperBound()));
+        }
+
+        if (type.isGenericType() && !type.isGenericTypeDefinition()) {
+            if (!isFixed(type.getGenericTypeDefinition())) {
+                return false;
+            }
+
+            final TypeList typeArguments = type.getTypeArguments();
+
+            for (int i = 0, n = typeArguments.size(); i < n; i++) {
+                if (!isFixed(typeArguments.get(i))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private final static class Key {
+        private final Relation _relation;
+        private final Type<?> _t;
+        private final Type<?> _p;
+        private final int _hashCode;
+
+        Key(final Relation relation, final Type<?> t, final Type<?> p) {
+            _relation = relation;
+            _t = t;
+            _p = p;
+            _hashCode = (relation.ordinal() * 31 + System.identityHashCode(t)) * 31 + System.identityHashCode(p);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key other = (Key) o;
+
+            return other._relation == _relation &&
+                   other._t == _t &&
+                   other._p == _p;
+        }
+    }
+}
@@ -79,6 +79,7 @@ public final class TypeBuilder<T> extends Type<T> {
     private       boolean                                               _isGenericTypeDefinition;
     private       TypeBindings                                          _typeBindings;
     private       ReadOnlyList<AnnotationBuilder<? extends Annotation>> _annotations;
+    private       GeneratedClassLoader                                  _classLoader;
     private final ProtectionDomain                                      _protectionDomain;
 
 
@@ -595,6 +596,23 @@ public final class TypeBuilder<T> extends Type<T> {
         return _hasBeenCreated;
     }
 
+    /**
+     * Gets the class loader into which this type will be defined.  If {@code null}, the type will
+     * be defined into the system class loader, and can never be unloaded.  Nested types are defined
+     * into the same class loader as their declaring type, unless given one of their own.
+     */
+    public GeneratedClassLoader getClassLoader() {
+        if (_classLoader == null && _declaringType != null) {
+            return _declaringType.getClassLoader();
+        }
+        return _classLoader;
+    }
+
+    public void setClassLoader(final GeneratedClassLoader classLoader) {
+        verifyNotCreated();
+        _classLoader = classLoader;
+    }
+
     public synchronized Type<T> createType() {
         try {
             return createTypeNoLock(null);
@@ -1097,14 +1115,25 @@ public final class TypeBuilder<T> extends Type<T> {
 
             _hasBeenCreated = true;
 
-            _generatedClass = (Class<T>) getUnsafeInstance().defineClass(
-                fullName,
-                classBytes,
-                0,
-                classBytes.length,
-                ClassLoader.getSystemClassLoader(),
-                _protectionDomain
-            );
+            final GeneratedClassLoader classLoader = getClassLoader();
+
+            if (classLoader != null) {
+                _generatedClass = (Class<T>) classLoader.defineClass(
+                    fullName,
+                    classBytes,
+                    _protectionDomain
+                );
+            }
+            else {
+                _generatedClass = (Class<T>) getUnsafeInstance().defineClass(
+                    fullName,
+                    classBytes,
+                    0,
+                    classBytes.length,
+                    ClassLoader.getSystemClassLoader(),
+                    _protectionDomain
+                );
+            }
 
             RuntimeHelpers.ensureClassInitialized(_generatedClass);
 
@@ -0,0 +1,143 @@
+/*
+ * GeneratedClassLoaderTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.reflection;
+
+import com.strobel.reflection.emit.CodeGenerator;
+import com.strobel.reflection.emit.MethodBuilder;
+import com.strobel.reflection.emit.TypeBuilder;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Mike Strobel
+ */
+public final class GeneratedClassLoaderTests {
+    private final static AtomicInteger NextTypeId = new AtomicInteger();
+    private final static long COLLECTION_TIMEOUT = 30000L;
+
+    @Test
+    public void testTypesAreDefinedIntoTheirLoader() throws Throwable {
+        final GeneratedClassLoader loader = new GeneratedClassLoader();
+        final Type<?> type = defineType(loader, "defined");
+        final Class<?> clazz = type.getErasedClass();
+
+        assertSame(loader, clazz.getClassLoader());
+        assertSame(clazz, loader.loadClass(clazz.getName()));
+        assertEquals("defined", clazz.getMethod("describe").invoke(clazz.newInstance()));
+    }
+
+    @Test
+    public void testLoadersFindEachOthersClasses() throws Throwable {
+        final GeneratedClassLoader first = new GeneratedClassLoader();
+        final GeneratedClassLoader second = new GeneratedClassLoader();
+        final Class<?> clazz = defineType(first, "first").getErasedClass();
+
+        assertSame(clazz, second.loadClass(clazz.getName()));
+    }
+
+    @Test
+    public void testReflectedTypesAreCachedByTheirLoader() throws Throwable {
+        final GeneratedClassLoader loader = new GeneratedClassLoader();
+        final Class<?> clazz = defineType(loader, "cached").getErasedClass();
+        final int globalSize;
+        final Type<?> type;
+        final Type<?> arrayType;
+
+        synchronized (Type.CACHE_LOCK) {
+            globalSize = Type.CACHE.size();
+            type = Type.of(clazz);
+            arrayType = type.makeArrayType();
+
+            //
+            // Neither the type nor its array type may be held by the global cache, or they would
+            // keep the loader alive.
+            //
+            assertEquals(globalSize, Type.CACHE.size());
+        }
+
+        assertSame(type, Type.of(clazz));
+        assertSame(type, loader.typeCache.find(clazz));
+        assertSame(arrayType, loader.typeCache.findArrayType(type));
+        assertSame(arrayType, Type.CACHE.findArrayType(type));
+
+        //
+        // Types of ordinary classes still go to the global cache, and never to a loader's.
+        //
+        assertNull(loader.typeCache.find(String.class));
+        assertSame(Types.String, Type.CACHE.find(String.class));
+    }
+
+    @Test
+    public void testLoaderIsCollected() throws Throwable {
+        final WeakReference<?>[] references = defineAndReflect();
+        final long deadline = System.currentTimeMillis() + COLLECTION_TIMEOUT;
+
+        while (references[0].get() != null || references[1].get() != null) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("The generated class loader was not collected.");
+            }
+
+            System.gc();
+            Thread.sleep(10L);
+        }
+    }
+
+    /**
+     * Defines a type into a new loader and exercises its reflected type, then returns weak
+     * references to the loader and the class, so that nothing else on the stack keeps them alive.
+     */
+    private static WeakReference<?>[] defineAndReflect() throws Throwable {
+        final GeneratedClassLoader loader = new GeneratedClassLoader();
+        final Type<?> type = Type.of(defineType(loader, "collected").getErasedClass());
+
+        assertEquals("collected", type.getMethod("describe").invoke(type.newInstance()));
+        assertNotNull(type.makeArrayType());
+
+        return new WeakReference<?>[] {
+            new WeakReference<>(loader),
+            new WeakReference<>(type.getErasedClass())
+        };
+    }
+
+    private static Type<?> defineType(final GeneratedClassLoader loader, final String description) {
+        final TypeBuilder<?> typeBuilder = new TypeBuilder<>(
+            GeneratedClassLoaderTests.class.getPackage().getName() + ".GeneratedType" + NextTypeId.incrementAndGet(),
+            Modifier.PUBLIC | Modifier.FINAL,
+            Types.Object,
+            TypeList.empty()
+        );
+
+        typeBuilder.setClassLoader(loader);
+        typeBuilder.defineDefaultConstructor();
+
+        final MethodBuilder method = typeBuilder.defineMethod(
+            "describe",
+            Modifier.PUBLIC | Modifier.FINAL,
+            Types.String,
+            TypeList.empty()
+        );
+
+        final CodeGenerator code = method.getCodeGenerator();
+
+        code.emitString(description);
+        code.emitReturn(Types.String);
+
+        return typeBuilder.createType();
+    }
+}
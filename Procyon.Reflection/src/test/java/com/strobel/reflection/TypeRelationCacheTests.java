@@ -0,0 +1,272 @@
+/*
+ * TypeRelationCacheTests.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.reflection;
+
+import com.strobel.reflection.TypeRelationCache.Relation;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the memoized type relations in {@link Helper} agree with the same relations computed
+ * without the memo or the erased supertype check.
+ *
+ * @author Mike Strobel
+ */
+@SuppressWarnings({ "unchecked", "UnusedDeclaration" })
+public final class TypeRelationCacheTests {
+    private interface Node<N extends Node<N>> {}
+
+    private final static class Tree implements Node<Tree> {}
+
+    private abstract static class Chain<C extends Chain<C, T>, T extends Comparable<T>> implements Node<Tree> {}
+
+    private final static class Link extends Chain<Link, String> {}
+
+    private static class StringList extends ArrayList<String> {}
+
+    private final static class ExtendsStringList extends StringList {}
+
+    @After
+    public void enableMemoization() {
+        Helper.setRelationMemoizationEnabled(true);
+    }
+
+    @Test
+    public void testMemoizedRelationsMatchUncachedRelations() throws Throwable {
+        final List<Type<?>> types = sampleTypes();
+        final List<List<Object>> expected = new ArrayList<>();
+
+        Helper.setRelationMemoizationEnabled(false);
+
+        for (final Type<?> t : types) {
+            for (final Type<?> p : types) {
+                expected.add(relate(t, p));
+            }
+        }
+
+        Helper.setRelationMemoizationEnabled(true);
+
+        //
+        // The first pass fills the memo, and the second, in the opposite order, is served from it.
+        //
+        for (int i = 0, k = 0; i < types.size(); i++) {
+            for (int j = 0; j < types.size(); j++, k++) {
+                assertEquals(describe(types.get(i), types.get(j)), expected.get(k), relate(types.get(i), types.get(j)));
+            }
+        }
+
+        for (int i = types.size() - 1, k = expected.size() - 1; i >= 0; i--) {
+            for (int j = types.size() - 1; j >= 0; j--, k--) {
+                assertEquals(describe(types.get(i), types.get(j)), expected.get(k), relate(types.get(i), types.get(j)));
+            }
+        }
+    }
+
+    @Test
+    public void testRecursiveBoundsMatchUncachedRelations() throws Throwable {
+        final Type<?> node = Type.of(Node.class);
+        final Type<?> n = node.getGenericTypeParameters().get(0);
+        final Type<?> tree = Type.of(Tree.class);
+        final Type<?> chain = Type.of(Chain.class);
+        final Type<?> c = chain.getGenericTypeParameters().get(0);
+        final Type<?> t = chain.getGenericTypeParameters().get(1);
+        final Type<?> link = Type.of(Link.class);
+        final Type<?> e = Types.Enum.getGenericTypeParameters().get(0);
+        final Type<?> memberType = Type.of(MemberType.class);
+
+        final Type<?>[][] subtypes = {
+            { n, node.makeGenericType(n) },
+            { tree, node.makeGenericType(tree) },
+            { c, chain.makeGenericType(c, t) },
+            { link, chain.makeGenericType(link, Types.String) },
+            { link, chain.makeGenericType(Type.makeWildcard(), Types.String) },
+            { e, Types.Enum.makeGenericType(e) },
+            { e, Types.Comparable.makeGenericType(e) },
+            { memberType, Types.Enum.makeGenericType(memberType) },
+            { memberType, Types.Comparable.makeGenericType(memberType) },
+            { memberType, Types.Enum.makeGenericType(Type.makeExtendsWildcard(Types.Enum.makeGenericType(Type.makeWildcard()))) }
+        };
+
+        final Type<?>[][] unrelated = {
+            { tree, node.makeGenericType(link) },
+            { link, chain.makeGenericType(link, Types.Integer) },
+            { c, chain.makeGenericType(c, Types.String) },
+            { memberType, Types.Comparable.makeGenericType(Types.String) }
+        };
+
+        for (final Type<?>[] pair : subtypes) {
+            assertRelation(true, pair[0], pair[1]);
+        }
+
+        for (final Type<?>[] pair : unrelated) {
+            assertRelation(false, pair[0], pair[1]);
+        }
+    }
+
+    @Test
+    public void testUnrelatedClassTypesMatchUncachedRelations() throws Throwable {
+        final Type<?> esl = Type.of(ExtendsStringList.class);
+
+        //
+        // Class types whose erased supertypes do not include the other type's class are rejected
+        // without walking the hierarchy; the rest fall through to the structural check, which must
+        // still look at the type arguments.
+        //
+        assertRelation(false, Types.String, Types.Number);
+        assertRelation(false, Types.Integer, Type.of(CharSequence.class));
+        assertRelation(false, Types.List.makeGenericType(Types.String), esl);
+        assertRelation(true, Types.Integer, Types.Number);
+        assertRelation(true, Types.Integer, Types.Comparable.makeGenericType(Types.Integer));
+        assertRelation(true, esl, Types.List.makeGenericType(Types.String));
+        assertRelation(true, esl, Types.Iterable.makeGenericType(Type.makeExtendsWildcard(Type.of(CharSequence.class))));
+        assertRelation(false, esl, Types.List.makeGenericType(Types.Integer));
+        assertRelation(false, Types.Integer, Types.Comparable.makeGenericType(Types.Long));
+    }
+
+    private static void assertRelation(final boolean expected, final Type<?> t, final Type<?> p) {
+        Helper.setRelationMemoizationEnabled(false);
+
+        final boolean uncached = Helper.isSubtype(t, p);
+        final List<Object> uncachedRelations = relate(t, p);
+
+        Helper.setRelationMemoizationEnabled(true);
+
+        assertEquals(describe(t, p), expected, uncached);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(describe(t, p), expected, Helper.isSubtype(t, p));
+            assertEquals(describe(t, p), uncachedRelations, relate(t, p));
+        }
+    }
+
+    private static List<Type<?>> sampleTypes() {
+        final Type<?> node = Type.of(Node.class);
+        final Type<?> tree = Type.of(Tree.class);
+        final Type<?> chain = Type.of(Chain.class);
+        final Type<?> link = Type.of(Link.class);
+        final Type<?> memberType = Type.of(MemberType.class);
+        final Type<?> charSequence = Type.of(CharSequence.class);
+        final Type<?> e = Types.Enum.getGenericTypeParameters().get(0);
+        final Type<?> n = node.getGenericTypeParameters().get(0);
+        final Type<?> c = chain.getGenericTypeParameters().get(0);
+        final Type<?> t = chain.getGenericTypeParameters().get(1);
+
+        final List<Type<?>> types = new ArrayList<>();
+
+        Collections.addAll(
+            types,
+            PrimitiveTypes.Integer,
+            PrimitiveTypes.Long,
+            Types.Object,
+            Types.String,
+            Types.Integer,
+            Types.Number,
+            charSequence,
+            Types.Comparable,
+            Types.Comparable.makeGenericType(Types.String),
+            Types.Comparable.makeGenericType(Types.Integer),
+            Types.Comparable.makeGenericType(Type.makeWildcard()),
+            Types.List,
+            Types.List.makeGenericType(Types.String),
+            Types.List.makeGenericType(Types.Integer),
+            Types.List.makeGenericType(Type.makeExtendsWildcard(Types.Number)),
+            Types.List.makeGenericType(Type.makeSuperWildcard(Types.Integer)),
+            Types.List.makeGenericType(Type.makeWildcard()),
+            Types.ArrayList.makeGenericType(Types.Integer),
+            Type.of(StringList.class),
+            Type.of(ExtendsStringList.class),
+            Types.Enum,
+            e,
+            Types.Enum.makeGenericType(e),
+            Types.Enum.makeGenericType(Type.makeExtendsWildcard(e)),
+            Types.Comparable.makeGenericType(Type.makeSuperWildcard(e)),
+            Types.Comparable.makeGenericType(Type.makeSuperWildcard(memberType)),
+            Types.Enum.makeGenericType(memberType),
+            Types.Enum.makeGenericType(Type.makeWildcard()),
+            memberType,
+            node,
+            n,
+            node.makeGenericType(n),
+            node.makeGenericType(Type.makeExtendsWildcard(n)),
+            node.makeGenericType(tree),
+            node.makeGenericType(Type.makeExtendsWildcard(node.makeGenericType(Type.makeWildcard()))),
+            tree,
+            chain,
+            c,
+            t,
+            chain.makeGenericType(c, t),
+            chain.makeGenericType(Type.makeExtendsWildcard(c), t),
+            chain.makeGenericType(link, Types.String),
+            chain.makeGenericType(Type.makeExtendsWildcard(link), Type.makeWildcard()),
+            link,
+            Type.makeWildcard(),
+            Type.makeExtendsWildcard(Types.Number),
+            Type.makeSuperWildcard(Types.Integer),
+            Types.String.makeArrayType(),
+            charSequence.makeArrayType(),
+            Types.Object.makeArrayType(),
+            PrimitiveTypes.Integer.makeArrayType()
+        );
+
+        return types;
+    }
+
+    /**
+     * Returns the outcome of every memoized relation between {@code t} and {@code p}:  the result,
+     * or the class of the exception it throws.
+     */
+    private static List<Object> relate(final Type<?> t, final Type<?> p) {
+        final List<Object> outcomes = new ArrayList<>();
+
+        for (final Relation relation : Relation.values()) {
+            try {
+                switch (relation) {
+                    case Subtype:
+                        outcomes.add(Helper.isSubtype(t, p));
+                        break;
+                    case SubtypeNoCapture:
+                        outcomes.add(Helper.isSubtypeNoCapture(t, p));
+                        break;
+                    case Assignable:
+                        outcomes.add(Helper.isAssignable(t, p));
+                        break;
+                    case Convertible:
+                        outcomes.add(Helper.isConvertible(t, p));
+                        break;
+                    case ContainsType:
+                        outcomes.add(Helper.containsType(t, p));
+                        break;
+                    case AsSuper:
+                        outcomes.add(String.valueOf(Helper.asSuper(t, p)));
+                        break;
+                }
+            }
+            catch (RuntimeException e) {
+                outcomes.add(e.getClass());
+            }
+        }
+
+        return outcomes;
+    }
+
+    private static String describe(final Type<?> t, final Type<?> p) {
+        return t + " -> " + p;
+    }
+}
@@ -17,6 +17,8 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -199,6 +201,87 @@ public final class TypeTests {
         testSignatureRoundTrip(Types.Map.makeGenericType(Types.Map.getGenericTypeParameters().get(0), Types.String));
     }
 
+    @Test
+    public void testConcurrentResolutionOfSelfReferentialTypes() throws Throwable {
+        //
+        // Self-referential types are visible in the cache while they are being resolved.  Readers
+        // which do not hold the cache lock must never see them before they have been completed.
+        //
+        final Class<?>[] classes = { Leaf.class, Branch.class, Node.class };
+        final Thread[] probes = new Thread[7];
+        final CountDownLatch start = new CountDownLatch(probes.length);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.countDown();
+
+                        for (final Class<?> c : classes) {
+                            Type<?> type;
+
+                            while ((type = Type.CACHE.findPublished(c)) == null) {
+                                Thread.yield();
+                            }
+
+                            assertResolved(type);
+                        }
+                    }
+                    catch (final Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+
+            probes[i].start();
+        }
+
+        start.await();
+
+        final Type<?>[] types = new Type<?>[classes.length];
+
+        for (int i = 0; i < classes.length; i++) {
+            types[i] = Type.of(classes[i]);
+        }
+
+        for (final Thread probe : probes) {
+            probe.join();
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        for (int i = 0; i < classes.length; i++) {
+            assertResolved(types[i]);
+            assertSame(types[i], Type.of(classes[i]));
+        }
+    }
+
+    private static void assertResolved(final Type<?> t) {
+        final Type<?> node = Type.of(Node.class);
+
+        if (t == node) {
+            assertTrue(node.isGenericTypeDefinition());
+            assertEquals(1, node.getGenericTypeParameters().size());
+            assertEquals(1, node.getExplicitInterfaces().size());
+
+            final Type<?> comparable = node.getExplicitInterfaces().get(0);
+
+            assertSame(Types.Comparable, comparable.getGenericTypeDefinition());
+            assertSame(node, comparable.getTypeArguments().get(0).getGenericTypeDefinition());
+        }
+        else {
+            final Type<?> baseType = t.getBaseType();
+
+            assertNotNull(baseType);
+            assertSame(node, baseType.getGenericTypeDefinition());
+            assertSame(t, baseType.getTypeArguments().get(0));
+        }
+    }
+
     private void testSignatureRoundTrip(final Type<?> t) {
         final String signature = t.getSignature();
         final Type<?> resolvedType = Type.forName(signature);
@@ -217,4 +300,15 @@ public final class TypeTests {
     private static class D extends C {}
 
     private static class E<K extends B & I, V> {}
+
+    private static abstract class Node<T extends Node<T>> implements Comparable<Node<T>> {
+        T next;
+    }
+
+    private static abstract class Leaf extends Node<Leaf> {}
+
+    private static abstract class Branch extends Node<Branch> {
+        Leaf first;
+        Branch parent;
+    }
 }